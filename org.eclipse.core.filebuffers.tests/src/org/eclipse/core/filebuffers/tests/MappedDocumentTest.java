@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.core.internal.filebuffers.MappedDocument;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension5;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
+
+
+/**
+ * Tests {@link MappedDocument} by comparing it with a {@link Document} of the same content.
+ *
+ * @since 3.7
+ */
+public class MappedDocumentTest {
+
+	private static final String UTF_8= "UTF-8";
+	private static final String ISO_8859_1= "ISO-8859-1";
+
+	private File fFile;
+	private MappedDocument fDocument;
+
+	@Before
+	public void setUp() throws IOException {
+		fFile= File.createTempFile("mapped", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		if (fDocument != null)
+			fDocument.dispose();
+		fFile.delete();
+	}
+
+	private MappedDocument createDocument(byte[] bytes, String encoding, boolean hasBOM) throws IOException {
+		OutputStream out= new FileOutputStream(fFile);
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+		fDocument= MappedDocument.create(fFile, encoding, hasBOM);
+		return fDocument;
+	}
+
+	private void assertSameContent(String text, String encoding) throws Exception {
+		IDocument mapped= createDocument(text.getBytes(encoding), encoding, false);
+		assertEqualDocuments(new Document(text), mapped);
+	}
+
+	private static void assertEqualDocuments(IDocument expected, IDocument actual) throws BadLocationException {
+		int length= expected.getLength();
+		assertEquals(length, actual.getLength());
+		assertEquals(expected.get(), actual.get());
+
+		Random random= new Random(length);
+		for (int i= 0; i < 100 && length > 0; i++) {
+			int offset= random.nextInt(length);
+			int count= random.nextInt(Math.min(length - offset, 200000) + 1);
+			assertEquals(expected.get(offset, count), actual.get(offset, count));
+			assertEquals(expected.getChar(offset), actual.getChar(offset));
+		}
+
+		int lines= expected.getNumberOfLines();
+		assertEquals(lines, actual.getNumberOfLines());
+		for (int line= 0; line < lines; line++) {
+			assertEquals(expected.getLineOffset(line), actual.getLineOffset(line));
+			assertEquals(expected.getLineLength(line), actual.getLineLength(line));
+			assertEquals(expected.getLineDelimiter(line), actual.getLineDelimiter(line));
+			assertEqualRegions(expected.getLineInformation(line), actual.getLineInformation(line));
+		}
+		for (int offset= 0; offset <= length; offset += 1 + offset / 8) {
+			assertEquals(expected.getLineOfOffset(offset), actual.getLineOfOffset(offset));
+			assertEqualRegions(expected.getLineInformationOfOffset(offset), actual.getLineInformationOfOffset(offset));
+		}
+		assertEquals(expected.getLineOfOffset(length), actual.getLineOfOffset(length));
+		assertEquals(expected.getNumberOfLines(0, length), actual.getNumberOfLines(0, length));
+	}
+
+	private static void assertEqualRegions(IRegion expected, IRegion actual) {
+		assertEquals(expected.getOffset(), actual.getOffset());
+		assertEquals(expected.getLength(), actual.getLength());
+	}
+
+	private static String createText(int size, boolean ascii) {
+		String[] delimiters= { "\n", "\r\n", "\r" };
+		String nonAscii= "\u00e4\u00f6\u00fc\u20ac\u00df\u03c0\ud83d\ude00";
+		Random random= new Random(size);
+		StringBuilder text= new StringBuilder(size);
+		while (text.length() < size) {
+			int lineLength= random.nextInt(100);
+			for (int i= 0; i < lineLength; i++) {
+				if (!ascii && random.nextInt(10) == 0) {
+					int index= random.nextInt(nonAscii.length() - 1);
+					if (Character.isHighSurrogate(nonAscii.charAt(index)))
+						text.append(nonAscii, index, index + 2);
+					else
+						text.append(nonAscii.charAt(index));
+				} else {
+					text.append((char) ('a' + random.nextInt(26)));
+				}
+			}
+			text.append(delimiters[random.nextInt(delimiters.length)]);
+		}
+		return text.toString();
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		assertSameContent("", UTF_8);
+	}
+
+	@Test
+	public void testSingleLine() throws Exception {
+		assertSameContent("no delimiter", UTF_8);
+	}
+
+	@Test
+	public void testDelimiters() throws Exception {
+		assertSameContent("a\nb\r\nc\rd\r\r\n\n\r", ISO_8859_1);
+	}
+
+	@Test
+	public void testUTF8() throws Exception {
+		assertSameContent(createText(1000000, false), UTF_8);
+	}
+
+	@Test
+	public void testISO88591() throws Exception {
+		assertSameContent(createText(500000, true), ISO_8859_1);
+	}
+
+	@Test
+	public void testDelimiterAcrossPages() throws Exception {
+		StringBuilder text= new StringBuilder();
+		while (text.length() < (1 << 16) - 1)
+			text.append('x');
+		text.append("\r\nsecond line\r");
+		assertSameContent(text.toString(), ISO_8859_1);
+	}
+
+	@Test
+	public void testBOM() throws Exception {
+		byte[] content= "first\nsecond".getBytes(UTF_8);
+		byte[] bytes= new byte[content.length + 3];
+		bytes[0]= (byte) 0xEF;
+		bytes[1]= (byte) 0xBB;
+		bytes[2]= (byte) 0xBF;
+		System.arraycopy(content, 0, bytes, 3, content.length);
+		assertEqualDocuments(new Document("first\nsecond"), createDocument(bytes, UTF_8, true));
+	}
+
+	@Test
+	public void testMalformedUTF8() throws Exception {
+		byte[] bytes= { 'a', (byte) 0x80, 'b', (byte) 0xC3, '\n', (byte) 0xF0, (byte) 0x9F, 'c', (byte) 0xFF, '\n' };
+		assertEqualDocuments(new Document("ab\ufffd\n\ufffdc\ufffd\n"), createDocument(bytes, UTF_8, false));
+	}
+
+	@Test
+	public void testUnsupportedEncoding() throws Exception {
+		assertNull(createDocument("text".getBytes("UTF-16"), "UTF-16", false));
+	}
+
+	@Test
+	public void testReadOnly() throws Exception {
+		IDocument document= createDocument("text".getBytes(UTF_8), UTF_8, false);
+		try {
+			document.replace(0, 1, "T");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			document.set("other");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals("text", document.get());
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		String text= createText(100000, true);
+		MappedDocument document= createDocument(text.getBytes(ISO_8859_1), ISO_8859_1, false);
+		IDocument snapshot= document.getSnapshot();
+		assertNotSame(document, snapshot);
+		assertEqualDocuments(new Document(text), snapshot);
+
+		// the snapshot does not see positions added later on
+		document.addPosition(new Position(0, 1));
+		assertEquals(0, snapshot.getPositionCategories().length);
+		try {
+			snapshot.replace(0, 1, "T");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEqualDocuments(new Document(text), ((IDocumentExtension5) snapshot).getSnapshot());
+	}
+}
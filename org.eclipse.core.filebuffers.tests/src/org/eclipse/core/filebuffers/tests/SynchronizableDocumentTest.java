@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.filebuffers.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import org.eclipse.core.internal.filebuffers.SynchronizableDocument;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.DocumentRewriteSession;
+import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+
+
+/**
+ * Tests the concurrent reads of {@link SynchronizableDocument}.
+ *
+ * @since 3.7
+ */
+public class SynchronizableDocumentTest {
+
+	private static final int LINES= 50;
+
+	private final Object fLock= new Object();
+
+	private SynchronizableDocument createDocument(boolean concurrentReads) {
+		SynchronizableDocument document= new SynchronizableDocument(concurrentReads);
+		document.setLockObject(fLock);
+		document.set(createText(1));
+		return document;
+	}
+
+	/**
+	 * Returns a text of {@link #LINES} lines which all consist of the given number of characters.
+	 *
+	 * @param lineLength the length of the lines without delimiter
+	 * @return the text
+	 */
+	private static String createText(int lineLength) {
+		StringBuilder buffer= new StringBuilder();
+		for (int i= 0; i < LINES; i++) {
+			for (int j= 0; j < lineLength; j++)
+				buffer.append('x');
+			buffer.append('\n');
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Starts a thread that reads the whole text of the document.
+	 *
+	 * @param document the document
+	 * @param result receives the text
+	 * @return the started thread
+	 */
+	private static Thread startReader(final SynchronizableDocument document, final AtomicReference<String> result) {
+		Thread reader= new Thread() {
+			@Override
+			public void run() {
+				result.set(document.get());
+			}
+		};
+		reader.start();
+		return reader;
+	}
+
+	@Test
+	public void testReadWithoutLock() throws InterruptedException {
+		SynchronizableDocument document= createDocument(true);
+		AtomicReference<String> result= new AtomicReference<>();
+		synchronized (fLock) {
+			Thread reader= startReader(document, result);
+			reader.join(10000);
+			assertFalse(reader.isAlive());
+		}
+		assertEquals(createText(1), result.get());
+	}
+
+	@Test
+	public void testReadWithLock() throws InterruptedException {
+		SynchronizableDocument document= createDocument(false);
+		AtomicReference<String> result= new AtomicReference<>();
+		Thread reader;
+		synchronized (fLock) {
+			reader= startReader(document, result);
+			reader.join(200);
+			assertTrue(reader.isAlive());
+		}
+		reader.join(10000);
+		assertEquals(createText(1), result.get());
+	}
+
+	@Test
+	public void testReadDuringRewriteSession() throws InterruptedException {
+		SynchronizableDocument document= createDocument(true);
+		DocumentRewriteSession session= document.startRewriteSession(DocumentRewriteSessionType.UNRESTRICTED);
+		AtomicReference<String> result= new AtomicReference<>();
+		Thread reader;
+		synchronized (fLock) {
+			reader= startReader(document, result);
+			reader.join(200);
+			assertTrue(reader.isAlive());
+		}
+		reader.join(10000);
+		assertEquals(createText(1), result.get());
+
+		document.stopRewriteSession(session);
+		synchronized (fLock) {
+			reader= startReader(document, result);
+			reader.join(10000);
+			assertFalse(reader.isAlive());
+		}
+	}
+
+	@Test
+	public void testReadInListener() throws BadLocationException {
+		final SynchronizableDocument document= createDocument(true);
+		final AtomicReference<String> result= new AtomicReference<>();
+		document.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				result.set(document.get());
+			}
+		});
+		document.replace(0, 0, "a");
+		assertEquals("a" + createText(1), result.get());
+		document.replace(0, 1, "");
+		assertEquals(createText(1), result.get());
+	}
+
+	@Test
+	public void testConcurrentReads() throws InterruptedException {
+		final SynchronizableDocument document= createDocument(true);
+		final AtomicReference<Throwable> failure= new AtomicReference<>();
+		final boolean[] done= new boolean[1];
+
+		Thread[] readers= new Thread[3];
+		for (int i= 0; i < readers.length; i++) {
+			readers[i]= new Thread() {
+				@Override
+				public void run() {
+					try {
+						while (!isDone()) {
+							// each read must see the lines of a single state of the document
+							String text= document.get();
+							int lineLength= text.indexOf('\n');
+							assertEquals(createText(lineLength), text);
+
+							int line= (int) (Math.random() * LINES);
+							IRegion region= document.getLineInformation(line);
+							assertEquals(line * (region.getLength() + 1), region.getOffset());
+						}
+					} catch (Throwable x) {
+						failure.compareAndSet(null, x);
+					}
+				}
+
+				private boolean isDone() {
+					synchronized (done) {
+						return done[0];
+					}
+				}
+			};
+			readers[i].start();
+		}
+
+		try {
+			int[] offsets= new int[LINES];
+			int[] lengths= new int[LINES];
+			String[] texts= new String[LINES];
+			for (int i= 0; i < 2000 && failure.get() == null; i++) {
+				int lineLength= document.getLineLength(0) - 1;
+				if (i % 100 == 99) {
+					document.set(createText(1));
+				} else if (lineLength > 20) {
+					document.replace(0, document.getLength(), createText(1));
+				} else {
+					// add a character to each line in one modification
+					for (int line= 0; line < LINES; line++) {
+						offsets[line]= line * (lineLength + 1);
+						lengths[line]= 0;
+						texts[line]= "x";
+					}
+					document.replace(offsets, lengths, texts);
+				}
+			}
+		} catch (BadLocationException x) {
+			failure.compareAndSet(null, x);
+		} finally {
+			synchronized (done) {
+				done[0]= true;
+			}
+			for (int i= 0; i < readers.length; i++)
+				readers[i].join(10000);
+		}
+		assertNull(failure.get());
+	}
+
+	@Test
+	public void testLineReadsDuringModifications() throws InterruptedException {
+		final SynchronizableDocument document= createDocument(true);
+		final AtomicReference<Throwable> failure= new AtomicReference<>();
+		final boolean[] done= new boolean[1];
+
+		Thread[] readers= new Thread[3];
+		for (int i= 0; i < readers.length; i++) {
+			readers[i]= new Thread() {
+				@Override
+				public void run() {
+					Random random= new Random();
+					while (!isDone()) {
+						try {
+							// each read must see the line information of a single state of the document
+							int offset= random.nextInt(LINES * 3);
+							IRegion region= document.getLineInformationOfOffset(offset);
+							assertTrue(region.getOffset() <= offset && offset <= region.getOffset() + region.getLength() + 1);
+
+							int line= document.getLineOfOffset(offset);
+							assertTrue(document.getLineOffset(line) >= 0);
+							assertTrue(document.getLineLength(line) >= 0);
+							String delimiter= document.getLineDelimiter(line);
+							assertTrue(delimiter == null || "\n".equals(delimiter));
+							assertEquals("\n", document.getDefaultLineDelimiter());
+						} catch (BadLocationException x) {
+							// the document became shorter
+						} catch (Throwable x) {
+							failure.compareAndSet(null, x);
+						}
+					}
+				}
+
+				private boolean isDone() {
+					synchronized (done) {
+						return done[0];
+					}
+				}
+			};
+			readers[i].start();
+		}
+
+		try {
+			// insert and remove single delimiters, which restructures the line tracker
+			Random random= new Random(1);
+			for (int i= 0; i < 20000 && failure.get() == null; i++) {
+				int length= document.getLength();
+				int offset= random.nextInt(length + 1);
+				if (length < LINES || random.nextBoolean())
+					document.replace(offset, 0, random.nextBoolean() ? "\n" : "x");
+				else if (offset < length)
+					document.replace(offset, 1, "");
+			}
+		} catch (BadLocationException x) {
+			failure.compareAndSet(null, x);
+		} finally {
+			synchronized (done) {
+				done[0]= true;
+			}
+			for (int i= 0; i < readers.length; i++) {
+				readers[i].join(10000);
+				assertFalse(readers[i].isAlive());
+			}
+		}
+		assertNull(failure.get());
+	}
+}
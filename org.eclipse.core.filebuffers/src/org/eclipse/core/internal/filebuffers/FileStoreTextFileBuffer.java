@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2014 IBM Corporation and others.
+ * Copyright (c) 2007, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -218,6 +218,13 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 		if (isDisconnected())
 			return;
 
+		if (fDocument instanceof MappedDocument) {
+			// a memory-mapped document is never dirty but its content cannot be reloaded either
+			if (!isSynchronized())
+				throw new CoreException(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CONTENT_CHANGE_FAILED, FileBuffersMessages.MappedDocument_error_outOfSync, null));
+			return;
+		}
+
 		IDocument original= null;
 		fStatus= null;
 
@@ -314,6 +321,11 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 		}
 	}
 
+	@Override
+	public boolean isCommitable() {
+		return !(fDocument instanceof MappedDocument) && super.isCommitable();
+	}
+
 	@Override
 	protected void addFileBufferContentListeners() {
 		if (fDocument != null)
@@ -329,9 +341,12 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 	@Override
 	protected void initializeFileBufferContent(IProgressMonitor monitor) throws CoreException {
 		try {
-			fDocument= fManager.createEmptyDocument(getLocationOrName(), LocationKind.LOCATION);
 			cacheEncodingState();
-			setDocumentContent(fDocument, fFileStore, fEncoding, fHasBOM, monitor);
+			fDocument= fManager.createMappedDocument(fFileStore.toLocalFile(EFS.NONE, null), fEncoding, fHasBOM);
+			if (fDocument == null) {
+				fDocument= fManager.createEmptyDocument(getLocationOrName(), LocationKind.LOCATION);
+				setDocumentContent(fDocument, fFileStore, fEncoding, fHasBOM, monitor);
+			}
 		} catch (CoreException x) {
 			fDocument= fManager.createEmptyDocument(getLocationOrName(), LocationKind.LOCATION);
 			fStatus= x.getStatus();
@@ -349,6 +364,8 @@ public class FileStoreTextFileBuffer extends FileStoreFileBuffer implements ITex
 	protected void disconnected() {
 		if (fAnnotationModel != null)
 			fAnnotationModel.disconnect(fDocument);
+		if (fDocument instanceof MappedDocument)
+			((MappedDocument) fDocument).dispose();
 		super.disconnected();
 	}
 
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.filebuffers;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jface.text.ITextStore;
+
+
+/**
+ * A read-only document whose content is a memory-mapped file.
+ * <p>
+ * The text is decoded on demand by a {@link MappedTextStore} and lines are indexed in the
+ * background by a {@link MappedLineTracker}. Opening such a document neither reads the file into
+ * memory nor decodes it. All attempts to modify the document throw an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * @since 3.7
+ */
+public class MappedDocument extends SynchronizableDocument {
+
+	/** The line tracker of this document. */
+	private final MappedLineTracker fLineTracker;
+
+	/**
+	 * Creates a new document for the given file.
+	 *
+	 * @param file the file
+	 * @param encoding the encoding of the file
+	 * @param hasBOM <code>true</code> if the file starts with a UTF-8 byte order mark
+	 * @return the document or <code>null</code> if the encoding is not supported or the file is
+	 *         too large to be mapped
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public static MappedDocument create(File file, String encoding, boolean hasBOM) throws IOException {
+		MappedTextStore store= MappedTextStore.create(file, encoding, hasBOM);
+		return store != null ? new MappedDocument(store) : null;
+	}
+
+	/**
+	 * Creates a new document for the given text store.
+	 *
+	 * @param store the text store
+	 */
+	private MappedDocument(MappedTextStore store) {
+		super(true);
+		fLineTracker= new MappedLineTracker(store);
+		setTextStore(store);
+		setLineTracker(fLineTracker);
+	}
+
+	/**
+	 * Stops all background work of this document.
+	 */
+	public void dispose() {
+		fLineTracker.dispose();
+	}
+
+	@Override
+	public void replace(int offset, int length, String text, long modificationStamp) {
+		throw new UnsupportedOperationException(FileBuffersMessages.MappedDocument_error_readOnly);
+	}
+
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) {
+		throw new UnsupportedOperationException(FileBuffersMessages.MappedDocument_error_readOnly);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The content of this document never changes, therefore the snapshots share the text store
+	 * and the line tracker of this document. This avoids decoding the whole file.
+	 * </p>
+	 */
+	@Override
+	protected ITextStore getStoreSnapshot() {
+		return getStore();
+	}
+
+	@Override
+	public void set(String text, long modificationStamp) {
+		throw new UnsupportedOperationException(FileBuffersMessages.MappedDocument_error_readOnly);
+	}
+}
@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.filebuffers;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DefaultLineTracker;
+import org.eclipse.jface.text.ILineTracker;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+
+/**
+ * A read-only line tracker for a {@link MappedTextStore}.
+ * <p>
+ * The line index is built page by page in a background job. A query that needs a part of the
+ * index that has not been built yet indexes the missing pages itself, so it never waits for the
+ * job. Queries at the beginning of the text, which is what is usually shown first, are therefore
+ * answered immediately, whereas {@link #getNumberOfLines()} requires the complete index.
+ * </p>
+ * <p>
+ * The tracker recognizes the same delimiters as {@link DefaultLineTracker} and answers all
+ * queries like it. All attempts to modify the tracker throw an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * @since 3.7
+ */
+public class MappedLineTracker implements ILineTracker {
+
+	/** The job that builds the line index. */
+	private class IndexJob extends Job {
+
+		public IndexJob() {
+			super(FileBuffersMessages.MappedLineTracker_indexing);
+			setSystem(true);
+			setPriority(DECORATE);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			while (!monitor.isCanceled() && indexNextPage()) {
+				// continue
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+	/** The text store. */
+	private final MappedTextStore fStore;
+	/** The tracker used to compute the number of lines of arbitrary strings. */
+	private final DefaultLineTracker fDelegate= new DefaultLineTracker();
+	/** The job that builds the line index. */
+	private final Job fJob= new IndexJob();
+
+	/* all fields below are guarded by this tracker */
+
+	/** The start offsets of the lines known so far, only the first <code>fLines</code> are valid. */
+	private int[] fLineOffsets= new int[1024];
+	/** The number of known lines. */
+	private int fLines= 1;
+	/** The number of indexed pages. */
+	private int fIndexedPages;
+	/** Whether the last indexed character is a carriage return. */
+	private boolean fPendingCR;
+
+	/**
+	 * Creates a new line tracker for the given text store and starts to build the line index.
+	 *
+	 * @param store the text store
+	 */
+	public MappedLineTracker(MappedTextStore store) {
+		fStore= store;
+		fJob.schedule();
+	}
+
+	/**
+	 * Stops building the line index in the background. The tracker can still be used after it
+	 * has been disposed.
+	 */
+	public void dispose() {
+		fJob.cancel();
+	}
+
+	/**
+	 * Indexes the next page.
+	 *
+	 * @return <code>true</code> if there are more pages to index
+	 */
+	private synchronized boolean indexNextPage() {
+		int pages= fStore.getPageCount();
+		if (fIndexedPages == pages)
+			return false;
+
+		int page= fIndexedPages;
+		int pageOffset= fStore.getPageCharOffset(page);
+		char[] content= fStore.decode(page);
+		for (int i= 0; i < content.length; i++) {
+			char c= content[i];
+			if (fPendingCR) {
+				fPendingCR= false;
+				if (c != '\n')
+					addLine(pageOffset + i);
+			}
+			if (c == '\r')
+				fPendingCR= true;
+			else if (c == '\n')
+				addLine(pageOffset + i + 1);
+		}
+
+		fIndexedPages++;
+		if (fIndexedPages == pages && fPendingCR) {
+			fPendingCR= false;
+			addLine(fStore.getLength());
+		}
+		return fIndexedPages < pages;
+	}
+
+	/**
+	 * Records the start of a new line.
+	 *
+	 * @param offset the offset of the line
+	 */
+	private void addLine(int offset) {
+		if (fLines == fLineOffsets.length) {
+			int[] lineOffsets= new int[fLines * 2];
+			System.arraycopy(fLineOffsets, 0, lineOffsets, 0, fLines);
+			fLineOffsets= lineOffsets;
+		}
+		fLineOffsets[fLines++]= offset;
+	}
+
+	/**
+	 * Tells whether the index is complete.
+	 *
+	 * @return <code>true</code> if all pages have been indexed
+	 */
+	private boolean isComplete() {
+		return fIndexedPages == fStore.getPageCount();
+	}
+
+	/**
+	 * Indexes pages until all lines starting at or before the given offset are known.
+	 *
+	 * @param offset the character offset
+	 */
+	private void indexOffset(int offset) {
+		// a line starting at the offset is only known once the character before it has been seen
+		while (!isComplete() && fStore.getPageCharOffset(fIndexedPages) - (fPendingCR ? 1 : 0) < offset)
+			indexNextPage();
+	}
+
+	/**
+	 * Indexes pages until the start and the end of the given line are known.
+	 *
+	 * @param line the line
+	 * @throws BadLocationException if the line does not exist
+	 */
+	private void indexLine(int line) throws BadLocationException {
+		if (line < 0)
+			throw new BadLocationException();
+		while (!isComplete() && fLines <= line + 1)
+			indexNextPage();
+		if (line >= fLines)
+			throw new BadLocationException();
+	}
+
+	/**
+	 * Returns the offset after the given known line, including its delimiter.
+	 *
+	 * @param line the line, must be indexed
+	 * @return the end offset of the line
+	 */
+	private int getLineEnd(int line) {
+		return line + 1 < fLines ? fLineOffsets[line + 1] : fStore.getLength();
+	}
+
+	/**
+	 * Returns the number of the line containing the given offset.
+	 *
+	 * @param offset the offset, must be indexed
+	 * @return the line number
+	 */
+	private int findLine(int offset) {
+		int left= 0;
+		int right= fLines - 1;
+		while (left < right) {
+			int mid= (left + right + 1) >>> 1;
+			if (fLineOffsets[mid] <= offset)
+				left= mid;
+			else
+				right= mid - 1;
+		}
+		return left;
+	}
+
+	@Override
+	public String[] getLegalLineDelimiters() {
+		return fDelegate.getLegalLineDelimiters();
+	}
+
+	@Override
+	public synchronized String getLineDelimiter(int line) throws BadLocationException {
+		indexLine(line);
+		if (line + 1 == fLines)
+			return null;
+
+		int end= getLineEnd(line);
+		if (fStore.get(end - 1) == '\r')
+			return "\r"; //$NON-NLS-1$
+		if (end - 2 >= fLineOffsets[line] && fStore.get(end - 2) == '\r')
+			return "\r\n"; //$NON-NLS-1$
+		return "\n"; //$NON-NLS-1$
+	}
+
+	@Override
+	public int computeNumberOfLines(String text) {
+		return fDelegate.computeNumberOfLines(text);
+	}
+
+	@Override
+	public synchronized int getNumberOfLines() {
+		while (indexNextPage()) {
+			// continue
+		}
+		return fLines;
+	}
+
+	@Override
+	public synchronized int getNumberOfLines(int offset, int length) throws BadLocationException {
+		if (length == 0)
+			return 1;
+		return getLineNumberOfOffset(offset + length) - getLineNumberOfOffset(offset) + 1;
+	}
+
+	@Override
+	public synchronized int getLineOffset(int line) throws BadLocationException {
+		indexLine(line);
+		return fLineOffsets[line];
+	}
+
+	@Override
+	public synchronized int getLineLength(int line) throws BadLocationException {
+		indexLine(line);
+		return getLineEnd(line) - fLineOffsets[line];
+	}
+
+	@Override
+	public synchronized int getLineNumberOfOffset(int offset) throws BadLocationException {
+		if (offset < 0 || offset > fStore.getLength())
+			throw new BadLocationException();
+		indexOffset(offset);
+		return findLine(offset);
+	}
+
+	@Override
+	public synchronized IRegion getLineInformationOfOffset(int offset) throws BadLocationException {
+		return getLineInformation(getLineNumberOfOffset(offset));
+	}
+
+	@Override
+	public synchronized IRegion getLineInformation(int line) throws BadLocationException {
+		try {
+			indexLine(line);
+		} catch (BadLocationException x) {
+			// compatibility with DefaultLineTracker, see TreeLineTracker#getLineInformation(int)
+			if (line > 0 && line == fLines && getLineEnd(line - 1) > fLineOffsets[line - 1])
+				return new Region(fStore.getLength(), 0);
+			throw x;
+		}
+
+		int length= getLineLength(line);
+		String delimiter= getLineDelimiter(line);
+		if (delimiter != null)
+			length -= delimiter.length();
+		return new Region(fLineOffsets[line], length);
+	}
+
+	@Override
+	public void replace(int offset, int length, String text) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void set(String text) {
+		throw new UnsupportedOperationException();
+	}
+}
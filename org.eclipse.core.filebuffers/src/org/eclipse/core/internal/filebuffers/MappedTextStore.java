@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.core.internal.filebuffers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jface.text.ITextStore;
+
+
+/**
+ * A read-only text store whose content is a memory-mapped file.
+ * <p>
+ * The file is split into pages of {@link #PAGE_SIZE} bytes which are decoded on demand. Only the
+ * most recently used pages are kept in decoded form, so the memory used by this store does not
+ * depend on the size of the file. Page boundaries never split a character.
+ * </p>
+ * <p>
+ * Only encodings where each character can be located without decoding the preceding text are
+ * supported: UTF-8 and single-byte encodings such as ISO-8859-1 or windows-1252. For single-byte
+ * encodings the store is created in constant time. For UTF-8 the number of characters of each page
+ * is counted once when the store is created, which is a cheap scan over the mapped bytes that does
+ * not decode or copy anything. Malformed UTF-8 input is decoded leniently: stray continuation bytes
+ * are skipped and incomplete sequences are replaced by <code>U+FFFD</code>.
+ * </p>
+ * <p>
+ * All attempts to modify the store throw an {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * @since 3.7
+ */
+public class MappedTextStore implements ITextStore {
+
+	/** The number of bytes of a page. */
+	static final int PAGE_SIZE= 1 << 16;
+	/** The maximal number of decoded pages that are cached. */
+	private static final int CACHED_PAGES= 32;
+	/** The replacement for malformed input. */
+	private static final char REPLACEMENT= '\uFFFD';
+	/** The name of the UTF-8 character set. */
+	private static final String UTF_8= "UTF-8"; //$NON-NLS-1$
+
+	/** The mapped file content. */
+	private final ByteBuffer fBuffer;
+	/** The characters of the single-byte encoding indexed by byte, <code>null</code> for UTF-8. */
+	private final char[] fByteToChar;
+	/** The byte offset of each page, with an additional entry for the end of the buffer. */
+	private final int[] fPageBytes;
+	/** The character offset of each page, with an additional entry for the text length. */
+	private final int[] fPageChars;
+	/** The decoded pages in access order. */
+	private final Map<Integer, char[]> fPages= new LinkedHashMap<Integer, char[]>(CACHED_PAGES, 0.75f, true) {
+		private static final long serialVersionUID= 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, char[]> eldest) {
+			return size() > CACHED_PAGES;
+		}
+	};
+
+	/**
+	 * Maps the given file and creates a text store for it.
+	 *
+	 * @param file the file to map
+	 * @param encoding the encoding of the file
+	 * @param hasBOM <code>true</code> if the file starts with a UTF-8 byte order mark
+	 * @return the text store or <code>null</code> if the encoding is not supported or the file is
+	 *         too large to be mapped
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public static MappedTextStore create(File file, String encoding, boolean hasBOM) throws IOException {
+		Charset charset;
+		try {
+			charset= Charset.forName(encoding);
+		} catch (IllegalArgumentException x) {
+			return null;
+		}
+
+		char[] byteToChar= null;
+		if (!UTF_8.equals(charset.name())) {
+			byteToChar= computeByteToChar(charset);
+			if (byteToChar == null)
+				return null;
+		}
+
+		ByteBuffer buffer;
+		RandomAccessFile in= new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try {
+			FileChannel channel= in.getChannel();
+			long size= channel.size();
+			if (size > Integer.MAX_VALUE)
+				return null;
+			buffer= channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			in.close();
+		}
+
+		int start= 0;
+		if (hasBOM && byteToChar == null && buffer.limit() >= 3 && (buffer.get(0) & 0xff) == 0xEF && (buffer.get(1) & 0xff) == 0xBB && (buffer.get(2) & 0xff) == 0xBF)
+			start= 3;
+
+		return new MappedTextStore(buffer, start, byteToChar);
+	}
+
+	/**
+	 * Computes the character of each byte in the given single-byte character set.
+	 *
+	 * @param charset the character set
+	 * @return the characters indexed by byte or <code>null</code> if the character set does not
+	 *         decode every byte to exactly one character
+	 */
+	private static char[] computeByteToChar(Charset charset) {
+		if (!charset.canEncode())
+			return null;
+		CharsetEncoder encoder= charset.newEncoder();
+		CharsetDecoder decoder= charset.newDecoder();
+		if (encoder.maxBytesPerChar() != 1 || decoder.maxCharsPerByte() != 1)
+			return null;
+
+		decoder.onMalformedInput(CodingErrorAction.REPLACE);
+		decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		decoder.replaceWith(String.valueOf(REPLACEMENT));
+		char[] byteToChar= new char[256];
+		for (int i= 0; i < byteToChar.length; i++) {
+			try {
+				CharBuffer decoded= decoder.reset().decode(ByteBuffer.wrap(new byte[] { (byte) i }));
+				if (decoded.remaining() != 1)
+					return null;
+				byteToChar[i]= decoded.get();
+			} catch (CharacterCodingException x) {
+				return null;
+			}
+		}
+		return byteToChar;
+	}
+
+	/**
+	 * Creates a new text store for the given bytes.
+	 *
+	 * @param buffer the bytes
+	 * @param start the offset of the first byte of the text
+	 * @param byteToChar the characters of a single-byte encoding indexed by byte or
+	 *            <code>null</code> for UTF-8
+	 */
+	private MappedTextStore(ByteBuffer buffer, int start, char[] byteToChar) {
+		fBuffer= buffer;
+		fByteToChar= byteToChar;
+
+		int end= buffer.limit();
+		int pages= (end - start + PAGE_SIZE - 1) / PAGE_SIZE;
+		fPageBytes= new int[pages + 1];
+		fPageChars= new int[pages + 1];
+
+		int byteOffset= start;
+		int charOffset= 0;
+		for (int page= 0; page < pages; page++) {
+			fPageBytes[page]= byteOffset;
+			fPageChars[page]= charOffset;
+			int pageEnd= (int) Math.min((long) byteOffset + PAGE_SIZE, end);
+			if (byteToChar == null) {
+				while (pageEnd < end && isContinuation(buffer.get(pageEnd)))
+					pageEnd++;
+				charOffset += countUTF8(buffer, byteOffset, pageEnd);
+			} else {
+				charOffset += pageEnd - byteOffset;
+			}
+			byteOffset= pageEnd;
+		}
+		fPageBytes[pages]= end;
+		fPageChars[pages]= charOffset;
+	}
+
+	/**
+	 * Tells whether the given byte is a UTF-8 continuation byte.
+	 *
+	 * @param b the byte
+	 * @return <code>true</code> if the byte continues a multi-byte sequence
+	 */
+	private static boolean isContinuation(byte b) {
+		return (b & 0xC0) == 0x80;
+	}
+
+	/**
+	 * Returns the number of characters that the given UTF-8 encoded byte range decodes to. Each
+	 * byte that is not a continuation byte starts a character, and complete four byte sequences
+	 * yield a surrogate pair. As no byte yields more than one character, the length of the text
+	 * never exceeds the size of the file.
+	 *
+	 * @param buffer the bytes
+	 * @param from the offset of the first byte
+	 * @param to the offset after the last byte
+	 * @return the number of characters
+	 */
+	private static int countUTF8(ByteBuffer buffer, int from, int to) {
+		int count= 0;
+		for (int i= from; i < to; i++) {
+			int b= buffer.get(i) & 0xff;
+			if (b < 0x80 || b >= 0xF8)
+				count++;
+			else if (b >= 0xF0)
+				count += isFourByteSequence(buffer, i, to) ? 2 : 1;
+			else if (b >= 0xC0)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Tells whether the lead byte at the given offset is followed by three continuation bytes.
+	 *
+	 * @param buffer the bytes
+	 * @param offset the offset of the lead byte
+	 * @param to the offset after the last byte that may be examined
+	 * @return <code>true</code> if the sequence is complete
+	 */
+	private static boolean isFourByteSequence(ByteBuffer buffer, int offset, int to) {
+		return offset + 3 < to && isContinuation(buffer.get(offset + 1)) && isContinuation(buffer.get(offset + 2)) && isContinuation(buffer.get(offset + 3));
+	}
+
+	/**
+	 * Returns the number of pages of this store.
+	 *
+	 * @return the number of pages
+	 */
+	int getPageCount() {
+		return fPageBytes.length - 1;
+	}
+
+	/**
+	 * Returns the offset of the first character of the given page. The offset of the page
+	 * following the last page is the length of the text.
+	 *
+	 * @param page the page index
+	 * @return the character offset of the page
+	 */
+	int getPageCharOffset(int page) {
+		return fPageChars[page];
+	}
+
+	@Override
+	public char get(int offset) {
+		if (offset < 0 || offset >= getLength())
+			throw new IndexOutOfBoundsException();
+
+		int page= getPage(offset);
+		return getPageContent(page)[offset - fPageChars[page]];
+	}
+
+	@Override
+	public String get(int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > getLength())
+			throw new IndexOutOfBoundsException();
+
+		char[] text= new char[length];
+		int copied= 0;
+		while (copied < length) {
+			int page= getPage(offset + copied);
+			char[] content= getPageContent(page);
+			int pageOffset= offset + copied - fPageChars[page];
+			int count= Math.min(length - copied, content.length - pageOffset);
+			System.arraycopy(content, pageOffset, text, copied, count);
+			copied += count;
+		}
+		return new String(text);
+	}
+
+	@Override
+	public int getLength() {
+		return fPageChars[fPageChars.length - 1];
+	}
+
+	@Override
+	public void replace(int offset, int length, String text) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void set(String text) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns the page containing the character at the given offset.
+	 *
+	 * @param offset the character offset, must be smaller than the text length
+	 * @return the page index
+	 */
+	private int getPage(int offset) {
+		if (fByteToChar != null)
+			return offset / PAGE_SIZE;
+
+		// the last page whose offset is less than or equal to the given offset, which skips empty pages
+		int left= 0;
+		int right= fPageChars.length - 2;
+		while (left < right) {
+			int mid= (left + right + 1) >>> 1;
+			if (fPageChars[mid] <= offset)
+				left= mid;
+			else
+				right= mid - 1;
+		}
+		return left;
+	}
+
+	/**
+	 * Returns the decoded content of the given page.
+	 *
+	 * @param page the page index
+	 * @return the characters of the page
+	 */
+	private synchronized char[] getPageContent(int page) {
+		Integer key= Integer.valueOf(page);
+		char[] content= fPages.get(key);
+		if (content == null) {
+			content= decode(page);
+			fPages.put(key, content);
+		}
+		return content;
+	}
+
+	/**
+	 * Decodes the given page without caching the result.
+	 *
+	 * @param page the page index
+	 * @return the characters of the page
+	 */
+	char[] decode(int page) {
+		int from= fPageBytes[page];
+		int to= fPageBytes[page + 1];
+		char[] content= new char[fPageChars[page + 1] - fPageChars[page]];
+
+		if (fByteToChar != null) {
+			for (int i= from; i < to; i++)
+				content[i - from]= fByteToChar[fBuffer.get(i) & 0xff];
+			return content;
+		}
+
+		int c= 0;
+		int i= from;
+		while (i < to) {
+			int b= fBuffer.get(i++) & 0xff;
+			if (b < 0x80) {
+				content[c++]= (char) b;
+				continue;
+			}
+			if (b < 0xC0)
+				continue; // stray continuation byte
+			if (b >= 0xF8) {
+				content[c++]= REPLACEMENT;
+				continue;
+			}
+
+			int expected;
+			int codePoint;
+			if (b < 0xE0) {
+				expected= 1;
+				codePoint= b & 0x1F;
+			} else if (b < 0xF0) {
+				expected= 2;
+				codePoint= b & 0x0F;
+			} else {
+				expected= 3;
+				codePoint= b & 0x07;
+			}
+
+			int read= 0;
+			while (read < expected && i < to && isContinuation(fBuffer.get(i))) {
+				codePoint= codePoint << 6 | fBuffer.get(i++) & 0x3F;
+				read++;
+			}
+
+			if (expected < 3 || read < expected) {
+				content[c++]= read == expected ? (char) codePoint : REPLACEMENT;
+			} else if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT && codePoint <= Character.MAX_CODE_POINT) {
+				content[c++]= Character.highSurrogate(codePoint);
+				content[c++]= Character.lowSurrogate(codePoint);
+			} else {
+				content[c++]= REPLACEMENT;
+				content[c++]= REPLACEMENT;
+			}
+		}
+		return content;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@ package org.eclipse.core.internal.filebuffers;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -29,6 +30,7 @@ import java.nio.charset.UnsupportedCharsetException;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
@@ -222,6 +224,36 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 		}
 	}
 
+	@Override
+	public boolean isCommitable() {
+		return !(fDocument instanceof MappedDocument) && super.isCommitable();
+	}
+
+	@Override
+	public void validateState(IProgressMonitor monitor, Object computationContext) throws CoreException {
+		if (fDocument instanceof MappedDocument) {
+			// a memory-mapped document is never edited, there is no need to ask for the file to be made writable
+			if (!isDisconnected() && !fIsStateValidated) {
+				fStatus= null;
+				fIsStateValidated= true;
+				fManager.fireStateValidationChanged(this, fIsStateValidated);
+			}
+			return;
+		}
+		super.validateState(monitor, computationContext);
+	}
+
+	@Override
+	public void revert(IProgressMonitor monitor) throws CoreException {
+		if (fDocument instanceof MappedDocument && !isDisconnected()) {
+			// a memory-mapped document is never dirty but its content cannot be reloaded either
+			if (!isSynchronized())
+				throw new CoreException(new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CONTENT_CHANGE_FAILED, FileBuffersMessages.MappedDocument_error_outOfSync, null));
+			return;
+		}
+		super.revert(monitor);
+	}
+
 	@Override
 	protected void addFileBufferContentListeners() {
 		if (fDocument != null)
@@ -261,8 +293,13 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 			}
 
 
-			fDocument= getManager().createEmptyDocument(fFile);
-			setDocumentContent(fDocument, fFile, fEncoding);
+			IPath location= fFile.getLocation();
+			File file= location != null ? location.toFile() : null;
+			fDocument= getManager().createMappedDocument(file, fEncoding, fBOM == IContentDescription.BOM_UTF_8);
+			if (fDocument == null) {
+				fDocument= getManager().createEmptyDocument(fFile);
+				setDocumentContent(fDocument, fFile, fEncoding);
+			}
 
 		} catch (CoreException x) {
 			fDocument= getManager().createEmptyDocument(fFile);
@@ -302,6 +339,8 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 		}
 		if (fAnnotationModel != null)
 			fAnnotationModel.disconnect(fDocument);
+		if (fDocument instanceof MappedDocument)
+			((MappedDocument) fDocument).dispose();
 		fDocument= null;
 		super.dispose();
 	}
@@ -463,6 +502,12 @@ public class ResourceTextFileBuffer extends ResourceFileBuffer implements ITextF
 
 	@Override
 	protected void handleFileContentChanged(boolean revert, boolean updateModificationStamp) throws CoreException {
+		if (fDocument instanceof MappedDocument) {
+			// the content of a memory-mapped document cannot be replaced, the buffer stays out of sync
+			if (!isSynchronized())
+				fStatus= new Status(IStatus.ERROR, FileBuffersPlugin.PLUGIN_ID, IFileBufferStatusCodes.CONTENT_CHANGE_FAILED, FileBuffersMessages.MappedDocument_error_outOfSync, null);
+			return;
+		}
 
 		IDocument document= getManager().createEmptyDocument(fFile);
 		IStatus status= null;
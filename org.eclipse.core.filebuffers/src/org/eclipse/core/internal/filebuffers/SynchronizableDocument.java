@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,12 +10,15 @@
  *******************************************************************************/
 package org.eclipse.core.internal.filebuffers;
 
+import java.util.concurrent.locks.StampedLock;
+
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPartitioningException;
 import org.eclipse.jface.text.BadPositionCategoryException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.DocumentRewriteSession;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISynchronizable;
@@ -28,6 +31,16 @@ import org.eclipse.jface.text.Position;
  * <p>
  * Initially no locking takes place.
  * </p>
+ * <p>
+ * A document can be created to allow concurrent reads. Modifications are still made while holding
+ * the lock object, but text and line information is read without acquiring it. Text is read
+ * optimistically from the arrays of the text store, validated against the modifications that
+ * happened in the meantime and repeated while holding the lock object if it overlapped with one.
+ * Line information is read under a shared lock that excludes modifications, since the line
+ * tracker cannot be traversed safely while it changes. If a modification is in progress, line
+ * information is read while holding the lock object. Position and partitioning queries always
+ * hold the lock object.
+ * </p>
  *
  * @since 3.2
  */
@@ -35,6 +48,47 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 
 	private Object fLockObject;
 
+	/**
+	 * Tells the readers which do not hold the lock object whether a modification happened while
+	 * they read, <code>null</code> if reads always hold the lock object.
+	 *
+	 * @since 3.7
+	 */
+	private final StampedLock fModificationLock;
+
+	/**
+	 * The number of modifications in progress, including an active rewrite session. Only
+	 * changed by the writer.
+	 *
+	 * @since 3.7
+	 */
+	private int fModificationDepth;
+
+	/**
+	 * The stamp of the write lock held while {@link #fModificationDepth} is not zero.
+	 *
+	 * @since 3.7
+	 */
+	private long fModificationLockStamp;
+
+	/**
+	 * Creates a new empty document whose reads always hold the lock object.
+	 */
+	public SynchronizableDocument() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new empty document.
+	 *
+	 * @param concurrentReads <code>true</code> if text and line information may be read without
+	 *            holding the lock object
+	 * @since 3.7
+	 */
+	public SynchronizableDocument(boolean concurrentReads) {
+		fModificationLock= concurrentReads ? new StampedLock() : null;
+	}
+
 	@Override
 	public synchronized void setLockObject(Object lockObject) {
 		fLockObject= lockObject;
@@ -83,14 +137,21 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Reads which do not hold the lock object are not possible during the session since the
+	 * document updates its line information lazily.
+	 * </p>
+	 */
 	@Override
 	public DocumentRewriteSession startRewriteSession(DocumentRewriteSessionType sessionType) {
 		Object lockObject= getLockObject();
 		if (lockObject == null) {
-			return super.startRewriteSession(sessionType);
+			return startModificationSession(sessionType);
 		}
 		synchronized (lockObject) {
-			return super.startRewriteSession(sessionType);
+			return startModificationSession(sessionType);
 		}
 	}
 
@@ -98,11 +159,71 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 	public void stopRewriteSession(DocumentRewriteSession session) {
 		Object lockObject= getLockObject();
 		if (lockObject == null) {
-			super.stopRewriteSession(session);
+			stopModificationSession(session);
 			return;
 		}
 		synchronized (lockObject) {
+			stopModificationSession(session);
+		}
+	}
+
+	/**
+	 * Starts a rewrite session as a modification that lasts until the session is stopped.
+	 *
+	 * @param sessionType the type of the session
+	 * @return the started session
+	 * @since 3.7
+	 */
+	private DocumentRewriteSession startModificationSession(DocumentRewriteSessionType sessionType) {
+		startModification();
+		boolean started= false;
+		try {
+			DocumentRewriteSession session= super.startRewriteSession(sessionType);
+			started= true;
+			return session;
+		} finally {
+			if (!started)
+				stopModification();
+		}
+	}
+
+	/**
+	 * Stops the given rewrite session and the modification it started.
+	 *
+	 * @param session the session to stop
+	 * @since 3.7
+	 */
+	private void stopModificationSession(DocumentRewriteSession session) {
+		if (session == null || getActiveRewriteSession() != session) {
+			super.stopRewriteSession(session);
+			return;
+		}
+		try {
 			super.stopRewriteSession(session);
+		} finally {
+			stopModification();
+		}
+	}
+
+	@Override
+	public void repairLineInformation() {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			startModification();
+			try {
+				super.repairLineInformation();
+			} finally {
+				stopModification();
+			}
+			return;
+		}
+		synchronized (lockObject) {
+			startModification();
+			try {
+				super.repairLineInformation();
+			} finally {
+				stopModification();
+			}
 		}
 	}
 
@@ -112,6 +233,17 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.get();
 		}
+		long stamp= startRead();
+		if (stamp != 0) {
+			try {
+				String result= super.get();
+				if (fModificationLock.validate(stamp))
+					return result;
+			} catch (RuntimeException x) {
+				if (fModificationLock.validate(stamp))
+					throw x;
+			}
+		}
 		synchronized (lockObject) {
 			return super.get();
 		}
@@ -123,6 +255,17 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.get(offset, length);
 		}
+		long stamp= startRead();
+		if (stamp != 0) {
+			try {
+				String result= super.get(offset, length);
+				if (fModificationLock.validate(stamp))
+					return result;
+			} catch (BadLocationException | RuntimeException x) {
+				if (fModificationLock.validate(stamp))
+					throw x;
+			}
+		}
 		synchronized (lockObject) {
 			return super.get(offset, length);
 		}
@@ -134,6 +277,17 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getChar(offset);
 		}
+		long stamp= startRead();
+		if (stamp != 0) {
+			try {
+				char result= super.getChar(offset);
+				if (fModificationLock.validate(stamp))
+					return result;
+			} catch (BadLocationException | RuntimeException x) {
+				if (fModificationLock.validate(stamp))
+					throw x;
+			}
+		}
 		synchronized (lockObject) {
 			return super.getChar(offset);
 		}
@@ -145,6 +299,17 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getModificationStamp();
 		}
+		long stamp= startRead();
+		if (stamp != 0) {
+			try {
+				long result= super.getModificationStamp();
+				if (fModificationLock.validate(stamp))
+					return result;
+			} catch (RuntimeException x) {
+				if (fModificationLock.validate(stamp))
+					throw x;
+			}
+		}
 		synchronized (lockObject) {
 			return super.getModificationStamp();
 		}
@@ -154,11 +319,21 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 	public void replace(int offset, int length, String text) throws BadLocationException {
 		Object lockObject= getLockObject();
 		if (lockObject == null) {
-			super.replace(offset, length, text);
+			startModification();
+			try {
+				super.replace(offset, length, text);
+			} finally {
+				stopModification();
+			}
 			return;
 		}
 		synchronized (lockObject) {
-			super.replace(offset, length, text);
+			startModification();
+			try {
+				super.replace(offset, length, text);
+			} finally {
+				stopModification();
+			}
 		}
 	}
 
@@ -166,11 +341,43 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 	public void replace(int offset, int length, String text, long modificationStamp) throws BadLocationException {
 		Object lockObject= getLockObject();
 		if (lockObject == null) {
-			super.replace(offset, length, text, modificationStamp);
+			startModification();
+			try {
+				super.replace(offset, length, text, modificationStamp);
+			} finally {
+				stopModification();
+			}
+			return;
+		}
+		synchronized (lockObject) {
+			startModification();
+			try {
+				super.replace(offset, length, text, modificationStamp);
+			} finally {
+				stopModification();
+			}
+		}
+	}
+
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			startModification();
+			try {
+				super.replace(offsets, lengths, texts);
+			} finally {
+				stopModification();
+			}
 			return;
 		}
 		synchronized (lockObject) {
-			super.replace(offset, length, text, modificationStamp);
+			startModification();
+			try {
+				super.replace(offsets, lengths, texts);
+			} finally {
+				stopModification();
+			}
 		}
 	}
 
@@ -178,11 +385,21 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 	public void set(String text) {
 		Object lockObject= getLockObject();
 		if (lockObject == null) {
-			super.set(text);
+			startModification();
+			try {
+				super.set(text);
+			} finally {
+				stopModification();
+			}
 			return;
 		}
 		synchronized (lockObject) {
-			super.set(text);
+			startModification();
+			try {
+				super.set(text);
+			} finally {
+				stopModification();
+			}
 		}
 	}
 
@@ -190,11 +407,21 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 	public void set(String text, long modificationStamp) {
 		Object lockObject= getLockObject();
 		if (lockObject == null) {
-			super.set(text, modificationStamp);
+			startModification();
+			try {
+				super.set(text, modificationStamp);
+			} finally {
+				stopModification();
+			}
 			return;
 		}
 		synchronized (lockObject) {
-			super.set(text, modificationStamp);
+			startModification();
+			try {
+				super.set(text, modificationStamp);
+			} finally {
+				stopModification();
+			}
 		}
 	}
 
@@ -222,6 +449,25 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The snapshot itself is read without holding the lock object.
+	 * </p>
+	 *
+	 * @since 3.7
+	 */
+	@Override
+	public IDocument getSnapshot() {
+		Object lockObject= getLockObject();
+		if (lockObject == null) {
+			return super.getSnapshot();
+		}
+		synchronized (lockObject) {
+			return super.getSnapshot();
+		}
+	}
+
 	@Override
 	public Position[] getPositions(String category) throws BadPositionCategoryException {
 		Object lockObject= getLockObject();
@@ -261,6 +507,14 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineDelimiter(line);
 		}
+		long stamp= startLineRead();
+		if (stamp != 0) {
+			try {
+				return super.getLineDelimiter(line);
+			} finally {
+				fModificationLock.unlockRead(stamp);
+			}
+		}
 		synchronized (lockObject) {
 			return super.getLineDelimiter(line);
 		}
@@ -272,6 +526,14 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getDefaultLineDelimiter();
 		}
+		long stamp= startLineRead();
+		if (stamp != 0) {
+			try {
+				return super.getDefaultLineDelimiter();
+			} finally {
+				fModificationLock.unlockRead(stamp);
+			}
+		}
 		synchronized (lockObject) {
 			return super.getDefaultLineDelimiter();
 		}
@@ -283,6 +545,14 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineInformation(line);
 		}
+		long stamp= startLineRead();
+		if (stamp != 0) {
+			try {
+				return super.getLineInformation(line);
+			} finally {
+				fModificationLock.unlockRead(stamp);
+			}
+		}
 		synchronized (lockObject) {
 			return super.getLineInformation(line);
 		}
@@ -294,6 +564,14 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineInformationOfOffset(offset);
 		}
+		long stamp= startLineRead();
+		if (stamp != 0) {
+			try {
+				return super.getLineInformationOfOffset(offset);
+			} finally {
+				fModificationLock.unlockRead(stamp);
+			}
+		}
 		synchronized (lockObject) {
 			return super.getLineInformationOfOffset(offset);
 		}
@@ -305,6 +583,14 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineLength(line);
 		}
+		long stamp= startLineRead();
+		if (stamp != 0) {
+			try {
+				return super.getLineLength(line);
+			} finally {
+				fModificationLock.unlockRead(stamp);
+			}
+		}
 		synchronized (lockObject) {
 			return super.getLineLength(line);
 		}
@@ -316,6 +602,14 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineOffset(line);
 		}
+		long stamp= startLineRead();
+		if (stamp != 0) {
+			try {
+				return super.getLineOffset(line);
+			} finally {
+				fModificationLock.unlockRead(stamp);
+			}
+		}
 		synchronized (lockObject) {
 			return super.getLineOffset(line);
 		}
@@ -327,8 +621,63 @@ public class SynchronizableDocument extends Document implements ISynchronizable
 		if (lockObject == null) {
 			return super.getLineOfOffset(pos);
 		}
+		long stamp= startLineRead();
+		if (stamp != 0) {
+			try {
+				return super.getLineOfOffset(pos);
+			} finally {
+				fModificationLock.unlockRead(stamp);
+			}
+		}
 		synchronized (lockObject) {
 			return super.getLineOfOffset(pos);
 		}
 	}
+
+	/**
+	 * Marks the start of a modification. Modifications may be nested, for example when a
+	 * document listener modifies the document. Must be called by the writer, that is while
+	 * holding the lock object if there is one.
+	 *
+	 * @since 3.7
+	 */
+	private void startModification() {
+		if (fModificationLock != null && fModificationDepth++ == 0)
+			fModificationLockStamp= fModificationLock.writeLock();
+	}
+
+	/**
+	 * Marks the end of a modification started with {@link #startModification()}.
+	 *
+	 * @since 3.7
+	 */
+	private void stopModification() {
+		if (fModificationLock != null && --fModificationDepth == 0)
+			fModificationLock.unlockWrite(fModificationLockStamp);
+	}
+
+	/**
+	 * Starts a read that does not hold the lock object. The read is valid if
+	 * {@link StampedLock#validate(long)} succeeds for the returned stamp afterwards.
+	 *
+	 * @return the stamp of the read, <code>0</code> if the read has to hold the lock object
+	 * @since 3.7
+	 */
+	private long startRead() {
+		return fModificationLock != null ? fModificationLock.tryOptimisticRead() : 0;
+	}
+
+	/**
+	 * Starts a read of the line information that does not hold the lock object. Unlike the text,
+	 * the line information must not be read while it is modified, so the read holds the shared
+	 * lock of {@link #fModificationLock} and must release it with
+	 * {@link StampedLock#unlockRead(long)}.
+	 *
+	 * @return the stamp of the read, <code>0</code> if a modification is in progress and the read
+	 *         has to hold the lock object
+	 * @since 3.7
+	 */
+	private long startLineRead() {
+		return fModificationLock != null ? fModificationLock.tryReadLock() : 0;
+	}
 }
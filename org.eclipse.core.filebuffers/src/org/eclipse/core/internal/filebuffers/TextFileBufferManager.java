@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.core.internal.filebuffers;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -68,6 +69,28 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 
 	protected static final IContentType TEXT_CONTENT_TYPE= Platform.getContentTypeManager().getContentType(IContentTypeManager.CT_TEXT);
 
+	/**
+	 * The file size in bytes from which on local files are opened as read-only memory-mapped
+	 * documents. A value less than or equal to zero disables memory mapping. The value can be
+	 * set with the <code>org.eclipse.core.filebuffers.mappedDocumentThreshold</code> system
+	 * property.
+	 *
+	 * @see MappedDocument
+	 * @since 3.7
+	 */
+	static final long MAPPED_DOCUMENT_THRESHOLD= Long.getLong("org.eclipse.core.filebuffers.mappedDocumentThreshold", 128 * 1024 * 1024).longValue(); //$NON-NLS-1$
+
+	/**
+	 * Tells whether the documents created by the manager read text and line information without
+	 * holding their lock object. Off by default, can be switched on by setting the
+	 * <code>org.eclipse.core.filebuffers.concurrentDocumentReads</code> system property to
+	 * <code>true</code>.
+	 *
+	 * @see SynchronizableDocument#SynchronizableDocument(boolean)
+	 * @since 3.7
+	 */
+	static final boolean CONCURRENT_DOCUMENT_READS= Boolean.getBoolean("org.eclipse.core.filebuffers.concurrentDocumentReads"); //$NON-NLS-1$
+
 	private Map<IPath, AbstractFileBuffer> fFilesBuffers= new HashMap<>();
 	private Map<IFileStore, FileStoreFileBuffer> fFileStoreFileBuffers= new HashMap<>();
 	private List<IFileBufferListener> fFileBufferListeners= new ArrayList<>();
@@ -445,7 +468,7 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 		if (documentFromFactory != null)
 			document= documentFromFactory;
 		else
-			document= new SynchronizableDocument();
+			document= new SynchronizableDocument(CONCURRENT_DOCUMENT_READS);
 
 		if (location == null)
 			return document;
@@ -488,6 +511,39 @@ public class TextFileBufferManager implements ITextFileBufferManager {
 		return document;
 	}
 
+	/**
+	 * Creates a read-only memory-mapped document for the given file if the file is at least as
+	 * large as the {@link #MAPPED_DOCUMENT_THRESHOLD threshold}.
+	 * <p>
+	 * No document setup participants are run for such a document, as partitioners and the like
+	 * usually read the whole text and would defeat the lazy decoding.
+	 * </p>
+	 * <p>
+	 * A file buffer holding such a document is not commitable, which makes editors open it
+	 * read-only. The document is not reloaded when the file changes on the file system; the
+	 * buffer then stays out of sync and reverting it fails until it is connected anew.
+	 * </p>
+	 *
+	 * @param file the local file or <code>null</code> if the file is not local
+	 * @param encoding the encoding of the file or <code>null</code> for the default encoding
+	 * @param hasBOM <code>true</code> if the file starts with a UTF-8 byte order mark
+	 * @return the document or <code>null</code> if the file should be read into a normal document
+	 * @since 3.7
+	 */
+	IDocument createMappedDocument(File file, String encoding, boolean hasBOM) {
+		if (file == null || MAPPED_DOCUMENT_THRESHOLD <= 0 || file.length() < MAPPED_DOCUMENT_THRESHOLD)
+			return null;
+
+		try {
+			return MappedDocument.create(file, encoding != null ? encoding : getDefaultEncoding(), hasBOM);
+		} catch (IOException x) {
+			// fall back to reading the file
+			IStatus status= new Status(IStatus.WARNING, FileBuffersPlugin.PLUGIN_ID, IStatus.OK, x.getMessage() == null ? "" : x.getMessage(), x); //$NON-NLS-1$
+			FileBuffersPlugin.getDefault().getLog().log(status);
+			return null;
+		}
+	}
+
 	/**
 	 * Helper to get rid of deprecation warnings.
 	 *
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.text.contentassist.CompletionProposal;
+import org.eclipse.jface.text.contentassist.ContentAssistant;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.eclipse.jface.text.contentassist.IContentAssistProcessor;
+import org.eclipse.jface.text.contentassist.IContextInformation;
+import org.eclipse.jface.text.contentassist.IContextInformationValidator;
+
+/**
+ * Tests the computation of completion proposals outside the UI thread by a
+ * {@link ContentAssistant} with several processors.
+ *
+ * @since 3.12
+ */
+public class AsyncContentAssistTest {
+
+	/**
+	 * A processor that returns proposals with the given display strings. It can be made to wait
+	 * until it is released, and to fail.
+	 */
+	private static class TestProcessor implements IContentAssistProcessor {
+
+		final CountDownLatch fRelease;
+		volatile boolean fWasInterrupted;
+		private final String[] fProposals;
+		private final RuntimeException fException;
+
+		TestProcessor(String[] proposals, boolean wait, RuntimeException exception) {
+			fProposals= proposals;
+			fRelease= new CountDownLatch(wait ? 1 : 0);
+			fException= exception;
+		}
+
+		@Override
+		public ICompletionProposal[] computeCompletionProposals(ITextViewer viewer, int offset) {
+			try {
+				fRelease.await();
+			} catch (InterruptedException e) {
+				fWasInterrupted= true;
+				return null;
+			}
+			if (fException != null)
+				throw fException;
+
+			ICompletionProposal[] proposals= new ICompletionProposal[fProposals.length];
+			for (int i= 0; i < fProposals.length; i++)
+				proposals[i]= new CompletionProposal(fProposals[i], offset, 0, fProposals[i].length());
+			return proposals;
+		}
+
+		@Override
+		public IContextInformation[] computeContextInformation(ITextViewer viewer, int offset) {
+			return null;
+		}
+
+		@Override
+		public char[] getCompletionProposalAutoActivationCharacters() {
+			return null;
+		}
+
+		@Override
+		public char[] getContextInformationAutoActivationCharacters() {
+			return null;
+		}
+
+		@Override
+		public String getErrorMessage() {
+			return null;
+		}
+
+		@Override
+		public IContextInformationValidator getContextInformationValidator() {
+			return null;
+		}
+	}
+
+	/** An asynchronous content assistant whose proposal popup can be closed. */
+	private static class TestContentAssistant extends ContentAssistant {
+
+		TestContentAssistant() {
+			super(true);
+		}
+
+		void close() {
+			hide();
+		}
+	}
+
+	private Shell fShell;
+	private TestContentAssistant fAssistant;
+	private final List<TestProcessor> fProcessors= new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		fShell= new Shell();
+		fShell.setSize(400, 300);
+		TextViewer viewer= new TextViewer(fShell, SWT.NONE);
+		viewer.setDocument(new Document());
+		fShell.open();
+
+		fAssistant= new TestContentAssistant();
+		fAssistant.install(viewer);
+	}
+
+	@After
+	public void tearDown() {
+		for (TestProcessor processor : fProcessors)
+			processor.fRelease.countDown();
+		fAssistant.uninstall();
+		fShell.dispose();
+	}
+
+	private TestProcessor addProcessor(String[] proposals, boolean wait, RuntimeException exception) {
+		TestProcessor processor= new TestProcessor(proposals, wait, exception);
+		fProcessors.add(processor);
+		fAssistant.addContentAssistProcessor(processor, IDocument.DEFAULT_CONTENT_TYPE);
+		return processor;
+	}
+
+	private static void runEventLoop(Display display, BooleanSupplier condition) {
+		long timeout= System.currentTimeMillis() + 30000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("timed out", System.currentTimeMillis() < timeout);
+			if (!display.readAndDispatch()) {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the event loop until the given time has elapsed.
+	 */
+	private static void runEventLoop(Display display, long millis) {
+		final long end= System.currentTimeMillis() + millis;
+		runEventLoop(display, () -> System.currentTimeMillis() >= end);
+	}
+
+	/**
+	 * Returns the display strings of the proposals shown in the proposal popup.
+	 *
+	 * @return the shown proposals, or <code>null</code> if the popup is not open
+	 */
+	private List<String> getShownProposals() {
+		for (Shell shell : fShell.getShells()) {
+			if (shell.isDisposed() || !shell.isVisible())
+				continue;
+			for (Control control : shell.getChildren()) {
+				if (control instanceof Table) {
+					Table table= (Table) control;
+					List<String> proposals= new ArrayList<>();
+					for (int i= 0; i < table.getItemCount(); i++)
+						proposals.add(table.getItem(i).getText());
+					return proposals;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testProposalsMergedInProcessorOrder() {
+		TestProcessor slow= addProcessor(new String[] { "first1", "first2" }, true, null);
+		addProcessor(new String[] { "second" }, false, null);
+
+		fAssistant.showPossibleCompletions();
+		Display display= fShell.getDisplay();
+		runEventLoop(display, () -> Arrays.asList("second").equals(getShownProposals()));
+
+		slow.fRelease.countDown();
+		runEventLoop(display, () -> getShownProposals() != null && getShownProposals().size() == 3);
+		assertEquals(Arrays.asList("first1", "first2", "second"), getShownProposals());
+	}
+
+	@Test
+	public void testSlowProcessorDroppedAtTimeout() {
+		fAssistant.setCompletionProposalTimeout(500);
+		TestProcessor slow= addProcessor(new String[] { "slow" }, true, null);
+		addProcessor(new String[] { "fast1", "fast2" }, false, null);
+
+		fAssistant.showPossibleCompletions();
+		Display display= fShell.getDisplay();
+		runEventLoop(display, () -> slow.fWasInterrupted);
+		runEventLoop(display, 200);
+
+		assertEquals(Arrays.asList("fast1", "fast2"), getShownProposals());
+	}
+
+	@Test
+	public void testFailingProcessorDoesNotSuppressOthers() {
+		addProcessor(null, false, new IllegalStateException("expected by the test"));
+		addProcessor(new String[] { "a", "b" }, false, null);
+		addProcessor(null, false, new IllegalStateException("expected by the test"));
+
+		fAssistant.showPossibleCompletions();
+		runEventLoop(fShell.getDisplay(), () -> getShownProposals() != null && getShownProposals().size() == 2);
+		assertEquals(Arrays.asList("a", "b"), getShownProposals());
+	}
+
+	@Test
+	public void testClosingPopupCancelsComputation() {
+		TestProcessor slow= addProcessor(new String[] { "slow" }, true, null);
+		addProcessor(new String[] { "fast1", "fast2" }, false, null);
+
+		fAssistant.showPossibleCompletions();
+		Display display= fShell.getDisplay();
+		runEventLoop(display, () -> getShownProposals() != null);
+
+		fAssistant.close();
+		runEventLoop(display, () -> slow.fWasInterrupted);
+		runEventLoop(display, 200);
+
+		assertNull(getShownProposals());
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,8 +15,12 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 import org.eclipse.jface.text.tests.reconciler.AbstractReconcilerTest;
+import org.eclipse.jface.text.tests.reconciler.DirtyRegionQueueTest;
+import org.eclipse.jface.text.tests.reconciler.SharedExecutorReconcilerTest;
+import org.eclipse.jface.text.tests.rules.DefaultDamagerRepairerTest;
 import org.eclipse.jface.text.tests.rules.DefaultPartitionerTest;
 import org.eclipse.jface.text.tests.rules.DefaultPartitionerZeroLengthTest;
+import org.eclipse.jface.text.tests.rules.FastPartitionerCheckpointTest;
 import org.eclipse.jface.text.tests.rules.FastPartitionerTest;
 import org.eclipse.jface.text.tests.rules.ScannerColumnTest;
 import org.eclipse.jface.text.tests.rules.WordRuleTest;
@@ -32,17 +36,24 @@ import org.eclipse.jface.text.tests.rules.WordRuleTest;
 		HTML2TextReaderTest.class,
 		TextHoverPopupTest.class,
 		TextPresentationTest.class,
+		PresentationReconcilerTest.class,
 		DefaultUndoManagerTest.class,
 		TextViewerTest.class,
 		TextViewerUndoManagerTest.class,
 		DefaultPairMatcherTest.class,
 		DefaultPairMatcherTest2.class,
+		AsyncContentAssistTest.class,
+		ProposalFilteringTest.class,
 
 		AbstractReconcilerTest.class,
+		SharedExecutorReconcilerTest.class,
+		DirtyRegionQueueTest.class,
 
+		DefaultDamagerRepairerTest.class,
 		DefaultPartitionerTest.class,
 		DefaultPartitionerZeroLengthTest.class,
 		FastPartitionerTest.class,
+		FastPartitionerCheckpointTest.class,
 		ScannerColumnTest.class,
 		WordRuleTest.class
 })
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextPresentationListener;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextPresentation;
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.text.presentation.IPresentationRepairer;
+import org.eclipse.jface.text.presentation.PresentationReconciler;
+
+/**
+ * Tests the repair of large damages by {@link PresentationReconciler}.
+ *
+ * @since 3.12
+ */
+public class PresentationReconcilerTest {
+
+	/** A repairer that records the regions it is asked to repair. */
+	private static class RecordingRepairer implements IPresentationRepairer {
+
+		List<IRegion> fRepaired= new ArrayList<>();
+
+		@Override
+		public void setDocument(IDocument document) {
+		}
+
+		@Override
+		public void createPresentation(TextPresentation presentation, ITypedRegion damage) {
+			fRepaired.add(new Region(damage.getOffset(), damage.getLength()));
+		}
+	}
+
+	/**
+	 * A repairer that makes its regions bold and records the presentations it creates outside
+	 * the UI thread, together with the document they were created for.
+	 */
+	private static class BoldRepairer implements IPresentationRepairer {
+
+		final List<TextPresentation> fBackgroundPresentations= Collections.synchronizedList(new ArrayList<>());
+		final List<IDocument> fBackgroundDocuments= Collections.synchronizedList(new ArrayList<>());
+		private final Thread fUIThread= Thread.currentThread();
+		private volatile IDocument fDocument;
+
+		@Override
+		public void setDocument(IDocument document) {
+			fDocument= document;
+		}
+
+		@Override
+		public void createPresentation(TextPresentation presentation, ITypedRegion damage) {
+			presentation.addStyleRange(new StyleRange(damage.getOffset(), damage.getLength(), null, null, SWT.BOLD));
+			if (Thread.currentThread() != fUIThread) {
+				fBackgroundDocuments.add(fDocument);
+				fBackgroundPresentations.add(presentation);
+			}
+		}
+	}
+
+	private TestTextViewer fViewer;
+	private PresentationReconciler fReconciler;
+	private RecordingRepairer fRepairer;
+
+	@Before
+	public void setUp() {
+		fViewer= new TestTextViewer();
+		fRepairer= new RecordingRepairer();
+		fReconciler= new PresentationReconciler();
+		fReconciler.setRepairer(fRepairer, IDocument.DEFAULT_CONTENT_TYPE);
+		fReconciler.setAsynchronousRepair(true);
+		fReconciler.install(fViewer);
+	}
+
+	@After
+	public void tearDown() {
+		fReconciler.uninstall();
+	}
+
+	private static String createText(int length) {
+		StringBuilder buffer= new StringBuilder();
+		while (buffer.length() < length)
+			buffer.append("line of text\n");
+		return buffer.toString();
+	}
+
+	@Test
+	public void testLargeDamageWithoutWidget() {
+		String text= createText(100000);
+		fViewer.setDocument(new Document(text));
+
+		assertEquals(1, fRepairer.fRepaired.size());
+		assertEquals(new Region(0, text.length()), fRepairer.fRepaired.get(0));
+		assertNotNull(fViewer.getTextPresentation());
+	}
+
+	@Test
+	public void testLargeReplaceWithoutWidget() throws BadLocationException {
+		Document document= new Document("abc");
+		fViewer.setDocument(document);
+		fRepairer.fRepaired.clear();
+
+		String text= createText(50000);
+		document.replace(1, 1, text);
+
+		assertEquals(1, fRepairer.fRepaired.size());
+		assertEquals(new Region(1, text.length()), fRepairer.fRepaired.get(0));
+	}
+
+	private static void runEventLoop(Display display, BooleanSupplier condition) {
+		long timeout= System.currentTimeMillis() + 30000;
+		while (!condition.getAsBoolean()) {
+			assertTrue("timed out", System.currentTimeMillis() < timeout);
+			if (!display.readAndDispatch()) {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private static boolean isBold(TextViewer viewer, int offset) {
+		StyleRange range= viewer.getTextWidget().getStyleRangeAtOffset(offset);
+		return range != null && range.fontStyle == SWT.BOLD;
+	}
+
+	/**
+	 * Creates a viewer with an asynchronous presentation reconciler which uses the given repairer
+	 * and records the presentations applied to the viewer.
+	 */
+	private static PresentationReconciler install(TextViewer viewer, BoldRepairer repairer, final List<TextPresentation> applied) {
+		viewer.addTextPresentationListener(new ITextPresentationListener() {
+			@Override
+			public void applyTextPresentation(TextPresentation presentation) {
+				applied.add(presentation);
+			}
+		});
+		PresentationReconciler reconciler= new PresentationReconciler();
+		reconciler.setRepairer(repairer, IDocument.DEFAULT_CONTENT_TYPE);
+		reconciler.setAsynchronousRepair(true);
+		reconciler.install(viewer);
+		return reconciler;
+	}
+
+	@Test
+	public void testBackgroundRepair() {
+		Shell shell= new Shell();
+		try {
+			TextViewer viewer= new TextViewer(shell, SWT.NONE);
+			shell.setSize(400, 300);
+			BoldRepairer repairer= new BoldRepairer();
+			List<TextPresentation> applied= new ArrayList<>();
+			PresentationReconciler reconciler= install(viewer, repairer, applied);
+
+			String text= createText(100000);
+			viewer.setDocument(new Document(text));
+
+			runEventLoop(shell.getDisplay(), () -> Job.getJobManager().find(reconciler).length == 0 && isBold(viewer, text.length() - 2));
+			assertTrue(isBold(viewer, 0));
+			assertFalse(repairer.fBackgroundPresentations.isEmpty());
+			assertTrue(applied.containsAll(repairer.fBackgroundPresentations));
+			reconciler.uninstall();
+		} finally {
+			shell.dispose();
+		}
+	}
+
+	@Test
+	public void testStaleBackgroundRepairIsDiscarded() throws BadLocationException {
+		Shell shell= new Shell();
+		try {
+			TextViewer viewer= new TextViewer(shell, SWT.NONE);
+			shell.setSize(400, 300);
+			BoldRepairer repairer= new BoldRepairer();
+			List<TextPresentation> applied= new ArrayList<>();
+			PresentationReconciler reconciler= install(viewer, repairer, applied);
+
+			String text= createText(100000);
+			Document document= new Document(text);
+			viewer.setDocument(document);
+			runEventLoop(shell.getDisplay(), () -> !repairer.fBackgroundPresentations.isEmpty());
+
+			// the background repair cannot apply its batch before the UI thread dispatches it
+			IDocument staleSnapshot= repairer.fBackgroundDocuments.get(0);
+			document.replace(0, 0, "x");
+
+			runEventLoop(shell.getDisplay(), () -> Job.getJobManager().find(reconciler).length == 0 && isBold(viewer, document.getLength() - 2));
+
+			int discarded= 0;
+			synchronized (repairer.fBackgroundPresentations) {
+				for (int i= 0; i < repairer.fBackgroundPresentations.size(); i++) {
+					TextPresentation presentation= repairer.fBackgroundPresentations.get(i);
+					if (repairer.fBackgroundDocuments.get(i) == staleSnapshot) {
+						if (!applied.contains(presentation))
+							discarded++;
+					} else {
+						assertTrue(applied.contains(presentation));
+					}
+				}
+			}
+			assertTrue(discarded > 0);
+			reconciler.uninstall();
+		} finally {
+			shell.dispose();
+		}
+	}
+
+	@Test
+	public void testUninstallCancelsBackgroundRepair() {
+		Shell shell= new Shell();
+		try {
+			TextViewer viewer= new TextViewer(shell, SWT.NONE);
+			shell.setSize(400, 300);
+			BoldRepairer repairer= new BoldRepairer();
+			List<TextPresentation> applied= new ArrayList<>();
+			PresentationReconciler reconciler= install(viewer, repairer, applied);
+
+			String text= createText(100000);
+			viewer.setDocument(new Document(text));
+			runEventLoop(shell.getDisplay(), () -> !repairer.fBackgroundPresentations.isEmpty());
+
+			reconciler.uninstall();
+			int appliedCount= applied.size();
+			runEventLoop(shell.getDisplay(), () -> Job.getJobManager().find(reconciler).length == 0);
+
+			assertEquals(appliedCount, applied.size());
+			assertFalse(isBold(viewer, text.length() - 2));
+		} finally {
+			shell.dispose();
+		}
+	}
+}
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Table;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.TextViewer;
+import org.eclipse.jface.text.contentassist.ContentAssistant;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.eclipse.jface.text.contentassist.ICompletionProposalExtension2;
+import org.eclipse.jface.text.contentassist.IContentAssistProcessor;
+import org.eclipse.jface.text.contentassist.IContextInformation;
+import org.eclipse.jface.text.contentassist.IContextInformationValidator;
+
+/**
+ * Tests that narrowing the proposals of the completion proposal popup from the subsets filtered
+ * before shows the same proposals as filtering all computed proposals.
+ *
+ * @since 3.12
+ */
+public class ProposalFilteringTest {
+
+	private static final String[] WORDS= { "alpha", "beta", "alphabet", "alpine", "albatross", "alp", "bet" };
+
+	/** A proposal that is valid while the text from its offset is a prefix of its word. */
+	private static class PrefixProposal implements ICompletionProposal, ICompletionProposalExtension2 {
+
+		private final String fWord;
+		private final int fOffset;
+
+		PrefixProposal(String word, int offset) {
+			fWord= word;
+			fOffset= offset;
+		}
+
+		@Override
+		public boolean validate(IDocument document, int offset, DocumentEvent event) {
+			if (offset < fOffset || offset - fOffset > fWord.length())
+				return false;
+			try {
+				return fWord.regionMatches(true, 0, document.get(fOffset, offset - fOffset), 0, offset - fOffset);
+			} catch (BadLocationException x) {
+				return false;
+			}
+		}
+
+		@Override
+		public void apply(IDocument document) {
+		}
+
+		@Override
+		public void apply(ITextViewer viewer, char trigger, int stateMask, int offset) {
+		}
+
+		@Override
+		public void selected(ITextViewer viewer, boolean smartToggle) {
+		}
+
+		@Override
+		public void unselected(ITextViewer viewer) {
+		}
+
+		@Override
+		public Point getSelection(IDocument document) {
+			return null;
+		}
+
+		@Override
+		public String getAdditionalProposalInfo() {
+			return null;
+		}
+
+		@Override
+		public String getDisplayString() {
+			return fWord;
+		}
+
+		@Override
+		public Image getImage() {
+			return null;
+		}
+
+		@Override
+		public IContextInformation getContextInformation() {
+			return null;
+		}
+	}
+
+	/** A processor that proposes {@link #WORDS}. */
+	private static class WordProcessor implements IContentAssistProcessor {
+
+		@Override
+		public ICompletionProposal[] computeCompletionProposals(ITextViewer viewer, int offset) {
+			return createProposals(offset);
+		}
+
+		@Override
+		public IContextInformation[] computeContextInformation(ITextViewer viewer, int offset) {
+			return null;
+		}
+
+		@Override
+		public char[] getCompletionProposalAutoActivationCharacters() {
+			return null;
+		}
+
+		@Override
+		public char[] getContextInformationAutoActivationCharacters() {
+			return null;
+		}
+
+		@Override
+		public String getErrorMessage() {
+			return null;
+		}
+
+		@Override
+		public IContextInformationValidator getContextInformationValidator() {
+			return null;
+		}
+	}
+
+	private Shell fShell;
+	private TextViewer fViewer;
+	private IDocument fDocument;
+	private ContentAssistant fAssistant;
+
+	@Before
+	public void setUp() {
+		fShell= new Shell();
+		fShell.setSize(400, 300);
+		fViewer= new TextViewer(fShell, SWT.NONE);
+		fDocument= new Document();
+		fViewer.setDocument(fDocument);
+		fShell.open();
+
+		fAssistant= new ContentAssistant();
+		fAssistant.setContentAssistProcessor(new WordProcessor(), IDocument.DEFAULT_CONTENT_TYPE);
+		fAssistant.install(fViewer);
+	}
+
+	@After
+	public void tearDown() {
+		fAssistant.uninstall();
+		fShell.dispose();
+	}
+
+	private static ICompletionProposal[] createProposals(int offset) {
+		ICompletionProposal[] proposals= new ICompletionProposal[WORDS.length];
+		for (int i= 0; i < WORDS.length; i++)
+			proposals[i]= new PrefixProposal(WORDS[i], offset);
+		return proposals;
+	}
+
+	/**
+	 * Replaces the given range, moves the caret to the given offset and lets the popup filter its
+	 * proposals.
+	 */
+	private void replace(int offset, int length, String text, int caret) throws BadLocationException {
+		fDocument.replace(offset, length, text);
+		fViewer.getTextWidget().setCaretOffset(caret);
+		Display display= fShell.getDisplay();
+		while (display.readAndDispatch()) {
+			// dispatch the filter runnable
+		}
+	}
+
+	/**
+	 * Asserts that the popup shows the proposals computed at the invocation offset that are
+	 * valid at the caret, filtered from scratch.
+	 */
+	private void assertFilteredFromScratch() {
+		int offset= fViewer.getTextWidget().getCaretOffset();
+		List<String> expected= new ArrayList<>();
+		ICompletionProposal[] proposals= createProposals(0);
+		for (int i= 0; i < proposals.length; i++) {
+			if (((ICompletionProposalExtension2) proposals[i]).validate(fDocument, offset, null))
+				expected.add(proposals[i].getDisplayString());
+		}
+		assertEquals("at \"" + fDocument.get() + "\", offset " + offset, expected, getShownProposals());
+	}
+
+	/**
+	 * Returns the display strings of the proposals shown in the proposal popup.
+	 *
+	 * @return the shown proposals, or <code>null</code> if the popup is not open
+	 */
+	private List<String> getShownProposals() {
+		for (Shell shell : fShell.getShells()) {
+			if (shell.isDisposed() || !shell.isVisible())
+				continue;
+			for (Control control : shell.getChildren()) {
+				if (control instanceof Table) {
+					Table table= (Table) control;
+					List<String> proposals= new ArrayList<>();
+					for (int i= 0; i < table.getItemCount(); i++)
+						proposals.add(table.getItem(i).getText());
+					return proposals;
+				}
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testTypingAndBackspace() throws BadLocationException {
+		fAssistant.showPossibleCompletions();
+		assertFilteredFromScratch();
+
+		replace(0, 0, "a", 1);
+		assertFilteredFromScratch();
+		replace(1, 0, "l", 2);
+		assertFilteredFromScratch();
+		replace(2, 0, "p", 3);
+		assertFilteredFromScratch();
+		replace(3, 0, "h", 4);
+		assertFilteredFromScratch();
+
+		// backspace
+		replace(3, 1, "", 3);
+		assertFilteredFromScratch();
+		replace(2, 1, "", 2);
+		assertFilteredFromScratch();
+		replace(1, 1, "", 1);
+		assertFilteredFromScratch();
+
+		// type again after backspacing
+		replace(1, 0, "l", 2);
+		assertFilteredFromScratch();
+		replace(2, 0, "p", 3);
+		assertFilteredFromScratch();
+	}
+
+	@Test
+	public void testChangeBeforeFilterOffset() throws BadLocationException {
+		fAssistant.showPossibleCompletions();
+		replace(0, 0, "a", 1);
+		replace(1, 0, "l", 2);
+		replace(2, 0, "p", 3);
+		assertFilteredFromScratch();
+
+		// change the last character of the prefix, the caret stays
+		replace(2, 1, "b", 3);
+		assertFilteredFromScratch();
+
+		// change the first character of the prefix, the caret stays
+		replace(0, 1, "A", 3);
+		assertFilteredFromScratch();
+
+		// widen the prefix again and narrow it with a different character
+		replace(2, 1, "", 2);
+		assertFilteredFromScratch();
+		replace(2, 0, "p", 3);
+		assertFilteredFromScratch();
+	}
+
+	@Test
+	public void testPasteOfSeveralCharacters() throws BadLocationException {
+		fAssistant.showPossibleCompletions();
+		replace(0, 0, "alp", 3);
+		assertFilteredFromScratch();
+
+		// select and replace the last two characters
+		replace(1, 2, "lph", 4);
+		assertFilteredFromScratch();
+
+		// remove several characters at once
+		replace(1, 3, "", 1);
+		assertFilteredFromScratch();
+	}
+}
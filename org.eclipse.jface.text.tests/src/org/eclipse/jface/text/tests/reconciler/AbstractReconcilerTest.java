@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -179,6 +179,7 @@ public class AbstractReconcilerTest {
 		
 		fProgressMonitor= new NullProgressMonitor();
 		fReconciler.setProgressMonitor(fProgressMonitor);
+		fReconciler.setUseSharedExecutor(useSharedExecutor());
 
 		fViewer= new TestTextViewer();
 		fReconciler.install(fViewer);
@@ -188,6 +189,16 @@ public class AbstractReconcilerTest {
 		fAccessor= new Accessor(object, object.getClass());
 	}
 
+	/**
+	 * Tells whether the tested reconciler runs in the shared reconciler executor.
+	 *
+	 * @return <code>true</code> to test a reconciler using the shared executor
+	 * @since 3.12
+	 */
+	protected boolean useSharedExecutor() {
+		return false;
+	}
+
 	@After
 	public void tearDown() throws Exception {
 		fBarrier.shutdown();
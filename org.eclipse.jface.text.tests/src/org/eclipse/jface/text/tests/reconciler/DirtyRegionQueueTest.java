@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.reconciler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.jface.text.reconciler.DirtyRegion;
+
+
+/**
+ * Tests the folding of dirty regions by the dirty region queue of the reconciler.
+ *
+ * @since 3.12
+ */
+public class DirtyRegionQueueTest {
+
+	private Accessor fQueue;
+
+	@Before
+	public void setUp() {
+		fQueue= new Accessor("org.eclipse.jface.text.reconciler.DirtyRegionQueue", getClass().getClassLoader(), new Object[0]);
+	}
+
+	private static DirtyRegion insert(int offset, String text) {
+		return new DirtyRegion(offset, text.length(), DirtyRegion.INSERT, text);
+	}
+
+	private static DirtyRegion remove(int offset, int length) {
+		return new DirtyRegion(offset, length, DirtyRegion.REMOVE, null);
+	}
+
+	private void add(DirtyRegion region) {
+		fQueue.invoke("addDirtyRegion", new Object[] { region });
+	}
+
+	private int getSize() {
+		return ((Integer) fQueue.invoke("getSize", new Object[0])).intValue();
+	}
+
+	private DirtyRegion removeNext() {
+		return (DirtyRegion) fQueue.invoke("removeNextDirtyRegion", new Object[0]);
+	}
+
+	private void assertNext(String type, int offset, int length, String text) {
+		DirtyRegion region= removeNext();
+		assertEquals(type, region.getType());
+		assertEquals(offset, region.getOffset());
+		assertEquals(length, region.getLength());
+		assertEquals(text, region.getText());
+	}
+
+	/**
+	 * Applies a dirty region to the given text the way the reconciler interprets it.
+	 */
+	private static String apply(String text, DirtyRegion region) {
+		if (DirtyRegion.INSERT.equals(region.getType()))
+			return text.substring(0, region.getOffset()) + region.getText() + text.substring(region.getOffset());
+		return text.substring(0, region.getOffset()) + text.substring(region.getOffset() + region.getLength());
+	}
+
+	@Test
+	public void testTyping() {
+		add(insert(2, "a"));
+		add(insert(3, "b"));
+		add(insert(4, "c"));
+		assertEquals(1, getSize());
+		assertNext(DirtyRegion.INSERT, 2, 3, "abc");
+		assertNull(removeNext());
+	}
+
+	@Test
+	public void testInsertIntoInsertedText() {
+		add(insert(2, "abc"));
+		add(insert(5, "d"));
+		add(insert(3, "x"));
+		add(insert(2, "y"));
+		assertEquals(1, getSize());
+		assertNext(DirtyRegion.INSERT, 2, 6, "yaxbcd");
+	}
+
+	@Test
+	public void testRemoveFromInsertedText() {
+		add(insert(2, "abcd"));
+		add(remove(5, 1));
+		add(remove(3, 1));
+		add(remove(2, 1));
+		assertEquals(1, getSize());
+		assertNext(DirtyRegion.INSERT, 2, 1, "c");
+	}
+
+	@Test
+	public void testBackspaceAndDelete() {
+		add(remove(4, 1));
+		add(remove(3, 1));
+		add(remove(3, 2));
+		add(remove(1, 2));
+		assertEquals(1, getSize());
+		assertNext(DirtyRegion.REMOVE, 1, 6, null);
+	}
+
+	@Test
+	public void testUnrelatedRegions() {
+		add(insert(2, "abc"));
+		add(insert(10, "d"));
+		add(remove(0, 1));
+		add(remove(5, 1));
+		add(insert(1, "x"));
+		add(remove(3, 2));
+		assertEquals(6, getSize());
+		assertNext(DirtyRegion.INSERT, 2, 3, "abc");
+		assertNext(DirtyRegion.INSERT, 10, 1, "d");
+		assertNext(DirtyRegion.REMOVE, 0, 1, null);
+		assertNext(DirtyRegion.REMOVE, 5, 1, null);
+		assertNext(DirtyRegion.INSERT, 1, 1, "x");
+		assertNext(DirtyRegion.REMOVE, 3, 2, null);
+		assertNull(removeNext());
+	}
+
+	@Test
+	public void testReplace() {
+		// a replace is queued as a removal followed by an insertion
+		add(remove(2, 3));
+		add(insert(2, "ab"));
+		add(insert(4, "c"));
+		add(remove(3, 2));
+		assertEquals(2, getSize());
+		assertNext(DirtyRegion.REMOVE, 2, 3, null);
+		assertNext(DirtyRegion.INSERT, 2, 1, "a");
+	}
+
+	/**
+	 * Applies random edits near each other and checks that applying the queued regions to the
+	 * original text yields the edited text.
+	 */
+	@Test
+	public void testRandomEdits() {
+		Random random= new Random(4711);
+		for (int run= 0; run < 200; run++) {
+			fQueue.invoke("purgeQueue", new Object[0]);
+			String original= "0123456789abcdefghij";
+			String text= original;
+			int caret= 10;
+			for (int i= 0; i < 20; i++) {
+				caret= Math.max(0, Math.min(text.length(), caret + random.nextInt(5) - 2));
+				int length= Math.min(text.length() - caret, random.nextInt(3));
+				String inserted= random.nextBoolean() ? "xyz".substring(random.nextInt(3)) : "";
+				if (length > 0)
+					add(remove(caret, length));
+				if (inserted.length() > 0)
+					add(insert(caret, inserted));
+				text= text.substring(0, caret) + inserted + text.substring(caret + length);
+			}
+
+			String result= original;
+			for (DirtyRegion region= removeNext(); region != null; region= removeNext())
+				result= apply(result, region);
+			assertEquals("run " + run, text, result);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.reconciler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.reconciler.AbstractReconciler;
+import org.eclipse.jface.text.reconciler.DirtyRegion;
+import org.eclipse.jface.text.reconciler.IReconcilingStrategy;
+import org.eclipse.jface.text.tests.TestTextViewer;
+
+
+/**
+ * Runs the reconciler tests with reconcilers that use the shared reconciler executor.
+ *
+ * @since 3.12
+ */
+public class SharedExecutorReconcilerTest extends AbstractReconcilerTest {
+
+	/** An incremental reconciler that records the dirty regions it processes. */
+	private static class RecordingReconciler extends AbstractReconciler {
+
+		final List<String> fProcessed= Collections.synchronizedList(new ArrayList<String>());
+
+		@Override
+		protected void process(DirtyRegion dirtyRegion) {
+			if (dirtyRegion != null)
+				fProcessed.add(dirtyRegion.getType() + " " + dirtyRegion.getOffset() + " " + dirtyRegion.getLength() + " " + dirtyRegion.getText());
+		}
+
+		@Override
+		protected void reconcilerDocumentChanged(IDocument newDocument) {
+		}
+
+		@Override
+		public IReconcilingStrategy getReconcilingStrategy(String contentType) {
+			return null;
+		}
+	}
+
+	@Override
+	protected boolean useSharedExecutor() {
+		return true;
+	}
+
+	private static List<String> reconcile(String text, int[][] edits, String[] texts) throws BadLocationException, InterruptedException {
+		RecordingReconciler reconciler= new RecordingReconciler();
+		reconciler.setDelay(100);
+		reconciler.setUseSharedExecutor(true);
+		TestTextViewer viewer= new TestTextViewer();
+		Document document= new Document(text);
+		viewer.setDocument(document);
+		reconciler.install(viewer);
+		try {
+			for (int i= 0; i < edits.length; i++)
+				document.replace(edits[i][0], edits[i][1], texts[i]);
+
+			long start= System.currentTimeMillis();
+			while (reconciler.fProcessed.isEmpty()) {
+				if (System.currentTimeMillis() > start + 5000)
+					fail("waited > 5s for reconciler to complete");
+				Thread.sleep(20);
+			}
+			return reconciler.fProcessed;
+		} finally {
+			reconciler.uninstall();
+		}
+	}
+
+	@Test
+	public void testInsertIntoInsertedText() throws BadLocationException, InterruptedException {
+		List<String> processed= reconcile("0123456789", new int[][] { { 2, 0 }, { 5, 0 }, { 3, 0 } }, new String[] { "abc", "d", "x" });
+		assertEquals(1, processed.size());
+		assertEquals("__insert 2 5 axbcd", processed.get(0));
+	}
+
+	@Test
+	public void testRemoveInsertedText() throws BadLocationException, InterruptedException {
+		List<String> processed= reconcile("0123456789", new int[][] { { 2, 0 }, { 4, 1 }, { 3, 1 } }, new String[] { "abc", "", "" });
+		assertEquals(1, processed.size());
+		assertEquals("__insert 2 1 a", processed.get(0));
+	}
+
+	@Test
+	public void testRemoveForwardAndBackward() throws BadLocationException, InterruptedException {
+		List<String> processed= reconcile("0123456789", new int[][] { { 4, 1 }, { 4, 2 }, { 3, 1 } }, new String[] { "", "", "" });
+		assertEquals(1, processed.size());
+		assertEquals("__remove 3 4 null", processed.get(0));
+	}
+
+	@Test
+	public void testManyReconcilers() throws BadLocationException, InterruptedException {
+		int count= 40;
+		RecordingReconciler[] reconcilers= new RecordingReconciler[count];
+		Document[] documents= new Document[count];
+		try {
+			for (int i= 0; i < count; i++) {
+				reconcilers[i]= new RecordingReconciler();
+				reconcilers[i].setDelay(10);
+				reconcilers[i].setUseSharedExecutor(true);
+				TestTextViewer viewer= new TestTextViewer();
+				documents[i]= new Document("text");
+				viewer.setDocument(documents[i]);
+				reconcilers[i].install(viewer);
+			}
+			for (int i= 0; i < count; i++)
+				documents[i].replace(0, 0, "x");
+
+			long start= System.currentTimeMillis();
+			for (int i= 0; i < count; i++) {
+				while (reconcilers[i].fProcessed.isEmpty()) {
+					if (System.currentTimeMillis() > start + 5000)
+						fail("waited > 5s for reconciler to complete");
+					Thread.sleep(20);
+				}
+				assertEquals("__insert 0 1 x", reconcilers[i].fProcessed.get(0));
+			}
+			assertTrue(Thread.activeCount() < count);
+		} finally {
+			for (int i= 0; i < count; i++) {
+				if (reconcilers[i] != null)
+					reconcilers[i].uninstall();
+			}
+		}
+	}
+}
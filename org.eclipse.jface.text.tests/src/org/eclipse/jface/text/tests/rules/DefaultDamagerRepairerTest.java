@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyleRange;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.TextAttribute;
+import org.eclipse.jface.text.TextPresentation;
+import org.eclipse.jface.text.TypedRegion;
+import org.eclipse.jface.text.rules.BufferedRuleBasedScanner;
+import org.eclipse.jface.text.rules.DefaultDamagerRepairer;
+import org.eclipse.jface.text.rules.ICharacterScanner;
+import org.eclipse.jface.text.rules.IRule;
+import org.eclipse.jface.text.rules.IToken;
+import org.eclipse.jface.text.rules.IWhitespaceDetector;
+import org.eclipse.jface.text.rules.IWordDetector;
+import org.eclipse.jface.text.rules.MultiLineRule;
+import org.eclipse.jface.text.rules.NumberRule;
+import org.eclipse.jface.text.rules.RuleBasedScanner;
+import org.eclipse.jface.text.rules.SingleLineRule;
+import org.eclipse.jface.text.rules.Token;
+import org.eclipse.jface.text.rules.WhitespaceRule;
+import org.eclipse.jface.text.rules.WordRule;
+
+/**
+ * Tests the token cache of {@link DefaultDamagerRepairer}.
+ *
+ * @since 3.12
+ */
+public class DefaultDamagerRepairerTest {
+
+	/** A rule that counts its evaluations. */
+	private static class CountingRule implements IRule {
+
+		private final IRule fRule;
+		int fEvaluations;
+
+		CountingRule(IRule rule) {
+			fRule= rule;
+		}
+
+		@Override
+		public IToken evaluate(ICharacterScanner scanner) {
+			fEvaluations++;
+			return fRule.evaluate(scanner);
+		}
+	}
+
+	private static final String[] FRAGMENTS= { "if ", "while", " ", "\n", "\r\n", "/*", "*/", "\"", "12", "x", "\t" };
+
+	private static IToken createToken(int style) {
+		return new Token(new TextAttribute(null, null, style));
+	}
+
+	private static CountingRule[] createRules() {
+		WordRule keywords= new WordRule(new IWordDetector() {
+			@Override
+			public boolean isWordStart(char c) {
+				return Character.isJavaIdentifierStart(c);
+			}
+
+			@Override
+			public boolean isWordPart(char c) {
+				return Character.isJavaIdentifierPart(c);
+			}
+		}, createToken(SWT.NORMAL));
+		keywords.addWord("if", createToken(SWT.BOLD));
+		keywords.addWord("while", createToken(SWT.BOLD));
+
+		return new CountingRule[] {
+				new CountingRule(new MultiLineRule("/*", "*/", createToken(SWT.ITALIC))),
+				new CountingRule(new SingleLineRule("\"", "\"", createToken(TextAttribute.UNDERLINE))),
+				new CountingRule(new WhitespaceRule(new IWhitespaceDetector() {
+					@Override
+					public boolean isWhitespace(char c) {
+						return Character.isWhitespace(c);
+					}
+				})),
+				new CountingRule(keywords),
+				new CountingRule(new NumberRule(createToken(TextAttribute.STRIKETHROUGH)))
+		};
+	}
+
+	private static DefaultDamagerRepairer createRepairer(RuleBasedScanner scanner, IRule[] rules, boolean cached) {
+		scanner.setRules(rules);
+		DefaultDamagerRepairer repairer= new DefaultDamagerRepairer(scanner);
+		repairer.setTokenCacheEnabled(cached);
+		return repairer;
+	}
+
+	private static List<StyleRange> createPresentation(DefaultDamagerRepairer repairer, IDocument document, int offset, int length) {
+		repairer.setDocument(document);
+		TextPresentation presentation= new TextPresentation();
+		repairer.createPresentation(presentation, new TypedRegion(offset, length, IDocument.DEFAULT_CONTENT_TYPE));
+		List<StyleRange> ranges= new ArrayList<>();
+		for (Iterator<StyleRange> iterator= presentation.getAllStyleRangeIterator(); iterator.hasNext();)
+			ranges.add(iterator.next());
+		return ranges;
+	}
+
+	private static int getEvaluations(CountingRule[] rules) {
+		int evaluations= 0;
+		for (CountingRule rule : rules)
+			evaluations+= rule.fEvaluations;
+		return evaluations;
+	}
+
+	private static void assertSamePresentation(List<StyleRange> expected, List<StyleRange> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i= 0; i < expected.size(); i++) {
+			StyleRange e= expected.get(i);
+			StyleRange a= actual.get(i);
+			assertEquals(e.start, a.start);
+			assertEquals(e.length, a.length);
+			assertEquals(e.fontStyle, a.fontStyle);
+			assertEquals(e.underline, a.underline);
+			assertEquals(e.strikeout, a.strikeout);
+		}
+	}
+
+	private void randomEdits(RuleBasedScanner plainScanner, RuleBasedScanner cachedScanner) throws BadLocationException {
+		Random random= new Random(42);
+		DefaultDamagerRepairer plain= createRepairer(plainScanner, createRules(), false);
+		DefaultDamagerRepairer cached= createRepairer(cachedScanner, createRules(), true);
+		Document document= new Document();
+		for (int i= 0; i < 1000; i++) {
+			int offset= random.nextInt(document.getLength() + 1);
+			int length= random.nextInt(Math.min(3, document.getLength() - offset) + 1);
+			document.replace(offset, length, FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+
+			int start= random.nextInt(5) == 0 ? random.nextInt(document.getLength() + 1) : 0;
+			int end= random.nextInt(5) == 0 ? start + random.nextInt(document.getLength() - start + 1) : document.getLength();
+			assertSamePresentation(createPresentation(plain, document, start, end - start), createPresentation(cached, document, start, end - start));
+		}
+	}
+
+	@Test
+	public void testRandomEdits() throws BadLocationException {
+		randomEdits(new RuleBasedScanner(), new RuleBasedScanner());
+	}
+
+	@Test
+	public void testRandomEditsBuffered() throws BadLocationException {
+		randomEdits(new BufferedRuleBasedScanner(20), new BufferedRuleBasedScanner(20));
+	}
+
+	@Test
+	public void testUnchangedLinesAreNotRescanned() throws BadLocationException {
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < 200; i++)
+			text.append("if x").append(i).append(" while \"s\" 42\n");
+		Document document= new Document(text.toString());
+		CountingRule[] rules= createRules();
+		DefaultDamagerRepairer repairer= createRepairer(new RuleBasedScanner(), rules, true);
+
+		createPresentation(repairer, document, 0, document.getLength());
+		int firstScan= getEvaluations(rules);
+		document.replace(document.getLineOffset(100), 0, "x");
+		createPresentation(repairer, document, 0, document.getLength());
+		int secondScan= getEvaluations(rules) - firstScan;
+
+		assertTrue(secondScan * 50 < firstScan);
+	}
+
+	@Test
+	public void testChangedStateAtLineStart() throws BadLocationException {
+		Document document= new Document("a\nb\n/ c\nd\n*/ e\n");
+		DefaultDamagerRepairer plain= createRepairer(new RuleBasedScanner(), createRules(), false);
+		DefaultDamagerRepairer cached= createRepairer(new RuleBasedScanner(), createRules(), true);
+		createPresentation(cached, document, 0, document.getLength());
+
+		document.replace(5, 0, "*");
+		List<StyleRange> ranges= createPresentation(cached, document, 0, document.getLength());
+		assertSamePresentation(createPresentation(plain, document, 0, document.getLength()), ranges);
+		assertEquals(SWT.ITALIC, ranges.get(ranges.size() - 2).fontStyle);
+	}
+}
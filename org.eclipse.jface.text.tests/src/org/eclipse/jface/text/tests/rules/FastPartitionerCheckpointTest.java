@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.tests.rules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentPartitioner;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.rules.FastPartitioner;
+import org.eclipse.jface.text.rules.IPartitionTokenScanner;
+import org.eclipse.jface.text.rules.IPredicateRule;
+import org.eclipse.jface.text.rules.MultiLineRule;
+import org.eclipse.jface.text.rules.RuleBasedPartitionScanner;
+import org.eclipse.jface.text.rules.SingleLineRule;
+import org.eclipse.jface.text.rules.Token;
+
+/**
+ * Runs the {@link FastPartitionerTest} with a partitioner that rescans up to checkpoints and
+ * compares its incremental updates with a full partitioning.
+ */
+public class FastPartitionerCheckpointTest extends FastPartitionerTest {
+
+	private static final String STRING= "string";
+
+	private static final String[] FRAGMENTS= { "/*", "*/", "\"", "\\", "\n", "\n", "a", "bc ", "  " };
+
+	/** A scanner that counts the characters it reads. */
+	private static class CountingScanner extends RuleBasedPartitionScanner {
+
+		int fReadCount;
+
+		CountingScanner() {
+			IPredicateRule[] rules= new IPredicateRule[] {
+					new MultiLineRule("/*", "*/", new Token(COMMENT), (char) 0, true),
+					new SingleLineRule("\"", "\"", new Token(STRING), '\\', true)
+			};
+			setPredicateRules(rules);
+		}
+
+		@Override
+		public int read() {
+			fReadCount++;
+			return super.read();
+		}
+	}
+
+	@Override
+	protected IDocumentPartitioner createPartitioner(IPartitionTokenScanner scanner) {
+		FastPartitioner partitioner= new FastPartitioner(scanner, new String[] { DEFAULT, COMMENT });
+		partitioner.setCheckpointInterval(4);
+		return partitioner;
+	}
+
+	private static void connect(IDocument document, CountingScanner scanner, int checkpointInterval) {
+		FastPartitioner partitioner= new FastPartitioner(scanner, new String[] { DEFAULT, COMMENT, STRING });
+		partitioner.setCheckpointInterval(checkpointInterval);
+		document.setDocumentPartitioner(partitioner);
+		partitioner.connect(document);
+	}
+
+	private static void assertSamePartitioning(IDocument expected, IDocument actual) throws BadLocationException {
+		ITypedRegion[] expectedRegions= expected.computePartitioning(0, expected.getLength());
+		ITypedRegion[] actualRegions= actual.computePartitioning(0, actual.getLength());
+		assertEquals(toString(expectedRegions), toString(actualRegions));
+	}
+
+	private static String toString(ITypedRegion[] regions) {
+		StringBuilder buffer= new StringBuilder();
+		for (ITypedRegion region : regions)
+			buffer.append(region.getType()).append('[').append(region.getOffset()).append(',').append(region.getLength()).append("] ");
+		return buffer.toString();
+	}
+
+	@Test
+	public void testRandomEdits() throws BadLocationException {
+		Random random= new Random(4711);
+		for (int interval : new int[] { 1, 7, 50 }) {
+			IDocument document= new Document();
+			connect(document, new CountingScanner(), interval);
+			for (int i= 0; i < 1000; i++) {
+				int offset= random.nextInt(document.getLength() + 1);
+				int length= random.nextInt(4) == 0 ? random.nextInt(Math.min(10, document.getLength() - offset) + 1) : 0;
+				StringBuilder text= new StringBuilder();
+				for (int j= random.nextInt(3); j > 0; j--)
+					text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+				document.replace(offset, length, text.toString());
+
+				IDocument reference= new Document(document.get());
+				connect(reference, new CountingScanner(), 0);
+				assertSamePartitioning(reference, document);
+			}
+		}
+	}
+
+	@Test
+	public void testRandomEditsMatchIncrementalPartitioner() throws BadLocationException {
+		Random random= new Random(4711);
+		for (int run= 0; run < 5000; run++) {
+			int interval= 1 + random.nextInt(8);
+			IDocument document= new Document();
+			connect(document, new CountingScanner(), interval);
+			IDocument reference= new Document();
+			connect(reference, new CountingScanner(), 0);
+			for (int i= 0; i < 10; i++) {
+				int offset= random.nextInt(document.getLength() + 1);
+				int length= random.nextInt(Math.min(3, document.getLength() - offset) + 1);
+				StringBuilder text= new StringBuilder();
+				for (int j= random.nextInt(4); j > 0; j--)
+					text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+				document.replace(offset, length, text.toString());
+				reference.replace(offset, length, text.toString());
+				assertSamePartitioning(reference, document);
+			}
+		}
+	}
+
+	@Test
+	public void testRuleReadingBehindCheckpoint() throws BadLocationException {
+		for (int interval= 1; interval < 8; interval++) {
+			IDocument document= new Document("\"\\\n\na\\");
+			connect(document, new CountingScanner(), interval);
+			IDocument incremental= new Document(document.get());
+			connect(incremental, new CountingScanner(), 0);
+
+			// the string started in the first line now reads behind the checkpoints
+			document.replace(3, 1, "\\\"");
+			incremental.replace(3, 1, "\\\"");
+			assertEquals(STRING + "[0,7] ", toString(document.computePartitioning(0, document.getLength())));
+			assertSamePartitioning(incremental, document);
+
+			IDocument reference= new Document(document.get());
+			connect(reference, new CountingScanner(), 0);
+			assertSamePartitioning(reference, document);
+		}
+	}
+
+	@Test
+	public void testEditInLargeText() throws BadLocationException {
+		StringBuilder text= new StringBuilder("\"text\"\n");
+		for (int i= 0; i < 10000; i++)
+			text.append("line ").append(i).append('\n');
+		text.append("\"text\"\n");
+		IDocument document= new Document(text.toString());
+		CountingScanner scanner= new CountingScanner();
+		connect(document, scanner, 100);
+
+		// the rescan stops at the first checkpoint behind the change instead of at the last string
+		scanner.fReadCount= 0;
+		document.replace(document.getLineOffset(5), 0, "x");
+		assertTrue(scanner.fReadCount < 500);
+		assertEquals(STRING, document.getContentType(document.getLength() - 3));
+
+		// opening a comment rescans the rest of the document
+		document.replace(document.getLineOffset(5), 0, "/*");
+		assertEquals(COMMENT, document.getContentType(document.getLength() - 3));
+
+		IDocument reference= new Document(document.get());
+		connect(reference, new CountingScanner(), 0);
+		assertSamePartitioning(reference, document);
+	}
+
+	@Test
+	public void testEditInLargeComment() throws BadLocationException {
+		StringBuilder text= new StringBuilder("/*\n");
+		for (int i= 0; i < 10000; i++)
+			text.append("line ").append(i).append('\n');
+		text.append("*/\n\"text\"\n");
+		IDocument document= new Document(text.toString());
+		connect(document, new CountingScanner(), 100);
+
+		document.replace(document.getLineOffset(5000), 0, "x");
+		assertEquals(COMMENT, document.getContentType(document.getLength() - 20));
+
+		// closing the comment early rescans the rest of the document
+		document.replace(document.getLineOffset(5000), 0, "*/");
+		assertEquals(DEFAULT, document.getContentType(document.getLength() - 20));
+		assertEquals(STRING, document.getContentType(document.getLength() - 3));
+
+		IDocument reference= new Document(document.get());
+		connect(reference, new CountingScanner(), 0);
+		assertSamePartitioning(reference, document);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,8 @@
 package org.eclipse.jface.text.source.projection;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 
@@ -657,6 +659,68 @@ public class ProjectionViewer extends SourceViewer implements ITextViewerExtensi
 		}
 	}
 
+	/**
+	 * Replaces the master ranges of the given projection document with the ranges
+	 * that are not covered by the collapsed annotations of the projection
+	 * annotation model. While the modification is processed, the viewer no longer
+	 * handles projection changes, as it is causing them.
+	 *
+	 * @param projection the projection document
+	 * @throws BadLocationException in case a collapsed region is invalid
+	 * @since 3.12
+	 *
+	 * @see ProjectionDocument#replaceMasterDocumentRanges(IRegion[])
+	 */
+	private void replaceMasterDocumentRanges(ProjectionDocument projection) throws BadLocationException {
+		IDocument master= projection.getMasterDocument();
+
+		List<IRegion> collapsed= new ArrayList<>();
+		Iterator<Annotation> e= fProjectionAnnotationModel.getAnnotationIterator();
+		while (e.hasNext()) {
+			ProjectionAnnotation annotation= (ProjectionAnnotation) e.next();
+			if (annotation.isCollapsed()) {
+				Position position= fProjectionAnnotationModel.getPosition(annotation);
+				if (position != null) {
+					IRegion[] regions= computeCollapsedRegions(position);
+					if (regions != null) {
+						for (int i= 0; i < regions.length; i++) {
+							// https://bugs.eclipse.org/bugs/show_bug.cgi?id=108258
+							// make sure the document range is strictly line based
+							int offset= toLineStart(master, regions[i].getOffset(), false);
+							int end= toLineStart(master, regions[i].getOffset() + regions[i].getLength(), true);
+							if (offset < end)
+								collapsed.add(new Region(offset, end - offset));
+						}
+					}
+				}
+			}
+		}
+
+		Collections.sort(collapsed, new Comparator<IRegion>() {
+			@Override
+			public int compare(IRegion r1, IRegion r2) {
+				return Integer.compare(r1.getOffset(), r2.getOffset());
+			}
+		});
+
+		List<IRegion> visible= new ArrayList<>(collapsed.size() + 1);
+		int offset= 0;
+		for (IRegion region : collapsed) {
+			if (offset < region.getOffset())
+				visible.add(new Region(offset, region.getOffset() - offset));
+			offset= Math.max(offset, region.getOffset() + region.getLength());
+		}
+		if (offset < master.getLength())
+			visible.add(new Region(offset, master.getLength() - offset));
+
+		try {
+			fHandleProjectionChanges= false;
+			projection.replaceMasterDocumentRanges(visible.toArray(new IRegion[visible.size()]));
+		} finally {
+			fHandleProjectionChanges= true;
+		}
+	}
+
 	/**
 	 * Returns the first line offset &lt;= <code>offset</code>. If <code>testLastLine</code>
 	 * is <code>true</code> and the offset is on last line then <code>offset</code> is returned.
@@ -953,6 +1017,12 @@ public class ProjectionViewer extends SourceViewer implements ITextViewerExtensi
 			Annotation[] changedAnnotation= event.getChangedAnnotations();
 			Annotation[] removedAnnotations= event.getRemovedAnnotations();
 
+			if (addedAnnotations.length + changedAnnotation.length + removedAnnotations.length > ProjectionCommandQueue.REDRAW_COSTS) {
+				// e.g. collapse all, expand all: apply the resulting projection in one step
+				catchupWithCollapsedRegions();
+				return;
+			}
+
 			fCommandQueue= new ProjectionCommandQueue();
 
 			boolean isRedrawing= redraws();
@@ -988,6 +1058,33 @@ public class ProjectionViewer extends SourceViewer implements ITextViewerExtensi
 		}
 	}
 
+	/**
+	 * Makes the visible document project the regions which are not covered by
+	 * collapsed projection annotations by applying a single projection change
+	 * while redraw is turned off.
+	 *
+	 * @throws BadLocationException in case the annotation model is no longer in synchronization with the document
+	 * @since 3.12
+	 */
+	private void catchupWithCollapsedRegions() throws BadLocationException {
+		IDocument visibleDocument= getVisibleDocument();
+		if (!(visibleDocument instanceof ProjectionDocument)) {
+			reinitializeProjection();
+			return;
+		}
+
+		boolean isRedrawing= redraws();
+		int topIndex= isRedrawing ? getTopIndex() : -1;
+		setRedraw(false);
+		try {
+			replaceMasterDocumentRanges((ProjectionDocument) visibleDocument);
+		} catch (IllegalArgumentException x) {
+			reinitializeProjection();
+		} finally {
+			setRedraw(true, topIndex);
+		}
+	}
+
 	private void executeProjectionCommands(ProjectionCommandQueue commandQueue, boolean fireRedraw) throws BadLocationException {
 
 		ProjectionCommand command;
@@ -1189,28 +1286,11 @@ public class ProjectionViewer extends SourceViewer implements ITextViewerExtensi
 				IDocument slave= manager.createSlaveDocument(master);
 				if (slave instanceof ProjectionDocument) {
 					projection= (ProjectionDocument) slave;
-					addMasterDocumentRange(projection, 0, master.getLength());
+					replaceMasterDocumentRanges(projection);
 				}
 			}
 		}
 
-		if (projection != null) {
-			Iterator<Annotation> e= fProjectionAnnotationModel.getAnnotationIterator();
-			while (e.hasNext()) {
-				ProjectionAnnotation annotation= (ProjectionAnnotation) e.next();
-				if (annotation.isCollapsed()) {
-					Position position= fProjectionAnnotationModel.getPosition(annotation);
-					if (position != null) {
-						IRegion[] regions= computeCollapsedRegions(position);
-						if (regions != null)
-							for (int i= 0; i < regions.length; i++)
-								removeMasterDocumentRange(projection, regions[i].getOffset(), regions[i].getLength());
-					}
-				}
-			}
-
-		}
-
 		replaceVisibleDocument(projection);
 	}
 
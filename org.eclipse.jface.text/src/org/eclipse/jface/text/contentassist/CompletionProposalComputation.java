@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.contentassist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.swt.widgets.Display;
+
+import org.eclipse.core.runtime.ISafeRunnable;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.SafeRunner;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.jface.contentassist.IContentAssistSubjectControl;
+import org.eclipse.jface.contentassist.ISubjectControlContentAssistProcessor;
+
+import org.eclipse.jface.text.ITextViewer;
+
+
+/**
+ * Computes the completion proposals of several content assist processors concurrently, outside
+ * the UI thread (see {@link ContentAssistant#ContentAssistant(boolean)}).
+ * <p>
+ * The listener is informed in the UI thread each time a processor is done. Once the timeout has
+ * elapsed, the processors that are still computing are cancelled and their proposals are
+ * ignored. After {@link #cancel()} the listener is no longer informed.
+ * </p>
+ *
+ * @since 3.12
+ */
+final class CompletionProposalComputation {
+
+	/**
+	 * Informed in the UI thread about the progress of a computation.
+	 */
+	interface IListener {
+
+		/**
+		 * Called each time a processor has computed its proposals, and when the timeout elapsed.
+		 *
+		 * @param computation the computation
+		 * @param isDone <code>true</code> if no further proposals will be reported
+		 */
+		void proposalsComputed(CompletionProposalComputation computation, boolean isDone);
+	}
+
+	private static final String PLUGIN_ID= "org.eclipse.jface.text"; //$NON-NLS-1$
+	private static final String COMPLETION_ERROR_MESSAGE_KEY= "ContentAssistant.error_computing_completion"; //$NON-NLS-1$
+
+	/** The threads shared by all computations. */
+	private static ExecutorService fgExecutor;
+
+	/**
+	 * Returns the executor shared by all computations. Its threads terminate when they have been
+	 * idle for a while.
+	 *
+	 * @return the shared executor
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (fgExecutor == null) {
+			int threads= Math.max(2, Runtime.getRuntime().availableProcessors());
+			ThreadPoolExecutor executor= new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, CompletionProposalComputation.class.getName());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+			fgExecutor= executor;
+		}
+		return fgExecutor;
+	}
+
+	private final Display fDisplay;
+	private final IContentAssistProcessor[] fProcessors;
+	private final ITextViewer fViewer;
+	private final IContentAssistSubjectControl fContentAssistSubjectControl;
+	private final int fOffset;
+	private final int fTimeout;
+	private final IListener fListener;
+
+	/** The futures of the processors, only accessed in the UI thread. */
+	private final Future<?>[] fFutures;
+	/** The proposals of the processors, <code>null</code> for processors that are not done, only accessed in the UI thread. */
+	private final ICompletionProposal[][] fProposals;
+	/** The number of processors that are not done, only accessed in the UI thread. */
+	private int fPending;
+	/** The last error message reported by a processor, only accessed in the UI thread. */
+	private String fErrorMessage;
+	/** Tells whether the computation has been cancelled or is done. */
+	private volatile boolean fIsFinished;
+
+	/** Runs in the UI thread when the timeout has elapsed. */
+	private final Runnable fTimeoutRunnable= new Runnable() {
+		@Override
+		public void run() {
+			if (fIsFinished)
+				return;
+			fIsFinished= true;
+			cancelFutures();
+			fListener.proposalsComputed(CompletionProposalComputation.this, true);
+		}
+	};
+
+	/**
+	 * Creates a new computation. Either the viewer or the content assist subject control must be
+	 * given; for the latter, only processors implementing
+	 * {@link ISubjectControlContentAssistProcessor} contribute proposals.
+	 *
+	 * @param display the display whose UI thread is informed
+	 * @param processors the processors
+	 * @param viewer the viewer, or <code>null</code>
+	 * @param contentAssistSubjectControl the content assist subject control, or <code>null</code>
+	 * @param offset the offset at which to compute the proposals
+	 * @param timeout the time in milliseconds after which processors that are still computing are
+	 *            cancelled
+	 * @param listener the listener
+	 */
+	CompletionProposalComputation(Display display, IContentAssistProcessor[] processors, ITextViewer viewer, IContentAssistSubjectControl contentAssistSubjectControl, int offset, int timeout, IListener listener) {
+		fDisplay= display;
+		fProcessors= processors;
+		fViewer= viewer;
+		fContentAssistSubjectControl= contentAssistSubjectControl;
+		fOffset= offset;
+		fTimeout= timeout;
+		fListener= listener;
+		fFutures= new Future<?>[processors.length];
+		fProposals= new ICompletionProposal[processors.length][];
+	}
+
+	/**
+	 * Starts the computation. Must be called in the UI thread.
+	 */
+	void start() {
+		fPending= fProcessors.length;
+		if (fPending == 0) {
+			fIsFinished= true;
+			fListener.proposalsComputed(this, true);
+			return;
+		}
+
+		ExecutorService executor= getExecutor();
+		for (int i= 0; i < fProcessors.length; i++) {
+			final int index= i;
+			fFutures[i]= executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					compute(index);
+				}
+			});
+		}
+		fDisplay.timerExec(fTimeout, fTimeoutRunnable);
+	}
+
+	/**
+	 * Cancels the computation. Processors that are still computing are interrupted and the
+	 * listener is no longer informed. Must be called in the UI thread.
+	 */
+	void cancel() {
+		if (fIsFinished)
+			return;
+		fIsFinished= true;
+		cancelFutures();
+		fDisplay.timerExec(-1, fTimeoutRunnable);
+	}
+
+	/**
+	 * Returns the offset at which the proposals are computed.
+	 *
+	 * @return the offset
+	 */
+	int getOffset() {
+		return fOffset;
+	}
+
+	/**
+	 * Returns the proposals computed so far, in the order of the processors. Must be called in
+	 * the UI thread.
+	 *
+	 * @return the proposals computed so far
+	 */
+	ICompletionProposal[] getProposals() {
+		List<ICompletionProposal> proposals= new ArrayList<>();
+		for (int i= 0; i < fProposals.length; i++) {
+			if (fProposals[i] != null) {
+				for (int j= 0; j < fProposals[i].length; j++)
+					proposals.add(fProposals[i][j]);
+			}
+		}
+		return proposals.toArray(new ICompletionProposal[proposals.size()]);
+	}
+
+	/**
+	 * Returns the last error message reported by a processor. Must be called in the UI thread.
+	 *
+	 * @return the error message, or <code>null</code> if there is none
+	 */
+	String getErrorMessage() {
+		return fErrorMessage;
+	}
+
+	private void cancelFutures() {
+		for (int i= 0; i < fFutures.length; i++) {
+			if (fFutures[i] != null)
+				fFutures[i].cancel(true);
+		}
+	}
+
+	/**
+	 * Computes the proposals of the processor with the given index and reports them in the UI
+	 * thread. Runs in a background thread.
+	 *
+	 * @param index the index of the processor
+	 */
+	private void compute(final int index) {
+		if (fIsFinished)
+			return;
+
+		final IContentAssistProcessor processor= fProcessors[index];
+		final ICompletionProposal[][] proposals= { null };
+		final String[] errorMessage= { null };
+		// ensure that the other processors are reported even if this one throws an exception
+		SafeRunner.run(new ISafeRunnable() {
+			@Override
+			public void run() throws Exception {
+				if (fContentAssistSubjectControl != null) {
+					if (processor instanceof ISubjectControlContentAssistProcessor)
+						proposals[0]= ((ISubjectControlContentAssistProcessor) processor).computeCompletionProposals(fContentAssistSubjectControl, fOffset);
+				} else {
+					proposals[0]= processor.computeCompletionProposals(fViewer, fOffset);
+				}
+				errorMessage[0]= processor.getErrorMessage();
+			}
+
+			@Override
+			public void handleException(Throwable exception) {
+				if (fIsFinished)
+					return; // interrupted by cancel
+				String message= JFaceTextMessages.getString(COMPLETION_ERROR_MESSAGE_KEY);
+				IStatus status= new Status(IStatus.ERROR, PLUGIN_ID, message, exception);
+				Platform.getLog(Platform.getBundle(PLUGIN_ID)).log(status);
+				errorMessage[0]= message;
+			}
+		});
+
+		if (fIsFinished || fDisplay.isDisposed())
+			return;
+
+		fDisplay.asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				if (fIsFinished)
+					return;
+				fProposals[index]= proposals[0] != null ? proposals[0] : new ICompletionProposal[0];
+				if (errorMessage[0] != null)
+					fErrorMessage= errorMessage[0];
+				fPending--;
+				if (fPending == 0) {
+					fIsFinished= true;
+					fDisplay.timerExec(-1, fTimeoutRunnable);
+				}
+				fListener.proposalsComputed(CompletionProposalComputation.this, fPending == 0);
+			}
+		});
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -214,6 +214,22 @@ class CompletionProposalPopup implements IContentAssistListener {
 		}
 	}
 
+	/**
+	 * The proposals that were valid at a filter offset.
+	 *
+	 * @since 3.12
+	 */
+	private static final class FilterStep {
+
+		final int fOffset;
+		final ICompletionProposal[] fProposals;
+
+		FilterStep(int offset, ICompletionProposal[] proposals) {
+			fOffset= offset;
+			fProposals= proposals;
+		}
+	}
+
 	private final class ProposalSelectionListener implements KeyListener {
 		@Override
 		public void keyPressed(KeyEvent e) {
@@ -348,6 +364,16 @@ class CompletionProposalPopup implements IContentAssistListener {
 				return;
 
 			int offset= fContentAssistSubjectControlAdapter.getSelectedRange().x;
+			if (fComputation != null || fContentAssistant.isAsynchronous() && offset < fInvocationOffset) {
+				// the proposals being computed are stale
+				fDocumentEvents.clear();
+				fFilterOffset= offset;
+				fInvocationOffset= offset;
+				fContentAssistant.fireSessionRestartEvent();
+				computeProposalsAsync(offset, fIsAutoActivated);
+				return;
+			}
+
 			ICompletionProposal[] proposals= null;
 			try  {
 				if (offset > -1) {
@@ -428,6 +454,29 @@ class CompletionProposalPopup implements IContentAssistListener {
 	 */
 	private boolean fIsInitialSort;
 
+	/**
+	 * The subsets of <code>fComputedProposals</code> filtered at increasing offsets since the
+	 * invocation offset, the first one being the computed proposals themselves. Used to narrow the
+	 * narrowest subset whose prefix is still unchanged instead of the whole set.
+	 *
+	 * @since 3.12
+	 */
+	private final List<FilterStep> fFilterSteps= new ArrayList<>();
+
+	/**
+	 * The asynchronous proposal computation in progress, or <code>null</code> if none.
+	 *
+	 * @since 3.12
+	 */
+	private CompletionProposalComputation fComputation;
+
+	/**
+	 * Tells whether the asynchronous proposal computation has been auto activated.
+	 *
+	 * @since 3.12
+	 */
+	private boolean fIsAutoActivated;
+
 	/**
 	 * Creates a new completion proposal popup for the given elements.
 	 *
@@ -477,6 +526,14 @@ class CompletionProposalPopup implements IContentAssistListener {
 			// when the user types fast.
 			fContentAssistSubjectControlAdapter.addKeyListener(fKeyListener);
 
+			if (fContentAssistant.isAsynchronous()) {
+				fInvocationOffset= fContentAssistSubjectControlAdapter.getSelectedRange().x;
+				fFilterOffset= fInvocationOffset;
+				fLastCompletionOffset= fFilterOffset;
+				computeProposalsAsync(fInvocationOffset, autoActivated);
+				return getErrorMessage();
+			}
+
 			BusyIndicator.showWhile(control.getDisplay(), new Runnable() {
 				@Override
 				public void run() {
@@ -537,6 +594,11 @@ class CompletionProposalPopup implements IContentAssistListener {
 	 */
 	private void handleRepeatedInvocation() {
 		if (fContentAssistant.isRepeatedInvocationMode()) {
+			if (fContentAssistant.isAsynchronous()) {
+				fInvocationOffset= fFilterOffset;
+				computeProposalsAsync(fFilterOffset, false);
+				return;
+			}
 			fComputedProposals= computeProposals(fFilterOffset);
 			setProposals(fComputedProposals, false);
 		}
@@ -566,6 +628,94 @@ class CompletionProposalPopup implements IContentAssistListener {
 		return proposals;
 	}
 
+	/**
+	 * Starts computing the completion proposals available at the given offset outside the UI
+	 * thread and cancels the computation in progress, if any. The proposals are presented as soon
+	 * as the first processor has computed some, and updated each time a further processor is done.
+	 *
+	 * @param offset the offset
+	 * @param autoActivated <code>true</code> if auto activation context
+	 * @since 3.12
+	 */
+	private void computeProposalsAsync(int offset, final boolean autoActivated) {
+		if (fComputation != null)
+			fComputation.cancel();
+
+		fIsAutoActivated= autoActivated;
+		fContentAssistant.setErrorMessage(null);
+		ensureDocumentListenerInstalled();
+
+		IContentAssistProcessor[] processors;
+		if (fContentAssistSubjectControl != null)
+			processors= fContentAssistant.getProcessors(fContentAssistSubjectControl, offset);
+		else
+			processors= fContentAssistant.getProcessors(fViewer, offset);
+
+		Display display= fContentAssistSubjectControlAdapter.getControl().getDisplay();
+		fComputation= new CompletionProposalComputation(display, processors, fViewer, fContentAssistSubjectControl, offset, fContentAssistant.getCompletionProposalTimeout(), new CompletionProposalComputation.IListener() {
+			@Override
+			public void proposalsComputed(CompletionProposalComputation computation, boolean isDone) {
+				if (computation != fComputation || fIsFilterPending)
+					return; // stale, the pending filter runnable restarts the computation
+
+				if (fContentAssistSubjectControlAdapter.getSelectedRange().x != computation.getOffset()) {
+					// the caret has been moved away
+					hide();
+					return;
+				}
+
+				fComputedProposals= computation.getProposals();
+				if (isDone) {
+					fComputation= null;
+					fContentAssistant.setErrorMessage(computation.getErrorMessage());
+					showComputedProposals(autoActivated);
+				} else if (fComputedProposals.length > 0) {
+					showComputedProposals(true);
+				}
+			}
+		});
+		fComputation.start();
+	}
+
+	/**
+	 * Presents the proposals computed asynchronously so far. If the popup is not visible yet and
+	 * the computation is done, the handling of empty or single proposals is the same as for a
+	 * synchronous computation.
+	 *
+	 * @param autoActivated <code>true</code> if auto activation context
+	 * @since 3.12
+	 */
+	private void showComputedProposals(boolean autoActivated) {
+		int count= fComputedProposals.length;
+		if (isActive()) {
+			if (count == 0 && fComputation == null) {
+				hide();
+				return;
+			}
+			setProposals(fComputedProposals, false);
+			return;
+		}
+
+		if (fComputation == null) {
+			if (count == 0 && hideWhenNoProposals(autoActivated))
+				return;
+
+			if (count == 1 && !autoActivated && canAutoInsert(fComputedProposals[0])) {
+				insertProposal(fComputedProposals[0], (char) 0, 0, fInvocationOffset);
+				hide();
+				return;
+			}
+		}
+
+		Control control= fContentAssistSubjectControlAdapter.getControl();
+		if (control == null || control.isDisposed())
+			return;
+
+		createProposalSelector();
+		setProposals(fComputedProposals, false);
+		displayProposals();
+	}
+
 	/**
 	 * Returns the error message.
 	 *
@@ -1095,6 +1245,11 @@ class CompletionProposalPopup implements IContentAssistListener {
 	 * @since 3.0
 	 */
 	private void unregister() {
+		if (fComputation != null) {
+			fComputation.cancel();
+			fComputation= null;
+		}
+
 		if (fDocumentListener != null) {
 			IDocument document= fContentAssistSubjectControlAdapter.getDocument();
 			if (document != null)
@@ -1118,6 +1273,7 @@ class CompletionProposalPopup implements IContentAssistListener {
 
 		fFilteredProposals= null;
 		fComputedProposals= null;
+		fFilterSteps.clear();
 
 		fContentAssistant.possibleCompletionsClosed();
 	}
@@ -1164,8 +1320,9 @@ class CompletionProposalPopup implements IContentAssistListener {
 			fFilteredProposals= proposals;
 			final int newLen= proposals.length;
 
-			fProposalTable.clearAll();
+			// shrink first so that only the remaining items need to be cleared
 			fProposalTable.setItemCount(newLen);
+			fProposalTable.clearAll();
 
 			Point currentLocation= fProposalShell.getLocation();
 			Point newLocation= getLocation();
@@ -1488,14 +1645,8 @@ class CompletionProposalPopup implements IContentAssistListener {
 			return fComputedProposals;
 		}
 
-		ICompletionProposal[] proposals;
-		if (offset < fFilterOffset) {
-			proposals= fComputedProposals;
-			fIsFilteredSubset= false;
-		} else {
-			proposals= fFilteredProposals;
-			fIsFilteredSubset= true;
-		}
+		ICompletionProposal[] proposals= getFilterBase(offset, event);
+		fIsFilteredSubset= proposals != fComputedProposals;
 
 		if (proposals == null) {
 			fIsFilteredSubset= false;
@@ -1535,7 +1686,42 @@ class CompletionProposalPopup implements IContentAssistListener {
 			}
 		}
 
-		return filtered.toArray(new ICompletionProposal[filtered.size()]);
+		ICompletionProposal[] result= filtered.toArray(new ICompletionProposal[filtered.size()]);
+		int last= fFilterSteps.size() - 1;
+		while (last > 0 && fFilterSteps.get(last).fOffset >= offset)
+			fFilterSteps.remove(last--);
+		fFilterSteps.add(new FilterStep(offset, result));
+		return result;
+	}
+
+	/**
+	 * Returns the narrowest set of proposals the proposals valid at the given offset are a subset
+	 * of. These are the proposals filtered at the greatest offset up to which the document has not
+	 * been changed, since the proposals valid for a prefix are a subset of the ones valid for any
+	 * shorter prefix. Subsets filtered for text that has changed are discarded.
+	 *
+	 * @param offset the offset
+	 * @param event the merged document event, or <code>null</code>
+	 * @return the proposals to filter, or <code>null</code> if there are none
+	 * @since 3.12
+	 */
+	private ICompletionProposal[] getFilterBase(int offset, DocumentEvent event) {
+		if (fComputedProposals == null) {
+			fFilterSteps.clear();
+			return null;
+		}
+
+		if (fFilterSteps.isEmpty() || fFilterSteps.get(0).fProposals != fComputedProposals) {
+			fFilterSteps.clear();
+			fFilterSteps.add(new FilterStep(fInvocationOffset, fComputedProposals));
+		}
+
+		int unchangedEnd= event != null ? Math.min(offset, event.getOffset()) : offset;
+		int last= fFilterSteps.size() - 1;
+		while (last > 0 && fFilterSteps.get(last).fOffset > unchangedEnd)
+			fFilterSteps.remove(last--);
+
+		return fFilterSteps.get(last).fProposals;
 	}
 
 	/**
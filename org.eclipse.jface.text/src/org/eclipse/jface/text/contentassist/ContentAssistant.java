@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,10 +14,14 @@
  *******************************************************************************/
 package org.eclipse.jface.text.contentassist;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTError;
@@ -896,6 +900,7 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 	 */
 	public static final int WIDGET_PRIORITY= 20;
 	private static final int DEFAULT_AUTO_ACTIVATION_DELAY= 500;
+	private static final int DEFAULT_COMPLETION_PROPOSAL_TIMEOUT= 5000;
 
 	private static final String COMPLETION_ERROR_MESSAGE_KEY= "ContentAssistant.error_computing_completion"; //$NON-NLS-1$
 	private static final String CONTEXT_ERROR_MESSAGE_KEY= "ContentAssistant.error_computing_context"; //$NON-NLS-1$
@@ -908,7 +913,7 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 	private boolean fIsAutoInserting= false;
 	private int fProposalPopupOrientation= PROPOSAL_OVERLAY;
 	private int fContextInfoPopupOrientation= CONTEXT_INFO_ABOVE;
-	private Map<String, IContentAssistProcessor> fProcessors;
+	private Map<String, Set<IContentAssistProcessor>> fProcessors;
 
 	/**
 	 * The partitioning.
@@ -1042,6 +1047,21 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 	 */
 	private ICompletionProposalSorter fSorter;
 
+	/**
+	 * Tells whether completion proposals are computed outside the UI thread.
+	 *
+	 * @since 3.12
+	 */
+	private final boolean fIsAsynchronous;
+
+	/**
+	 * The time in milliseconds after which the proposals of processors that are still computing
+	 * are ignored, only used if computing asynchronously.
+	 *
+	 * @since 3.12
+	 */
+	private int fCompletionProposalTimeout= DEFAULT_COMPLETION_PROPOSAL_TIMEOUT;
+
 	/**
 	 * Creates a new content assistant. The content assistant is not automatically activated,
 	 * overlays the completion proposals with context information list if necessary, and shows the
@@ -1050,7 +1070,29 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 	 * milliseconds delay. It uses the default partitioning.
 	 */
 	public ContentAssistant() {
+		this(false);
+	}
+
+	/**
+	 * Creates a new content assistant which is configured like one created with
+	 * {@link #ContentAssistant()}.
+	 * <p>
+	 * If <code>asynchronous</code> is <code>true</code>, the completion proposals of all processors
+	 * registered for the content type are computed concurrently outside the UI thread, and the
+	 * proposals of each processor are added to the proposal popup as soon as the processor is done.
+	 * A computation is cancelled when the document changes before it is done, and processors which
+	 * did not finish within the timeout (see {@link #setCompletionProposalTimeout(int)}) are
+	 * ignored. The processors of an asynchronous content assistant must therefore be able to
+	 * compute their proposals in any thread and must not access the widget of the viewer.
+	 * Context information and prefix completion are still computed in the UI thread.
+	 * </p>
+	 *
+	 * @param asynchronous <code>true</code> to compute completion proposals outside the UI thread
+	 * @since 3.12
+	 */
+	public ContentAssistant(boolean asynchronous) {
 		fPartitioning= IDocumentExtension3.DEFAULT_PARTITIONING;
+		fIsAsynchronous= asynchronous;
 	}
 
 	/**
@@ -1070,11 +1112,11 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 	}
 
 	/**
-	 * Registers a given content assist processor for a particular content type. If there is already
-	 * a processor registered for this type, the new processor is registered instead of the old one.
+	 * Registers a given content assist processor for a particular content type. If there are already
+	 * processors registered for this type, the new processor is registered instead of the old ones.
 	 *
 	 * @param processor the content assist processor to register, or <code>null</code> to remove
-	 *        an existing one
+	 *        the existing ones
 	 * @param contentType the content type under which to register
 	 */
 	public void setContentAssistProcessor(IContentAssistProcessor processor, String contentType) {
@@ -1086,8 +1128,58 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 
 		if (processor == null)
 			fProcessors.remove(contentType);
-		else
-			fProcessors.put(contentType, processor);
+		else {
+			Set<IContentAssistProcessor> processors= new LinkedHashSet<>(2);
+			processors.add(processor);
+			fProcessors.put(contentType, processors);
+		}
+	}
+
+	/**
+	 * Registers a given content assist processor for a particular content type in addition to the
+	 * processors already registered for this type. The completion proposals of all processors
+	 * registered for a type are combined, in the order of registration, and the completion proposal
+	 * auto activation characters of all of them are used. Context information is taken from the
+	 * processor registered first.
+	 *
+	 * @param processor the content assist processor to register
+	 * @param contentType the content type under which to register
+	 * @see #ContentAssistant(boolean)
+	 * @since 3.12
+	 */
+	public void addContentAssistProcessor(IContentAssistProcessor processor, String contentType) {
+
+		Assert.isNotNull(processor);
+		Assert.isNotNull(contentType);
+
+		if (fProcessors == null)
+			fProcessors= new HashMap<>();
+
+		Set<IContentAssistProcessor> processors= fProcessors.get(contentType);
+		if (processors == null) {
+			processors= new LinkedHashSet<>(2);
+			fProcessors.put(contentType, processors);
+		}
+		processors.add(processor);
+	}
+
+	/**
+	 * Removes the given content assist processor from all content types it is registered for.
+	 *
+	 * @param processor the content assist processor to remove
+	 * @since 3.12
+	 */
+	public void removeContentAssistProcessor(IContentAssistProcessor processor) {
+		if (fProcessors == null)
+			return;
+
+		Iterator<Set<IContentAssistProcessor>> iter= fProcessors.values().iterator();
+		while (iter.hasNext()) {
+			Set<IContentAssistProcessor> processors= iter.next();
+			processors.remove(processor);
+			if (processors.isEmpty())
+				iter.remove();
+		}
 	}
 
 	/*
@@ -1098,7 +1190,63 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 		if (fProcessors == null)
 			return null;
 
-		return fProcessors.get(contentType);
+		Set<IContentAssistProcessor> processors= fProcessors.get(contentType);
+		if (processors == null)
+			return null;
+
+		return processors.iterator().next();
+	}
+
+	/**
+	 * Returns all content assist processors registered for the given content type.
+	 *
+	 * @param contentType the content type
+	 * @return the processors in the order of registration, may be empty
+	 * @since 3.12
+	 */
+	private IContentAssistProcessor[] getContentAssistProcessors(String contentType) {
+		if (fProcessors == null)
+			return new IContentAssistProcessor[0];
+
+		Set<IContentAssistProcessor> processors= fProcessors.get(contentType);
+		if (processors == null)
+			return new IContentAssistProcessor[0];
+
+		return processors.toArray(new IContentAssistProcessor[processors.size()]);
+	}
+
+	/**
+	 * Sets the time after which the completion proposals of processors which are still computing
+	 * are ignored. Only used by asynchronous content assistants, the default is 5000 milliseconds.
+	 *
+	 * @param timeout the timeout in milliseconds
+	 * @see #ContentAssistant(boolean)
+	 * @since 3.12
+	 */
+	public void setCompletionProposalTimeout(int timeout) {
+		Assert.isLegal(timeout > 0);
+		fCompletionProposalTimeout= timeout;
+	}
+
+	/**
+	 * Returns the time after which the completion proposals of processors which are still
+	 * computing are ignored.
+	 *
+	 * @return the timeout in milliseconds
+	 * @since 3.12
+	 */
+	int getCompletionProposalTimeout() {
+		return fCompletionProposalTimeout;
+	}
+
+	/**
+	 * Returns whether completion proposals are computed outside the UI thread.
+	 *
+	 * @return <code>true</code> if completion proposals are computed asynchronously
+	 * @since 3.12
+	 */
+	boolean isAsynchronous() {
+		return fIsAsynchronous;
 	}
 
 	/**
@@ -1112,16 +1260,17 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 			return ""; //$NON-NLS-1$
 
 		StringBuffer buf= new StringBuffer(5);
-		Iterator<Entry<String, IContentAssistProcessor>> iter= fProcessors.entrySet().iterator();
+		Iterator<Entry<String, Set<IContentAssistProcessor>>> iter= fProcessors.entrySet().iterator();
 		while (iter.hasNext()) {
-			Entry<String, IContentAssistProcessor> entry= iter.next();
-			IContentAssistProcessor processor= entry.getValue();
-			char[] triggers= processor.getCompletionProposalAutoActivationCharacters();
-			if (triggers != null)
-				buf.append(triggers);
-			triggers= processor.getContextInformationAutoActivationCharacters();
-			if (triggers != null)
-				buf.append(triggers);
+			Entry<String, Set<IContentAssistProcessor>> entry= iter.next();
+			for (IContentAssistProcessor processor : entry.getValue()) {
+				char[] triggers= processor.getCompletionProposalAutoActivationCharacters();
+				if (triggers != null)
+					buf.append(triggers);
+				triggers= processor.getContextInformationAutoActivationCharacters();
+				if (triggers != null)
+					buf.append(triggers);
+			}
 		}
 		return buf.toString();
 	}
@@ -1828,6 +1977,17 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 		return fLastErrorMessage;
 	}
 
+	/**
+	 * Sets the error message of the last proposal computation. Used for proposals computed
+	 * asynchronously.
+	 *
+	 * @param errorMessage the error message, or <code>null</code> if there is none
+	 * @since 3.12
+	 */
+	void setErrorMessage(String errorMessage) {
+		fLastErrorMessage= errorMessage;
+	}
+
 	/**
 	 * Returns the content assist processor for the content type of the specified document position.
 	 *
@@ -1876,6 +2036,76 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 		return null;
 	}
 
+	/**
+	 * Returns all content assist processors for the content type of the specified document
+	 * position.
+	 *
+	 * @param viewer the text viewer
+	 * @param offset a offset within the document
+	 * @return the content-assist processors, may be empty
+	 * @since 3.12
+	 */
+	IContentAssistProcessor[] getProcessors(ITextViewer viewer, int offset) {
+		try {
+
+			IDocument document= viewer.getDocument();
+			String type= TextUtilities.getContentType(document, getDocumentPartitioning(), offset, true);
+
+			return getContentAssistProcessors(type);
+
+		} catch (BadLocationException x) {
+		}
+
+		return new IContentAssistProcessor[0];
+	}
+
+	/**
+	 * Returns all content assist processors for the content type of the specified document
+	 * position.
+	 *
+	 * @param contentAssistSubjectControl the content assist subject control
+	 * @param offset a offset within the document
+	 * @return the content-assist processors, may be empty
+	 * @since 3.12
+	 */
+	IContentAssistProcessor[] getProcessors(IContentAssistSubjectControl contentAssistSubjectControl, int offset) {
+		try {
+
+			IDocument document= contentAssistSubjectControl.getDocument();
+			String type;
+			if (document != null)
+				type= TextUtilities.getContentType(document, getDocumentPartitioning(), offset, true);
+			else
+				type= IDocument.DEFAULT_CONTENT_TYPE;
+
+			return getContentAssistProcessors(type);
+
+		} catch (BadLocationException x) {
+		}
+
+		return new IContentAssistProcessor[0];
+	}
+
+	/**
+	 * Returns the combined completion proposal auto activation characters of the given processors.
+	 *
+	 * @param processors the processors
+	 * @return the auto activation characters, or <code>null</code> if there are none
+	 * @since 3.12
+	 */
+	private static char[] getCompletionProposalAutoActivationCharacters(IContentAssistProcessor[] processors) {
+		if (processors.length == 1)
+			return processors[0].getCompletionProposalAutoActivationCharacters();
+
+		StringBuffer buf= new StringBuffer();
+		for (int i= 0; i < processors.length; i++) {
+			char[] triggers= processors[i].getCompletionProposalAutoActivationCharacters();
+			if (triggers != null)
+				buf.append(triggers);
+		}
+		return buf.length() > 0 ? buf.toString().toCharArray() : null;
+	}
+
 	/**
 	 * Returns an array of completion proposals computed based on the specified document position.
 	 * The position is used to determine the appropriate content assist processor to invoke.
@@ -1891,21 +2121,29 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 		fLastErrorMessage= null;
 
 		final ICompletionProposal[][] result= { null };
-
-		final IContentAssistProcessor p= getProcessor(contentAssistSubjectControl, offset);
-		if (p instanceof ISubjectControlContentAssistProcessor) {
-			// Ensure that the assist session ends cleanly even if the processor throws an exception.
-			SafeRunner.run(new ExceptionLoggingSafeRunnable(COMPLETION_ERROR_MESSAGE_KEY) {
-				@Override
-				public void run() throws Exception {
-					result[0]= ((ISubjectControlContentAssistProcessor) p)
-							.computeCompletionProposals(contentAssistSubjectControl, offset);
-					fLastErrorMessage= p.getErrorMessage();
-				}
-			});
+		List<ICompletionProposal> combined= null;
+
+		IContentAssistProcessor[] processors= getProcessors(contentAssistSubjectControl, offset);
+		for (int i= 0; i < processors.length; i++) {
+			final IContentAssistProcessor p= processors[i];
+			if (p instanceof ISubjectControlContentAssistProcessor) {
+				// Ensure that the assist session ends cleanly even if the processor throws an exception.
+				SafeRunner.run(new ExceptionLoggingSafeRunnable(COMPLETION_ERROR_MESSAGE_KEY) {
+					@Override
+					public void run() throws Exception {
+						result[0]= ((ISubjectControlContentAssistProcessor) p)
+								.computeCompletionProposals(contentAssistSubjectControl, offset);
+						String errorMessage= p.getErrorMessage();
+						if (errorMessage != null)
+							fLastErrorMessage= errorMessage;
+					}
+				});
+				combined= combineProposals(combined, result[0], processors.length);
+				result[0]= null;
+			}
 		}
 
-		return result[0];
+		return toArray(combined);
 	}
 
 	/**
@@ -1921,20 +2159,58 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 		fLastErrorMessage= null;
 
 		final ICompletionProposal[][] result= { null };
+		List<ICompletionProposal> combined= null;
 
-		final IContentAssistProcessor p= getProcessor(viewer, offset);
-		if (p != null) {
+		IContentAssistProcessor[] processors= getProcessors(viewer, offset);
+		for (int i= 0; i < processors.length; i++) {
+			final IContentAssistProcessor p= processors[i];
 			// Ensure that the assist session ends cleanly even if the processor throws an exception.
 			SafeRunner.run(new ExceptionLoggingSafeRunnable(COMPLETION_ERROR_MESSAGE_KEY) {
 				@Override
 				public void run() throws Exception {
 					result[0]= p.computeCompletionProposals(viewer, offset);
-					fLastErrorMessage= p.getErrorMessage();
+					String errorMessage= p.getErrorMessage();
+					if (errorMessage != null)
+						fLastErrorMessage= errorMessage;
 				}
 			});
+			combined= combineProposals(combined, result[0], processors.length);
+			result[0]= null;
 		}
 
-		return result[0];
+		return toArray(combined);
+	}
+
+	/**
+	 * Adds the given proposals to the combined proposals of several processors.
+	 *
+	 * @param combined the proposals combined so far, or <code>null</code> if none
+	 * @param proposals the proposals to add, or <code>null</code>
+	 * @param processorCount the number of processors
+	 * @return the combined proposals, or <code>null</code> if none
+	 * @since 3.12
+	 */
+	private static List<ICompletionProposal> combineProposals(List<ICompletionProposal> combined, ICompletionProposal[] proposals, int processorCount) {
+		if (proposals == null)
+			return combined;
+		if (combined == null)
+			combined= new ArrayList<>(proposals.length * processorCount);
+		for (int i= 0; i < proposals.length; i++)
+			combined.add(proposals[i]);
+		return combined;
+	}
+
+	/**
+	 * Returns the given proposals as an array.
+	 *
+	 * @param proposals the proposals, or <code>null</code>
+	 * @return the proposals, or <code>null</code> if <code>proposals</code> is <code>null</code>
+	 * @since 3.12
+	 */
+	private static ICompletionProposal[] toArray(List<ICompletionProposal> proposals) {
+		if (proposals == null)
+			return null;
+		return proposals.toArray(new ICompletionProposal[proposals.size()]);
 	}
 
 	/**
@@ -2076,8 +2352,7 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 	 * @since 3.0
 	 */
 	char[] getCompletionProposalAutoActivationCharacters(IContentAssistSubjectControl contentAssistSubjectControl, int offset) {
-		IContentAssistProcessor p= getProcessor(contentAssistSubjectControl, offset);
-		return p != null ? p.getCompletionProposalAutoActivationCharacters() : null;
+		return getCompletionProposalAutoActivationCharacters(getProcessors(contentAssistSubjectControl, offset));
 	}
 
 	/**
@@ -2091,8 +2366,7 @@ public class ContentAssistant implements IContentAssistant, IContentAssistantExt
 	 * @see IContentAssistProcessor#getCompletionProposalAutoActivationCharacters()
 	 */
 	char[] getCompletionProposalAutoActivationCharacters(ITextViewer viewer, int offset) {
-		IContentAssistProcessor p= getProcessor(viewer, offset);
-		return p != null ? p.getCompletionProposalAutoActivationCharacters() : null;
+		return getCompletionProposalAutoActivationCharacters(getProcessors(viewer, offset));
 	}
 
 	/**
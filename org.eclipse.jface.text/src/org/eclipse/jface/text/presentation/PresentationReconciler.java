@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,13 +11,24 @@
 
 package org.eclipse.jface.text.presentation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
+import org.eclipse.swt.SWTException;
 import org.eclipse.swt.custom.StyleRange;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
@@ -26,6 +37,8 @@ import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.DocumentPartitioningChangedEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentExtension3;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentExtension5;
 import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IDocumentPartitioningListener;
 import org.eclipse.jface.text.IDocumentPartitioningListenerExtension;
@@ -37,6 +50,7 @@ import org.eclipse.jface.text.ITextListener;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension5;
 import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextEvent;
 import org.eclipse.jface.text.TextPresentation;
@@ -48,11 +62,20 @@ import org.eclipse.jface.text.TypedPosition;
 /**
  * Standard implementation of <code>IPresentationReconciler</code>. This
  * implementation assumes that the tasks performed by its presentation damagers
- * and repairers are lightweight and of low cost. This presentation reconciler
+ * and repairers are lightweight and of low cost. By default, this presentation reconciler
  * runs in the UI thread and always repairs the complete damage caused by a
  * document change rather than just the portion overlapping with the viewer's
  * viewport.
  * <p>
+ * Optionally, the reconciler repairs large damages asynchronously (see
+ * {@link #setAsynchronousRepair(boolean)}). It then repairs the portion of the
+ * damage that overlaps with the viewer's viewport right away and the rest of it
+ * in the background on an immutable snapshot of the document (see
+ * {@link IDocumentExtension5#getSnapshot()}). The background repair hands its
+ * results to the viewer in batches of limited size and drops them if the
+ * document has been changed in the meantime.
+ * </p>
+ * <p>
  * Usually, clients instantiate this class and configure it before using it.
  * </p>
  */
@@ -61,6 +84,178 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 	/** Prefix of the name of the position category for tracking damage regions. */
 	protected final static String TRACKED_PARTITION= "__reconciler_tracked_partition"; //$NON-NLS-1$
 
+	/**
+	 * Prefix of the name of the position category for damage regions which are still to be
+	 * repaired in the background.
+	 *
+	 * @since 3.12
+	 */
+	private final static String PENDING_DAMAGE= "__reconciler_pending_damage"; //$NON-NLS-1$
+
+	/**
+	 * The maximal number of characters repaired in one batch in the background. Damages of at
+	 * most this length are always repaired right away.
+	 *
+	 * @since 3.12
+	 */
+	private static final int BATCH_SIZE= 16 * 1024;
+
+	/**
+	 * Repairs the pending damage of a document on a snapshot of the document and applies the
+	 * repair descriptions in batches in the UI thread.
+	 *
+	 * @since 3.12
+	 */
+	private class BackgroundRepair extends Job {
+
+		/** The document whose presentation is repaired. */
+		private final IDocument fDocument;
+		/** The display of the viewer. */
+		private final Display fDisplay;
+		/**
+		 * The snapshot of the document, <code>null</code> until the job has started. Set in the UI
+		 * thread when the job starts.
+		 */
+		private IDocument fSnapshot;
+		/** The modification stamp of the snapshot. Set in the UI thread when the job starts. */
+		private long fModificationStamp;
+		/** The regions to repair, in the order of repair. Set in the UI thread when the job starts. */
+		private IRegion[] fRegions;
+
+		/**
+		 * Creates a new background repair. The snapshot of the document and the damage to repair
+		 * are taken when the job starts, so that the document changes until then are included.
+		 *
+		 * @param document the document whose presentation is repaired
+		 * @param display the display of the viewer
+		 */
+		BackgroundRepair(IDocument document, Display display) {
+			super(PresentationReconciler.this.getClass().getName());
+			fDocument= document;
+			fDisplay= display;
+			setSystem(true);
+			setPriority(Job.SHORT);
+		}
+
+		@Override
+		public boolean belongsTo(Object family) {
+			return family == PresentationReconciler.this;
+		}
+
+		/**
+		 * Tells whether the job has taken its snapshot. Must be called in the UI thread.
+		 *
+		 * @return <code>true</code> if the job has started
+		 */
+		boolean hasStarted() {
+			return fSnapshot != null;
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			if (monitor.isCanceled() || !start())
+				return Status.CANCEL_STATUS;
+
+			try {
+				for (int i= 0; i < fRegions.length; i++) {
+					int offset= fRegions[i].getOffset();
+					int end= offset + fRegions[i].getLength();
+					while (offset < end) {
+						if (monitor.isCanceled())
+							return Status.CANCEL_STATUS;
+
+						int batchEnd= getBatchEnd(offset, end);
+						IRegion batch= new Region(offset, batchEnd - offset);
+						TextPresentation presentation;
+						synchronized (fRepairLock) {
+							try {
+								setDocumentToRepairers(fSnapshot);
+								presentation= createPresentation(batch, fSnapshot);
+							} finally {
+								setDocumentToRepairers(fRepairDocument);
+							}
+						}
+						if (presentation == null || !apply(batch, presentation))
+							return Status.CANCEL_STATUS;
+						offset= batchEnd;
+					}
+				}
+			} catch (BadLocationException x) {
+				// cannot happen, the snapshot does not change
+				return Status.CANCEL_STATUS;
+			}
+			return Status.OK_STATUS;
+		}
+
+		/**
+		 * Returns the end of the batch that starts at the given offset. Batches end at line ends
+		 * so that repairers do not start scanning in the middle of a line.
+		 *
+		 * @param offset the start of the batch
+		 * @param end the end of the region to repair
+		 * @return the end of the batch
+		 * @throws BadLocationException if the offsets are not valid in the snapshot
+		 */
+		private int getBatchEnd(int offset, int end) throws BadLocationException {
+			if (end - offset <= BATCH_SIZE)
+				return end;
+			IRegion line= fSnapshot.getLineInformationOfOffset(offset + BATCH_SIZE);
+			int lineEnd= line.getOffset() + line.getLength();
+			if (lineEnd < end) {
+				String delimiter= fSnapshot.getLineDelimiter(fSnapshot.getLineOfOffset(lineEnd));
+				lineEnd+= delimiter == null ? 0 : delimiter.length();
+			}
+			return Math.min(lineEnd, end);
+		}
+
+		/**
+		 * Takes the snapshot of the document and the damage to repair in the UI thread.
+		 *
+		 * @return <code>true</code> if there is damage to repair, <code>false</code> if the
+		 *         background repair is obsolete
+		 */
+		private boolean start() {
+			final boolean[] started= new boolean[1];
+			try {
+				fDisplay.syncExec(new Runnable() {
+					@Override
+					public void run() {
+						started[0]= startBackgroundRepair(BackgroundRepair.this);
+					}
+				});
+			} catch (SWTException x) {
+				// the display has been disposed
+				return false;
+			}
+			return started[0];
+		}
+
+		/**
+		 * Applies the given repair description in the UI thread and waits until it has been
+		 * applied.
+		 *
+		 * @param batch the repaired region
+		 * @param presentation the repair description
+		 * @return <code>true</code> if the repair description has been applied,
+		 *         <code>false</code> if it is obsolete
+		 */
+		private boolean apply(final IRegion batch, final TextPresentation presentation) {
+			final boolean[] applied= new boolean[1];
+			try {
+				fDisplay.syncExec(new Runnable() {
+					@Override
+					public void run() {
+						applied[0]= applyBackgroundRepair(BackgroundRepair.this, batch, presentation);
+					}
+				});
+			} catch (SWTException x) {
+				// the display has been disposed
+				return false;
+			}
+			return applied[0];
+		}
+	}
+
 
 	/**
 	 * Internal listener class.
@@ -89,6 +284,10 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 					oldDocument.removePositionUpdater(fPositionUpdater);
 					oldDocument.removePositionCategory(fPositionCategory);
 
+					cancelBackgroundRepair();
+					oldDocument.removePositionUpdater(fPendingPositionUpdater);
+					oldDocument.removePositionCategory(fPendingPositionCategory);
+
 				} catch (BadPositionCategoryException x) {
 					// should not happened for former input documents;
 				}
@@ -108,13 +307,18 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 
 				newDocument.addPositionCategory(fPositionCategory);
 				newDocument.addPositionUpdater(fPositionUpdater);
+				newDocument.addPositionCategory(fPendingPositionCategory);
+				newDocument.addPositionUpdater(fPendingPositionUpdater);
 
 				newDocument.addDocumentPartitioningListener(this);
 				newDocument.addDocumentListener(this);
 				fViewer.addTextListener(this);
 
-				setDocumentToDamagers(newDocument);
-				setDocumentToRepairers(newDocument);
+				synchronized (fRepairLock) {
+					fRepairDocument= newDocument;
+					setDocumentToDamagers(newDocument);
+					setDocumentToRepairers(newDocument);
+				}
 				processDamage(new Region(0, newDocument.getLength()), newDocument);
 			}
 		}
@@ -196,7 +400,9 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 							try {
 								String text= document.get(region.getOffset(), region.getLength());
 								DocumentEvent de= new DocumentEvent(document, region.getOffset(), region.getLength(), text);
-								damage= getDamage(de, false);
+								synchronized (fRepairLock) {
+									damage= getDamage(de, false);
+								}
 							} catch (BadLocationException x) {
 							}
 						}
@@ -205,7 +411,9 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 		 	} else  {
 		 		DocumentEvent de= e.getDocumentEvent();
 		 		document= de.getDocument();
-		 		damage= getDamage(de, true);
+				synchronized (fRepairLock) {
+					damage= getDamage(de, true);
+				}
 		 	}
 
 			if (damage != null && document != null)
@@ -262,6 +470,37 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 	 * @since 3.0
 	 */
 	private String fPartitioning;
+	/**
+	 * Tells whether large damages are repaired in the background.
+	 * @since 3.12
+	 */
+	private boolean fAsynchronousRepair= false;
+	/**
+	 * The lock held while the damagers and repairers are in use.
+	 * @since 3.12
+	 */
+	private final Object fRepairLock= new Object();
+	/**
+	 * The document the damagers and repairers work on unless a background repair uses them,
+	 * guarded by {@link #fRepairLock}.
+	 * @since 3.12
+	 */
+	private IDocument fRepairDocument;
+	/**
+	 * The name of the position category for damage which is still to be repaired in the background.
+	 * @since 3.12
+	 */
+	private String fPendingPositionCategory;
+	/**
+	 * The position updater for the pending damage.
+	 * @since 3.12
+	 */
+	private IPositionUpdater fPendingPositionUpdater;
+	/**
+	 * The current background repair, <code>null</code> if none. Only accessed in the UI thread.
+	 * @since 3.12
+	 */
+	private BackgroundRepair fBackgroundRepair;
 
 	/**
 	 * Creates a new presentation reconciler. There are no damagers or repairers
@@ -273,6 +512,8 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 		fPartitioning= IDocumentExtension3.DEFAULT_PARTITIONING;
 		fPositionCategory= TRACKED_PARTITION + hashCode();
 		fPositionUpdater= new DefaultPositionUpdater(fPositionCategory);
+		fPendingPositionCategory= PENDING_DAMAGE + hashCode();
+		fPendingPositionUpdater= new DefaultPositionUpdater(fPendingPositionCategory);
 	}
 
 	/**
@@ -295,6 +536,32 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 		return fPartitioning;
 	}
 
+	/**
+	 * Sets whether this presentation reconciler repairs large damages asynchronously. If enabled,
+	 * the part of a large damage that is visible in the viewer is repaired right away and the rest
+	 * of it in a background job, on a snapshot of the document. The background job passes its
+	 * results to the viewer in batches of limited size, starting with the text behind the top of
+	 * the viewport, and discards them if the document has been changed in the meantime. Damage
+	 * that has not been repaired yet is tracked across document changes and repaired by the next
+	 * background job.
+	 * <p>
+	 * In this mode, the repairers and the {@link #createPresentation(IRegion, IDocument)} method
+	 * are also called from the background job, with the snapshot as document. Calls of the
+	 * damagers and repairers are serialized, but repairers must not access the UI. Documents
+	 * that do not provide snapshots are always repaired synchronously.
+	 * </p>
+	 * <p>
+	 * This method must be called before the reconciler is installed. The default is
+	 * <code>false</code>.
+	 * </p>
+	 *
+	 * @param asynchronous <code>true</code> to repair large damages asynchronously
+	 * @since 3.12
+	 */
+	public void setAsynchronousRepair(boolean asynchronous) {
+		fAsynchronousRepair= asynchronous;
+	}
+
 	/**
 	 * Registers the given presentation damager for a particular content type.
 	 * If there is already a damager registered for this type, the old damager
@@ -352,6 +619,7 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 	@Override
 	public void uninstall() {
 		fViewer.removeTextInputListener(fInternalListener);
+		cancelBackgroundRepair();
 
 		// Ensure we uninstall all listeners
 		fInternalListener.inputDocumentAboutToBeChanged(fViewer.getDocument(), null);
@@ -544,12 +812,257 @@ public class PresentationReconciler implements IPresentationReconciler, IPresent
 	 */
 	private void processDamage(IRegion damage, IDocument document) {
 		if (damage != null && damage.getLength() > 0) {
-			TextPresentation p= createPresentation(damage, document);
+			if (fAsynchronousRepair && damage.getLength() > BATCH_SIZE && canRepairInBackground(document)) {
+				processDamageInBackground(damage, document);
+				return;
+			}
+			TextPresentation p;
+			synchronized (fRepairLock) {
+				p= createPresentation(damage, document);
+			}
+			if (p != null)
+				applyTextRegionCollection(p);
+		}
+
+		// the document has changed, restart the repair of the pending damage
+		if (fBackgroundRepair != null && fBackgroundRepair.hasStarted() && fBackgroundRepair.fModificationStamp != ((IDocumentExtension4) document).getModificationStamp())
+			scheduleBackgroundRepair(document);
+	}
+
+	/**
+	 * Tells whether the damage of the given document can be repaired in the background.
+	 *
+	 * @param document the document
+	 * @return <code>true</code> if the document provides snapshots and the viewer has a widget
+	 * @since 3.12
+	 */
+	private boolean canRepairInBackground(IDocument document) {
+		if (!(document instanceof IDocumentExtension5) || !(document instanceof IDocumentExtension4) || fRepairers == null || fRepairers.isEmpty())
+			return false;
+		StyledText widget= fViewer.getTextWidget();
+		return widget != null && !widget.isDisposed();
+	}
+
+	/**
+	 * Repairs the part of the given damage that is visible in the viewer and schedules the repair
+	 * of the rest in the background.
+	 *
+	 * @param damage the damage to be repaired
+	 * @param document the document whose presentation must be repaired
+	 * @since 3.12
+	 */
+	private void processDamageInBackground(IRegion damage, IDocument document) {
+		int damageEnd= damage.getOffset() + damage.getLength();
+		int visibleStart= Math.max(damage.getOffset(), fViewer.getTopIndexStartOffset());
+		int visibleEnd= Math.min(damageEnd, fViewer.getBottomIndexEndOffset());
+		if (visibleEnd - visibleStart > BATCH_SIZE)
+			visibleEnd= visibleStart + BATCH_SIZE;
+
+		if (visibleStart < visibleEnd) {
+			TextPresentation p;
+			synchronized (fRepairLock) {
+				p= createPresentation(new Region(visibleStart, visibleEnd - visibleStart), document);
+			}
 			if (p != null)
 				applyTextRegionCollection(p);
+			addPendingDamage(document, damage.getOffset(), visibleStart);
+			addPendingDamage(document, visibleEnd, damageEnd);
+		} else {
+			addPendingDamage(document, damage.getOffset(), damageEnd);
+		}
+		scheduleBackgroundRepair(document);
+	}
+
+	/**
+	 * Adds the given range to the damage which is still to be repaired in the background. Pending
+	 * damage that overlaps with or touches the range is merged with it.
+	 *
+	 * @param document the document
+	 * @param start the start of the range
+	 * @param end the end of the range
+	 * @since 3.12
+	 */
+	private void addPendingDamage(IDocument document, int start, int end) {
+		if (start >= end)
+			return;
+		try {
+			Position[] pending= document.getPositions(fPendingPositionCategory);
+			for (int i= 0; i < pending.length; i++) {
+				Position position= pending[i];
+				int positionEnd= position.getOffset() + position.getLength();
+				if (position.isDeleted() || position.getOffset() <= end && start <= positionEnd) {
+					if (!position.isDeleted()) {
+						start= Math.min(start, position.getOffset());
+						end= Math.max(end, positionEnd);
+					}
+					document.removePosition(fPendingPositionCategory, position);
+				}
+			}
+			document.addPosition(fPendingPositionCategory, new Position(start, end - start));
+		} catch (BadPositionCategoryException x) {
+			// should not happen on input documents
+		} catch (BadLocationException x) {
+			// cannot happen, the range has been computed on the document
+		}
+	}
+
+	/**
+	 * Removes the given range from the damage which is still to be repaired in the background.
+	 *
+	 * @param document the document
+	 * @param start the start of the range
+	 * @param end the end of the range
+	 * @since 3.12
+	 */
+	private void removePendingDamage(IDocument document, int start, int end) {
+		try {
+			Position[] pending= document.getPositions(fPendingPositionCategory);
+			for (int i= 0; i < pending.length; i++) {
+				Position position= pending[i];
+				int positionEnd= position.getOffset() + position.getLength();
+				if (position.isDeleted() || position.getOffset() < end && start < positionEnd) {
+					document.removePosition(fPendingPositionCategory, position);
+					if (!position.isDeleted()) {
+						if (position.getOffset() < start)
+							document.addPosition(fPendingPositionCategory, new Position(position.getOffset(), start - position.getOffset()));
+						if (end < positionEnd)
+							document.addPosition(fPendingPositionCategory, new Position(end, positionEnd - end));
+					}
+				}
+			}
+		} catch (BadPositionCategoryException x) {
+			// should not happen on input documents
+		} catch (BadLocationException x) {
+			// cannot happen, the positions are valid
 		}
 	}
 
+	/**
+	 * Schedules the repair of the pending damage of the given document in the background. A
+	 * background repair that has not started yet is kept, since it takes the snapshot of the
+	 * document and the pending damage only when it starts. A background repair that works on an
+	 * older snapshot is cancelled.
+	 *
+	 * @param document the document
+	 * @since 3.12
+	 */
+	private void scheduleBackgroundRepair(IDocument document) {
+		if (fBackgroundRepair != null) {
+			if (!fBackgroundRepair.hasStarted())
+				return;
+			cancelBackgroundRepair();
+		}
+
+		fBackgroundRepair= new BackgroundRepair(document, fViewer.getTextWidget().getDisplay());
+		fBackgroundRepair.schedule();
+	}
+
+	/**
+	 * Starts the given background repair on a snapshot of its document. The damage behind the top
+	 * of the viewport is repaired first, the damage before it afterwards, starting with the damage
+	 * closest to the viewport. Called in the UI thread.
+	 *
+	 * @param repair the background repair
+	 * @return <code>true</code> if the repair has been started, <code>false</code> if it is
+	 *         obsolete or there is no damage to repair
+	 * @since 3.12
+	 */
+	private boolean startBackgroundRepair(BackgroundRepair repair) {
+		if (repair != fBackgroundRepair)
+			return false;
+
+		StyledText widget= fViewer.getTextWidget();
+		IDocument document= fViewer.getDocument();
+		if (widget == null || widget.isDisposed() || document != repair.fDocument) {
+			fBackgroundRepair= null;
+			return false;
+		}
+
+		Position[] pending;
+		try {
+			pending= document.getPositions(fPendingPositionCategory);
+		} catch (BadPositionCategoryException x) {
+			// should not happen on input documents
+			fBackgroundRepair= null;
+			return false;
+		}
+		List<IRegion> regions= new ArrayList<>(pending.length);
+		for (int i= 0; i < pending.length; i++) {
+			if (!pending[i].isDeleted() && pending[i].getLength() > 0)
+				regions.add(new Region(pending[i].getOffset(), pending[i].getLength()));
+		}
+		if (regions.isEmpty()) {
+			fBackgroundRepair= null;
+			return false;
+		}
+
+		final int top= fViewer.getTopIndexStartOffset();
+		IRegion[] ordered= regions.toArray(new IRegion[regions.size()]);
+		Arrays.sort(ordered, new Comparator<IRegion>() {
+			@Override
+			public int compare(IRegion r1, IRegion r2) {
+				boolean below1= r1.getOffset() + r1.getLength() > top;
+				boolean below2= r2.getOffset() + r2.getLength() > top;
+				if (below1 != below2)
+					return below1 ? -1 : 1;
+				return below1 ? Integer.compare(r1.getOffset(), r2.getOffset()) : Integer.compare(r2.getOffset(), r1.getOffset());
+			}
+		});
+
+		repair.fRegions= ordered;
+		repair.fSnapshot= ((IDocumentExtension5) document).getSnapshot();
+		repair.fModificationStamp= ((IDocumentExtension4) repair.fSnapshot).getModificationStamp();
+		return true;
+	}
+
+	/**
+	 * Cancels the current background repair, if any. The pending damage stays.
+	 *
+	 * @since 3.12
+	 */
+	private void cancelBackgroundRepair() {
+		if (fBackgroundRepair != null) {
+			fBackgroundRepair.cancel();
+			fBackgroundRepair= null;
+		}
+	}
+
+	/**
+	 * Applies a repair description which has been computed in the background. Called in the UI
+	 * thread.
+	 *
+	 * @param repair the background repair
+	 * @param batch the repaired region
+	 * @param presentation the repair description
+	 * @return <code>true</code> if the description has been applied, <code>false</code> if the
+	 *         background repair is obsolete
+	 * @since 3.12
+	 */
+	private boolean applyBackgroundRepair(BackgroundRepair repair, IRegion batch, TextPresentation presentation) {
+		if (repair != fBackgroundRepair)
+			return false;
+
+		StyledText widget= fViewer.getTextWidget();
+		IDocument document= fViewer.getDocument();
+		if (widget == null || widget.isDisposed() || document != repair.fDocument) {
+			cancelBackgroundRepair();
+			return false;
+		}
+
+		if (((IDocumentExtension4) document).getModificationStamp() != repair.fModificationStamp) {
+			// the result is outdated, start over with the current content
+			if (fInternalListener.fCachedRedrawState)
+				scheduleBackgroundRepair(document);
+			else
+				cancelBackgroundRepair();
+			return false;
+		}
+
+		removePendingDamage(document, batch.getOffset(), batch.getOffset() + batch.getLength());
+		applyTextRegionCollection(presentation);
+		return true;
+	}
+
 	/**
 	 * Applies the given text presentation to the text viewer the presentation
 	 * reconciler is installed on.
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,11 @@
  *******************************************************************************/
 package org.eclipse.jface.text.reconciler;
 
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.FocusAdapter;
+import org.eclipse.swt.events.FocusEvent;
+import org.eclipse.swt.events.FocusListener;
+
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -36,6 +41,11 @@ import org.eclipse.jface.text.ITextViewer;
  * It is the clients responsibility to stop a reconciler using its {@link #uninstall()}
  * method. Unstopped reconcilers do not free their resources.
  * <p>
+ * By default, each reconciler runs its background activity in a thread of its own.
+ * Reconcilers can instead share a small set of threads with other reconcilers (see
+ * {@link #setUseSharedExecutor(boolean)}).
+ * </p>
+ * <p>
  * It is subclass responsibility to specify how dirty regions are processed.
  * </p>
  *
@@ -47,10 +57,68 @@ import org.eclipse.jface.text.ITextViewer;
 abstract public class AbstractReconciler implements IReconciler {
 
 
+	/**
+	 * The background activity of a reconciler.
+	 *
+	 * @since 3.12
+	 */
+	interface BackgroundActivity {
+
+		/**
+		 * Starts the background activity.
+		 */
+		void start();
+
+		/**
+		 * Returns whether the background activity has been started and not yet been canceled or
+		 * terminated.
+		 *
+		 * @return <code>true</code> if the activity is alive
+		 */
+		boolean isAlive();
+
+		/**
+		 * Returns whether a reconciling strategy is active right now.
+		 *
+		 * @return <code>true</code> if a activity is active
+		 */
+		boolean isActive();
+
+		/**
+		 * Returns whether some changes need to be processed.
+		 *
+		 * @return <code>true</code> if changes wait to be processed
+		 */
+		boolean isDirty();
+
+		/**
+		 * Returns whether the calling thread runs this background activity.
+		 *
+		 * @return <code>true</code> if called from this background activity
+		 */
+		boolean isRunningInCurrentThread();
+
+		/**
+		 * Cancels the background activity.
+		 */
+		void cancel();
+
+		/**
+		 * Suspends the caller of this method until this background activity has
+		 * emptied the dirty region queue.
+		 */
+		void suspendCallerWhileDirty();
+
+		/**
+		 * Resets the background activity as the text viewer has been changed.
+		 */
+		void reset();
+	}
+
 	/**
 	 * Background thread for the reconciling activity.
 	 */
-	class BackgroundThread extends Thread {
+	class BackgroundThread extends Thread implements BackgroundActivity {
 
 		/** Has the reconciler been canceled. */
 		private boolean fCanceled= false;
@@ -78,6 +146,7 @@ abstract public class AbstractReconciler implements IReconciler {
 		 *
 		 * @return <code>true</code> if a activity is active
 		 */
+		@Override
 		public boolean isActive() {
 			return fIsActive;
 		}
@@ -88,13 +157,20 @@ abstract public class AbstractReconciler implements IReconciler {
 		 * @return <code>true</code> if changes wait to be processed
 		 * @since 3.0
 		 */
+		@Override
 		public synchronized boolean isDirty() {
 			return fIsDirty;
 		}
 
+		@Override
+		public boolean isRunningInCurrentThread() {
+			return Thread.currentThread() == this;
+		}
+
 		/**
 		 * Cancels the background thread.
 		 */
+		@Override
 		public void cancel() {
 			fCanceled= true;
 			IProgressMonitor pm= fProgressMonitor;
@@ -109,6 +185,7 @@ abstract public class AbstractReconciler implements IReconciler {
 		 * Suspends the caller of this method until this background thread has
 		 * emptied the dirty region queue.
 		 */
+		@Override
 		public void suspendCallerWhileDirty() {
 			boolean isDirty;
 			do {
@@ -127,6 +204,7 @@ abstract public class AbstractReconciler implements IReconciler {
 		/**
 		 * Reset the background thread as the text viewer has been changed,
 		 */
+		@Override
 		public void reset() {
 
 			if (fDelay > 0) {
@@ -220,6 +298,221 @@ abstract public class AbstractReconciler implements IReconciler {
 		}
 	}
 
+	/**
+	 * Background activity run by the shared reconciler executor. Instead of waiting in a thread
+	 * of its own, the activity schedules itself whenever the document changes and processes all
+	 * queued dirty regions once it has become due. The delay adapts to the typing rate and to the
+	 * time the reconciling strategies need, and is longer while another viewer has the focus.
+	 *
+	 * @since 3.12
+	 */
+	class SharedActivity extends ReconcilerExecutor.Task implements BackgroundActivity {
+
+		/** The factor by which the delay is multiplied while another viewer has the focus. */
+		private static final int BACKGROUND_DELAY_FACTOR= 4;
+
+		/** The executor running this activity. */
+		private final ReconcilerExecutor fExecutor;
+		/** Has the activity been started. */
+		private volatile boolean fStarted= false;
+		/** Has the activity been canceled. */
+		private volatile boolean fCanceled= false;
+		/** Has the activity been reset since it has been scheduled. */
+		private boolean fReset= false;
+		/** Some changes need to be processed. */
+		private boolean fIsDirty= false;
+		/** Is a reconciling strategy active. */
+		private volatile boolean fIsActive= false;
+		/** Has {@link AbstractReconciler#initialProcess()} been called. */
+		private boolean fInitialProcessed= false;
+		/** The thread running the activity, <code>null</code> if it is not running. */
+		private volatile Thread fRunningThread;
+		/** The time of the last reset, in milliseconds. */
+		private long fLastReset;
+		/** The smoothed time between resets which followed each other within the delay, in milliseconds. */
+		private long fTypingInterval;
+		/** The smoothed time needed to process a dirty region, in milliseconds. */
+		private long fProcessingTime;
+
+		/**
+		 * Creates a new activity run by the given executor.
+		 *
+		 * @param executor the executor
+		 */
+		SharedActivity(ReconcilerExecutor executor) {
+			fExecutor= executor;
+		}
+
+		@Override
+		public void start() {
+			fStarted= true;
+			fExecutor.schedule(this, fDelay);
+		}
+
+		@Override
+		public boolean isAlive() {
+			return fStarted && !fCanceled;
+		}
+
+		@Override
+		public boolean isActive() {
+			return fIsActive;
+		}
+
+		@Override
+		public synchronized boolean isDirty() {
+			return fIsDirty;
+		}
+
+		@Override
+		public boolean isRunningInCurrentThread() {
+			return Thread.currentThread() == fRunningThread;
+		}
+
+		@Override
+		public void cancel() {
+			fCanceled= true;
+			fExecutor.cancel(this);
+			IProgressMonitor pm= fProgressMonitor;
+			if (pm != null)
+				pm.setCanceled(true);
+			synchronized (fDirtyRegionQueue) {
+				fDirtyRegionQueue.notifyAll();
+			}
+		}
+
+		@Override
+		public void suspendCallerWhileDirty() {
+			// the caller waits, do not wait for further changes
+			if (fStarted && !fCanceled)
+				fExecutor.schedule(this, 0);
+			boolean isDirty;
+			do {
+				synchronized (fDirtyRegionQueue) {
+					isDirty= fDirtyRegionQueue.getSize() > 0 && !fCanceled;
+					if (isDirty) {
+						try {
+							fDirtyRegionQueue.wait();
+						} catch (InterruptedException x) {
+						}
+					}
+				}
+			} while (isDirty);
+		}
+
+		@Override
+		public void reset() {
+			long delay;
+			synchronized (this) {
+				fIsDirty= true;
+				fReset= true;
+				long now= System.currentTimeMillis();
+				long interval= now - fLastReset;
+				fLastReset= now;
+				if (interval < fDelay)
+					fTypingInterval= (fTypingInterval + interval) / 2;
+				delay= getDelay();
+			}
+			if (fStarted && !fCanceled)
+				fExecutor.schedule(this, delay);
+
+			reconcilerReset();
+		}
+
+		/**
+		 * Makes this activity the one which is run first when due.
+		 */
+		void activate() {
+			fExecutor.setActiveTask(this);
+		}
+
+		/**
+		 * Computes the delay after which the activity runs. The configured delay is extended if
+		 * the user types so slowly that the delay might elapse between two keystrokes, and by
+		 * the usual processing time, up to the configured delay, so that expensive reconciling
+		 * waits for longer pauses. The delay is multiplied if another viewer has the focus.
+		 *
+		 * @return the delay in milliseconds
+		 */
+		private synchronized long getDelay() {
+			if (fDelay <= 0)
+				return 0;
+			long delay= Math.max(fDelay, 2 * fTypingInterval);
+			delay+= Math.min(fProcessingTime, fDelay);
+			if (!fExecutor.isActiveTask(this))
+				delay*= BACKGROUND_DELAY_FACTOR;
+			return delay;
+		}
+
+		/**
+		 * Processes the queued dirty regions. Stops as soon as the activity is reset, since it
+		 * has then been scheduled again.
+		 * <p>
+		 * Calls {@link AbstractReconciler#initialProcess()} on the first run.
+		 * </p>
+		 */
+		@Override
+		public void run() {
+			fRunningThread= Thread.currentThread();
+			try {
+				synchronized (this) {
+					fReset= false;
+				}
+
+				if (!fInitialProcessed) {
+					fInitialProcessed= true;
+					if (fCanceled)
+						return;
+					initialProcess();
+				}
+
+				while (!fCanceled && isDirty()) {
+
+					synchronized (this) {
+						if (fReset)
+							return;
+					}
+
+					DirtyRegion r= null;
+					synchronized (fDirtyRegionQueue) {
+						r= fDirtyRegionQueue.removeNextDirtyRegion();
+					}
+
+					fIsActive= true;
+
+					fProgressMonitor.setCanceled(false);
+
+					long start= System.currentTimeMillis();
+					process(r);
+					long time= System.currentTimeMillis() - start;
+
+					boolean reschedule= false;
+					synchronized (fDirtyRegionQueue) {
+						if (0 == fDirtyRegionQueue.getSize()) {
+							synchronized (this) {
+								fProcessingTime= (fProcessingTime + time) / 2;
+								fIsDirty= fProgressMonitor.isCanceled();
+								reschedule= fIsDirty && !fReset;
+							}
+							fDirtyRegionQueue.notifyAll();
+						}
+					}
+
+					fIsActive= false;
+
+					if (reschedule) {
+						// processing has been canceled, reconcile again after the delay
+						fExecutor.schedule(this, getDelay());
+						return;
+					}
+				}
+			} finally {
+				fIsActive= false;
+				fRunningThread= null;
+			}
+		}
+	}
+
 	/**
 	 * Internal document listener and text input listener.
 	 */
@@ -233,7 +526,7 @@ abstract public class AbstractReconciler implements IReconciler {
 		public void documentChanged(DocumentEvent e) {
 
 			if (fThread.isActive() || !fThread.isDirty() && fThread.isAlive()) {
-				if (!fIsAllowedToModifyDocument && Thread.currentThread() == fThread)
+				if (!fIsAllowedToModifyDocument && fThread.isRunningInCurrentThread())
 					throw new UnsupportedOperationException("The reconciler thread is not allowed to modify the document"); //$NON-NLS-1$
 				aboutToBeReconciled();
 			}
@@ -298,7 +591,7 @@ abstract public class AbstractReconciler implements IReconciler {
 	/** Queue to manage the changes applied to the text viewer. */
 	private DirtyRegionQueue fDirtyRegionQueue;
 	/** The background thread. */
-	private BackgroundThread fThread;
+	private BackgroundActivity fThread;
 	/** Internal document and text input listener. */
 	private Listener fListener;
 	/** The background thread delay. */
@@ -312,6 +605,17 @@ abstract public class AbstractReconciler implements IReconciler {
 	 * @since 3.2
 	 */
 	private boolean fIsAllowedToModifyDocument= true;
+	/**
+	 * Tells whether this reconciler runs in the shared reconciler executor.
+	 * @since 3.12
+	 */
+	private boolean fUseSharedExecutor= false;
+	/**
+	 * The listener which gives this reconciler priority while its viewer has the focus,
+	 * <code>null</code> if none.
+	 * @since 3.12
+	 */
+	private FocusListener fFocusListener;
 
 
 	/** The text viewer's document. */
@@ -389,6 +693,26 @@ abstract public class AbstractReconciler implements IReconciler {
 		fIsAllowedToModifyDocument= isAllowedToModify;
 	}
 
+	/**
+	 * Tells the reconciler whether to run its background activity in a small set of threads
+	 * shared with other reconcilers rather than in a thread of its own. Shared reconcilers
+	 * process all queued dirty regions once they have become due, give precedence to the
+	 * reconciler whose viewer had the focus last, and adapt the configured delay to the typing
+	 * rate and the time needed for reconciling. Reconcilers of viewers which do not have the
+	 * focus wait longer.
+	 * <p>
+	 * Reconciling strategies of shared reconcilers should not block for long, since they delay
+	 * other reconcilers. This method must be called before the reconciler is installed.
+	 * The default is <code>false</code>.
+	 * </p>
+	 *
+	 * @param useShared <code>true</code> to run in the shared reconciler executor
+	 * @since 3.12
+	 */
+	public void setUseSharedExecutor(boolean useShared) {
+		fUseSharedExecutor= useShared;
+	}
+
 	/**
 	 * Sets the progress monitor of this reconciler.
 	 *
@@ -447,7 +771,26 @@ abstract public class AbstractReconciler implements IReconciler {
 		synchronized (this) {
 			if (fThread != null)
 				return;
-			fThread= new BackgroundThread(getClass().getName());
+			if (fUseSharedExecutor)
+				fThread= new SharedActivity(ReconcilerExecutor.getDefault());
+			else
+				fThread= new BackgroundThread(getClass().getName());
+		}
+
+		if (fThread instanceof SharedActivity) {
+			final SharedActivity activity= (SharedActivity) fThread;
+			StyledText widget= textViewer.getTextWidget();
+			if (widget != null && !widget.isDisposed()) {
+				fFocusListener= new FocusAdapter() {
+					@Override
+					public void focusGained(FocusEvent e) {
+						activity.activate();
+					}
+				};
+				widget.addFocusListener(fFocusListener);
+				if (widget.isFocusControl())
+					activity.activate();
+			}
 		}
 
 		fDirtyRegionQueue= new DirtyRegionQueue();
@@ -473,6 +816,12 @@ abstract public class AbstractReconciler implements IReconciler {
 		if (fListener != null) {
 
 			fViewer.removeTextInputListener(fListener);
+			if (fFocusListener != null) {
+				StyledText widget= fViewer.getTextWidget();
+				if (widget != null && !widget.isDisposed())
+					widget.removeFocusListener(fFocusListener);
+				fFocusListener= null;
+			}
 			if (fDocument != null) {
 				fListener.inputDocumentAboutToBeChanged(fDocument, null);
 				fListener.inputDocumentChanged(fDocument, null);
@@ -481,7 +830,7 @@ abstract public class AbstractReconciler implements IReconciler {
 
             synchronized (this) {
                 // http://dev.eclipse.org/bugs/show_bug.cgi?id=19135
-    			BackgroundThread bt= fThread;
+    			BackgroundActivity bt= fThread;
     			fThread= null;
     			bt.cancel();
             }
@@ -589,6 +938,7 @@ abstract public class AbstractReconciler implements IReconciler {
 	 * @since 3.4
 	 */
 	protected boolean isRunningInReconcilerThread() {
-		return Thread.currentThread() == fThread;
+		BackgroundActivity thread= fThread;
+		return thread != null && thread.isRunningInCurrentThread();
 	}
 }
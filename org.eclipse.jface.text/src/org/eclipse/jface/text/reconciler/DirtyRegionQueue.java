@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,7 +17,9 @@ import java.util.List;
 /**
  * Queue used by {@link org.eclipse.jface.text.reconciler.AbstractReconciler} to manage
  * dirty regions. When a dirty region is inserted into the queue, the queue tries
- * to fold it into the neighboring dirty region.
+ * to fold it into the neighboring dirty region: insertions into or next to the
+ * previously inserted text, removals next to the previously removed text, and removals
+ * of previously inserted text are folded into the previous dirty region.
  *
  * @see org.eclipse.jface.text.reconciler.AbstractReconciler
  * @see org.eclipse.jface.text.reconciler.DirtyRegion
@@ -58,11 +60,50 @@ class DirtyRegionQueue {
 					}
 				}
 
+		if (!wasMerged && lastDR != null) {
+			DirtyRegion merged= merge(lastDR, dr);
+			if (merged != null) {
+				fDirtyRegions.set(fDirtyRegions.size() - 1, merged);
+				wasMerged= true;
+			}
+		}
+
 		if (!wasMerged)
 			// Don't merge- just add the new one onto the queue.
 			fDirtyRegions.add(dr);
 	}
 
+	/**
+	 * Folds a dirty region into the dirty region that directly precedes it, treating both
+	 * as intervals of the document.
+	 *
+	 * @param last the previous dirty region
+	 * @param dr the new dirty region
+	 * @return the folded dirty region, or <code>null</code> if the regions cannot be folded
+	 * @since 3.12
+	 */
+	private static DirtyRegion merge(DirtyRegion last, DirtyRegion dr) {
+		int lastEnd= last.getOffset() + last.getLength();
+		int offset= dr.getOffset() - last.getOffset();
+		if (last.getType() == DirtyRegion.INSERT && last.getText() != null && last.getText().length() == last.getLength()) {
+			String text= last.getText();
+			if (dr.getType() == DirtyRegion.INSERT && dr.getText() != null && 0 <= offset && dr.getOffset() <= lastEnd) {
+				// inserted into the inserted text
+				text= text.substring(0, offset) + dr.getText() + text.substring(offset);
+				return new DirtyRegion(last.getOffset(), last.getLength() + dr.getLength(), DirtyRegion.INSERT, text);
+			}
+			if (dr.getType() == DirtyRegion.REMOVE && 0 <= offset && dr.getOffset() + dr.getLength() <= lastEnd) {
+				// removed from the inserted text
+				text= text.substring(0, offset) + text.substring(offset + dr.getLength());
+				return new DirtyRegion(last.getOffset(), last.getLength() - dr.getLength(), DirtyRegion.INSERT, text);
+			}
+		} else if (last.getType() == DirtyRegion.REMOVE && dr.getType() == DirtyRegion.REMOVE && offset == 0) {
+			// removed behind the removed text
+			return new DirtyRegion(last.getOffset(), last.getLength() + dr.getLength(), DirtyRegion.REMOVE, null);
+		}
+		return null;
+	}
+
 	/**
 	 * Returns the last dirty region that was added to the queue.
 	 *
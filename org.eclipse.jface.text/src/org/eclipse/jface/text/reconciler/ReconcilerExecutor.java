@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.reconciler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.ILog;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+
+
+/**
+ * Runs the background activities of reconcilers with a small, bounded set of threads shared by
+ * all reconcilers which use it (see {@link AbstractReconciler#setUseSharedExecutor(boolean)}).
+ * <p>
+ * Each reconciler schedules a task which becomes due after a delay. Due tasks are run in the
+ * order they became due, except that the task of the reconciler whose viewer had the focus last
+ * is always run first. A task is never run by two threads at the same time; if it is scheduled
+ * while it runs, it is run again after the delay. Threads are created on demand and terminate
+ * when they have been idle for a while. A task that throws an exception is logged and scheduled
+ * as usual afterwards; it does not terminate the thread which ran it.
+ * </p>
+ *
+ * @see AbstractReconciler
+ * @since 3.12
+ */
+final class ReconcilerExecutor {
+
+	/**
+	 * A task run by the executor.
+	 */
+	static abstract class Task implements Runnable {
+
+		/** The time in milliseconds at which the task is due, guarded by the executor. */
+		private long fDueTime;
+		/** Tells whether the task waits in the queue, guarded by the executor. */
+		private boolean fQueued;
+		/** Tells whether the task is running, guarded by the executor. */
+		private boolean fRunning;
+		/** Tells whether the task has been scheduled while running, guarded by the executor. */
+		private boolean fRescheduled;
+	}
+
+	/** The shared executor. */
+	private static final ReconcilerExecutor fgDefault= new ReconcilerExecutor(Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)), 10000);
+
+	/**
+	 * Returns the executor shared by all reconcilers.
+	 *
+	 * @return the shared executor
+	 */
+	static ReconcilerExecutor getDefault() {
+		return fgDefault;
+	}
+
+	/** The maximal number of threads. */
+	private final int fMaxThreads;
+	/** The time in milliseconds after which an idle thread terminates. */
+	private final long fKeepAlive;
+	/** The tasks waiting to become due or to be run. */
+	private final List<Task> fQueue= new ArrayList<>();
+	/** The number of threads. */
+	private int fThreads;
+	/** The number of threads waiting for tasks. */
+	private int fIdleThreads;
+	/** The task that is run first when due, <code>null</code> if none. */
+	private Task fActiveTask;
+
+	/**
+	 * Creates a new executor.
+	 *
+	 * @param maxThreads the maximal number of threads
+	 * @param keepAlive the time in milliseconds after which an idle thread terminates
+	 */
+	ReconcilerExecutor(int maxThreads, long keepAlive) {
+		fMaxThreads= maxThreads;
+		fKeepAlive= keepAlive;
+	}
+
+	/**
+	 * Schedules the given task to be run after the given delay. If the task is already waiting
+	 * for being run, it is postponed to the new due time.
+	 *
+	 * @param task the task
+	 * @param delay the delay in milliseconds
+	 */
+	synchronized void schedule(Task task, long delay) {
+		task.fDueTime= System.currentTimeMillis() + delay;
+		if (task.fRunning) {
+			task.fRescheduled= true;
+			return;
+		}
+		if (!task.fQueued) {
+			task.fQueued= true;
+			fQueue.add(task);
+		}
+		if (fIdleThreads == 0 && fThreads < fMaxThreads) {
+			fThreads++;
+			Thread thread= new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}, getClass().getName());
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Removes the given task from the queue. A running task is not interrupted but not run
+	 * again.
+	 *
+	 * @param task the task
+	 */
+	synchronized void cancel(Task task) {
+		if (task.fQueued) {
+			task.fQueued= false;
+			fQueue.remove(task);
+		}
+		task.fRescheduled= false;
+		if (fActiveTask == task)
+			fActiveTask= null;
+	}
+
+	/**
+	 * Makes the given task the one which is run first when it is due.
+	 *
+	 * @param task the task
+	 */
+	synchronized void setActiveTask(Task task) {
+		fActiveTask= task;
+	}
+
+	/**
+	 * Tells whether the given task is the one which is run first when it is due.
+	 *
+	 * @param task the task
+	 * @return <code>true</code> if the task is the active task
+	 */
+	synchronized boolean isActiveTask(Task task) {
+		return fActiveTask == task;
+	}
+
+	/**
+	 * Runs due tasks until the thread has been idle for the keep alive time. A task that fails is
+	 * logged and does not affect the other tasks.
+	 */
+	private void work() {
+		while (true) {
+			Task task= nextTask();
+			if (task == null)
+				return;
+			try {
+				try {
+					task.run();
+				} catch (RuntimeException | LinkageError | AssertionError x) {
+					log(x);
+				}
+			} catch (RuntimeException | Error x) {
+				// the thread terminates
+				synchronized (this) {
+					fThreads--;
+				}
+				throw x;
+			} finally {
+				synchronized (this) {
+					task.fRunning= false;
+					if (task.fRescheduled) {
+						task.fRescheduled= false;
+						task.fQueued= true;
+						fQueue.add(task);
+						notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Logs the failure of a task.
+	 *
+	 * @param x the exception thrown by the task
+	 */
+	private static void log(Throwable x) {
+		String PLUGIN_ID= "org.eclipse.jface.text"; //$NON-NLS-1$
+		ILog log= Platform.getLog(Platform.getBundle(PLUGIN_ID));
+		log.log(new Status(IStatus.ERROR, PLUGIN_ID, IStatus.OK, "Unexpected error while reconciling", x)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Waits for the next due task and removes it from the queue.
+	 *
+	 * @return the next task, or <code>null</code> if the calling thread should terminate
+	 */
+	private synchronized Task nextTask() {
+		long idleSince= System.currentTimeMillis();
+		while (true) {
+			long now= System.currentTimeMillis();
+			Task next= null;
+			for (int i= 0; i < fQueue.size(); i++) {
+				Task task= fQueue.get(i);
+				if (next == null || task.fDueTime < next.fDueTime)
+					next= task;
+			}
+			if (fActiveTask != null && fActiveTask.fQueued && fActiveTask.fDueTime <= now)
+				next= fActiveTask;
+
+			long wait;
+			if (next != null && next.fDueTime <= now) {
+				next.fQueued= false;
+				next.fRunning= true;
+				fQueue.remove(next);
+				return next;
+			} else if (next != null) {
+				wait= next.fDueTime - now;
+			} else {
+				wait= idleSince + fKeepAlive - now;
+				if (wait <= 0) {
+					fThreads--;
+					return null;
+				}
+			}
+
+			fIdleThreads++;
+			try {
+				wait(wait);
+			} catch (InterruptedException x) {
+				// continue
+			} finally {
+				fIdleThreads--;
+			}
+		}
+	}
+}
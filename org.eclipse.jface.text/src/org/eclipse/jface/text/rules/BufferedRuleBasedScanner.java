@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -102,6 +102,8 @@ public class BufferedRuleBasedScanner extends RuleBasedScanner {
 	@Override
 	public int read() {
 		fColumn= UNDEFINED;
+		if (fOffset >= fReadEnd)
+			fReadEnd= fOffset + 1;
 		if (fOffset >= fRangeEnd) {
 			++ fOffset;
 			return EOF;
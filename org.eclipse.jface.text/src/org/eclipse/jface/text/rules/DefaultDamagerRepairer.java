@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -34,6 +34,12 @@ import org.eclipse.jface.text.presentation.IPresentationRepairer;
  * the document and to determine its damage and new text presentation.
  * The tokens returned by the scanner are supposed to return text attributes
  * as their data.
+ * <p>
+ * If enabled, the damager/repairer remembers the tokens of a
+ * {@link RuleBasedScanner} line by line and only rescans the lines
+ * whose text, or whose tokens at the line start, have changed since they
+ * were last scanned (see {@link #setTokenCacheEnabled(boolean)}).
+ * </p>
  *
  * @see ITokenScanner
  * @since 2.0
@@ -47,6 +53,11 @@ public class DefaultDamagerRepairer implements IPresentationDamager, IPresentati
 	protected ITokenScanner fScanner;
 	/** The default text attribute if non is returned as data by the current token */
 	protected TextAttribute fDefaultTextAttribute;
+	/**
+	 * The tokens of the scanned lines, <code>null</code> if disabled.
+	 * @since 3.12
+	 */
+	private LineTokenCache fTokenCache;
 
 	/**
 	 * Creates a damager/repairer that uses the given scanner and returns the given default
@@ -90,6 +101,30 @@ public class DefaultDamagerRepairer implements IPresentationDamager, IPresentati
 		fDocument= document;
 	}
 
+	/**
+	 * Enables or disables remembering the tokens of scanned lines. If enabled and the scanner is
+	 * a {@link RuleBasedScanner}, lines which have been scanned before are not scanned again as
+	 * long as their text and the state of the scanner at their start are the same. The state is
+	 * the same if a token started at the beginning of the line in both scans. Lines are only
+	 * remembered if their tokens do not depend on more than a few characters behind the line.
+	 * <p>
+	 * The tokens are dropped when the rules or the default return token of the scanner are
+	 * replaced. Clients that change rules in place, for instance the words of a {@link WordRule},
+	 * must disable and enable the cache again. Scanners that override
+	 * {@link RuleBasedScanner#read()} must call the overridden method for lines to be
+	 * remembered.
+	 * </p>
+	 * <p>
+	 * The default is <code>false</code>.
+	 * </p>
+	 *
+	 * @param enable <code>true</code> to remember the tokens of scanned lines
+	 * @since 3.12
+	 */
+	public void setTokenCacheEnabled(boolean enable) {
+		fTokenCache= enable ? new LineTokenCache() : null;
+	}
+
 
 	//---- IPresentationDamager
 
@@ -164,6 +199,11 @@ public class DefaultDamagerRepairer implements IPresentationDamager, IPresentati
 			return;
 		}
 
+		if (fTokenCache != null && fScanner instanceof RuleBasedScanner) {
+			createCachedPresentation(presentation, region, (RuleBasedScanner) fScanner);
+			return;
+		}
+
 		int lastStart= region.getOffset();
 		int length= 0;
 		boolean firstToken= true;
@@ -195,6 +235,139 @@ public class DefaultDamagerRepairer implements IPresentationDamager, IPresentati
 		addRange(presentation, lastStart, length, lastAttribute);
 	}
 
+	/**
+	 * Creates the presentation of the given region like
+	 * {@link #createPresentation(TextPresentation, ITypedRegion)}, but takes the tokens of lines
+	 * from the token cache where possible.
+	 *
+	 * @param presentation the text presentation to be filled by this repairer
+	 * @param region the region to be repaired
+	 * @param scanner the scanner
+	 * @since 3.12
+	 */
+	private void createCachedPresentation(TextPresentation presentation, ITypedRegion region, RuleBasedScanner scanner) {
+		int offset= region.getOffset();
+		int end= offset + region.getLength();
+		scanner.setRange(fDocument, offset, region.getLength());
+		fTokenCache.prepare(scanner, fDocument);
+		boolean scannerAtOffset= true;
+
+		int[] offsets= new int[16];
+		int[] lengths= new int[16];
+		IToken[] tokens= new IToken[16];
+
+		int lastStart= offset;
+		int length= 0;
+		boolean firstToken= true;
+		TextAttribute lastAttribute= getTokenTextAttribute(Token.UNDEFINED);
+
+		try {
+			while (offset < end) {
+				int line= fDocument.getLineOfOffset(offset);
+				int lineOffset= fDocument.getLineOffset(line);
+				int lineEnd= lineOffset + fDocument.getLineLength(line);
+				boolean wholeLine= offset == lineOffset && lineEnd <= end && lineEnd > offset;
+
+				String text= null;
+				LineTokenCache.LineTokens cached= null;
+				if (wholeLine) {
+					text= fDocument.get(offset, lineEnd - offset);
+					cached= fTokenCache.get(text);
+					if (cached != null && !cached.isValid(fDocument, lineEnd, end))
+						cached= null;
+				}
+
+				int count= 0;
+				if (cached != null) {
+					count= cached.size();
+					if (offsets.length < count) {
+						offsets= new int[count];
+						lengths= new int[count];
+						tokens= new IToken[count];
+					}
+					for (int i= 0; i < count; i++) {
+						offsets[i]= offset + cached.getOffset(i);
+						lengths[i]= cached.getLength(i);
+						tokens[i]= cached.getToken(i);
+					}
+					offset= lineEnd;
+					scannerAtOffset= false;
+				} else {
+					if (!scannerAtOffset) {
+						scanner.setRange(fDocument, offset, end - offset);
+						scannerAtOffset= true;
+					}
+					scanner.fReadEnd= offset;
+					int lineStart= offset;
+					while (offset < lineEnd) {
+						IToken token= scanner.nextToken();
+						if (token.isEOF()) {
+							offset= end;
+							break;
+						}
+						if (count == offsets.length) {
+							offsets= grow(offsets);
+							lengths= grow(lengths);
+							IToken[] newTokens= new IToken[2 * count];
+							System.arraycopy(tokens, 0, newTokens, 0, count);
+							tokens= newTokens;
+						}
+						offsets[count]= scanner.getTokenOffset();
+						lengths[count]= scanner.getTokenLength();
+						tokens[count]= token;
+						offset= offsets[count] + lengths[count];
+						count++;
+					}
+
+					int readEnd= scanner.fReadEnd;
+					if (wholeLine && offset == lineEnd && lineEnd <= readEnd && readEnd <= end && readEnd - lineEnd <= LineTokenCache.MAX_LOOK_AHEAD) {
+						int[] lineOffsets= new int[count];
+						for (int i= 0; i < count; i++)
+							lineOffsets[i]= offsets[i] - lineStart;
+						int[] lineLengths= new int[count];
+						System.arraycopy(lengths, 0, lineLengths, 0, count);
+						IToken[] lineTokens= new IToken[count];
+						System.arraycopy(tokens, 0, lineTokens, 0, count);
+						String lookAhead= fDocument.get(lineEnd, readEnd - lineEnd);
+						fTokenCache.put(text, new LineTokenCache.LineTokens(lookAhead, lineOffsets, lineLengths, lineTokens));
+					}
+				}
+
+				for (int i= 0; i < count; i++) {
+					TextAttribute attribute= getTokenTextAttribute(tokens[i]);
+					if (lastAttribute != null && lastAttribute.equals(attribute)) {
+						length += lengths[i];
+						firstToken= false;
+					} else {
+						if (!firstToken)
+							addRange(presentation, lastStart, length, lastAttribute);
+						firstToken= false;
+						lastAttribute= attribute;
+						lastStart= offsets[i];
+						length= lengths[i];
+					}
+				}
+			}
+		} catch (BadLocationException x) {
+			// cannot happen, the region is valid in the document
+		}
+
+		addRange(presentation, lastStart, length, lastAttribute);
+	}
+
+	/**
+	 * Returns a copy of the given array with twice its length.
+	 *
+	 * @param array the array
+	 * @return the grown array
+	 * @since 3.12
+	 */
+	private static int[] grow(int[] array) {
+		int[] result= new int[2 * array.length];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
 	/**
 	 * Returns a text attribute encoded in the given token. If the token's
 	 * data is not <code>null</code> and a text attribute it is assumed that
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -51,6 +51,13 @@ import org.eclipse.jface.text.TypedRegion;
  * {@link #clearPositionCache()} after modifying the partitioner's positions.
  * The cached positions may be accessed through {@link #getPositions()}.
  * </p>
+ * <p>
+ * Since 3.12, a partitioner whose scanner implements {@link IPartitionTokenScannerExtension} can
+ * be told to rescan a changed document in steps of a given size (see
+ * {@link #setCheckpointInterval(int)}). It then stops at the first line behind the change at which
+ * the scanner is outside of partitions as before the change, instead of scanning up to the next
+ * partition that is unchanged.
+ * </p>
  *
  * @see IPartitionTokenScanner
  * @since 3.1
@@ -94,6 +101,11 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 	 * someone requests partition information.
 	 */
 	private Position[] fCachedPositions= null;
+	/**
+	 * The number of characters between the checkpoints at which a rescan can stop, or 0 if the
+	 * rescan only stops at partition boundaries.
+	 */
+	private int fCheckpointInterval= 0;
 	/** Debug option for cache consistency checking. */
 	private static final boolean CHECK_CACHE_CONSISTENCY= "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.jface.text/debug/FastPartitioner/PositionCache"));  //$NON-NLS-1$//$NON-NLS-2$;
 
@@ -111,6 +123,87 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 		fPositionUpdater= new DefaultPositionUpdater(fPositionCategory);
 	}
 
+	/**
+	 * Sets the distance of the checkpoints at which the rescan of a changed document may stop. The
+	 * checkpoints are the beginnings of the lines at or behind the multiples of the interval.
+	 * <p>
+	 * When the document changes, the scanner is resumed where it is resumed without checkpoints
+	 * and stops at the following checkpoints, or behind them if a partition spans a checkpoint.
+	 * Scanning ends at the first of these stops behind the change at which the scanner is outside
+	 * of partitions as before the change. This requires that the scanner implements
+	 * {@link IPartitionTokenScannerExtension} and that all partitions it returns are of legal
+	 * content types. Otherwise the interval is ignored.
+	 * </p>
+	 *
+	 * @param interval the number of characters between checkpoints, or 0 to only stop the rescan
+	 *            at partition boundaries
+	 * @since 3.12
+	 */
+	public void setCheckpointInterval(int interval) {
+		Assert.isLegal(interval >= 0);
+		fCheckpointInterval= interval;
+	}
+
+	/**
+	 * Returns the scanner if it can be used to rescan the document in steps up to checkpoints.
+	 *
+	 * @return the scanner, or <code>null</code> if no checkpoints are used
+	 */
+	private IPartitionTokenScannerExtension getBoundedScanner() {
+		if (fCheckpointInterval > 0 && fScanner instanceof IPartitionTokenScannerExtension)
+			return (IPartitionTokenScannerExtension) fScanner;
+		return null;
+	}
+
+	/**
+	 * Returns the first checkpoint behind the given offset.
+	 *
+	 * @param offset the offset
+	 * @return the beginning of the first line at or behind the next multiple of the checkpoint
+	 *         interval, or the document length
+	 * @throws BadLocationException if the offset is invalid
+	 */
+	private int nextCheckpoint(int offset) throws BadLocationException {
+		int length= fDocument.getLength();
+		long target= ((long) offset / fCheckpointInterval + 1) * fCheckpointInterval;
+		if (target >= length)
+			return length;
+		int line= fDocument.getLineOfOffset((int) target);
+		int checkpoint= fDocument.getLineOffset(line);
+		if (checkpoint < target) {
+			if (line + 1 >= fDocument.getNumberOfLines())
+				return length;
+			checkpoint= fDocument.getLineOffset(line + 1);
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * Returns the position which contains the given offset and does not start at it.
+	 *
+	 * @param positions the positions before the scan, sorted by offset
+	 * @param checkpoint the offset at which the scanner stopped
+	 * @return the position whose partition the offset was in before the change, or
+	 *         <code>null</code> if it was outside of partitions
+	 */
+	private static TypedPosition findSpanningPosition(Position[] positions, int checkpoint) {
+		int low= 0;
+		int high= positions.length;
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			if (positions[mid].offset < checkpoint)
+				low= mid + 1;
+			else
+				high= mid;
+		}
+		while (-- low >= 0) {
+			Position p= positions[low];
+			if (p.length > 0)
+				return p.offset + p.length > checkpoint ? (TypedPosition) p : null;
+		}
+		return null;
+	}
+
 	@Override
 	public String[] getManagingPositionCategories() {
 		return new String[] { fPositionCategory };
@@ -299,6 +392,7 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 			int partitionStart= -1;
 			String contentType= null;
 			int newLength= e.getText() == null ? 0 : e.getText().length();
+			IPartitionTokenScannerExtension boundedScanner= getBoundedScanner();
 
 			int first= fDocument.computeIndexInCategory(fPositionCategory, reparseStart);
 			if (first > 0)	{
@@ -333,13 +427,40 @@ public class FastPartitioner implements IDocumentPartitioner, IDocumentPartition
 			clearPositionCache();
 			category= getPositions();
 
-			fScanner.setPartialRange(fDocument, reparseStart, fDocument.getLength() - reparseStart, contentType, partitionStart);
+			int checkpoint= fDocument.getLength();
+			if (boundedScanner != null) {
+				checkpoint= nextCheckpoint(Math.max(reparseStart, e.getOffset() + newLength));
+				boundedScanner.setBoundedRange(fDocument, reparseStart, checkpoint - reparseStart, contentType, partitionStart);
+			} else
+				fScanner.setPartialRange(fDocument, reparseStart, fDocument.getLength() - reparseStart, contentType, partitionStart);
 
 			int behindLastScannedPosition= reparseStart;
+			int behindLastToken= reparseStart;
 			IToken token= fScanner.nextToken();
 
-			while (!token.isEOF()) {
+			while (!token.isEOF() || checkpoint < fDocument.getLength()) {
+
+				if (token.isEOF()) {
+					// the scanner passed the checkpoint between two partitions, the partition
+					// of the last token may have taken it behind the checkpoint
+					int offset= Math.max(checkpoint, behindLastToken);
+					if (offset >= fDocument.getLength())
+						break;
+					boolean converged= findSpanningPosition(category, offset) == null;
+					while (first < category.length && category[first].offset < offset) {
+						Position p= category[first++];
+						rememberRegion(p.offset, p.length);
+						fDocument.removePosition(fPositionCategory, p);
+					}
+					if (converged)
+						return createRegion();
+					checkpoint= nextCheckpoint(offset);
+					boundedScanner.setBoundedRange(fDocument, offset, checkpoint - offset, IDocument.DEFAULT_CONTENT_TYPE, offset);
+					token= fScanner.nextToken();
+					continue;
+				}
 
+				behindLastToken= fScanner.getTokenOffset() + fScanner.getTokenLength();
 				contentType= getTokenContentType(token);
 
 				if (!isSupportedContentType(contentType)) {
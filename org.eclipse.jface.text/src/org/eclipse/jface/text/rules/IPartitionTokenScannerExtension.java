@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.rules;
+
+import org.eclipse.jface.text.IDocument;
+
+
+/**
+ * Extension interface for {@link org.eclipse.jface.text.rules.IPartitionTokenScanner}.
+ * <p>
+ * Adds the ability to scan a document in pieces that end at the beginning of a line, without
+ * changing the partitions that are found: a partition that starts in a piece is returned as a
+ * whole even if it continues behind the end of the piece. This allows {@link FastPartitioner} to
+ * stop rescanning a changed document as soon as the scanner reaches the end of a piece outside of
+ * partitions at which it was outside of partitions before the change.
+ * </p>
+ * <p>
+ * This requires that the scanner's state between two partitions is fully described by its offset.
+ * </p>
+ *
+ * @see FastPartitioner#setCheckpointInterval(int)
+ * @since 3.12
+ */
+public interface IPartitionTokenScannerExtension {
+
+	/**
+	 * Configures the scanner like
+	 * {@link IPartitionTokenScanner#setPartialRange(IDocument, int, int, String, int)}, except that
+	 * the end of the range does not end the partitions which are scanned. Unless the range ends
+	 * at the end of the document, it must end at the beginning of a line.
+	 * <p>
+	 * A partition that starts in the range and continues behind its end is returned as if the
+	 * range ended at the end of the document. The scanner returns {@link Token#EOF} as soon as it
+	 * has passed the end of the range between two partitions.
+	 * </p>
+	 *
+	 * @param document the document to scan
+	 * @param offset the offset of the document range to scan
+	 * @param length the length of the document range to scan
+	 * @param contentType the content type at the given offset
+	 * @param partitionOffset the offset at which the partition of the given offset starts
+	 */
+	void setBoundedRange(IDocument document, int offset, int length, String contentType, int partitionOffset);
+}
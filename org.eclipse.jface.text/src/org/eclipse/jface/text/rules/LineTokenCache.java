@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.rules;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+
+
+/**
+ * Remembers the tokens a {@link RuleBasedScanner} returned for a line of text.
+ * <p>
+ * A line is only remembered if the scanner started a token at the beginning of the line and
+ * ended a token at the end of the line, including its delimiter. The tokens of such a line only
+ * depend on the text of the line and on the characters the rules looked at behind the line, which
+ * are remembered as well. They are looked up by the text of the line, so that a line keeps its
+ * entry when lines are inserted or removed before it, and so that equal lines share an entry.
+ * </p>
+ * <p>
+ * The cache drops the least recently used entries when it grows beyond twice the number of lines
+ * of the last scanned document, and it is cleared when the rules or the default token of the
+ * scanner are replaced. This class is not thread safe.
+ * </p>
+ *
+ * @since 3.12
+ */
+final class LineTokenCache {
+
+	/** The tokens of a line. */
+	static final class LineTokens {
+
+		/** The text behind the line which the rules have read. */
+		private final String fLookAhead;
+		/** The offsets of the tokens, relative to the start of the line. */
+		private final int[] fOffsets;
+		/** The lengths of the tokens. */
+		private final int[] fLengths;
+		/** The tokens. */
+		private final IToken[] fTokens;
+
+		/**
+		 * Creates the tokens of a line.
+		 *
+		 * @param lookAhead the text behind the line which the rules have read
+		 * @param offsets the offsets of the tokens, relative to the start of the line
+		 * @param lengths the lengths of the tokens
+		 * @param tokens the tokens
+		 */
+		LineTokens(String lookAhead, int[] offsets, int[] lengths, IToken[] tokens) {
+			fLookAhead= lookAhead;
+			fOffsets= offsets;
+			fLengths= lengths;
+			fTokens= tokens;
+		}
+
+		/**
+		 * Tells whether the text behind the line matches the text the rules read when the line
+		 * was scanned.
+		 *
+		 * @param document the document
+		 * @param lineEnd the end of the line, including its delimiter
+		 * @param rangeEnd the end of the range which is scanned
+		 * @return <code>true</code> if the tokens are valid for the line
+		 * @throws BadLocationException if the line end is not valid in the document
+		 */
+		boolean isValid(IDocument document, int lineEnd, int rangeEnd) throws BadLocationException {
+			int length= fLookAhead.length();
+			if (lineEnd + length > rangeEnd)
+				return false;
+			for (int i= 0; i < length; i++) {
+				if (document.getChar(lineEnd + i) != fLookAhead.charAt(i))
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the number of tokens.
+		 *
+		 * @return the number of tokens
+		 */
+		int size() {
+			return fTokens.length;
+		}
+
+		/**
+		 * Returns the offset of a token, relative to the start of the line.
+		 *
+		 * @param index the index of the token
+		 * @return the offset of the token
+		 */
+		int getOffset(int index) {
+			return fOffsets[index];
+		}
+
+		/**
+		 * Returns the length of a token.
+		 *
+		 * @param index the index of the token
+		 * @return the length of the token
+		 */
+		int getLength(int index) {
+			return fLengths[index];
+		}
+
+		/**
+		 * Returns a token.
+		 *
+		 * @param index the index of the token
+		 * @return the token
+		 */
+		IToken getToken(int index) {
+			return fTokens[index];
+		}
+	}
+
+	/** The minimal number of lines the cache keeps. */
+	private static final int MIN_CAPACITY= 1000;
+	/** The most characters the rules may read behind a line for its tokens to be remembered. */
+	static final int MAX_LOOK_AHEAD= 16;
+
+	/** The number of lines the cache keeps. */
+	private int fCapacity= MIN_CAPACITY;
+	/** The rules the tokens have been computed with. */
+	private IRule[] fRules;
+	/** The default token the tokens have been computed with. */
+	private IToken fDefaultReturnToken;
+	/** The tokens by line text, in the order of their last use. */
+	private final Map<String, LineTokens> fLines= new LinkedHashMap<String, LineTokens>(16, 0.75f, true) {
+		private static final long serialVersionUID= 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, LineTokens> eldest) {
+			return size() > fCapacity;
+		}
+	};
+
+	/**
+	 * Prepares the cache for scanning the given document with the given scanner. Drops all
+	 * entries if the scanner's rules or default token have changed.
+	 *
+	 * @param scanner the scanner
+	 * @param document the document to be scanned
+	 */
+	void prepare(RuleBasedScanner scanner, IDocument document) {
+		if (scanner.fRules != fRules || scanner.fDefaultReturnToken != fDefaultReturnToken) {
+			fLines.clear();
+			fRules= scanner.fRules;
+			fDefaultReturnToken= scanner.fDefaultReturnToken;
+		}
+		fCapacity= Math.max(MIN_CAPACITY, 2 * document.getNumberOfLines());
+	}
+
+	/**
+	 * Returns the tokens remembered for the given line text.
+	 *
+	 * @param line the text of the line, including its delimiter
+	 * @return the tokens, or <code>null</code> if none are remembered
+	 */
+	LineTokens get(String line) {
+		return fLines.get(line);
+	}
+
+	/**
+	 * Remembers the tokens of the given line text.
+	 *
+	 * @param line the text of the line, including its delimiter
+	 * @param tokens the tokens of the line
+	 */
+	void put(String line, LineTokens tokens) {
+		fLines.put(line, tokens);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,15 +22,25 @@ import org.eclipse.jface.text.IDocument;
  * content type that is not <code>null</code> then this scanner will first try the rules that match
  * the given content type.
  * </p>
- * 
+ * <p>
+ * Since 3.12 this scanner also supports bounded ranges (see
+ * {@link #setBoundedRange(IDocument, int, int, String, int)}): a predicate rule that reads up to the
+ * end of a bounded range is evaluated again on the rest of the document, so that it matches as if
+ * the range were not bounded.
+ * </p>
+ *
  * @since 2.0
  */
-public class RuleBasedPartitionScanner extends BufferedRuleBasedScanner implements IPartitionTokenScanner {
+public class RuleBasedPartitionScanner extends BufferedRuleBasedScanner implements IPartitionTokenScanner, IPartitionTokenScannerExtension {
 
 	/** The content type of the partition in which to resume scanning. */
 	protected String fContentType;
 	/** The offset of the partition inside which to resume. */
 	protected int fPartitionOffset;
+	/** Whether the end of the range is the end of a bounded range. */
+	private boolean fBounded;
+	/** Whether a rule has read the end of a bounded range. */
+	private boolean fReachedRangeEnd;
 
 
 	/**
@@ -65,6 +75,7 @@ public class RuleBasedPartitionScanner extends BufferedRuleBasedScanner implemen
 	 */
 	@Override
 	public void setPartialRange(IDocument document, int offset, int length, String contentType, int partitionOffset) {
+		fBounded= false;
 		fContentType= contentType;
 		fPartitionOffset= partitionOffset;
 		if (partitionOffset > -1) {
@@ -78,13 +89,32 @@ public class RuleBasedPartitionScanner extends BufferedRuleBasedScanner implemen
 		super.setRange(document, offset, length);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @since 3.12
+	 */
 	@Override
-	public IToken nextToken() {
+	public void setBoundedRange(IDocument document, int offset, int length, String contentType, int partitionOffset) {
+		setPartialRange(document, offset, length, contentType, partitionOffset);
+		// a range that ends at the end of the document cannot cut off a partition
+		fBounded= offset + length < document.getLength();
+	}
+
+	@Override
+	public int read() {
+		int c= super.read();
+		if (c == EOF && fBounded)
+			fReachedRangeEnd= true;
+		return c;
+	}
 
+	@Override
+	public IToken nextToken() {
 
 		if (fContentType == null || fRules == null) {
 			//don't try to resume
-			return super.nextToken();
+			return fBounded ? nextBoundedToken() : super.nextToken();
 		}
 
 		// inside a partition
@@ -100,7 +130,7 @@ public class RuleBasedPartitionScanner extends BufferedRuleBasedScanner implemen
 			rule= (IPredicateRule) fRules[i];
 			token= rule.getSuccessToken();
 			if (fContentType.equals(token.getData())) {
-				token= rule.evaluate(this, resume);
+				token= evaluate(rule, resume);
 				if (!token.isUndefined()) {
 					fContentType= null;
 					return token;
@@ -112,6 +142,57 @@ public class RuleBasedPartitionScanner extends BufferedRuleBasedScanner implemen
 		fContentType= null;
 		if (resume)
 			fOffset= fPartitionOffset;
-		return super.nextToken();
+		return fBounded ? nextBoundedToken() : super.nextToken();
+	}
+
+	/**
+	 * Like {@link RuleBasedScanner#nextToken()}, but the partition of a rule that reads up to the
+	 * end of the bounded range may end behind it.
+	 *
+	 * @return the next token
+	 */
+	private IToken nextBoundedToken() {
+		fTokenOffset= fOffset;
+		fColumn= UNDEFINED;
+
+		if (fOffset >= fRangeEnd)
+			return Token.EOF;
+
+		if (fRules != null) {
+			for (int i= 0; i < fRules.length; i++) {
+				IToken token= evaluate((IPredicateRule) fRules[i], false);
+				if (!token.isUndefined())
+					return token;
+			}
+		}
+
+		if (read() == EOF)
+			return Token.EOF;
+		return fDefaultReturnToken;
+	}
+
+	private IToken evaluate(IPredicateRule rule, boolean resume) {
+		if (!fBounded)
+			return rule.evaluate(this, resume);
+
+		int offset= fOffset;
+		fReachedRangeEnd= false;
+		IToken token= rule.evaluate(this, resume);
+		if (fReachedRangeEnd) {
+			// the rule may match differently behind the end of the range, evaluate it on the rest of the document
+			int rangeEnd= fRangeEnd;
+			int documentLength= fDocument.getLength();
+			fOffset= offset;
+			fRangeEnd= documentLength;
+			fBounded= false;
+			try {
+				token= rule.evaluate(this, resume);
+			} finally {
+				fBounded= true;
+				// a partition that ends behind the range ends the range
+				fRangeEnd= Math.max(rangeEnd, Math.min(fOffset, documentLength));
+			}
+		}
+		return token;
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -50,6 +50,13 @@ public class RuleBasedScanner implements ICharacterScanner, ITokenScanner {
 	protected int fColumn;
 	/** Internal setting for the un-initialized column cache. */
 	protected static final int UNDEFINED= -1;
+	/**
+	 * The offset up to which characters have been read, used by {@link LineTokenCache} to find
+	 * out how far the rules looked ahead. Subclasses that override {@link #read()} without
+	 * calling it do not update this offset.
+	 * @since 3.12
+	 */
+	int fReadEnd;
 
 	/**
 	 * Creates a new rule based scanner which does not have any rule.
@@ -187,6 +194,8 @@ public class RuleBasedScanner implements ICharacterScanner, ITokenScanner {
 		} finally {
 			++ fOffset;
 			fColumn= UNDEFINED;
+			if (fOffset > fReadEnd)
+				fReadEnd= fOffset;
 		}
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -70,7 +70,7 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 	/**
 	 * Internal listener class.
 	 */
-	class InternalListener implements IViewportListener, IAnnotationModelListener, ITextListener {
+	class InternalListener implements IViewportListener, IAnnotationModelListener, IAnnotationModelListenerExtension, ITextListener {
 
 		@Override
 		public void viewportChanged(int verticalPosition) {
@@ -83,6 +83,11 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 			postRedraw();
 		}
 
+		@Override
+		public void modelChanged(AnnotationModelEvent event) {
+			postRedraw(event.getAffectedRegion());
+		}
+
 		@Override
 		public void textChanged(TextEvent e) {
 			if (e.getViewerRedrawState())
@@ -833,19 +838,46 @@ public class AnnotationRulerColumn implements IVerticalRulerColumn, IVerticalRul
 	 * Post a redraw request for this column into the UI thread.
 	 */
 	private void postRedraw() {
+		postRedraw(null);
+	}
+
+	/**
+	 * Post a redraw request for this column into the UI thread, unless the given
+	 * document region is not visible by then.
+	 *
+	 * @param region the changed document region or <code>null</code> if unknown
+	 * @since 3.12
+	 */
+	private void postRedraw(final IRegion region) {
 		if (fCanvas != null && !fCanvas.isDisposed()) {
 			Display d= fCanvas.getDisplay();
 			if (d != null) {
 				d.asyncExec(new Runnable() {
 					@Override
 					public void run() {
-						redraw();
+						if (region == null || isVisible(region))
+							redraw();
 					}
 				});
 			}
 		}
 	}
 
+	/**
+	 * Tells whether the given document region touches the lines shown in the viewport.
+	 *
+	 * @param region the document region
+	 * @return <code>false</code> if the region is known to be invisible
+	 * @since 3.12
+	 */
+	private boolean isVisible(IRegion region) {
+		int top= getInclusiveTopIndexStartOffset();
+		int bottom= getExclusiveBottomIndexEndOffset();
+		if (top == -1 || bottom == -1)
+			return true;
+		return region.getOffset() <= bottom && region.getOffset() + region.getLength() >= top;
+	}
+
 	@Override
 	public void redraw() {
 		if (fCanvas != null && !fCanvas.isDisposed()) {
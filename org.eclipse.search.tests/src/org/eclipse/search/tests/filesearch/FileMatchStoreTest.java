@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.tests.filesearch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Test;
+
+import org.eclipse.core.runtime.Path;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.search.internal.ui.text.FileMatch;
+import org.eclipse.search.internal.ui.text.FileMatchStore;
+import org.eclipse.search.internal.ui.text.LineElement;
+
+/**
+ * Tests that a {@link FileMatchStore} keeps matches and their lines, also when the match objects
+ * are garbage collected and the line contents are spilled to disk.
+ */
+public class FileMatchStoreTest {
+
+	private static IFile getFile(String name) {
+		return ResourcesPlugin.getWorkspace().getRoot().getFile(new Path("/p/" + name)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Creates a match in line <code>offset / 10</code> of a file whose lines are 10 characters
+	 * long.
+	 */
+	private static FileMatch createMatch(IFile file, int offset, int length) {
+		int line= offset / 10;
+		String contents= file.getName() + ':' + line;
+		LineElement lineElement= new LineElement(file, line + 1, line * 10, contents);
+		return new FileMatch(file, offset, length, lineElement);
+	}
+
+	private static int[] getOffsets(FileMatch[] matches) {
+		int[] offsets= new int[matches.length];
+		for (int i= 0; i < matches.length; i++)
+			offsets[i]= matches[i].getOffset();
+		return offsets;
+	}
+
+	private static void collectGarbage(WeakReference<?> reference) {
+		for (int i= 0; i < 10 && reference.get() != null; i++)
+			System.gc();
+	}
+
+	private static void assertLine(IFile file, FileMatch match) {
+		int line= match.getOffset() / 10;
+		LineElement lineElement= match.getLineElement();
+		assertEquals(line + 1, lineElement.getLine());
+		assertEquals(line * 10, lineElement.getOffset());
+		assertEquals(file.getName() + ':' + line, lineElement.getContents());
+		assertSame(file, lineElement.getParent());
+	}
+
+	@Test
+	public void testAdd() {
+		FileMatchStore store= new FileMatchStore();
+		IFile file= getFile("a.txt"); //$NON-NLS-1$
+		FileMatch[] first= { createMatch(file, 2, 1), createMatch(file, 5, 2), createMatch(file, 31, 1) };
+		FileMatch[] second= { createMatch(file, 12, 3), createMatch(file, 5, 1), createMatch(file, 33, 1) };
+		assertEquals(3, store.add(first).length);
+		assertEquals(3, store.add(second).length);
+		assertEquals(0, store.add(new FileMatch[] { first[0], second[0] }).length);
+
+		assertEquals(6, store.getMatchCount());
+		assertEquals(6, store.getMatchCount(file));
+		assertArrayEquals(new Object[] { file }, store.getElements());
+		FileMatch[] matches= store.getMatches(file);
+		assertArrayEquals(new int[] { 2, 5, 5, 12, 31, 33 }, getOffsets(matches));
+		assertEquals(1, matches[1].getLength());
+		assertEquals(2, matches[2].getLength());
+		assertSame(first[0], matches[0]);
+
+		// matches in the same line share the line element
+		assertSame(matches[0].getLineElement(), matches[1].getLineElement());
+		assertSame(matches[4].getLineElement(), matches[5].getLineElement());
+		assertNotSame(matches[3].getLineElement(), matches[4].getLineElement());
+		for (int i= 0; i < matches.length; i++)
+			assertLine(file, matches[i]);
+	}
+
+	@Test
+	public void testMaterialize() {
+		FileMatchStore store= new FileMatchStore();
+		IFile file= getFile("b.txt"); //$NON-NLS-1$
+		store.add(new FileMatch[] { createMatch(file, 1, 1), createMatch(file, 21, 4), createMatch(file, 25, 1) });
+		store.add(new FileMatch[] { new FileMatch(file) });
+
+		WeakReference<FileMatch> reference= new WeakReference<>(store.getMatches(file)[0]);
+		collectGarbage(reference);
+
+		FileMatch[] matches= store.getMatches(file);
+		assertArrayEquals(new int[] { -1, 1, 21, 25 }, getOffsets(matches));
+		assertTrue(matches[0].isFileSearch());
+		assertEquals(4, matches[2].getLength());
+		assertSame(matches[2].getLineElement(), matches[3].getLineElement());
+		for (int i= 1; i < matches.length; i++)
+			assertLine(file, matches[i]);
+
+		// referenced matches keep their identity
+		LineElement lineElement= matches[3].getLineElement();
+		matches= null;
+		assertSame(lineElement, store.getMatches(file)[3].getLineElement());
+	}
+
+	@Test
+	public void testRemove() {
+		FileMatchStore store= new FileMatchStore();
+		IFile file1= getFile("c.txt"); //$NON-NLS-1$
+		IFile file2= getFile("d.txt"); //$NON-NLS-1$
+		FileMatch[] matches= { createMatch(file1, 1, 1), createMatch(file1, 2, 1), createMatch(file1, 42, 1), createMatch(file2, 7, 1) };
+		store.add(matches);
+
+		FileMatch[] removed= store.remove(new FileMatch[] { matches[1], matches[1], matches[3], createMatch(file1, 42, 1) });
+		assertArrayEquals(new FileMatch[] { matches[1], matches[3] }, removed);
+		assertEquals(2, store.getMatchCount());
+		assertEquals(0, store.getMatchCount(file2));
+		assertArrayEquals(new Object[] { file1 }, store.getElements());
+		assertArrayEquals(new FileMatch[] { matches[0], matches[2] }, store.getMatches(file1));
+
+		// removed matches can be added again
+		assertEquals(1, store.add(new FileMatch[] { matches[1] }).length);
+		assertArrayEquals(new FileMatch[] { matches[0], matches[1], matches[2] }, store.getMatches(file1));
+
+		store.clear();
+		assertEquals(0, store.getMatchCount());
+		assertEquals(0, store.getElements().length);
+		assertEquals(2, store.add(new FileMatch[] { matches[2], matches[0] }).length);
+		assertArrayEquals(new int[] { 1, 42 }, getOffsets(store.getMatches(file1)));
+	}
+
+	@Test
+	public void testChangedLocation() {
+		FileMatchStore store= new FileMatchStore();
+		IFile file= getFile("e.txt"); //$NON-NLS-1$
+		store.add(new FileMatch[] { createMatch(file, 3, 1), createMatch(file, 13, 1) });
+		FileMatch match= store.getMatches(file)[1];
+		match.setOffset(17);
+		WeakReference<FileMatch> reference= new WeakReference<>(match);
+		match= null;
+		collectGarbage(reference);
+
+		match= store.getMatches(file)[1];
+		assertEquals(17, match.getOffset());
+		assertEquals(13, match.getOriginalOffset());
+		assertEquals(1, store.remove(new FileMatch[] { match }).length);
+		assertEquals(1, store.getMatchCount(file));
+	}
+
+	@Test
+	public void testSpill() {
+		FileMatchStore store= new FileMatchStore(1000);
+		IFile[] files= new IFile[200];
+		for (int i= 0; i < files.length; i++) {
+			files[i]= getFile("f" + i + ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+			FileMatch[] matches= new FileMatch[i % 5 + 1];
+			for (int j= 0; j < matches.length; j++)
+				matches[j]= createMatch(files[i], j * 10 + 3, 2);
+			store.add(matches);
+			assertTrue(store.getCharsInMemory() <= 1000);
+		}
+		WeakReference<FileMatch> reference= new WeakReference<>(store.getMatches(files[0])[0]);
+		collectGarbage(reference);
+
+		// add to a file whose lines are spilled
+		store.add(new FileMatch[] { createMatch(files[0], 99, 1) });
+		for (int i= 0; i < files.length; i++) {
+			FileMatch[] matches= store.getMatches(files[i]);
+			assertEquals(i % 5 + 1 + (i == 0 ? 1 : 0), matches.length);
+			for (int j= 0; j < matches.length; j++)
+				assertLine(files[i], matches[j]);
+		}
+		store.clear();
+		assertEquals(0, store.getCharsInMemory());
+	}
+}
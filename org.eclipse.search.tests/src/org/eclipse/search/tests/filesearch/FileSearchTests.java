@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -317,6 +317,55 @@ public class FileSearchTests {
 		}
 	}
 	
+	@Test
+	public void testEncodedFilesSerial() throws Exception {
+		testEncodedFiles(new SerialTestResultCollector());
+	}
+
+	@Test
+	public void testEncodedFilesParallel() throws Exception {
+		testEncodedFiles(new ParallelTestResultCollector());
+	}
+
+	private void testEncodedFiles(TestResultCollector collector) throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("gr\u00fc\u00dfe hello\n");
+		buf.append("\ud83d\ude00 Hello \u20ac\n");
+		buf.append("shell hell\u00f6 hell\n");
+		String latin1= buf.toString().replace("\ud83d\ude00", "x").replace('\u20ac', 'x');
+		IFolder folder= ResourceHelper.createFolder(fProject.getFolder("folder1"));
+		IFile file1= ResourceHelper.createFile(folder, "file1", buf.toString(), "UTF-8");
+		IFile file2= ResourceHelper.createFile(folder, "file2", latin1, "ISO-8859-1");
+
+		TextSearchEngine engine= TextSearchEngine.create();
+		FileTextSearchScope scope= FileTextSearchScope.newSearchScope(new IResource[] { fProject }, (String[]) null, false);
+
+		Pattern searchPattern= PatternConstructor.createPattern("hello", true, false);
+		engine.search(scope, collector, searchPattern, null);
+		assertMatches(collector.getResults(), 1, file1, buf.toString(), "hello");
+		assertMatches(collector.getResults(), 1, file2, latin1, "hello");
+
+		searchPattern= PatternConstructor.createPattern("hello", false, false);
+		collector.reset();
+		engine.search(scope, collector, searchPattern, null);
+		assertEquals("Number of case-insensitive results", 4, collector.getNumberOfResults());
+
+		// whole word: neither "shell" nor "hell\u00f6" match
+		searchPattern= PatternConstructor.createPattern("hell", false, true, true, true);
+		collector.reset();
+		engine.search(scope, collector, searchPattern, null);
+		assertMatches(collector.getResults(), 1, file1, buf.toString(), "hell");
+		assertMatches(collector.getResults(), 1, file2, latin1, "hell");
+
+		// the Kelvin sign is equal to 'k' ignoring case
+		String kelvin= "\u212Aelvin";
+		IFile file3= ResourceHelper.createFile(folder, "file3", kelvin, "UTF-8");
+		searchPattern= PatternConstructor.createPattern("kelvin", false, false);
+		collector.reset();
+		engine.search(scope, collector, searchPattern, null);
+		assertMatches(collector.getResults(), 1, file3, kelvin, kelvin);
+	}
+
 	@Test
 	public void testFileOpenInEditorSerial() throws Exception {
 		testFileOpenInEditor(new SerialTestResultCollector());
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.tests.filesearch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import org.eclipse.search.internal.core.text.EncodedFileContent;
+import org.eclipse.search.internal.core.text.LiteralPattern;
+import org.eclipse.search.internal.core.text.PatternConstructor;
+
+/**
+ * Tests searching for a {@link LiteralPattern} in an {@link EncodedFileContent}.
+ */
+public class LiteralPatternTest {
+
+	private static EncodedFileContent createContent(String text, Charset charset) {
+		return EncodedFileContent.create(ByteBuffer.wrap(text.getBytes(charset)), 0, charset);
+	}
+
+	private static List<Integer> findLiteral(EncodedFileContent content, LiteralPattern pattern) {
+		List<Integer> offsets= new ArrayList<>();
+		int position= content.indexOf(pattern, 0);
+		while (position != -1) {
+			offsets.add(Integer.valueOf(content.getCharOffset(position)));
+			position= content.indexOf(pattern, position + content.getByteLength(pattern));
+		}
+		return offsets;
+	}
+
+	private static List<Integer> findRegex(String text, Pattern pattern) {
+		List<Integer> offsets= new ArrayList<>();
+		Matcher matcher= pattern.matcher(text);
+		while (matcher.find())
+			offsets.add(Integer.valueOf(matcher.start()));
+		return offsets;
+	}
+
+	private static void assertSameMatches(String text, Charset charset, Pattern pattern) {
+		LiteralPattern literal= LiteralPattern.create(pattern);
+		assertNotNull(pattern.pattern(), literal);
+		EncodedFileContent content= createContent(text, charset);
+		assertNotNull(content);
+		assertTrue(literal.canSearch(content));
+		assertEquals(pattern.pattern(), findRegex(text, pattern), findLiteral(content, literal));
+	}
+
+	private static String createText(int size, boolean ascii) {
+		String nonAscii= "\u00e4\u00f6\u00fc\u20ac\u00df\u03c0\ud83d\ude00";
+		Random random= new Random(size);
+		StringBuilder text= new StringBuilder(size);
+		while (text.length() < size) {
+			int next= random.nextInt(40);
+			if (next == 0)
+				text.append('\n');
+			else if (next == 1)
+				text.append("foo"); //$NON-NLS-1$
+			else if (next == 2)
+				text.append("F\u00f6O"); //$NON-NLS-1$
+			else if (!ascii && next == 3)
+				text.append(nonAscii, 6, 8);
+			else if (!ascii && next < 10)
+				text.append(nonAscii.charAt(next - 4));
+			else
+				text.append((char) ('a' + random.nextInt(26)));
+		}
+		return text.toString();
+	}
+
+	@Test
+	public void testCreate() {
+		assertEquals("foo", LiteralPattern.create(PatternConstructor.createPattern("foo", true, false)).getLiteral());
+		assertEquals("a.b(c)", LiteralPattern.create(PatternConstructor.createPattern("a.b(c)", false, false)).getLiteral());
+		assertEquals("a*b", LiteralPattern.create(Pattern.compile("\\Qa*b\\E")).getLiteral());
+		assertEquals("[x]", LiteralPattern.create(Pattern.compile("[x]", Pattern.LITERAL)).getLiteral());
+		assertTrue(LiteralPattern.create(PatternConstructor.createPattern("foo", false, true, true, true)).hasWordBoundaries());
+
+		assertNull(LiteralPattern.create(PatternConstructor.createPattern("f*o", true, false)));
+		assertNull(LiteralPattern.create(PatternConstructor.createPattern("f.o", true, true)));
+		assertNull(LiteralPattern.create(PatternConstructor.createPattern("a\\sb", true, true)));
+		assertNull(LiteralPattern.create(PatternConstructor.createPattern("a|b", true, true)));
+		assertNull(LiteralPattern.create(Pattern.compile("foo", Pattern.COMMENTS)));
+		assertNull(LiteralPattern.create(Pattern.compile("")));
+		// only ASCII letters are folded
+		assertNull(LiteralPattern.create(PatternConstructor.createPattern("\u00e4", false, false)));
+	}
+
+	@Test
+	public void testUTF8() {
+		String text= createText(100000, false);
+		assertSameMatches(text, StandardCharsets.UTF_8, PatternConstructor.createPattern("foo", true, false));
+		assertSameMatches(text, StandardCharsets.UTF_8, PatternConstructor.createPattern("F\u00f6O", true, false));
+		assertSameMatches(text, StandardCharsets.UTF_8, PatternConstructor.createPattern("\ud83d\ude00", true, false));
+		assertSameMatches(text, StandardCharsets.UTF_8, PatternConstructor.createPattern("FOO", false, false));
+	}
+
+	@Test
+	public void testSingleByte() {
+		String text= createText(100000, true);
+		assertSameMatches(text, StandardCharsets.US_ASCII, PatternConstructor.createPattern("foo", false, false));
+		text= createText(100000, false).replaceAll("[^\\x00-\\xff]", "x"); //$NON-NLS-1$ //$NON-NLS-2$
+		assertSameMatches(text, StandardCharsets.ISO_8859_1, PatternConstructor.createPattern("F\u00f6O", true, false));
+		assertSameMatches(text, StandardCharsets.ISO_8859_1, PatternConstructor.createPattern("FOO", false, false));
+		assertEquals(0, findLiteral(createContent(text, StandardCharsets.ISO_8859_1), LiteralPattern.create(Pattern.compile("\u20ac"))).size());
+	}
+
+	@Test
+	public void testContent() {
+		String text= createText(50000, false);
+		EncodedFileContent content= createContent(text, StandardCharsets.UTF_8);
+		assertEquals(text.length(), content.length());
+		assertEquals(text, content.toString());
+		for (int i= text.length() - 1; i >= 0; i-= 7)
+			assertEquals(text.charAt(i), content.charAt(i));
+		assertEquals(text.substring(12345, 23456), content.subSequence(12345, 23456).toString());
+	}
+
+	@Test
+	public void testMalformed() {
+		assertNull(EncodedFileContent.create(ByteBuffer.wrap(new byte[] { 'a', (byte) 0xC3 }), 0, StandardCharsets.UTF_8));
+		assertNull(EncodedFileContent.create(ByteBuffer.wrap(new byte[] { (byte) 0xC0, (byte) 0xAF }), 0, StandardCharsets.UTF_8));
+		assertNull(EncodedFileContent.create(ByteBuffer.wrap(new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 }), 0, StandardCharsets.UTF_8));
+		assertNull(EncodedFileContent.create(ByteBuffer.wrap(new byte[] { 'a', (byte) 0x80 }), 0, StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void testBOM() {
+		byte[] bytes= { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'f', 'o', 'o' };
+		EncodedFileContent content= EncodedFileContent.create(ByteBuffer.wrap(bytes), 3, StandardCharsets.UTF_8);
+		assertEquals("foo", content.toString());
+		assertEquals(0, content.getCharOffset(content.indexOf(LiteralPattern.create(Pattern.compile("foo")), 0)));
+	}
+
+	@Test
+	public void testCaseVariants() {
+		LiteralPattern pattern= LiteralPattern.create(PatternConstructor.createPattern("kit", false, false));
+		assertFalse(pattern.canSearch(createContent("\u212Ait", StandardCharsets.UTF_8)));
+		assertFalse(pattern.canSearch(createContent("k\u0131t", StandardCharsets.UTF_8)));
+		assertTrue(pattern.canSearch(createContent("k\u00e4t", StandardCharsets.UTF_8)));
+		assertTrue(LiteralPattern.create(PatternConstructor.createPattern("kit", true, false)).canSearch(createContent("\u212Ait", StandardCharsets.UTF_8)));
+	}
+}
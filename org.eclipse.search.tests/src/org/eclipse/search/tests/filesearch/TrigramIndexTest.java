@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.tests.filesearch;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import org.eclipse.search.internal.core.text.PatternConstructor;
+import org.eclipse.search.internal.core.text.TrigramIndex;
+import org.eclipse.search.internal.core.text.TrigramIndex.TrigramCollector;
+import org.eclipse.search.internal.core.text.TrigramQuery;
+
+/**
+ * Tests the decomposition of search patterns into trigrams and the selection of candidate files
+ * with a {@link TrigramIndex}.
+ */
+public class TrigramIndexTest {
+
+	private static final String[] WORDS= { "foo", "bar", "Baz", "qu\u00e4x", "\u00c4rger", "interface", "class", "\ud83d\ude00" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
+
+	private static final TrigramCollector fgCollector= new TrigramCollector();
+
+	private static int[] getTrigrams(String... texts) {
+		TrigramCollector collector= fgCollector;
+		collector.clear();
+		for (String text : texts) {
+			for (int i= 0; i < text.length(); i++)
+				collector.add(text.charAt(i));
+			collector.breakRun();
+		}
+		return collector.toArray();
+	}
+
+	private static String createText(Random random) {
+		StringBuilder text= new StringBuilder();
+		int words= random.nextInt(20);
+		for (int i= 0; i < words; i++) {
+			String word= WORDS[random.nextInt(WORDS.length)];
+			text.append(random.nextBoolean() ? word : word.toUpperCase());
+			text.append(random.nextInt(4) == 0 ? '\n' : ' ');
+		}
+		return text.toString();
+	}
+
+	private static void assertSelectsMatches(TrigramIndex index, String[] texts, Pattern pattern) {
+		TrigramQuery query= TrigramQuery.create(pattern);
+		assertNotNull(pattern.pattern(), query);
+		String[] paths= new String[texts.length];
+		long[] stamps= new long[texts.length];
+		for (int i= 0; i < texts.length; i++) {
+			paths[i]= "/p/" + i; //$NON-NLS-1$
+			stamps[i]= 1;
+		}
+		boolean[] selected= index.select(paths, stamps, query);
+		for (int i= 0; i < texts.length; i++) {
+			if (pattern.matcher(texts[i]).find())
+				assertTrue(pattern.pattern() + " in " + texts[i], selected[i]); //$NON-NLS-1$
+		}
+	}
+
+	private static TrigramIndex createIndex(String[] texts) {
+		TrigramIndex index= new TrigramIndex();
+		for (int i= 0; i < texts.length; i++)
+			index.add("/p/" + i, 1, getTrigrams(texts[i])); //$NON-NLS-1$
+		return index;
+	}
+
+	@Test
+	public void testQuery() {
+		assertArrayEquals(getTrigrams("foobar"), TrigramQuery.create(Pattern.compile("foobar")).getTrigrams());
+		assertArrayEquals(getTrigrams("foo", "bar"), TrigramQuery.create(Pattern.compile("foo.*bar")).getTrigrams());
+		assertArrayEquals(getTrigrams("foo", "bar"), TrigramQuery.create(Pattern.compile("foo[a-z]bar")).getTrigrams());
+		assertArrayEquals(getTrigrams("foo", "bar"), TrigramQuery.create(Pattern.compile("foo(x|y)+bar")).getTrigrams());
+		assertArrayEquals(getTrigrams("foo", "bar"), TrigramQuery.create(Pattern.compile("fooa?bar")).getTrigrams());
+		assertArrayEquals(getTrigrams("foo", "bar"), TrigramQuery.create(Pattern.compile("\\bfoo\\d{0,3}bar\\b")).getTrigrams());
+		assertArrayEquals(getTrigrams("bar"), TrigramQuery.create(Pattern.compile("fo+bar")).getTrigrams());
+		assertArrayEquals(getTrigrams("a.b(c)"), TrigramQuery.create(PatternConstructor.createPattern("a.b(c)", false, false)).getTrigrams());
+		assertArrayEquals(getTrigrams("a*b?c"), TrigramQuery.create(Pattern.compile("a*b?c", Pattern.LITERAL)).getTrigrams());
+		assertArrayEquals(getTrigrams("FOO"), TrigramQuery.create(Pattern.compile("foo", Pattern.CASE_INSENSITIVE)).getTrigrams());
+
+		assertNull(TrigramQuery.create(Pattern.compile("foo|bar")));
+		assertNull(TrigramQuery.create(Pattern.compile("fo")));
+		assertNull(TrigramQuery.create(Pattern.compile(".*")));
+		assertNull(TrigramQuery.create(Pattern.compile("ab*c")));
+		assertNull(TrigramQuery.create(Pattern.compile("(foobar)")));
+		assertNull(TrigramQuery.create(Pattern.compile("foo", Pattern.COMMENTS)));
+		assertNull(TrigramQuery.create(Pattern.compile("(?x)foo bar")));
+		assertNull(TrigramQuery.create(Pattern.compile("\\x66\\x6f\\x6f")));
+	}
+
+	@Test
+	public void testSelect() {
+		Random random= new Random(4711);
+		String[] texts= new String[500];
+		for (int i= 0; i < texts.length; i++)
+			texts[i]= createText(random);
+		TrigramIndex index= createIndex(texts);
+
+		assertSelectsMatches(index, texts, PatternConstructor.createPattern("foo bar", true, false));
+		assertSelectsMatches(index, texts, PatternConstructor.createPattern("FOO bar", false, false));
+		assertSelectsMatches(index, texts, PatternConstructor.createPattern("qu\u00c4x", false, false));
+		assertSelectsMatches(index, texts, PatternConstructor.createPattern("\u00e4rger", false, false));
+		assertSelectsMatches(index, texts, PatternConstructor.createPattern("class\ninterface", true, false));
+		assertSelectsMatches(index, texts, PatternConstructor.createPattern("baz.*class", false, true));
+		assertSelectsMatches(index, texts, PatternConstructor.createPattern("\\binter\\w+ \ud83d\ude00", true, true));
+		assertTrue(index.getHitRate() > 0);
+		assertEquals(7, index.getSearchCount());
+	}
+
+	@Test
+	public void testUpdate() {
+		TrigramIndex index= new TrigramIndex();
+		TrigramQuery query= TrigramQuery.create(Pattern.compile("foo"));
+		String[] paths= { "/p/a", "/p/b", "/q/c" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		index.add(paths[0], 1, getTrigrams("foo"));
+		index.add(paths[1], 1, getTrigrams("bar"));
+		index.addUnindexed(paths[2], 1);
+		assertArrayEquals(new boolean[] { true, false, true }, index.select(paths, new long[] { 1, 1, 1 }, query));
+
+		// stale and unknown files are selected
+		assertArrayEquals(new boolean[] { true, true, true }, index.select(paths, new long[] { 1, 2, 1 }, query));
+		assertTrue(index.select(new String[] { "/p/d", null }, new long[] { 1, 1 }, query)[1]); //$NON-NLS-1$
+
+		index.add(paths[0], 2, getTrigrams("bar"));
+		index.add(paths[1], 2, getTrigrams("foo"));
+		assertArrayEquals(new boolean[] { false, true, true }, index.select(paths, new long[] { 2, 2, 1 }, query));
+
+		index.removeAll("/p/"); //$NON-NLS-1$
+		assertEquals(1, index.getFileCount());
+		assertEquals(-1, index.getStamp(paths[0]));
+		assertEquals(1, index.getStamp(paths[2]));
+	}
+
+	@Test
+	public void testCompaction() {
+		Random random= new Random(42);
+		String[] texts= new String[3000];
+		for (int i= 0; i < texts.length; i++)
+			texts[i]= createText(random);
+		TrigramIndex index= createIndex(texts);
+		long size= index.getSize();
+		// replace every file twice, which drops more ids than are alive
+		for (int round= 0; round < 2; round++) {
+			for (int i= 0; i < texts.length; i++)
+				index.add("/p/" + i, 1, getTrigrams(texts[i])); //$NON-NLS-1$
+		}
+		assertTrue(index.getSize() < 2 * size);
+		assertEquals(texts.length, index.getFileCount());
+		assertSelectsMatches(index, texts, Pattern.compile("foo bar", Pattern.CASE_INSENSITIVE)); //$NON-NLS-1$
+		assertSelectsMatches(index, texts, Pattern.compile("interface")); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testPersistence() throws IOException {
+		Random random= new Random(1);
+		String[] texts= new String[1000];
+		for (int i= 0; i < texts.length; i++)
+			texts[i]= createText(random);
+		TrigramIndex index= createIndex(texts);
+		index.remove("/p/0"); //$NON-NLS-1$
+
+		ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+		try (DataOutputStream out= new DataOutputStream(bytes)) {
+			index.write(out);
+		}
+		TrigramIndex read= new TrigramIndex();
+		try (DataInputStream in= new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			read.read(in);
+		}
+		assertEquals(index.getFileCount(), read.getFileCount());
+		assertEquals(index.getTrigramCount(), read.getTrigramCount());
+		assertEquals(index.getSize(), read.getSize());
+		assertEquals(-1, read.getStamp("/p/0")); //$NON-NLS-1$
+
+		TrigramQuery query= TrigramQuery.create(Pattern.compile("baz class", Pattern.CASE_INSENSITIVE)); //$NON-NLS-1$
+		String[] paths= new String[texts.length];
+		long[] stamps= new long[texts.length];
+		for (int i= 0; i < texts.length; i++) {
+			paths[i]= "/p/" + i; //$NON-NLS-1$
+			stamps[i]= 1;
+		}
+		assertArrayEquals(index.select(paths, stamps, query), read.select(paths, stamps, query));
+
+		// files added after reading get ids that do not collide with the read ones
+		read.add("/p/new", 1, getTrigrams("foo")); //$NON-NLS-1$
+		assertFalse(read.select(new String[] { "/p/new" }, new long[] { 1 }, TrigramQuery.create(Pattern.compile("interface")))[0]); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
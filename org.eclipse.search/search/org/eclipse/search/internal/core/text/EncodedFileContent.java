@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.internal.core.text;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.content.IContentDescription;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+
+/**
+ * The content of a UTF-8, US-ASCII or ISO-8859-1 encoded file as raw bytes. A
+ * {@link LiteralPattern} is searched for in the bytes, and only the parts of the content that
+ * are accessed through the {@link CharSequence} interface, usually the lines around a match,
+ * are decoded.
+ * <p>
+ * When the content is created, UTF-8 is validated and the character offsets of a few byte
+ * offsets are recorded, so that byte offsets and character offsets can be converted into each
+ * other. Contents that a decoder would not decode without replacement characters are rejected.
+ * </p>
+ */
+public final class EncodedFileContent implements CharSequence {
+
+	/** Files of at least this size are memory-mapped instead of being read. */
+	private static final long MAP_THRESHOLD= 1 << 20;
+
+	/** The number of bytes between two recorded character offsets, a power of two. */
+	private static final int CHECKPOINT_DISTANCE= 1 << 12;
+
+	/**
+	 * Reads the content of the given file.
+	 *
+	 * @param file the file
+	 * @return the content, or <code>null</code> if the file is not a local file that is in sync
+	 *         with the file system or if its encoding is not supported
+	 * @throws CoreException if the encoding of the file cannot be determined
+	 * @throws IOException if reading the file fails
+	 */
+	public static EncodedFileContent open(IFile file) throws CoreException, IOException {
+		IPath location= file.getLocation();
+		if (location == null || !file.isSynchronized(IResource.DEPTH_ZERO))
+			return null;
+		Charset charset= getCharset(file.getCharset());
+		if (charset == null)
+			return null;
+
+		ByteBuffer bytes;
+		try (FileChannel channel= FileChannel.open(location.toFile().toPath(), StandardOpenOption.READ)) {
+			long size= channel.size();
+			if (size > Integer.MAX_VALUE)
+				return null;
+			if (size >= MAP_THRESHOLD) {
+				bytes= channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			} else {
+				bytes= ByteBuffer.allocate((int) size);
+				while (bytes.hasRemaining()) {
+					if (channel.read(bytes) == -1)
+						throw new EOFException();
+				}
+			}
+		}
+
+		int start= 0;
+		if (charset == StandardCharsets.UTF_8 && hasBOM(bytes)) {
+			// like FileCharSequenceProvider, only skip the BOM if the content description knows it
+			IContentDescription description= file.getContentDescription();
+			if (description != null && description.getProperty(IContentDescription.BYTE_ORDER_MARK) != null)
+				start= IContentDescription.BOM_UTF_8.length;
+		}
+		return create(bytes, start, charset);
+	}
+
+	/**
+	 * Creates the content for the given bytes.
+	 *
+	 * @param bytes the bytes, absolute indices are used
+	 * @param start the index of the first byte of the content
+	 * @param charset the encoding, one of UTF-8, US-ASCII or ISO-8859-1
+	 * @return the content, or <code>null</code> if the bytes are not valid in the encoding
+	 */
+	public static EncodedFileContent create(ByteBuffer bytes, int start, Charset charset) {
+		EncodedFileContent content= new EncodedFileContent(bytes, start, charset == StandardCharsets.UTF_8);
+		if (charset == StandardCharsets.ISO_8859_1)
+			return content;
+		return content.validate(charset == StandardCharsets.US_ASCII) ? content : null;
+	}
+
+	private static Charset getCharset(String name) {
+		try {
+			Charset charset= Charset.forName(name);
+			if (charset == StandardCharsets.UTF_8 || charset == StandardCharsets.US_ASCII || charset == StandardCharsets.ISO_8859_1)
+				return charset;
+		} catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+			// reported when the file is read the usual way
+		}
+		return null;
+	}
+
+	private static boolean hasBOM(ByteBuffer bytes) {
+		byte[] bom= IContentDescription.BOM_UTF_8;
+		if (bytes.limit() < bom.length)
+			return false;
+		for (int i= 0; i < bom.length; i++) {
+			if (bytes.get(i) != bom[i])
+				return false;
+		}
+		return true;
+	}
+
+	private final ByteBuffer fBytes;
+	private final int fStart;
+	private final int fEnd;
+	private final boolean fUTF8;
+	/** Whether every byte is a character, so that byte and character offsets are equal. */
+	private boolean fSingleByte;
+	/** The number of characters. */
+	private int fLength;
+	/** Whether the content contains a character that is equal to 'i', 'k' or 's' ignoring case. */
+	private boolean fHasCaseVariants;
+
+	/** The content relative byte offsets of the checkpoints, at character boundaries. */
+	private int[] fCheckpointBytes;
+	/** The character offsets of the checkpoints. */
+	private int[] fCheckpointChars;
+	/** The number of checkpoints. */
+	private int fCheckpoints;
+
+	/** The index of the decoded checkpoint block, or <code>-1</code>. */
+	private int fBlock= -1;
+	/** The decoded characters of the block. */
+	private char[] fBlockChars;
+
+	private EncodedFileContent(ByteBuffer bytes, int start, boolean utf8) {
+		fBytes= bytes;
+		fStart= start;
+		fEnd= bytes.limit();
+		fUTF8= utf8;
+		fSingleByte= true;
+		fLength= fEnd - fStart;
+	}
+
+	/**
+	 * Validates the bytes, counts the characters and records the checkpoints.
+	 *
+	 * @param ascii <code>true</code> for US-ASCII, <code>false</code> for UTF-8
+	 * @return <code>true</code> if the content is valid
+	 */
+	private boolean validate(boolean ascii) {
+		ByteBuffer bytes= fBytes;
+		int end= fEnd;
+		int[] checkpointBytes= new int[(end - fStart) / CHECKPOINT_DISTANCE + 2];
+		int[] checkpointChars= new int[checkpointBytes.length];
+		int checkpoints= 0;
+		int nextCheckpoint= fStart;
+		int chars= 0;
+		boolean singleByte= true;
+
+		int i= fStart;
+		while (i < end) {
+			if (i >= nextCheckpoint) {
+				checkpointBytes[checkpoints]= i - fStart;
+				checkpointChars[checkpoints++]= chars;
+				nextCheckpoint= (i - fStart + CHECKPOINT_DISTANCE & -CHECKPOINT_DISTANCE) + fStart;
+			}
+			// skip ASCII up to the next checkpoint
+			int asciiEnd= Math.min(end, nextCheckpoint);
+			int asciiStart= i;
+			while (i < asciiEnd && bytes.get(i) >= 0)
+				i++;
+			chars+= i - asciiStart;
+			if (i == asciiEnd)
+				continue;
+
+			byte b= bytes.get(i);
+			if (ascii)
+				return false;
+
+			singleByte= false;
+			int length= getSequenceLength(bytes, i, end);
+			if (length == 0)
+				return false;
+			if (length == 2 && (b == (byte) 0xC4 && (bytes.get(i + 1) & 0xFE) == 0xB0 || b == (byte) 0xC5 && bytes.get(i + 1) == (byte) 0xBF)
+					|| length == 3 && b == (byte) 0xE2 && bytes.get(i + 1) == (byte) 0x84 && bytes.get(i + 2) == (byte) 0xAA) {
+				// U+0130, U+0131, U+017F and U+212A
+				fHasCaseVariants= true;
+			}
+			i+= length;
+			chars+= length == 4 ? 2 : 1;
+		}
+		checkpointBytes[checkpoints]= end - fStart;
+		checkpointChars[checkpoints++]= chars;
+
+		fLength= chars;
+		fSingleByte= singleByte;
+		if (!singleByte) {
+			fCheckpointBytes= checkpointBytes;
+			fCheckpointChars= checkpointChars;
+			fCheckpoints= checkpoints;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the length of the well-formed UTF-8 sequence starting with a non-ASCII byte at the
+	 * given index.
+	 *
+	 * @param bytes the bytes
+	 * @param i the index of the lead byte
+	 * @param end the end of the bytes
+	 * @return the length of the sequence, or 0 if it is malformed
+	 */
+	private static int getSequenceLength(ByteBuffer bytes, int i, int end) {
+		int b= bytes.get(i) & 0xFF;
+		int length;
+		int min= 0x80;
+		int max= 0xBF;
+		if (b >= 0xC2 && b <= 0xDF) {
+			length= 2;
+		} else if (b >= 0xE0 && b <= 0xEF) {
+			length= 3;
+			if (b == 0xE0)
+				min= 0xA0; // overlong
+			else if (b == 0xED)
+				max= 0x9F; // surrogates
+		} else if (b >= 0xF0 && b <= 0xF4) {
+			length= 4;
+			if (b == 0xF0)
+				min= 0x90; // overlong
+			else if (b == 0xF4)
+				max= 0x8F; // above U+10FFFF
+		} else {
+			return 0;
+		}
+		if (i + length > end)
+			return 0;
+		int second= bytes.get(i + 1) & 0xFF;
+		if (second < min || second > max)
+			return 0;
+		for (int j= 2; j < length; j++) {
+			if ((bytes.get(i + j) & 0xC0) != 0x80)
+				return 0;
+		}
+		return length;
+	}
+
+	/**
+	 * Tells whether the content contains a character other than 'i', 'k' or 's' that is equal to
+	 * one of them ignoring case.
+	 *
+	 * @return <code>true</code> if the content contains such a character
+	 */
+	boolean hasCaseVariants() {
+		return fHasCaseVariants;
+	}
+
+	/**
+	 * Finds the next occurrence of the given pattern.
+	 *
+	 * @param pattern the pattern
+	 * @param from the byte offset to start at
+	 * @return the byte offset of the occurrence, or <code>-1</code> if there is none
+	 */
+	public int indexOf(LiteralPattern pattern, int from) {
+		int index= pattern.indexIn(fBytes, fStart + from, fEnd, fUTF8);
+		return index == -1 ? -1 : index - fStart;
+	}
+
+	/**
+	 * Returns the number of bytes of an occurrence of the given pattern.
+	 *
+	 * @param pattern the pattern
+	 * @return the number of bytes
+	 */
+	public int getByteLength(LiteralPattern pattern) {
+		return pattern.getByteLength(fUTF8);
+	}
+
+	/**
+	 * Returns the character offset of the given byte offset.
+	 *
+	 * @param byteOffset a byte offset at a character boundary
+	 * @return the character offset
+	 */
+	public int getCharOffset(int byteOffset) {
+		if (fSingleByte)
+			return byteOffset;
+
+		int checkpoint= findCheckpoint(fCheckpointBytes, byteOffset);
+		int chars= fCheckpointChars[checkpoint];
+		int i= fStart + fCheckpointBytes[checkpoint];
+		int end= fStart + byteOffset;
+		while (i < end) {
+			int b= fBytes.get(i) & 0xFF;
+			if (b < 0x80) {
+				i++;
+				chars++;
+			} else if (b < 0xE0) {
+				i+= 2;
+				chars++;
+			} else if (b < 0xF0) {
+				i+= 3;
+				chars++;
+			} else {
+				i+= 4;
+				chars+= 2;
+			}
+		}
+		return chars;
+	}
+
+	/**
+	 * Returns the last checkpoint at or before the given offset.
+	 *
+	 * @param offsets the offsets of the checkpoints
+	 * @param offset the offset
+	 * @return the index of the checkpoint
+	 */
+	private int findCheckpoint(int[] offsets, int offset) {
+		int index= Arrays.binarySearch(offsets, 0, fCheckpoints, offset);
+		if (index < 0)
+			index= -index - 2;
+		// the last checkpoint marks the end
+		return Math.min(index, fCheckpoints - 2);
+	}
+
+	@Override
+	public int length() {
+		return fLength;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= fLength)
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		if (fSingleByte)
+			return (char) (fBytes.get(fStart + index) & 0xFF);
+
+		int block= fBlock;
+		if (block == -1 || index < fCheckpointChars[block] || index >= fCheckpointChars[block + 1]) {
+			block= findCheckpoint(fCheckpointChars, index);
+			decodeBlock(block);
+		}
+		return fBlockChars[index - fCheckpointChars[block]];
+	}
+
+	/**
+	 * Decodes the characters between the given checkpoint and the next one.
+	 *
+	 * @param block the index of the checkpoint
+	 */
+	private void decodeBlock(int block) {
+		int count= fCheckpointChars[block + 1] - fCheckpointChars[block];
+		if (fBlockChars == null || fBlockChars.length < count)
+			fBlockChars= new char[Math.max(count, CHECKPOINT_DISTANCE + 4)];
+		char[] chars= fBlockChars;
+		int i= fStart + fCheckpointBytes[block];
+		int end= fStart + fCheckpointBytes[block + 1];
+		int k= 0;
+		while (i < end) {
+			int b= fBytes.get(i) & 0xFF;
+			if (b < 0x80) {
+				chars[k++]= (char) b;
+				i++;
+			} else if (b < 0xE0) {
+				chars[k++]= (char) ((b & 0x1F) << 6 | fBytes.get(i + 1) & 0x3F);
+				i+= 2;
+			} else if (b < 0xF0) {
+				chars[k++]= (char) ((b & 0x0F) << 12 | (fBytes.get(i + 1) & 0x3F) << 6 | fBytes.get(i + 2) & 0x3F);
+				i+= 3;
+			} else {
+				int codePoint= (b & 0x07) << 18 | (fBytes.get(i + 1) & 0x3F) << 12 | (fBytes.get(i + 2) & 0x3F) << 6 | fBytes.get(i + 3) & 0x3F;
+				chars[k++]= Character.highSurrogate(codePoint);
+				chars[k++]= Character.lowSurrogate(codePoint);
+				i+= 4;
+			}
+		}
+		fBlock= block;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > fLength || start > end)
+			throw new IndexOutOfBoundsException();
+		char[] chars= new char[end - start];
+		for (int i= start; i < end; i++)
+			chars[i - start]= charAt(i);
+		return new String(chars);
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, fLength).toString();
+	}
+}
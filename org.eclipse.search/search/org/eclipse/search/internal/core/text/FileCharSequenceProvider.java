@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,6 +26,8 @@ import org.eclipse.core.resources.IFile;
  */
 public class FileCharSequenceProvider {
 
+	private static final String CHARSET_UTF_8= "UTF-8"; //$NON-NLS-1$
+
 	private static int NUMBER_OF_BUFFERS= 3;
 	public static int BUFFER_SIZE= 2 << 18; // public for testing
 
@@ -54,6 +56,67 @@ public class FileCharSequenceProvider {
 		}
 	}
 
+	/**
+	 * Reads the whole content of a file.
+	 *
+	 * @param file the file to read
+	 * @return the content of the file
+	 * @throws CoreException if the file cannot be accessed
+	 * @throws IOException if reading the file fails
+	 */
+	public static String readContent(IFile file) throws CoreException, IOException {
+		String charset= file.getCharset();
+		try (Reader reader= new InputStreamReader(getInputStream(file, charset), charset)) {
+			StringBuilder content= new StringBuilder();
+			char[] buffer= new char[8192];
+			int read;
+			while ((read= reader.read(buffer)) != -1)
+				content.append(buffer, 0, read);
+			return content.toString();
+		}
+	}
+
+	private static InputStream getInputStream(IFile file, String charset) throws CoreException, IOException {
+		boolean ok= false;
+		InputStream contents= file.getContents();
+		try {
+			if (CHARSET_UTF_8.equals(charset)) {
+				/*
+				 * This is a workaround for a corresponding bug in Java readers and writer,
+				 * see http://developer.java.sun.com/developer/bugParade/bugs/4508058.html
+				 * we remove the BOM before passing the stream to the reader
+				 */
+				IContentDescription description= file.getContentDescription();
+				if ((description != null) && (description.getProperty(IContentDescription.BYTE_ORDER_MARK) != null)) {
+					int bomLength= IContentDescription.BOM_UTF_8.length;
+					byte[] bomStore= new byte[bomLength];
+					int bytesRead= 0;
+					do {
+						int bytes= contents.read(bomStore, bytesRead, bomLength - bytesRead);
+						if (bytes == -1)
+							throw new IOException();
+						bytesRead += bytes;
+					} while (bytesRead < bomLength);
+
+					if (!Arrays.equals(bomStore, IContentDescription.BOM_UTF_8)) {
+						// discard file reader, we were wrong, no BOM -> new stream
+						contents.close();
+						contents= file.getContents();
+					}
+				}
+			}
+			ok= true;
+		} finally {
+			if (!ok && contents != null)
+				try {
+					contents.close();
+				} catch (IOException ex) {
+					// ignore
+				}
+		}
+		return contents;
+	}
+
 	public static class FileCharSequenceException extends RuntimeException {
 		private static final long serialVersionUID= 1L;
 
@@ -230,8 +293,6 @@ public class FileCharSequenceProvider {
 
 	private final class FileCharSequence implements CharSequence {
 
-		private static final String CHARSET_UTF_8= "UTF-8"; //$NON-NLS-1$
-
 		private Reader fReader;
 		private int fReaderPos;
 
@@ -266,51 +327,10 @@ public class FileCharSequenceProvider {
 				fReader.close();
 			}
 			String charset= fFile.getCharset();
-			fReader= new InputStreamReader(getInputStream(charset), charset);
+			fReader= new InputStreamReader(getInputStream(fFile, charset), charset);
 			fReaderPos= 0;
 		}
 
-		private InputStream getInputStream(String charset) throws CoreException, IOException {
-			boolean ok= false;
-			InputStream contents= fFile.getContents();
-			try {
-				if (CHARSET_UTF_8.equals(charset)) {
-					/*
-					 * This is a workaround for a corresponding bug in Java readers and writer,
-					 * see http://developer.java.sun.com/developer/bugParade/bugs/4508058.html
-					 * we remove the BOM before passing the stream to the reader
-					 */
-					IContentDescription description= fFile.getContentDescription();
-					if ((description != null) && (description.getProperty(IContentDescription.BYTE_ORDER_MARK) != null)) {
-						int bomLength= IContentDescription.BOM_UTF_8.length;
-						byte[] bomStore= new byte[bomLength];
-						int bytesRead= 0;
-						do {
-							int bytes= contents.read(bomStore, bytesRead, bomLength - bytesRead);
-							if (bytes == -1)
-								throw new IOException();
-							bytesRead += bytes;
-						} while (bytesRead < bomLength);
-
-						if (!Arrays.equals(bomStore, IContentDescription.BOM_UTF_8)) {
-							// discard file reader, we were wrong, no BOM -> new stream
-							contents.close();
-							contents= fFile.getContents();
-						}
-					}
-				}
-				ok= true;
-			} finally {
-				if (!ok && contents != null)
-					try {
-						contents.close();
-					} catch (IOException ex) {
-						// ignore
-					}
-			}
-			return contents;
-		}
-
 		private void clearReader() throws IOException {
 			if (fReader != null) {
 				fReader.close();
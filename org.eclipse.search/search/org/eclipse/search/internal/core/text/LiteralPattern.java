@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.internal.core.text;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * A search pattern that is a literal string, optionally preceded or followed by a word boundary.
+ * Such a pattern can be searched for in the encoded bytes of an {@link EncodedFileContent} with
+ * the Boyer-Moore-Horspool algorithm, without decoding the file.
+ * <p>
+ * Candidates found in the bytes are exact matches of the literal. If the pattern has word
+ * boundaries, the candidates still have to be verified with the regular expression.
+ * </p>
+ */
+public final class LiteralPattern {
+
+	/** The pattern flags that do not change the meaning of a literal. */
+	private static final int SUPPORTED_FLAGS= Pattern.MULTILINE | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.LITERAL;
+
+	/** The characters that have a special meaning in a regular expression. */
+	private static final String META_CHARACTERS= "\\[](){}.*+?^$|"; //$NON-NLS-1$
+
+	/**
+	 * Creates a literal pattern for the given regular expression.
+	 *
+	 * @param pattern the regular expression
+	 * @return the literal pattern, or <code>null</code> if the regular expression is not a
+	 *         literal or cannot be matched on the bytes of a file
+	 */
+	public static LiteralPattern create(Pattern pattern) {
+		int flags= pattern.flags();
+		if ((flags & ~SUPPORTED_FLAGS) != 0)
+			return null;
+
+		String source= pattern.pattern();
+		boolean hasWordBoundaries= false;
+		String literal;
+		if ((flags & Pattern.LITERAL) != 0) {
+			literal= source;
+		} else {
+			StringBuilder buffer= new StringBuilder(source.length());
+			int length= source.length();
+			int i= 0;
+			while (i < length) {
+				char ch= source.charAt(i);
+				if (ch == '\\') {
+					if (i + 1 == length)
+						return null;
+					char next= source.charAt(i + 1);
+					if (next == 'b' && (i == 0 || i + 2 == length)) {
+						hasWordBoundaries= true;
+						i+= 2;
+					} else if (next == 'Q') {
+						int end= source.indexOf("\\E", i + 2); //$NON-NLS-1$
+						if (end == -1)
+							end= length;
+						buffer.append(source, i + 2, end);
+						i= end + 2;
+					} else if (Character.isLetterOrDigit(next)) {
+						// character classes, back references and control characters
+						return null;
+					} else {
+						buffer.append(next);
+						i+= 2;
+					}
+				} else if (META_CHARACTERS.indexOf(ch) != -1) {
+					return null;
+				} else {
+					buffer.append(ch);
+					i++;
+				}
+			}
+			literal= buffer.toString();
+		}
+		if (literal.isEmpty())
+			return null;
+
+		boolean ignoreCase= false;
+		boolean hasCaseVariants= false;
+		if ((flags & Pattern.CASE_INSENSITIVE) != 0) {
+			for (int i= 0; i < literal.length(); i++) {
+				char ch= literal.charAt(i);
+				if (ch > 0x7F)
+					return null; // only ASCII letters are folded on the bytes
+				if (isLetter((byte) ch)) {
+					ignoreCase= true;
+					if ((flags & Pattern.UNICODE_CASE) != 0 && "iksIKS".indexOf(ch) != -1) //$NON-NLS-1$
+						hasCaseVariants= true;
+				}
+			}
+		}
+		return new LiteralPattern(literal, ignoreCase, hasCaseVariants, hasWordBoundaries);
+	}
+
+	/**
+	 * The bytes and skip table of the literal in one encoding.
+	 */
+	private static final class Needle {
+		final byte[] fBytes;
+		final int[] fShifts= new int[256];
+
+		Needle(byte[] bytes, boolean ignoreCase) {
+			fBytes= bytes;
+			int length= bytes.length;
+			for (int i= 0; i < 256; i++)
+				fShifts[i]= length;
+			for (int i= 0; i < length - 1; i++) {
+				byte b= bytes[i];
+				fShifts[b & 0xFF]= length - 1 - i;
+				if (ignoreCase && isLetter(b))
+					fShifts[(b ^ 0x20) & 0xFF]= length - 1 - i;
+			}
+		}
+	}
+
+	private final String fLiteral;
+	private final boolean fIgnoreCase;
+	private final boolean fHasCaseVariants;
+	private final boolean fHasWordBoundaries;
+	/** The literal encoded in UTF-8. */
+	private final Needle fUTF8;
+	/** The literal encoded in ISO-8859-1, or <code>null</code> if it cannot be encoded. */
+	private final Needle fLatin1;
+
+	private LiteralPattern(String literal, boolean ignoreCase, boolean hasCaseVariants, boolean hasWordBoundaries) {
+		fLiteral= literal;
+		fIgnoreCase= ignoreCase;
+		fHasCaseVariants= hasCaseVariants;
+		fHasWordBoundaries= hasWordBoundaries;
+
+		String searched= ignoreCase ? toLowerCase(literal) : literal;
+		fUTF8= new Needle(searched.getBytes(StandardCharsets.UTF_8), ignoreCase);
+		fLatin1= StandardCharsets.ISO_8859_1.newEncoder().canEncode(searched) ? new Needle(searched.getBytes(StandardCharsets.ISO_8859_1), ignoreCase) : null;
+	}
+
+	/**
+	 * Returns the literal.
+	 *
+	 * @return the literal
+	 */
+	public String getLiteral() {
+		return fLiteral;
+	}
+
+	/**
+	 * Tells whether matches must be verified with the regular expression because the pattern has
+	 * word boundaries.
+	 *
+	 * @return <code>true</code> if the pattern has word boundaries
+	 */
+	public boolean hasWordBoundaries() {
+		return fHasWordBoundaries;
+	}
+
+	/**
+	 * Tells whether searching the bytes of the given content finds the same matches as the regular
+	 * expression. This is not the case for case-insensitive searches for 'i', 'k' or 's' if the
+	 * content contains one of the non-ASCII characters that are equal to them ignoring case.
+	 *
+	 * @param content the content to search
+	 * @return <code>true</code> if the content can be searched with this pattern
+	 */
+	public boolean canSearch(EncodedFileContent content) {
+		return !fHasCaseVariants || !content.hasCaseVariants();
+	}
+
+	/**
+	 * Returns the number of bytes of a match.
+	 *
+	 * @param utf8 <code>true</code> for UTF-8, <code>false</code> for single-byte encodings
+	 * @return the number of bytes of a match
+	 */
+	int getByteLength(boolean utf8) {
+		return utf8 ? fUTF8.fBytes.length : fLiteral.length();
+	}
+
+	/**
+	 * Finds the next occurrence of the literal in the given bytes.
+	 *
+	 * @param bytes the bytes
+	 * @param from the index of the first byte to search
+	 * @param to the index after the last byte to search
+	 * @param utf8 <code>true</code> if the bytes are UTF-8, <code>false</code> if they are in a
+	 *            single-byte encoding
+	 * @return the index of the first byte of the occurrence, or <code>-1</code> if there is none
+	 */
+	int indexIn(ByteBuffer bytes, int from, int to, boolean utf8) {
+		Needle needle= utf8 ? fUTF8 : fLatin1;
+		if (needle == null)
+			return -1;
+
+		byte[] pattern= needle.fBytes;
+		int[] shifts= needle.fShifts;
+		int last= pattern.length - 1;
+		byte lastByte= pattern[last];
+		for (int i= from + last; i < to;) {
+			byte b= bytes.get(i);
+			if (b == lastByte || fIgnoreCase && toLowerCase(b) == lastByte) {
+				int start= i - last;
+				int j= last - 1;
+				if (fIgnoreCase) {
+					while (j >= 0 && toLowerCase(bytes.get(start + j)) == pattern[j])
+						j--;
+				} else {
+					while (j >= 0 && bytes.get(start + j) == pattern[j])
+						j--;
+				}
+				if (j < 0)
+					return start;
+			}
+			i+= shifts[b & 0xFF];
+		}
+		return -1;
+	}
+
+	private static boolean isLetter(byte b) {
+		return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z';
+	}
+
+	private static byte toLowerCase(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+	}
+
+	private static String toLowerCase(String ascii) {
+		char[] chars= ascii.toCharArray();
+		for (int i= 0; i < chars.length; i++)
+			chars[i]= (char) toLowerCase((byte) chars[i]);
+		return new String(chars);
+	}
+}
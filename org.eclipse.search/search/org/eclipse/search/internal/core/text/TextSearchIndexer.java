@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.internal.core.text;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.search.internal.ui.SearchMessages;
+import org.eclipse.search.internal.ui.SearchPlugin;
+
+/**
+ * Keeps a {@link TrigramIndex} of the files in the workspace up to date and persists it in the
+ * state location of the search plug-in.
+ * <p>
+ * Changed resources are queued from resource deltas and indexed by a system job. Files whose
+ * modification stamp did not change since they were indexed are not read again, so the whole
+ * workspace is synchronized cheaply on startup.
+ * </p>
+ */
+public class TextSearchIndexer implements IResourceChangeListener {
+
+	private static final String INDEX_FILE= "trigram.index"; //$NON-NLS-1$
+
+	/** Larger files are not indexed and always searched. */
+	private static final long MAX_FILE_SIZE= 8 * 1024 * 1024;
+
+	/** The number of characters checked for a '\0' to detect binary files. */
+	private static final int BINARY_CHECK_LENGTH= 4096;
+
+	private final TrigramIndex fIndex= new TrigramIndex();
+	private final File fIndexFile;
+	private final LinkedHashSet<IResource> fQueue= new LinkedHashSet<>(); // Protected by fQueue
+	private volatile boolean fLoaded;
+
+	private final Job fJob= new Job(SearchMessages.TextSearchIndexer_job_name) {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			if (!fLoaded) {
+				load();
+				fLoaded= true;
+			}
+			TrigramIndex.TrigramCollector collector= new TrigramIndex.TrigramCollector();
+			char[] buffer= new char[8192];
+			IResource resource;
+			while (!monitor.isCanceled() && (resource= poll()) != null) {
+				synchronize(resource, collector, buffer, monitor);
+			}
+			return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+		}
+	};
+
+	/**
+	 * Creates an indexer that is not started yet.
+	 *
+	 * @param stateLocation the directory to persist the index in
+	 */
+	public TextSearchIndexer(IPath stateLocation) {
+		fIndexFile= stateLocation.append(INDEX_FILE).toFile();
+		fJob.setSystem(true);
+		fJob.setPriority(Job.DECORATE);
+	}
+
+	/**
+	 * Loads the index and starts to keep it up to date.
+	 */
+	public void startup() {
+		ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+		enqueue(ResourcesPlugin.getWorkspace().getRoot());
+	}
+
+	/**
+	 * Stops to update the index and saves it.
+	 */
+	public void shutdown() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+		fJob.cancel();
+		try {
+			fJob.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (fLoaded)
+			save();
+	}
+
+	/**
+	 * Stops to update the index and deletes it.
+	 */
+	public void dispose() {
+		ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+		fJob.cancel();
+		try {
+			fJob.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		fIndex.clear();
+		fIndexFile.delete();
+	}
+
+	/**
+	 * Discards the index and indexes all files of the workspace again.
+	 */
+	public void rebuild() {
+		synchronized (fQueue) {
+			fQueue.clear();
+		}
+		fIndex.clear();
+		enqueue(ResourcesPlugin.getWorkspace().getRoot());
+	}
+
+	/**
+	 * Returns the index.
+	 *
+	 * @return the index, or <code>null</code> if it is not loaded yet
+	 */
+	public TrigramIndex getIndex() {
+		return fLoaded ? fIndex : null;
+	}
+
+	/**
+	 * Returns the size of the persisted index.
+	 *
+	 * @return the size of the index file in bytes
+	 */
+	public long getDiskSize() {
+		return fIndexFile.length();
+	}
+
+	@Override
+	public void resourceChanged(IResourceChangeEvent event) {
+		IResourceDelta delta= event.getDelta();
+		if (delta == null)
+			return;
+		try {
+			delta.accept(d -> {
+				IResource resource= d.getResource();
+				switch (d.getKind()) {
+					case IResourceDelta.ADDED:
+					case IResourceDelta.REMOVED:
+						enqueue(resource);
+						return false;
+					case IResourceDelta.CHANGED:
+						int flags= d.getFlags();
+						if (resource.getType() == IResource.PROJECT && (flags & IResourceDelta.OPEN) != 0) {
+							enqueue(resource);
+							return false;
+						}
+						if (resource.getType() == IResource.FILE && (flags & (IResourceDelta.CONTENT | IResourceDelta.ENCODING | IResourceDelta.REPLACED)) != 0)
+							enqueue(resource);
+						return true;
+					default:
+						return true;
+				}
+			});
+		} catch (CoreException e) {
+			SearchPlugin.log(e);
+		}
+	}
+
+	private void enqueue(IResource resource) {
+		synchronized (fQueue) {
+			fQueue.add(resource);
+		}
+		fJob.schedule();
+	}
+
+	private IResource poll() {
+		synchronized (fQueue) {
+			Iterator<IResource> iterator= fQueue.iterator();
+			if (!iterator.hasNext())
+				return null;
+			IResource resource= iterator.next();
+			iterator.remove();
+			return resource;
+		}
+	}
+
+	/**
+	 * Brings the index up to date for a resource: indexes the changed files it contains and
+	 * removes the files that no longer exist.
+	 */
+	private void synchronize(IResource resource, TrigramIndex.TrigramCollector collector, char[] buffer, IProgressMonitor monitor) {
+		String path= resource.getFullPath().toString();
+		if (!resource.isAccessible()) {
+			fIndex.remove(path);
+			fIndex.removeAll(path.endsWith("/") ? path : path + '/'); //$NON-NLS-1$
+			return;
+		}
+		if (resource.getType() == IResource.FILE) {
+			index((IFile) resource, collector, buffer);
+			return;
+		}
+
+		IWorkspaceRoot root= resource.getWorkspace().getRoot();
+		List<String> removed= new ArrayList<>();
+		for (String indexed : fIndex.getPaths(resource.getType() == IResource.ROOT ? "/" : path + '/')) { //$NON-NLS-1$
+			if (!root.getFile(new Path(indexed)).isAccessible())
+				removed.add(indexed);
+		}
+		for (String file : removed)
+			fIndex.remove(file);
+
+		try {
+			((IContainer) resource).accept((IResourceProxy proxy) -> {
+				if (monitor.isCanceled())
+					return false;
+				if (proxy.getType() == IResource.FILE) {
+					if (fIndex.getStamp(proxy.requestFullPath().toString()) != proxy.getModificationStamp())
+						index((IFile) proxy.requestResource(), collector, buffer);
+					return false;
+				}
+				return true;
+			}, IResource.NONE);
+		} catch (CoreException e) {
+			SearchPlugin.log(e);
+		}
+	}
+
+	private void index(IFile file, TrigramIndex.TrigramCollector collector, char[] buffer) {
+		String path= file.getFullPath().toString();
+		long stamp= file.getModificationStamp();
+		if (stamp == IResource.NULL_STAMP) {
+			fIndex.remove(path);
+			return;
+		}
+		if (fIndex.getStamp(path) == stamp)
+			return;
+
+		IPath location= file.getLocation();
+		if (location != null && location.toFile().length() > MAX_FILE_SIZE) {
+			fIndex.addUnindexed(path, stamp);
+			return;
+		}
+		collector.clear();
+		try {
+			try (Reader reader= new InputStreamReader(file.getContents(true), file.getCharset())) {
+				int total= 0;
+				int read;
+				while ((read= reader.read(buffer)) != -1) {
+					for (int i= 0; i < read; i++) {
+						char ch= buffer[i];
+						if (ch == '\0' && total + i < BINARY_CHECK_LENGTH) {
+							fIndex.addUnindexed(path, stamp);
+							return;
+						}
+						collector.add(ch);
+					}
+					total+= read;
+				}
+			}
+			fIndex.add(path, stamp, collector.toArray());
+		} catch (CoreException | IOException e) {
+			// the file will be searched anyway, which reports the problem
+			fIndex.addUnindexed(path, stamp);
+		}
+	}
+
+	private void load() {
+		if (!fIndexFile.isFile())
+			return;
+		try (DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(fIndexFile)))) {
+			fIndex.read(in);
+		} catch (IOException e) {
+			// the index is rebuilt from scratch
+			SearchPlugin.log(e);
+		}
+	}
+
+	private void save() {
+		File temp= new File(fIndexFile.getPath() + ".tmp"); //$NON-NLS-1$
+		try {
+			try (DataOutputStream out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+				fIndex.write(out);
+			}
+			if (fIndexFile.exists() && !fIndexFile.delete() || !temp.renameTo(fIndexFile))
+				throw new IOException("Cannot replace " + fIndexFile); //$NON-NLS-1$
+		} catch (IOException e) {
+			SearchPlugin.log(e);
+			temp.delete();
+		}
+	}
+}
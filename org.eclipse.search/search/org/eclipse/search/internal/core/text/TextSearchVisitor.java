@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,6 +23,11 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -71,6 +76,7 @@ import org.eclipse.search.internal.core.text.FileCharSequenceProvider.FileCharSe
 import org.eclipse.search.internal.ui.Messages;
 import org.eclipse.search.internal.ui.SearchMessages;
 import org.eclipse.search.internal.ui.SearchPlugin;
+import org.eclipse.search.internal.ui.SearchPreferencePage;
 import org.eclipse.search.ui.NewSearchUI;
 
 /**
@@ -80,7 +86,16 @@ public class TextSearchVisitor {
 
 	public static final boolean TRACING= "true".equalsIgnoreCase(Platform.getDebugOption("org.eclipse.search/perf")); //$NON-NLS-1$ //$NON-NLS-2$
 	private static final int NUMBER_OF_LOGICAL_THREADS= Runtime.getRuntime().availableProcessors();
-	private static final int FILES_PER_JOB= 50;
+	/** The maximal number of files in a batch. */
+	private static final int MAX_BATCH_FILES= 50;
+	/** The number of read bytes after which a batch is passed to the matchers. */
+	private static final long BATCH_BYTES= 1 << 20;
+	/** Larger files are not read ahead but streamed while they are matched. */
+	private static final long MAX_READ_AHEAD_SIZE= 4 << 20;
+	/** The number of read batches that may be queued for each matcher. */
+	private static final int QUEUED_BATCHES_PER_MATCHER= 2;
+	/** The maximal number of read threads used when the number is not configured. */
+	private static final int MAX_DEFAULT_READ_THREADS= 8;
 
 	public static class ReusableMatchAccess extends TextSearchMatchAccess {
 
@@ -143,13 +158,253 @@ public class TextSearchVisitor {
 	}
 
 	/**
-	 * A job to find matches in a set of files.
+	 * Files that were read together and are matched together.
+	 */
+	private static final class Batch {
+		final IFile[] fFiles;
+		/**
+		 * Whether the collector accepted the files, <code>null</code> for files whose acceptance
+		 * failed and is asked again when they are matched.
+		 */
+		final Boolean[] fAccepted;
+		/** The contents read ahead, <code>null</code> for files that are read when matched. */
+		final CharSequence[] fContents;
+		int fSize;
+		long fBytes;
+
+		Batch(int capacity) {
+			fFiles= new IFile[capacity];
+			fAccepted= new Boolean[capacity];
+			fContents= new CharSequence[capacity];
+		}
+
+		void add(IFile file, Boolean accepted, CharSequence content, long bytes) {
+			fFiles[fSize]= file;
+			fAccepted[fSize]= accepted;
+			fContents[fSize]= content;
+			fSize++;
+			fBytes+= bytes;
+		}
+
+		boolean isFull() {
+			return fSize == fFiles.length || fBytes >= BATCH_BYTES;
+		}
+	}
+
+	/**
+	 * The files that remain to be read, as one range of indices per worker. A worker whose range
+	 * is exhausted steals the upper half of the largest remaining range, so the files of a range
+	 * stay in location order and the work is balanced even if some files are much larger than
+	 * others.
+	 */
+	private static final class WorkRanges {
+		private final int[] fNext;
+		private final int[] fEnd;
+
+		/**
+		 * Splits the files evenly among the first owners of the workers.
+		 *
+		 * @param files the number of files
+		 * @param workers the number of workers
+		 * @param owners the number of workers that get an initial range
+		 */
+		WorkRanges(int files, int workers, int owners) {
+			fNext= new int[workers];
+			fEnd= new int[workers];
+			for (int i= 0; i < owners; i++) {
+				fNext[i]= (int) ((long) files * i / owners);
+				fEnd[i]= (int) ((long) files * (i + 1) / owners);
+			}
+		}
+
+		/**
+		 * Claims the next file for a worker.
+		 *
+		 * @param worker the worker
+		 * @return the index of the file, or <code>-1</code> if all files have been claimed
+		 */
+		synchronized int claim(int worker) {
+			if (fNext[worker] == fEnd[worker]) {
+				int victim= -1;
+				int remaining= 0;
+				for (int i= 0; i < fNext.length; i++) {
+					if (fEnd[i] - fNext[i] > remaining) {
+						victim= i;
+						remaining= fEnd[i] - fNext[i];
+					}
+				}
+				if (victim == -1)
+					return -1;
+				int split= fNext[victim] + remaining / 2;
+				fNext[worker]= split;
+				fEnd[worker]= fEnd[victim];
+				fEnd[victim]= split;
+			}
+			return fNext[worker]++;
+		}
+	}
+
+	/**
+	 * The state of a search that is shared by the read and the match stage. Readers read the
+	 * files into batches and pass them to the matchers through a bounded queue. Matchers that
+	 * find the queue empty read files themselves. A file is only read after the collector has
+	 * accepted it. If the collector cannot run in parallel there are no readers, so that the
+	 * collector is only called by the single matcher.
+	 */
+	private final class Pipeline {
+		final IFile[] fFiles;
+		final Map<IFile, IDocument> fDocumentsInEditors;
+		final WorkRanges fWork;
+		final BlockingQueue<Batch> fReadBatches;
+		final AtomicInteger fActiveReaders;
+
+		// statistics for tracing, summed over all threads
+		final AtomicLong fReadTime= new AtomicLong();
+		final AtomicLong fMatchTime= new AtomicLong();
+		final AtomicLong fReaderWaitTime= new AtomicLong();
+		final AtomicLong fMatcherWaitTime= new AtomicLong();
+		final AtomicLong fReadBytes= new AtomicLong();
+		final AtomicInteger fBatchCount= new AtomicInteger();
+
+		Pipeline(IFile[] files, Map<IFile, IDocument> documentsInEditors, int readers, int matchers) {
+			fFiles= files;
+			fDocumentsInEditors= documentsInEditors;
+			fWork= new WorkRanges(files.length, readers + matchers, readers > 0 ? readers : matchers);
+			fReadBatches= new ArrayBlockingQueue<>(matchers * QUEUED_BATCHES_PER_MATCHER);
+			fActiveReaders= new AtomicInteger(readers);
+		}
+
+		/**
+		 * Asks the collector whether to search a file and reads the accepted file into a batch.
+		 *
+		 * @param batch the batch
+		 * @param index the index of the file
+		 */
+		void read(Batch batch, int index) {
+			long start= TRACING ? System.nanoTime() : 0;
+			IFile file= fFiles[index];
+			Boolean accepted;
+			try {
+				accepted= Boolean.valueOf(fCollector.acceptFile(file));
+			} catch (CoreException | RuntimeException e) {
+				// the match stage asks again and reports the problem
+				accepted= null;
+			}
+			long[] bytes= new long[1];
+			CharSequence content= accepted != null && accepted.booleanValue() ? readAhead(file, fDocumentsInEditors, bytes) : null;
+			batch.add(file, accepted, content, bytes[0]);
+			if (TRACING) {
+				fReadTime.addAndGet(System.nanoTime() - start);
+				fReadBytes.addAndGet(bytes[0]);
+			}
+		}
+
+		/**
+		 * Passes a read batch to the matchers, waiting while the queue is full.
+		 *
+		 * @param batch the batch
+		 * @param monitor the monitor of the reader
+		 * @return <code>false</code> if the search has been canceled
+		 */
+		boolean put(Batch batch, IProgressMonitor monitor) {
+			long start= TRACING ? System.nanoTime() : 0;
+			try {
+				while (!fReadBatches.offer(batch, 10, TimeUnit.MILLISECONDS)) {
+					if (monitor.isCanceled() || fFatalError)
+						return false;
+				}
+				fBatchCount.incrementAndGet();
+				return true;
+			} catch (InterruptedException e) {
+				return false;
+			} finally {
+				if (TRACING)
+					fReaderWaitTime.addAndGet(System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Returns the next batch to match. If no read batch is available, the matcher reads the
+		 * next file itself.
+		 *
+		 * @param worker the matcher
+		 * @param monitor the monitor of the matcher
+		 * @return the batch, or <code>null</code> if all files have been matched or the search
+		 *         has been canceled
+		 */
+		Batch take(int worker, IProgressMonitor monitor) {
+			try {
+				while (!monitor.isCanceled() && !fFatalError) {
+					Batch batch= fReadBatches.poll();
+					if (batch != null)
+						return batch;
+					int index= fWork.claim(worker);
+					if (index != -1) {
+						batch= new Batch(1);
+						read(batch, index);
+						return batch;
+					}
+					// check the readers first, their last batch is queued before they finish
+					if (fActiveReaders.get() == 0 && fReadBatches.isEmpty())
+						return null;
+					long start= TRACING ? System.nanoTime() : 0;
+					batch= fReadBatches.poll(10, TimeUnit.MILLISECONDS);
+					if (TRACING)
+						fMatcherWaitTime.addAndGet(System.nanoTime() - start);
+					if (batch != null)
+						return batch;
+				}
+			} catch (InterruptedException e) {
+				// canceled
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A job that reads files of the pipeline into batches.
+	 */
+	private class ReadJob extends Job {
+		private final Pipeline fPipeline;
+		private final int fWorker;
+
+		public ReadJob(Pipeline pipeline, int worker) {
+			super("Text Search Reader"); //$NON-NLS-1$
+			setSystem(true);
+			fPipeline= pipeline;
+			fWorker= worker;
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				Batch batch= null;
+				int index;
+				while (!monitor.isCanceled() && !fFatalError && (index= fPipeline.fWork.claim(fWorker)) != -1) {
+					if (batch == null)
+						batch= new Batch(MAX_BATCH_FILES);
+					fPipeline.read(batch, index);
+					if (batch.isFull()) {
+						if (!fPipeline.put(batch, monitor))
+							break;
+						batch= null;
+					}
+				}
+				if (batch != null)
+					fPipeline.put(batch, monitor);
+			} finally {
+				fPipeline.fActiveReaders.decrementAndGet();
+			}
+			return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+		}
+	}
+
+	/**
+	 * A job to find matches in the files read by the pipeline.
 	 */
 	private class TextSearchJob extends Job {
-		private final IFile[] fFiles;
-		private final int fBegin;
-		private final int fEnd;
-		private final Map<IFile, IDocument> fDocumentsInEditors;
+		private final Pipeline fPipeline;
+		private final int fWorker;
 		private FileCharSequenceProvider fileCharSequenceProvider;
 
 		private IPath previousLocationFromFile;
@@ -159,57 +414,77 @@ public class TextSearchVisitor {
 
 
 		/**
-		 * Searches for matches in a set of files.
+		 * Searches for matches in the files of a pipeline.
 		 *
-		 * @param files an array of IFiles, a portion of which is to be processed
-		 * @param begin the first element in the file array to process
-		 * @param end one past the last element in the array to process
-		 * @param documentsInEditors a map from IFile to IDocument for all open, dirty editors
+		 * @param pipeline the pipeline that provides the files
+		 * @param worker the index of this job in the work ranges of the pipeline
 		 */
-		public TextSearchJob(IFile[] files, int begin, int end, Map<IFile, IDocument> documentsInEditors) {
-			super(files[begin].getName());
+		public TextSearchJob(Pipeline pipeline, int worker) {
+			super("Text Search Matcher"); //$NON-NLS-1$
 			setSystem(true);
-			fFiles = files;
-			fBegin = begin;
-			fEnd = end;
-			fDocumentsInEditors = documentsInEditors;
+			fPipeline= pipeline;
+			fWorker= worker;
 		}
 
 		@Override
 		protected IStatus run(IProgressMonitor inner) {
 			MultiStatus multiStatus=
 					new MultiStatus(NewSearchUI.PLUGIN_ID, IStatus.OK, SearchMessages.TextSearchEngine_statusMessage, null);
-			SubMonitor subMonitor = SubMonitor.convert(inner, fEnd - fBegin);
+			SubMonitor subMonitor= SubMonitor.convert(inner);
 			this.fileCharSequenceProvider = new FileCharSequenceProvider();
-			for (int i = fBegin; i < fEnd && !fFatalError; i++) {
-				IStatus status= processFile(fFiles[i], subMonitor.split(1));
-				// Only accumulate interesting status
-				if (!status.isOK())
-					multiStatus.add(status);
-				// Group cancellation is propagated to this job's monitor.
-				// Stop processing and return the status for the completed jobs.
-			}
-			if (charsequenceForPreviousLocation != null) {
-				try {
-					fileCharSequenceProvider.releaseCharSequence(charsequenceForPreviousLocation);
-				} catch (IOException e) {
-					SearchPlugin.log(e);
+			try {
+				Batch batch;
+				while ((batch= fPipeline.take(fWorker, inner)) != null) {
+					long start= TRACING ? System.nanoTime() : 0;
+					// the number of files of a matcher is only known batch by batch
+					subMonitor.setWorkRemaining(batch.fSize);
+					for (int i= 0; i < batch.fSize && !fFatalError; i++) {
+						IStatus status= processFile(batch.fFiles[i], batch.fAccepted[i], batch.fContents[i], subMonitor.split(1));
+						// Only accumulate interesting status
+						if (!status.isOK())
+							multiStatus.add(status);
+						// Group cancellation is propagated to this job's monitor.
+						// Stop processing and return the status for the completed jobs.
+						if (inner.isCanceled())
+							break;
+					}
+					if (TRACING)
+						fPipeline.fMatchTime.addAndGet(System.nanoTime() - start);
+				}
+			} finally {
+				if (charsequenceForPreviousLocation != null) {
+					try {
+						fileCharSequenceProvider.releaseCharSequence(charsequenceForPreviousLocation);
+					} catch (IOException e) {
+						SearchPlugin.log(e);
+					}
 				}
 			}
 			return multiStatus;
 		}
 
-		public IStatus processFile(IFile file, IProgressMonitor monitor) {
+		/**
+		 * Searches a file for matches.
+		 *
+		 * @param file the file
+		 * @param accepted whether the collector accepted the file, <code>null</code> to ask it
+		 * @param content the content read ahead, or <code>null</code> to read the file
+		 * @param monitor the progress monitor for this file
+		 * @return the status of the search in this file
+		 */
+		public IStatus processFile(IFile file, Boolean accepted, CharSequence content, IProgressMonitor monitor) {
 			// A natural cleanup after the change to use JobGroups is accepted would be to move these
 			// methods to the TextSearchJob class.
 			Matcher matcher= fSearchPattern.pattern().length() == 0 ? null : fSearchPattern.matcher(""); //$NON-NLS-1$
 
 			try {
-				if (!fCollector.acceptFile(file) || matcher == null) {
+				if (accepted == null)
+					accepted= Boolean.valueOf(fCollector.acceptFile(file));
+				if (!accepted.booleanValue() || matcher == null) {
 					return Status.OK_STATUS;
 				}
 
-				IDocument document= getOpenDocument(file, getDocumentsInEditors());
+				IDocument document= getOpenDocument(file, fPipeline.fDocumentsInEditors);
 				if (document != null) {
 					DocumentCharSequence documentCharSequence= new DocumentCharSequence(document);
 					// assume all documents are non-binary
@@ -234,12 +509,25 @@ public class TextSearchVisitor {
 						}
 					}
 					try {
-						charsequenceForPreviousLocation= fileCharSequenceProvider.newCharSequence(file);
+						EncodedFileContent encodedContent;
+						if (content != null) {
+							encodedContent= content instanceof EncodedFileContent ? (EncodedFileContent) content : null;
+							charsequenceForPreviousLocation= content;
+						} else {
+							// literals are searched for in the bytes of the file, which are only decoded around matches
+							encodedContent= fLiteralPattern != null ? EncodedFileContent.open(file) : null;
+							if (encodedContent != null && !fLiteralPattern.canSearch(encodedContent))
+								encodedContent= null;
+							charsequenceForPreviousLocation= encodedContent != null ? encodedContent : fileCharSequenceProvider.newCharSequence(file);
+						}
 						if (hasBinaryContent(charsequenceForPreviousLocation, file) && !fCollector.reportBinaryFile(file)) {
 							occurencesForPreviousLocation = Collections.emptyList();
 							return Status.OK_STATUS;
 						}
-						occurencesForPreviousLocation = locateMatches(file, charsequenceForPreviousLocation, matcher, monitor);
+						if (encodedContent != null)
+							occurencesForPreviousLocation = locateMatches(file, encodedContent, matcher, monitor);
+						else
+							occurencesForPreviousLocation = locateMatches(file, charsequenceForPreviousLocation, matcher, monitor);
 						previousLocationFromFile = file.getLocation();
 					} catch (FileCharSequenceProvider.FileCharSequenceException e) {
 						e.throwWrappedException();
@@ -276,16 +564,13 @@ public class TextSearchVisitor {
 			}
 			return Status.OK_STATUS;
 		}
-
-		public Map<IFile, IDocument> getDocumentsInEditors() {
-			return fDocumentsInEditors;
-		}
-
 	}
 
 
 	private final TextSearchRequestor fCollector;
 	private final Pattern fSearchPattern;
+	private final LiteralPattern fLiteralPattern;
+	private final TrigramQuery fTrigramQuery;
 
 	private IProgressMonitor fProgressMonitor;
 
@@ -304,6 +589,8 @@ public class TextSearchVisitor {
 		fStatus= new MultiStatus(NewSearchUI.PLUGIN_ID, IStatus.OK, SearchMessages.TextSearchEngine_statusMessage, null);
 
 		fSearchPattern= searchPattern;
+		fLiteralPattern= LiteralPattern.create(searchPattern);
+		fTrigramQuery= searchPattern.pattern().length() == 0 ? null : TrigramQuery.create(searchPattern);
 
 		fIsLightweightAutoRefresh= Platform.getPreferencesService().getBoolean(ResourcesPlugin.PI_RESOURCES, ResourcesPlugin.PREF_LIGHTWEIGHT_AUTO_REFRESH, false, null);
 	}
@@ -313,15 +600,23 @@ public class TextSearchVisitor {
 			return fStatus;
 		}
 		fProgressMonitor= monitor == null ? new NullProgressMonitor() : monitor;
+		Map<IFile, IDocument> documentsInEditors= PlatformUI.isWorkbenchRunning() ? evalNonFileBufferDocuments() : Collections.emptyMap();
+		files= selectCandidates(files, documentsInEditors);
+		if (files.length == 0) {
+			return fStatus;
+		}
 		fNumberOfScannedFiles= 0;
 		fNumberOfFilesToScan= files.length;
 		fCurrentFile= null;
-		int maxThreads= fCollector.canRunInParallel() ? NUMBER_OF_LOGICAL_THREADS : 1;
-		int jobCount= 1;
-		if (maxThreads > 1) {
-			jobCount= (files.length + FILES_PER_JOB - 1) / FILES_PER_JOB;
+		// readers ask the collector whether to read a file, which is only possible if it is thread-safe
+		int readers= 0;
+		int matchers= 1;
+		if (fCollector.canRunInParallel()) {
+			readers= getNumberOfThreads(SearchPreferencePage.TEXT_SEARCH_READ_THREADS, Math.min(2 * NUMBER_OF_LOGICAL_THREADS, MAX_DEFAULT_READ_THREADS));
+			matchers= getNumberOfThreads(SearchPreferencePage.TEXT_SEARCH_MATCH_THREADS, NUMBER_OF_LOGICAL_THREADS);
 		}
-		final JobGroup jobGroup= new TextSearchJobGroup("Text Search", maxThreads, jobCount); //$NON-NLS-1$
+		final JobGroup jobGroup= new TextSearchJobGroup("Text Search", readers + matchers, readers + matchers); //$NON-NLS-1$
+		Pipeline pipeline= null;
 		long startTime= TRACING ? System.currentTimeMillis() : 0;
 
 		Job monitorUpdateJob= new Job(SearchMessages.TextSearchVisitor_progress_updating_job) {
@@ -369,8 +664,6 @@ public class TextSearchVisitor {
 			monitorUpdateJob.schedule();
 			try {
 				fCollector.beginReporting();
-				Map<IFile, IDocument> documentsInEditors= PlatformUI.isWorkbenchRunning() ? evalNonFileBufferDocuments() : Collections.emptyMap();
-				int filesPerJob = (files.length + jobCount - 1) / jobCount;
 				IFile[] filesByLocation = new IFile[files.length];
 				System.arraycopy(files, 0, filesByLocation, 0, files.length);
 				// Sorting files to search by location allows to more easily reuse
@@ -393,9 +686,9 @@ public class TextSearchVisitor {
 						return o1.getLocation().toString().compareTo(o2.getLocation().toString());
 					}
 				});
-				for (int first= 0; first < filesByLocation.length; first += filesPerJob) {
-					int end= Math.min(filesByLocation.length, first + filesPerJob);
-					Job job= new TextSearchJob(filesByLocation, first, end, documentsInEditors);
+				pipeline= new Pipeline(filesByLocation, documentsInEditors, readers, matchers);
+				for (int i= 0; i < readers + matchers; i++) {
+					Job job= i < readers ? new ReadJob(pipeline, i) : new TextSearchJob(pipeline, i);
 					job.setJobGroup(jobGroup);
 					job.schedule();
 				}
@@ -417,9 +710,16 @@ public class TextSearchVisitor {
 			fProgressMonitor.done();
 			fCollector.endReporting();
 			if (TRACING) {
-				Object[] args= { new Integer(fNumberOfScannedFiles), new Integer(jobCount), new Integer(NUMBER_OF_LOGICAL_THREADS), new Long(System.currentTimeMillis() - startTime) };
+				Object[] args= { new Integer(fNumberOfScannedFiles), new Integer(readers), new Integer(matchers), new Long(System.currentTimeMillis() - startTime) };
 				System.out.println(Messages.format(
-						"[TextSearch] Search duration for {0} files in {1} jobs using {2} threads: {3}ms", args)); //$NON-NLS-1$
+						"[TextSearch] Search duration for {0} files using {1} readers and {2} matchers: {3}ms", args)); //$NON-NLS-1$
+				if (pipeline != null) {
+					Object[] stages= { new Long(pipeline.fReadBytes.get() / 1024), new Integer(pipeline.fBatchCount.get()),
+							new Long(pipeline.fReadTime.get() / 1000000), new Long(pipeline.fMatchTime.get() / 1000000),
+							new Long(pipeline.fReaderWaitTime.get() / 1000000), new Long(pipeline.fMatcherWaitTime.get() / 1000000) };
+					System.out.println(Messages.format(
+							"[TextSearch] Read {0} KB in {1} batches, read time {2}ms, match time {3}ms, readers blocked {4}ms, matchers idle {5}ms", stages)); //$NON-NLS-1$
+				}
 			}
 	   }
 	}
@@ -428,6 +728,93 @@ public class TextSearchVisitor {
 		return search(scope.evaluateFilesInScope(fStatus), monitor);
 	}
 
+	/**
+	 * Returns the configured number of threads for a stage of the search.
+	 *
+	 * @param key the preference key
+	 * @param defaultValue the number of threads if the preference is not set or not positive
+	 * @return the number of threads
+	 */
+	private static int getNumberOfThreads(String key, int defaultValue) {
+		int threads= Platform.getPreferencesService().getInt(NewSearchUI.PLUGIN_ID, key, 0, null);
+		return threads > 0 ? threads : Math.max(1, defaultValue);
+	}
+
+	/**
+	 * Reads the content of a file in the read stage of the search. Files with open documents and
+	 * large files are not read, and neither are files that cannot be read: the match stage reads
+	 * them and reports the problem.
+	 *
+	 * @param file the file
+	 * @param documentsInEditors the documents of open, dirty editors
+	 * @param bytes returns the number of bytes read
+	 * @return the content, or <code>null</code> if the file is read by the match stage
+	 */
+	private CharSequence readAhead(IFile file, Map<IFile, IDocument> documentsInEditors, long[] bytes) {
+		if (fSearchPattern.pattern().length() == 0 || getOpenDocument(file, documentsInEditors) != null)
+			return null;
+		IPath location= file.getLocation();
+		if (location == null)
+			return null;
+		long size= location.toFile().length();
+		try {
+			if (fLiteralPattern != null) {
+				EncodedFileContent content= EncodedFileContent.open(file);
+				if (content != null && fLiteralPattern.canSearch(content)) {
+					bytes[0]= size;
+					return content;
+				}
+			}
+			if (size > MAX_READ_AHEAD_SIZE)
+				return null;
+			bytes[0]= size;
+			return FileCharSequenceProvider.readContent(file);
+		} catch (CoreException | IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Uses the trigram index to drop the files that cannot contain a match. Files with open
+	 * documents are always searched since their content may differ from the indexed one.
+	 *
+	 * @param files the files in the scope
+	 * @param documentsInEditors the documents of open, dirty editors
+	 * @return the files that have to be searched
+	 */
+	private IFile[] selectCandidates(IFile[] files, Map<IFile, IDocument> documentsInEditors) {
+		if (fTrigramQuery == null)
+			return files;
+		SearchPlugin plugin= SearchPlugin.getDefault();
+		TextSearchIndexer indexer= plugin != null ? plugin.getTextSearchIndexer() : null;
+		TrigramIndex index= indexer != null ? indexer.getIndex() : null;
+		if (index == null)
+			return files;
+
+		long startTime= TRACING ? System.currentTimeMillis() : 0;
+		String[] paths= new String[files.length];
+		long[] stamps= new long[files.length];
+		for (int i= 0; i < files.length; i++) {
+			IFile file= files[i];
+			if (getOpenDocument(file, documentsInEditors) == null) {
+				paths[i]= file.getFullPath().toString();
+				stamps[i]= file.getModificationStamp();
+			}
+		}
+		boolean[] selected= index.select(paths, stamps, fTrigramQuery);
+		List<IFile> candidates= new ArrayList<>();
+		for (int i= 0; i < files.length; i++) {
+			if (selected[i])
+				candidates.add(files[i]);
+		}
+		if (TRACING) {
+			Object[] args= { new Integer(candidates.size()), new Integer(files.length), new Long(System.currentTimeMillis() - startTime) };
+			System.out.println(Messages.format(
+					"[TextSearch] Index selected {0} of {1} files in {2}ms", args)); //$NON-NLS-1$
+		}
+		return candidates.toArray(new IFile[candidates.size()]);
+	}
+
 	/**
 	 * Returns a map from IFile to IDocument for all open, dirty editors. After creation this map
 	 * is not modified, so returning a non-synchronized map is ok.
@@ -531,6 +918,57 @@ public class TextSearchVisitor {
 		return occurences;
 	}
 
+	private List<TextSearchMatchAccess> locateMatches(IFile file, EncodedFileContent content, Matcher matcher, IProgressMonitor monitor) throws CoreException {
+		List<TextSearchMatchAccess> occurences= null;
+		int length= fLiteralPattern.getLiteral().length();
+		int byteLength= content.getByteLength(fLiteralPattern);
+		if (fLiteralPattern.hasWordBoundaries()) {
+			matcher.reset(content);
+			matcher.useTransparentBounds(true);
+		}
+		int k= 0;
+		int position= content.indexOf(fLiteralPattern, 0);
+		while (position != -1) {
+			int start= content.getCharOffset(position);
+			if (fLiteralPattern.hasWordBoundaries() && !isMatch(matcher, start, length, content.length())) {
+				position= content.indexOf(fLiteralPattern, position + 1);
+				continue;
+			}
+			if (occurences == null) {
+				occurences= new ArrayList<>();
+			}
+			ReusableMatchAccess access= new ReusableMatchAccess();
+			access.initialize(file, start, length, content);
+			occurences.add(access);
+			if (!fCollector.acceptPatternMatch(access)) {
+				return occurences; // no further reporting requested
+			}
+			// Periodically check for cancellation and quit working on the current file if the job has been cancelled.
+			if (++k % 20 == 0 && monitor.isCanceled()) {
+				break;
+			}
+			position= content.indexOf(fLiteralPattern, position + byteLength);
+		}
+		if (occurences == null) {
+			occurences= Collections.emptyList();
+		}
+		return occurences;
+	}
+
+	/**
+	 * Tells whether the regular expression matches the literal at the given offset, which
+	 * verifies the word boundaries around it.
+	 *
+	 * @param matcher the matcher, reset to the content and using transparent bounds
+	 * @param start the offset of the literal
+	 * @param length the length of the literal
+	 * @param end the length of the content
+	 * @return <code>true</code> if the regular expression matches
+	 */
+	private static boolean isMatch(Matcher matcher, int start, int length, int end) {
+		matcher.region(start, end);
+		return matcher.lookingAt() && matcher.end() == start + length;
+	}
 
 	private String getExceptionMessage(Exception e) {
 		String message= e.getLocalizedMessage();
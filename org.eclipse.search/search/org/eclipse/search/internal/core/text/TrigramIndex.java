@@ -0,0 +1,540 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.internal.core.text;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index from the trigrams of file contents to the files that contain them.
+ * <p>
+ * Trigrams are hashed into a fixed number of buckets after folding their case, so a bucket may
+ * stand for several trigrams. Each bucket has a posting list with the ids of the files that
+ * contain one of its trigrams, encoded as variable-length deltas. A file gets a new id whenever
+ * it is indexed, so the lists only ever grow at their end; the ids of removed and changed files
+ * are dropped when the index is compacted.
+ * </p>
+ * <p>
+ * Files are identified by their path and modification stamp. A file that is not in the index,
+ * whose stamp differs from the indexed one or that was added as not indexed (e.g. because it is
+ * binary or too large) may always contain a match.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+public final class TrigramIndex {
+
+	/**
+	 * Collects the distinct trigram buckets of a text. Surrogates and explicit breaks end a run of
+	 * characters; trigrams never span them.
+	 */
+	public static final class TrigramCollector {
+
+		private final int[] fSeen= new int[BUCKETS];
+		private int fGeneration= 1;
+		private int[] fTrigrams= new int[256];
+		private int fCount;
+		private char fFirst;
+		private char fSecond;
+		private int fRunLength;
+
+		/**
+		 * Adds the next character of the text.
+		 *
+		 * @param ch the character
+		 */
+		public void add(char ch) {
+			if (Character.isSurrogate(ch)) {
+				fRunLength= 0;
+				return;
+			}
+			char folded= fold(ch);
+			if (fRunLength >= 2) {
+				int trigram= getTrigram(fFirst, fSecond, folded);
+				if (fSeen[trigram] != fGeneration) {
+					fSeen[trigram]= fGeneration;
+					if (fCount == fTrigrams.length)
+						fTrigrams= Arrays.copyOf(fTrigrams, fCount * 2);
+					fTrigrams[fCount++]= trigram;
+				}
+			} else {
+				fRunLength++;
+			}
+			fFirst= fSecond;
+			fSecond= folded;
+		}
+
+		/**
+		 * Ends the current run of characters.
+		 */
+		public void breakRun() {
+			fRunLength= 0;
+		}
+
+		/**
+		 * Returns the number of distinct trigrams collected so far.
+		 *
+		 * @return the number of trigrams
+		 */
+		public int size() {
+			return fCount;
+		}
+
+		/**
+		 * Returns the distinct trigrams collected so far.
+		 *
+		 * @return the sorted trigrams
+		 */
+		public int[] toArray() {
+			int[] trigrams= Arrays.copyOf(fTrigrams, fCount);
+			Arrays.sort(trigrams);
+			return trigrams;
+		}
+
+		/**
+		 * Removes all trigrams so that the collector can be reused for another text.
+		 */
+		public void clear() {
+			fCount= 0;
+			fRunLength= 0;
+			if (++fGeneration == 0) {
+				Arrays.fill(fSeen, 0);
+				fGeneration= 1;
+			}
+		}
+	}
+
+	/**
+	 * The indexed state of a file.
+	 */
+	private static final class Entry {
+		/** The id of the file in the posting lists, or <code>-1</code> if it is not indexed. */
+		final int fId;
+		final long fStamp;
+
+		Entry(int id, long stamp) {
+			fId= id;
+			fStamp= stamp;
+		}
+	}
+
+	/** The version of the persisted format. */
+	private static final int VERSION= 1;
+
+	private static final int BUCKET_BITS= 18;
+	private static final int BUCKETS= 1 << BUCKET_BITS;
+
+	/** The minimal number of dropped ids before the index is compacted. */
+	private static final int MIN_DEAD_IDS= 1024;
+
+	/**
+	 * Folds the case of a character in the same way for the indexed text and the query, such that
+	 * characters that are equal ignoring case are folded to the same character.
+	 *
+	 * @param ch the character
+	 * @return the folded character
+	 */
+	static char fold(char ch) {
+		if (ch < 0x80)
+			return ch >= 'A' && ch <= 'Z' ? (char) (ch | 0x20) : ch;
+		return Character.toLowerCase(Character.toUpperCase(ch));
+	}
+
+	/**
+	 * Returns the bucket of a trigram of folded characters.
+	 *
+	 * @param first the first character
+	 * @param second the second character
+	 * @param third the third character
+	 * @return the bucket
+	 */
+	static int getTrigram(char first, char second, char third) {
+		long key= (long) first << 32 | (long) second << 16 | third;
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - BUCKET_BITS));
+	}
+
+	private final Map<String, Entry> fEntries= new HashMap<>();
+	/** The paths of the files by id, <code>null</code> for dropped ids. */
+	private String[] fPaths= new String[256];
+	private int fNextId;
+	private int fDeadIds;
+
+	private final byte[][] fPostings= new byte[BUCKETS][];
+	private final int[] fLengths= new int[BUCKETS];
+	private final int[] fLastIds= new int[BUCKETS];
+	private int fTrigramCount;
+	private long fPostingBytes;
+
+	private int fSearches;
+	private long fConsideredFiles;
+	private long fSkippedFiles;
+
+	/**
+	 * Adds a file with the given trigrams, replacing the file if it is already indexed.
+	 *
+	 * @param path the path of the file
+	 * @param stamp the modification stamp of the indexed content
+	 * @param trigrams the trigrams of the content
+	 */
+	public synchronized void add(String path, long stamp, int[] trigrams) {
+		drop(path);
+		compactIfNeeded();
+		int id= fNextId++;
+		if (id == fPaths.length)
+			fPaths= Arrays.copyOf(fPaths, id * 2);
+		fPaths[id]= path;
+		fEntries.put(path, new Entry(id, stamp));
+		for (int i= 0; i < trigrams.length; i++)
+			append(trigrams[i], id);
+	}
+
+	/**
+	 * Adds a file that is not indexed and may always contain matches, replacing the file if it is
+	 * already indexed.
+	 *
+	 * @param path the path of the file
+	 * @param stamp the modification stamp of the content
+	 */
+	public synchronized void addUnindexed(String path, long stamp) {
+		drop(path);
+		compactIfNeeded();
+		fEntries.put(path, new Entry(-1, stamp));
+	}
+
+	/**
+	 * Removes a file.
+	 *
+	 * @param path the path of the file
+	 */
+	public synchronized void remove(String path) {
+		drop(path);
+		compactIfNeeded();
+	}
+
+	/**
+	 * Removes all files in a folder.
+	 *
+	 * @param folder the path of the folder, ending with a separator
+	 */
+	public synchronized void removeAll(String folder) {
+		for (String path : getPaths(folder))
+			drop(path);
+		compactIfNeeded();
+	}
+
+	/**
+	 * Returns the paths of the files in a folder.
+	 *
+	 * @param folder the path of the folder, ending with a separator
+	 * @return the paths of the files
+	 */
+	public synchronized List<String> getPaths(String folder) {
+		List<String> paths= new ArrayList<>();
+		for (String path : fEntries.keySet()) {
+			if (path.startsWith(folder))
+				paths.add(path);
+		}
+		return paths;
+	}
+
+	/**
+	 * Returns the modification stamp of a file.
+	 *
+	 * @param path the path of the file
+	 * @return the stamp of the indexed content, or <code>-1</code> if the file is not in the
+	 *         index
+	 */
+	public synchronized long getStamp(String path) {
+		Entry entry= fEntries.get(path);
+		return entry != null ? entry.fStamp : -1;
+	}
+
+	/**
+	 * Selects the files that may contain matches of a query.
+	 *
+	 * @param paths the paths of the files, <code>null</code> for files that must be selected
+	 * @param stamps the current modification stamps of the files
+	 * @param query the query
+	 * @return for each file whether it may contain a match
+	 */
+	public synchronized boolean[] select(String[] paths, long[] stamps, TrigramQuery query) {
+		BitSet candidates= getCandidates(query.getTrigrams());
+		boolean[] selected= new boolean[paths.length];
+		int skipped= 0;
+		for (int i= 0; i < paths.length; i++) {
+			Entry entry= paths[i] != null ? fEntries.get(paths[i]) : null;
+			selected[i]= entry == null || entry.fStamp != stamps[i] || entry.fId == -1 || candidates.get(entry.fId);
+			if (!selected[i])
+				skipped++;
+		}
+		fSearches++;
+		fConsideredFiles+= paths.length;
+		fSkippedFiles+= skipped;
+		return selected;
+	}
+
+	private BitSet getCandidates(int[] trigrams) {
+		// intersect the shortest lists first
+		int[] order= trigrams.clone();
+		for (int i= 1; i < order.length; i++) {
+			int trigram= order[i];
+			int j= i - 1;
+			while (j >= 0 && fLengths[order[j]] > fLengths[trigram]) {
+				order[j + 1]= order[j];
+				j--;
+			}
+			order[j + 1]= trigram;
+		}
+		BitSet candidates= decode(order[0]);
+		for (int i= 1; i < order.length && !candidates.isEmpty(); i++)
+			candidates.and(decode(order[i]));
+		return candidates;
+	}
+
+	private BitSet decode(int trigram) {
+		BitSet ids= new BitSet(fNextId);
+		byte[] posting= fPostings[trigram];
+		int length= fLengths[trigram];
+		int id= -1;
+		int i= 0;
+		while (i < length) {
+			int delta= 0;
+			int shift= 0;
+			byte b;
+			do {
+				b= posting[i++];
+				delta|= (b & 0x7F) << shift;
+				shift+= 7;
+			} while (b < 0);
+			id+= delta;
+			ids.set(id);
+		}
+		return ids;
+	}
+
+	private void append(int trigram, int id) {
+		byte[] posting= fPostings[trigram];
+		int length= fLengths[trigram];
+		if (posting == null) {
+			posting= fPostings[trigram]= new byte[8];
+			fLastIds[trigram]= -1;
+			fTrigramCount++;
+		} else if (length + 5 > posting.length) {
+			posting= fPostings[trigram]= Arrays.copyOf(posting, posting.length * 2);
+		}
+		int delta= id - fLastIds[trigram];
+		while (delta >= 0x80) {
+			posting[length++]= (byte) (delta | 0x80);
+			delta>>>= 7;
+		}
+		posting[length++]= (byte) delta;
+		fPostingBytes+= length - fLengths[trigram];
+		fLengths[trigram]= length;
+		fLastIds[trigram]= id;
+	}
+
+	private void drop(String path) {
+		Entry entry= fEntries.remove(path);
+		if (entry != null && entry.fId != -1) {
+			fPaths[entry.fId]= null;
+			fDeadIds++;
+		}
+	}
+
+	private void compactIfNeeded() {
+		if (fDeadIds >= MIN_DEAD_IDS && fDeadIds > fNextId - fDeadIds)
+			compact();
+	}
+
+	/**
+	 * Drops the ids of removed files from the posting lists and renumbers the remaining files.
+	 */
+	private void compact() {
+		int[] newIds= new int[fNextId];
+		String[] paths= new String[Math.max(256, fNextId - fDeadIds)];
+		int nextId= 0;
+		for (int id= 0; id < fNextId; id++) {
+			String path= fPaths[id];
+			if (path != null) {
+				newIds[id]= nextId;
+				paths[nextId]= path;
+				fEntries.put(path, new Entry(nextId, fEntries.get(path).fStamp));
+				nextId++;
+			} else {
+				newIds[id]= -1;
+			}
+		}
+
+		fTrigramCount= 0;
+		fPostingBytes= 0;
+		for (int trigram= 0; trigram < BUCKETS; trigram++) {
+			if (fPostings[trigram] == null)
+				continue;
+			BitSet ids= decode(trigram);
+			fPostings[trigram]= null;
+			fLengths[trigram]= 0;
+			for (int id= ids.nextSetBit(0); id != -1; id= ids.nextSetBit(id + 1)) {
+				if (newIds[id] != -1)
+					append(trigram, newIds[id]);
+			}
+		}
+		fPaths= paths;
+		fNextId= nextId;
+		fDeadIds= 0;
+	}
+
+	/**
+	 * Removes all files and resets the statistics.
+	 */
+	public synchronized void clear() {
+		fEntries.clear();
+		fPaths= new String[256];
+		fNextId= 0;
+		fDeadIds= 0;
+		Arrays.fill(fPostings, null);
+		Arrays.fill(fLengths, 0);
+		fTrigramCount= 0;
+		fPostingBytes= 0;
+		fSearches= 0;
+		fConsideredFiles= 0;
+		fSkippedFiles= 0;
+	}
+
+	/**
+	 * Returns the number of files in the index.
+	 *
+	 * @return the number of files
+	 */
+	public synchronized int getFileCount() {
+		return fEntries.size();
+	}
+
+	/**
+	 * Returns the number of trigram buckets that contain at least one file.
+	 *
+	 * @return the number of trigrams
+	 */
+	public synchronized int getTrigramCount() {
+		return fTrigramCount;
+	}
+
+	/**
+	 * Returns the number of bytes used by the posting lists.
+	 *
+	 * @return the size of the posting lists in bytes
+	 */
+	public synchronized long getSize() {
+		return fPostingBytes;
+	}
+
+	/**
+	 * Returns the number of searches that used the index.
+	 *
+	 * @return the number of searches
+	 */
+	public synchronized int getSearchCount() {
+		return fSearches;
+	}
+
+	/**
+	 * Returns the fraction of the files in the scope of the searches that were skipped because
+	 * the index showed that they cannot contain a match.
+	 *
+	 * @return the hit rate, between 0 and 1
+	 */
+	public synchronized double getHitRate() {
+		return fConsideredFiles == 0 ? 0 : (double) fSkippedFiles / fConsideredFiles;
+	}
+
+	/**
+	 * Writes the index.
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if writing fails
+	 */
+	public synchronized void write(DataOutputStream out) throws IOException {
+		if (fDeadIds > 0)
+			compact();
+		out.writeInt(VERSION);
+		out.writeInt(BUCKET_BITS);
+		out.writeInt(fEntries.size());
+		for (Map.Entry<String, Entry> entry : fEntries.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeLong(entry.getValue().fStamp);
+			out.writeInt(entry.getValue().fId);
+		}
+		out.writeInt(fNextId);
+		out.writeInt(fTrigramCount);
+		for (int trigram= 0; trigram < BUCKETS; trigram++) {
+			if (fPostings[trigram] == null)
+				continue;
+			out.writeInt(trigram);
+			out.writeInt(fLastIds[trigram]);
+			out.writeInt(fLengths[trigram]);
+			out.write(fPostings[trigram], 0, fLengths[trigram]);
+		}
+	}
+
+	/**
+	 * Reads an index written by {@link #write(DataOutputStream)}, replacing the content of this
+	 * index.
+	 *
+	 * @param in the stream to read from
+	 * @throws IOException if reading fails or the data is not compatible
+	 */
+	public synchronized void read(DataInputStream in) throws IOException {
+		clear();
+		boolean complete= false;
+		try {
+			if (in.readInt() != VERSION || in.readInt() != BUCKET_BITS)
+				throw new IOException("Incompatible index format"); //$NON-NLS-1$
+			int files= in.readInt();
+			for (int i= 0; i < files; i++) {
+				String path= in.readUTF();
+				long stamp= in.readLong();
+				int id= in.readInt();
+				fEntries.put(path, new Entry(id, stamp));
+				if (id != -1) {
+					if (id >= fPaths.length)
+						fPaths= Arrays.copyOf(fPaths, Math.max(id + 1, fPaths.length * 2));
+					fPaths[id]= path;
+				}
+			}
+			fNextId= in.readInt();
+			if (fNextId > fPaths.length)
+				fPaths= Arrays.copyOf(fPaths, fNextId);
+			fTrigramCount= in.readInt();
+			for (int i= 0; i < fTrigramCount; i++) {
+				int trigram= in.readInt();
+				fLastIds[trigram]= in.readInt();
+				int length= in.readInt();
+				fPostings[trigram]= new byte[length + 8];
+				in.readFully(fPostings[trigram], 0, length);
+				fLengths[trigram]= length;
+				fPostingBytes+= length;
+			}
+			complete= true;
+		} catch (RuntimeException e) {
+			throw new IOException(e);
+		} finally {
+			if (!complete)
+				clear();
+		}
+	}
+}
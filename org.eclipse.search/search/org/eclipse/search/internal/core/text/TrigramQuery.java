@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.internal.core.text;
+
+import java.util.regex.Pattern;
+
+import org.eclipse.search.internal.core.text.TrigramIndex.TrigramCollector;
+
+/**
+ * The trigrams that every match of a regular expression contains. A file that lacks one of them
+ * cannot contain a match and does not have to be searched.
+ * <p>
+ * The trigrams are taken from the literal parts of the expression that every match has to
+ * contain: characters outside of groups and character classes that are not optional. Expressions
+ * with alternatives at the top level or in comments mode are not decomposed.
+ * </p>
+ */
+public final class TrigramQuery {
+
+	/** The characters following a backslash that stand for a single control character. */
+	private static final String CONTROL_ESCAPES= "tnrfae"; //$NON-NLS-1$
+	private static final String CONTROL_CHARACTERS= "\t\n\r\f\u0007\u001B"; //$NON-NLS-1$
+
+	/**
+	 * Creates the query for the given regular expression.
+	 *
+	 * @param pattern the regular expression
+	 * @return the query, or <code>null</code> if the regular expression cannot be decomposed into
+	 *         trigrams and all files have to be searched
+	 */
+	public static TrigramQuery create(Pattern pattern) {
+		int flags= pattern.flags();
+		if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0)
+			return null;
+
+		TrigramCollector collector= new TrigramCollector();
+		String source= pattern.pattern();
+		if ((flags & Pattern.LITERAL) != 0) {
+			for (int i= 0; i < source.length(); i++)
+				collector.add(source.charAt(i));
+		} else {
+			if (!collectTrigrams(source, collector))
+				return null;
+		}
+		int[] trigrams= collector.toArray();
+		return trigrams.length == 0 ? null : new TrigramQuery(trigrams);
+	}
+
+	private static boolean collectTrigrams(String source, TrigramCollector collector) {
+		StringBuilder run= new StringBuilder();
+		// whether the last atom is the last character of the run
+		boolean lastAtomInRun= false;
+		int length= source.length();
+		int i= 0;
+		while (i < length) {
+			char ch= source.charAt(i);
+			switch (ch) {
+				case '\\':
+					if (i + 1 == length)
+						return false;
+					char next= source.charAt(i + 1);
+					int control= CONTROL_ESCAPES.indexOf(next);
+					if (next == 'Q') {
+						int end= source.indexOf("\\E", i + 2); //$NON-NLS-1$
+						if (end == -1)
+							end= length;
+						run.append(source, i + 2, end);
+						lastAtomInRun= end > i + 2;
+						i= Math.min(end + 2, length);
+					} else if (control != -1) {
+						run.append(CONTROL_CHARACTERS.charAt(control));
+						lastAtomInRun= true;
+						i+= 2;
+					} else if (Character.isLetterOrDigit(next)) {
+						// character classes, boundaries, back references and numeric escapes
+						addRun(run, collector);
+						lastAtomInRun= false;
+						i= skipEscape(source, i + 1);
+					} else {
+						run.append(next);
+						lastAtomInRun= true;
+						i+= 2;
+					}
+					break;
+				case '[':
+					addRun(run, collector);
+					lastAtomInRun= false;
+					i= skipClass(source, i);
+					if (i == -1)
+						return false;
+					break;
+				case '(':
+					if (source.startsWith("(?", i) && hasCommentsFlag(source, i + 2)) //$NON-NLS-1$
+						return false;
+					addRun(run, collector);
+					lastAtomInRun= false;
+					i= skipGroup(source, i);
+					if (i == -1)
+						return false;
+					break;
+				case '*':
+				case '?':
+				case '{':
+					boolean optional= ch != '{' || isOptional(source, i);
+					if (optional && lastAtomInRun)
+						run.setLength(run.length() - 1);
+					addRun(run, collector);
+					lastAtomInRun= false;
+					i= skipQuantifier(source, i);
+					if (i == -1)
+						return false;
+					break;
+				case '+':
+					addRun(run, collector);
+					lastAtomInRun= false;
+					i= skipQuantifier(source, i);
+					break;
+				case '.':
+				case '^':
+				case '$':
+					addRun(run, collector);
+					lastAtomInRun= false;
+					i++;
+					break;
+				case '|':
+				case ')':
+					return false;
+				default:
+					run.append(ch);
+					lastAtomInRun= true;
+					i++;
+			}
+		}
+		addRun(run, collector);
+		return true;
+	}
+
+	private static void addRun(StringBuilder run, TrigramCollector collector) {
+		for (int i= 0; i < run.length(); i++)
+			collector.add(run.charAt(i));
+		collector.breakRun();
+		run.setLength(0);
+	}
+
+	/**
+	 * Skips an escape that starts with a letter or a digit.
+	 *
+	 * @param source the regular expression
+	 * @param i the index of the letter or digit following the backslash
+	 * @return the index after the escape
+	 */
+	private static int skipEscape(String source, int i) {
+		int length= source.length();
+		char ch= source.charAt(i++);
+		switch (ch) {
+			case 'x':
+			case 'p':
+			case 'P':
+			case 'N':
+				if (i < length && source.charAt(i) == '{') {
+					int end= source.indexOf('}', i);
+					return end == -1 ? length : end + 1;
+				}
+				return Math.min(i + (ch == 'x' ? 2 : 1), length);
+			case 'k':
+				int end= source.indexOf('>', i);
+				return end == -1 ? length : end + 1;
+			case 'u':
+				return Math.min(i + 4, length);
+			case 'c':
+				return Math.min(i + 1, length);
+			case '0':
+				for (int digits= 0; digits < 3 && i < length && source.charAt(i) >= '0' && source.charAt(i) <= '7'; digits++)
+					i++;
+				return i;
+			default:
+				if (Character.isDigit(ch)) {
+					while (i < length && Character.isDigit(source.charAt(i)))
+						i++;
+				}
+				return i;
+		}
+	}
+
+	/**
+	 * Skips a quoted part of a regular expression.
+	 *
+	 * @param source the regular expression
+	 * @param i the index of the backslash
+	 * @return the index after the escape or quote
+	 */
+	private static int skipQuoteOrEscape(String source, int i) {
+		if (source.startsWith("\\Q", i)) { //$NON-NLS-1$
+			int end= source.indexOf("\\E", i + 2); //$NON-NLS-1$
+			return end == -1 ? source.length() : end + 2;
+		}
+		return i + 2;
+	}
+
+	private static int skipClass(String source, int i) {
+		int length= source.length();
+		int depth= 0;
+		while (i < length) {
+			char ch= source.charAt(i);
+			if (ch == '\\') {
+				i= skipQuoteOrEscape(source, i);
+				continue;
+			}
+			if (ch == '[') {
+				depth++;
+				i++;
+				// a closing bracket right after the opening one or its negation is a literal
+				if (i < length && source.charAt(i) == '^')
+					i++;
+				if (i < length && source.charAt(i) == ']')
+					i++;
+				continue;
+			}
+			if (ch == ']' && --depth == 0)
+				return i + 1;
+			i++;
+		}
+		return -1;
+	}
+
+	private static int skipGroup(String source, int i) {
+		int length= source.length();
+		int depth= 0;
+		while (i < length) {
+			char ch= source.charAt(i);
+			if (ch == '\\') {
+				i= skipQuoteOrEscape(source, i);
+			} else if (ch == '[') {
+				i= skipClass(source, i);
+				if (i == -1)
+					return -1;
+			} else {
+				if (ch == '(')
+					depth++;
+				else if (ch == ')' && --depth == 0)
+					return i + 1;
+				i++;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Tells whether the flags of a special group like <code>(?x)</code> or <code>(?x:...)</code>
+	 * turn on comments mode, which changes the meaning of the rest of the expression.
+	 *
+	 * @param source the regular expression
+	 * @param i the index after <code>(?</code>
+	 * @return <code>true</code> if the flags contain 'x'
+	 */
+	private static boolean hasCommentsFlag(String source, int i) {
+		int length= source.length();
+		while (i < length) {
+			char ch= source.charAt(i++);
+			if (ch == 'x')
+				return true;
+			if (!Character.isLetter(ch) && ch != '-')
+				return false;
+		}
+		return false;
+	}
+
+	private static boolean isOptional(String source, int i) {
+		int length= source.length();
+		int min= 0;
+		for (i++; i < length && Character.isDigit(source.charAt(i)); i++) {
+			min= min * 10 + source.charAt(i) - '0';
+			if (min > 0)
+				return false;
+		}
+		return true;
+	}
+
+	private static int skipQuantifier(String source, int i) {
+		if (source.charAt(i) == '{') {
+			i= source.indexOf('}', i);
+			if (i == -1)
+				return -1;
+		}
+		i++;
+		// reluctant and possessive quantifiers
+		if (i < source.length() && (source.charAt(i) == '?' || source.charAt(i) == '+'))
+			i++;
+		return i;
+	}
+
+	private final int[] fTrigrams;
+
+	private TrigramQuery(int[] trigrams) {
+		fTrigrams= trigrams;
+	}
+
+	/**
+	 * Returns the trigrams that every match contains.
+	 *
+	 * @return the sorted trigrams, not empty
+	 */
+	public int[] getTrigrams() {
+		return fTrigrams;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -208,6 +208,12 @@ public final class SearchMessages extends NLS {
 
 //	public static String ReplaceDialog2_nomatches_error;
     public static String SearchPreferencePage_textSearchEngine;
+	public static String SearchPreferencePage_textSearchIndex;
+	public static String SearchPreferencePage_rebuildIndex;
+	public static String SearchPreferencePage_indexDisabled;
+	public static String SearchPreferencePage_indexLoading;
+	public static String SearchPreferencePage_indexStatistics;
+	public static String TextSearchIndexer_job_name;
 	public static String TextSearchEngineRegistry_defaulttextsearch_label;
 	public static String FileSearchQuery_singularPatternWithFileExt;
 	public static String FileSearchQuery_pluralPatternWithFileExt;
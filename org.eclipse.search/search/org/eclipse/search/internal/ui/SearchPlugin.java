@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -36,12 +36,15 @@ import org.eclipse.jface.action.GroupMarker;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.Separator;
 import org.eclipse.jface.dialogs.IDialogSettings;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 
 import org.eclipse.search.internal.core.text.TextSearchEngineRegistry;
+import org.eclipse.search.internal.core.text.TextSearchIndexer;
 import org.eclipse.search.internal.ui.util.ExceptionHandler;
 import org.eclipse.search.ui.IContextMenuConstants;
 import org.eclipse.search.ui.NewSearchUI;
@@ -89,6 +92,14 @@ public class SearchPlugin extends AbstractUIPlugin {
 	private List<SorterDescriptor> fSorterDescriptors;
 	private TextSearchEngineRegistry fTextSearchEngineRegistry;
 	private TextSearchQueryProviderRegistry fTextSearchQueryProviderRegistry;
+	private TextSearchIndexer fTextSearchIndexer;
+	private final IPropertyChangeListener fIndexPreferenceListener= new IPropertyChangeListener() {
+		@Override
+		public void propertyChange(PropertyChangeEvent event) {
+			if (SearchPreferencePage.TEXT_SEARCH_INDEX.equals(event.getProperty()))
+				updateTextSearchIndexer();
+		}
+	};
 
 	public SearchPlugin() {
 		super();
@@ -204,16 +215,45 @@ public class SearchPlugin extends AbstractUIPlugin {
 	@Override
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
+		getPreferenceStore().addPropertyChangeListener(fIndexPreferenceListener);
+		updateTextSearchIndexer();
 	}
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		getPreferenceStore().removePropertyChangeListener(fIndexPreferenceListener);
+		synchronized (this) {
+			if (fTextSearchIndexer != null) {
+				fTextSearchIndexer.shutdown();
+				fTextSearchIndexer= null;
+			}
+		}
 		InternalSearchUI.shutdown();
 		disposeOldSearchManager();
 		super.stop(context);
 		fgSearchPlugin= null;
 	}
 
+	private synchronized void updateTextSearchIndexer() {
+		boolean enabled= SearchPreferencePage.isTextSearchIndexEnabled();
+		if (enabled && fTextSearchIndexer == null) {
+			fTextSearchIndexer= new TextSearchIndexer(getStateLocation());
+			fTextSearchIndexer.startup();
+		} else if (!enabled && fTextSearchIndexer != null) {
+			fTextSearchIndexer.dispose();
+			fTextSearchIndexer= null;
+		}
+	}
+
+	/**
+	 * Returns the indexer that keeps the trigram index of the workspace up to date.
+	 *
+	 * @return the indexer, or <code>null</code> if the index is disabled
+	 */
+	public synchronized TextSearchIndexer getTextSearchIndexer() {
+		return fTextSearchIndexer;
+	}
+
 	/**
 	 * @deprecated old search
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,8 +15,15 @@ import java.util.Comparator;
 
 import com.ibm.icu.text.Collator;
 
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
 
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.ColorFieldEditor;
@@ -33,6 +40,8 @@ import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.eclipse.ui.PlatformUI;
 
 import org.eclipse.search.internal.core.text.TextSearchEngineRegistry;
+import org.eclipse.search.internal.core.text.TextSearchIndexer;
+import org.eclipse.search.internal.core.text.TrigramIndex;
 
 
 /*
@@ -53,10 +62,16 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
     public static final String TEXT_SEARCH_ENGINE = "org.eclipse.search.textSearchEngine"; //$NON-NLS-1$
     public static final String TEXT_SEARCH_QUERY_PROVIDER = "org.eclipse.search.textSearchQueryProvider"; //$NON-NLS-1$
 	public static final String LIMIT_HISTORY= "org.eclipse.search.limitHistory"; //$NON-NLS-1$
+	public static final String TEXT_SEARCH_INDEX= "org.eclipse.search.textSearchIndex"; //$NON-NLS-1$
+	public static final String TEXT_SEARCH_READ_THREADS= "org.eclipse.search.textSearchReadThreads"; //$NON-NLS-1$
+	public static final String TEXT_SEARCH_MATCH_THREADS= "org.eclipse.search.textSearchMatchThreads"; //$NON-NLS-1$
 
 	private ColorFieldEditor fColorEditor;
 	private BooleanFieldEditor fEmphasizedCheckbox;
 	private BooleanFieldEditor fIgnorePotentialMatchesCheckbox;
+	private BooleanFieldEditor fTextSearchIndexCheckbox;
+	private Button fRebuildIndexButton;
+	private Label fIndexStatisticsLabel;
 
 
 	private static class PerspectiveDescriptorComparator implements Comparator<IPerspectiveDescriptor> {
@@ -86,6 +101,9 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
 		store.setDefault(TEXT_SEARCH_ENGINE, ""); //default search engine is empty string //$NON-NLS-1$
 		store.setDefault(TEXT_SEARCH_QUERY_PROVIDER, ""); // default query provider is empty string  //$NON-NLS-1$
 		store.setDefault(LIMIT_HISTORY, 10);
+		store.setDefault(TEXT_SEARCH_INDEX, false);
+		store.setDefault(TEXT_SEARCH_READ_THREADS, 0); // 0 chooses the number of threads from the number of processors
+		store.setDefault(TEXT_SEARCH_MATCH_THREADS, 0);
 	}
 
 
@@ -142,6 +160,54 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
                     getFieldEditorParent());
             addField(comboEditor);
         }
+
+		fTextSearchIndexCheckbox= new BooleanFieldEditor(
+			TEXT_SEARCH_INDEX,
+			SearchMessages.SearchPreferencePage_textSearchIndex,
+			getFieldEditorParent());
+		addField(fTextSearchIndexCheckbox);
+		createIndexControls(getFieldEditorParent());
+	}
+
+	private void createIndexControls(Composite parent) {
+		Composite composite= new Composite(parent, SWT.NONE);
+		GridLayout layout= new GridLayout(2, false);
+		layout.marginWidth= 0;
+		layout.marginHeight= 0;
+		composite.setLayout(layout);
+		composite.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+
+		fIndexStatisticsLabel= new Label(composite, SWT.WRAP);
+		fIndexStatisticsLabel.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+		fRebuildIndexButton= new Button(composite, SWT.PUSH);
+		fRebuildIndexButton.setText(SearchMessages.SearchPreferencePage_rebuildIndex);
+		fRebuildIndexButton.addSelectionListener(new SelectionAdapter() {
+			@Override
+			public void widgetSelected(SelectionEvent e) {
+				TextSearchIndexer indexer= SearchPlugin.getDefault().getTextSearchIndexer();
+				if (indexer != null)
+					indexer.rebuild();
+				updateIndexControls();
+			}
+		});
+		updateIndexControls();
+	}
+
+	private void updateIndexControls() {
+		TextSearchIndexer indexer= SearchPlugin.getDefault().getTextSearchIndexer();
+		TrigramIndex index= indexer != null ? indexer.getIndex() : null;
+		String statistics;
+		if (index == null) {
+			statistics= indexer == null ? SearchMessages.SearchPreferencePage_indexDisabled : SearchMessages.SearchPreferencePage_indexLoading;
+		} else {
+			Object[] args= { new Integer(index.getFileCount()), new Integer(index.getTrigramCount()),
+					new Long((index.getSize() + 1023) / 1024), new Long((indexer.getDiskSize() + 1023) / 1024),
+					new Long(Math.round(index.getHitRate() * 100)), new Integer(index.getSearchCount()) };
+			statistics= Messages.format(SearchMessages.SearchPreferencePage_indexStatistics, args);
+		}
+		fIndexStatisticsLabel.setText(statistics);
+		fRebuildIndexButton.setEnabled(indexer != null);
+		fIndexStatisticsLabel.getParent().layout();
 	}
 
 	@Override
@@ -155,6 +221,13 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
 		updateFieldEnablement();
 	}
 
+	@Override
+	public boolean performOk() {
+		boolean result= super.performOk();
+		updateIndexControls();
+		return result;
+	}
+
 	@Override
 	public void init(IWorkbench workbench) {
 	}
@@ -240,6 +313,11 @@ public class SearchPreferencePage extends FieldEditorPreferencePage implements I
 		return PreferenceConverter.getColor(store, POTENTIAL_MATCH_FG_COLOR);
 	}
 
+	public static boolean isTextSearchIndexEnabled() {
+		IPreferenceStore store= SearchPlugin.getDefault().getPreferenceStore();
+		return store.getBoolean(TEXT_SEARCH_INDEX);
+	}
+
 	public static int getHistoryLimit() {
 		IPreferenceStore store= SearchPlugin.getDefault().getPreferenceStore();
 		int limit= store.getInt(LIMIT_HISTORY);
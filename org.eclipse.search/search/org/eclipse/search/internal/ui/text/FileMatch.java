@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -24,6 +24,7 @@ import org.eclipse.search.ui.text.Match;
 public class FileMatch extends Match {
 	private LineElement fLineElement;
 	private Region fOriginalLocation;
+	private FileMatchStore.Group fGroup;
 
 	public FileMatch(IFile element) {
 		super(element, -1, -1);
@@ -43,6 +44,7 @@ public class FileMatch extends Match {
 			// remember the original location before changing it
 			fOriginalLocation= new Region(getOffset(), getLength());
 		}
+		pinGroup();
 		super.setOffset(offset);
 	}
 
@@ -52,6 +54,7 @@ public class FileMatch extends Match {
 			// remember the original location before changing it
 			fOriginalLocation= new Region(getOffset(), getLength());
 		}
+		pinGroup();
 		super.setLength(length);
 	}
 
@@ -70,10 +73,29 @@ public class FileMatch extends Match {
 	}
 
 
+	private void pinGroup() {
+		if (fGroup != null) {
+			// the changed location has to survive until the match is removed
+			fGroup.pin();
+		}
+	}
+
 	public LineElement getLineElement() {
 		return fLineElement;
 	}
 
+	void setLineElement(LineElement lineElement) {
+		fLineElement= lineElement;
+	}
+
+	FileMatchStore.Group getGroup() {
+		return fGroup;
+	}
+
+	void setGroup(FileMatchStore.Group group) {
+		fGroup= group;
+	}
+
 	public IFile getFile() {
 		return (IFile) getElement();
 	}
@@ -0,0 +1,569 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.search.internal.ui.text;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.search.internal.ui.SearchPlugin;
+import org.eclipse.search.ui.text.Match;
+
+/**
+ * Stores the matches of a file search compactly.
+ * <p>
+ * The offsets, lengths and lines of the matches of a file are kept in primitive arrays and the
+ * contents of the lines in a single character array. When the line contents of all files exceed a
+ * limit, the contents of the files that were added first are moved to a temporary file.
+ * </p>
+ * <p>
+ * {@link FileMatch} and {@link LineElement} objects are created when the matches of a file are
+ * requested. They are shared for as long as any of them is referenced, so that the matches of a
+ * file keep their identity while they are shown, tracked or otherwise held by clients, and are
+ * garbage collected afterwards. The matches of a file whose positions have been updated are kept
+ * until they are removed.
+ * </p>
+ * <p>
+ * This class is not thread safe, clients have to synchronize the access.
+ * </p>
+ */
+public final class FileMatchStore {
+
+	/** The default number of line characters that are kept in memory. */
+	private static final int MAX_CHARS_IN_MEMORY= 16 * 1024 * 1024;
+
+	private static final FileMatch[] EMPTY_ARRAY= new FileMatch[0];
+
+	/**
+	 * The {@link FileMatch} and {@link LineElement} objects of a file. Every match and line element
+	 * refers to its group, which keeps the whole group alive while any of them is referenced.
+	 */
+	static final class Group {
+
+		private final Entry fEntry;
+		private FileMatch[] fMatches;
+		private LineElement[] fLines;
+
+		private Group(Entry entry) {
+			fEntry= entry;
+			fMatches= EMPTY_ARRAY;
+			fLines= new LineElement[entry.fLineCount];
+		}
+
+		/**
+		 * Keeps the group until its matches are removed. Called when the position of a match has
+		 * changed and can no longer be restored from the primitive arrays.
+		 */
+		void pin() {
+			fEntry.fPinned= this;
+		}
+	}
+
+	/**
+	 * The matches of a file. The matches are sorted by offset and length.
+	 */
+	private static final class Entry {
+
+		private final IFile fFile;
+
+		private int fCount;
+		private int[] fOffsets= new int[4];
+		private int[] fLengths= new int[4];
+		/** The index of the line of each match, or -1 for matches of a file name search. */
+		private int[] fLineIndices= new int[4];
+
+		private int fLineCount;
+		private int[] fLineNumbers= new int[4];
+		private int[] fLineOffsets= new int[4];
+		/** The end of each line in the contents. */
+		private int[] fLineEnds= new int[4];
+		/** Whether the lines are ordered by offset. */
+		private boolean fLinesSorted= true;
+
+		/** The contents of the lines, or <code>null</code> if they are spilled. */
+		private char[] fContents= new char[0];
+		private int fContentsLength;
+		private long fSpillPosition= -1;
+
+		private WeakReference<Group> fGroup;
+		private volatile Group fPinned;
+		private boolean fRemoved;
+
+		private Entry(IFile file) {
+			fFile= file;
+		}
+
+		private int getLineStart(int line) {
+			return line == 0 ? 0 : fLineEnds[line - 1];
+		}
+
+		/**
+		 * Returns the index of the line with the given offset.
+		 *
+		 * @param offset the offset of the line
+		 * @return the index of the line, or -1 if the line is not stored
+		 */
+		private int findLine(int offset) {
+			if (fLineCount == 0)
+				return -1;
+			int last= fLineCount - 1;
+			if (fLineOffsets[last] == offset)
+				return last;
+			if (fLinesSorted) {
+				int line= Arrays.binarySearch(fLineOffsets, 0, fLineCount, offset);
+				return line >= 0 ? line : -1;
+			}
+			for (int i= last - 1; i >= 0; i--) {
+				if (fLineOffsets[i] == offset)
+					return i;
+			}
+			return -1;
+		}
+
+		/**
+		 * Appends a match.
+		 *
+		 * @return <code>true</code> if the match is not ordered before the previous match
+		 */
+		private boolean append(int offset, int length, int line) {
+			if (fCount == fOffsets.length) {
+				int capacity= fCount * 2;
+				fOffsets= Arrays.copyOf(fOffsets, capacity);
+				fLengths= Arrays.copyOf(fLengths, capacity);
+				fLineIndices= Arrays.copyOf(fLineIndices, capacity);
+			}
+			fOffsets[fCount]= offset;
+			fLengths[fCount]= length;
+			fLineIndices[fCount]= line;
+			fCount++;
+			return fCount == 1 || compare(fCount - 2, fCount - 1) <= 0;
+		}
+
+		private int compare(int i, int j) {
+			int diff= Integer.compare(fOffsets[i], fOffsets[j]);
+			if (diff != 0)
+				return diff;
+			return Integer.compare(fLengths[i], fLengths[j]);
+		}
+	}
+
+	private final Map<IFile, Entry> fEntries= new HashMap<>();
+	/** The entries whose line contents are in memory, in the order they were added. */
+	private final ArrayDeque<Entry> fUnspilled= new ArrayDeque<>();
+	private int fMatchCount;
+	private long fCharsInMemory;
+	private int fMaxCharsInMemory;
+
+	private File fSpillFile;
+	private RandomAccessFile fSpillAccess;
+
+	/**
+	 * Creates an empty store.
+	 */
+	public FileMatchStore() {
+		this(MAX_CHARS_IN_MEMORY);
+	}
+
+	/**
+	 * Creates an empty store.
+	 *
+	 * @param maxCharsInMemory the number of line characters to keep in memory before they are
+	 *            moved to a temporary file
+	 */
+	public FileMatchStore(int maxCharsInMemory) {
+		fMaxCharsInMemory= maxCharsInMemory;
+	}
+
+	/**
+	 * Adds matches. Matches that are already contained are ignored.
+	 *
+	 * @param matches the matches to add
+	 * @return the matches that have been added
+	 */
+	public FileMatch[] add(FileMatch[] matches) {
+		List<FileMatch> added= new ArrayList<>(matches.length);
+		int start= 0;
+		while (start < matches.length) {
+			IFile file= matches[start].getFile();
+			int end= start + 1;
+			while (end < matches.length && file.equals(matches[end].getFile()))
+				end++;
+			add(file, matches, start, end, added);
+			start= end;
+		}
+		if (fCharsInMemory > fMaxCharsInMemory)
+			spill();
+		return added.toArray(new FileMatch[added.size()]);
+	}
+
+	private void add(IFile file, FileMatch[] matches, int start, int end, List<FileMatch> added) {
+		Entry entry= fEntries.get(file);
+		if (entry == null) {
+			entry= new Entry(file);
+			fEntries.put(file, entry);
+			fUnspilled.add(entry);
+		}
+		Group group= getGroup(entry);
+		int oldCount= entry.fCount;
+		int firstAdded= added.size();
+		boolean sorted= true;
+		for (int i= start; i < end; i++) {
+			FileMatch match= matches[i];
+			if (match.getGroup() == group)
+				continue;
+
+			int line= -1;
+			LineElement lineElement= match.getLineElement();
+			if (lineElement != null) {
+				line= entry.findLine(lineElement.getOffset());
+				if (line == -1) {
+					line= addLine(entry, lineElement);
+					if (group.fLines.length < entry.fLineNumbers.length)
+						group.fLines= Arrays.copyOf(group.fLines, entry.fLineNumbers.length);
+				}
+				LineElement existing= group.fLines[line];
+				if (existing == null) {
+					group.fLines[line]= lineElement;
+					lineElement.setGroup(group);
+				} else if (existing != lineElement) {
+					// share the element of the line with the other matches in it
+					match.setLineElement(existing);
+				}
+			}
+			sorted&= entry.append(match.getOffset(), match.getLength(), line);
+			match.setGroup(group);
+			added.add(match);
+		}
+
+		int addedCount= entry.fCount - oldCount;
+		if (addedCount == 0)
+			return;
+		FileMatch[] groupMatches= Arrays.copyOf(group.fMatches, entry.fCount);
+		for (int i= 0; i < addedCount; i++)
+			groupMatches[oldCount + i]= added.get(firstAdded + i);
+		group.fMatches= groupMatches;
+		if (!sorted)
+			sort(entry, group);
+		fMatchCount+= addedCount;
+	}
+
+	private int addLine(Entry entry, LineElement lineElement) {
+		if (entry.fContents == null)
+			unspill(entry);
+		int line= entry.fLineCount;
+		if (line == entry.fLineNumbers.length) {
+			int capacity= line * 2;
+			entry.fLineNumbers= Arrays.copyOf(entry.fLineNumbers, capacity);
+			entry.fLineOffsets= Arrays.copyOf(entry.fLineOffsets, capacity);
+			entry.fLineEnds= Arrays.copyOf(entry.fLineEnds, capacity);
+		}
+		String contents= lineElement.getContents();
+		int length= entry.fContentsLength + contents.length();
+		if (length > entry.fContents.length) {
+			int capacity= Math.max(length, entry.fContents.length * 2);
+			fCharsInMemory+= capacity - entry.fContents.length;
+			entry.fContents= Arrays.copyOf(entry.fContents, capacity);
+		}
+		contents.getChars(0, contents.length(), entry.fContents, entry.fContentsLength);
+		entry.fContentsLength= length;
+		if (line > 0 && entry.fLineOffsets[line - 1] > lineElement.getOffset())
+			entry.fLinesSorted= false;
+		entry.fLineNumbers[line]= lineElement.getLine();
+		entry.fLineOffsets[line]= lineElement.getOffset();
+		entry.fLineEnds[line]= length;
+		entry.fLineCount++;
+		return line;
+	}
+
+	private static void sort(Entry entry, Group group) {
+		int count= entry.fCount;
+		Integer[] order= new Integer[count];
+		for (int i= 0; i < count; i++)
+			order[i]= Integer.valueOf(i);
+		// stable, so that equal matches stay in the order they were added
+		Arrays.sort(order, (i, j) -> entry.compare(i.intValue(), j.intValue()));
+		int[] offsets= new int[entry.fOffsets.length];
+		int[] lengths= new int[offsets.length];
+		int[] lineIndices= new int[offsets.length];
+		FileMatch[] matches= new FileMatch[count];
+		for (int i= 0; i < count; i++) {
+			int from= order[i].intValue();
+			offsets[i]= entry.fOffsets[from];
+			lengths[i]= entry.fLengths[from];
+			lineIndices[i]= entry.fLineIndices[from];
+			matches[i]= group.fMatches[from];
+		}
+		entry.fOffsets= offsets;
+		entry.fLengths= lengths;
+		entry.fLineIndices= lineIndices;
+		group.fMatches= matches;
+	}
+
+	/**
+	 * Removes matches. Matches that are not contained are ignored.
+	 *
+	 * @param matches the matches to remove
+	 * @return the matches that have been removed
+	 */
+	public FileMatch[] remove(Match[] matches) {
+		List<FileMatch> removed= new ArrayList<>(matches.length);
+		Map<Entry, boolean[]> removedIndices= new LinkedHashMap<>();
+		for (int i= 0; i < matches.length; i++) {
+			if (!(matches[i] instanceof FileMatch))
+				continue;
+			FileMatch match= (FileMatch) matches[i];
+			Group group= match.getGroup();
+			// a match that is referenced keeps its group alive, so the group is the current one
+			if (group == null || group.fEntry.fRemoved || group.fEntry != fEntries.get(match.getElement()))
+				continue;
+			Entry entry= group.fEntry;
+			int index= indexOf(entry, group, match);
+			if (index == -1)
+				continue;
+			boolean[] indices= removedIndices.get(entry);
+			if (indices == null) {
+				indices= new boolean[entry.fCount];
+				removedIndices.put(entry, indices);
+			}
+			if (!indices[index]) {
+				indices[index]= true;
+				removed.add(match);
+			}
+		}
+		for (Map.Entry<Entry, boolean[]> curr : removedIndices.entrySet())
+			remove(curr.getKey(), curr.getValue());
+		return removed.toArray(new FileMatch[removed.size()]);
+	}
+
+	private static int indexOf(Entry entry, Group group, FileMatch match) {
+		FileMatch[] matches= group.fMatches;
+		if (entry.fPinned == null) {
+			// the offsets of the matches are the ones in the entry
+			int offset= match.getOffset();
+			int index= Arrays.binarySearch(entry.fOffsets, 0, entry.fCount, offset);
+			if (index >= 0) {
+				while (index > 0 && entry.fOffsets[index - 1] == offset)
+					index--;
+				for (; index < entry.fCount && entry.fOffsets[index] == offset; index++) {
+					if (matches[index] == match)
+						return index;
+				}
+			}
+		}
+		for (int i= 0; i < matches.length; i++) {
+			if (matches[i] == match)
+				return i;
+		}
+		return -1;
+	}
+
+	private void remove(Entry entry, boolean[] removed) {
+		Group group= entry.fPinned != null ? entry.fPinned : entry.fGroup.get();
+		FileMatch[] matches= new FileMatch[entry.fCount];
+		int count= 0;
+		for (int i= 0; i < entry.fCount; i++) {
+			if (removed[i]) {
+				group.fMatches[i].setGroup(null);
+				continue;
+			}
+			entry.fOffsets[count]= entry.fOffsets[i];
+			entry.fLengths[count]= entry.fLengths[i];
+			entry.fLineIndices[count]= entry.fLineIndices[i];
+			matches[count]= group.fMatches[i];
+			count++;
+		}
+		fMatchCount-= entry.fCount - count;
+		entry.fCount= count;
+		group.fMatches= Arrays.copyOf(matches, count);
+		if (count == 0) {
+			fEntries.remove(entry.fFile);
+			entry.fRemoved= true;
+			if (entry.fContents != null)
+				fCharsInMemory-= entry.fContents.length;
+		}
+	}
+
+	/**
+	 * Removes all matches.
+	 */
+	public void clear() {
+		for (Entry entry : fEntries.values())
+			entry.fRemoved= true;
+		fEntries.clear();
+		fUnspilled.clear();
+		fMatchCount= 0;
+		fCharsInMemory= 0;
+		if (fSpillAccess != null) {
+			try {
+				fSpillAccess.close();
+			} catch (IOException e) {
+				// the file is deleted anyway
+			}
+			fSpillFile.delete();
+			fSpillAccess= null;
+			fSpillFile= null;
+		}
+	}
+
+	/**
+	 * Returns the matches of an element, creating the match objects if they are not referenced
+	 * anymore.
+	 *
+	 * @param element the file
+	 * @return the matches sorted by offset and length
+	 */
+	public FileMatch[] getMatches(Object element) {
+		Entry entry= fEntries.get(element);
+		if (entry == null)
+			return EMPTY_ARRAY;
+		return getGroup(entry).fMatches.clone();
+	}
+
+	/**
+	 * Returns the number of matches of an element.
+	 *
+	 * @param element the file
+	 * @return the number of matches
+	 */
+	public int getMatchCount(Object element) {
+		Entry entry= fEntries.get(element);
+		return entry != null ? entry.fCount : 0;
+	}
+
+	/**
+	 * Returns the number of matches.
+	 *
+	 * @return the number of matches
+	 */
+	public int getMatchCount() {
+		return fMatchCount;
+	}
+
+	/**
+	 * Returns the files that have matches.
+	 *
+	 * @return the files
+	 */
+	public Object[] getElements() {
+		return fEntries.keySet().toArray();
+	}
+
+	/**
+	 * Returns the number of line characters kept in memory.
+	 *
+	 * @return the number of characters in memory
+	 */
+	public long getCharsInMemory() {
+		return fCharsInMemory;
+	}
+
+	private Group getGroup(Entry entry) {
+		Group group= entry.fPinned;
+		if (group == null && entry.fGroup != null)
+			group= entry.fGroup.get();
+		if (group == null) {
+			group= createGroup(entry);
+			entry.fGroup= new WeakReference<>(group);
+		}
+		return group;
+	}
+
+	private Group createGroup(Entry entry) {
+		Group group= new Group(entry);
+		if (entry.fCount == 0)
+			return group;
+		char[] contents= entry.fContents != null ? entry.fContents : readContents(entry);
+		FileMatch[] matches= new FileMatch[entry.fCount];
+		for (int i= 0; i < entry.fCount; i++) {
+			int line= entry.fLineIndices[i];
+			FileMatch match;
+			if (line == -1) {
+				match= new FileMatch(entry.fFile);
+			} else {
+				LineElement lineElement= group.fLines[line];
+				if (lineElement == null) {
+					int start= entry.getLineStart(line);
+					lineElement= new LineElement(entry.fFile, entry.fLineNumbers[line], entry.fLineOffsets[line], new String(contents, start, entry.fLineEnds[line] - start));
+					lineElement.setGroup(group);
+					group.fLines[line]= lineElement;
+				}
+				match= new FileMatch(entry.fFile, entry.fOffsets[i], entry.fLengths[i], lineElement);
+			}
+			match.setGroup(group);
+			matches[i]= match;
+		}
+		group.fMatches= matches;
+		return group;
+	}
+
+	/**
+	 * Moves the line contents of the files that were added first to the temporary file until half
+	 * of the allowed characters are in memory.
+	 */
+	private void spill() {
+		try {
+			if (fSpillAccess == null) {
+				fSpillFile= File.createTempFile("search", ".matches"); //$NON-NLS-1$ //$NON-NLS-2$
+				fSpillFile.deleteOnExit();
+				fSpillAccess= new RandomAccessFile(fSpillFile, "rw"); //$NON-NLS-1$
+			}
+			while (fCharsInMemory > fMaxCharsInMemory / 2 && !fUnspilled.isEmpty()) {
+				Entry entry= fUnspilled.poll();
+				if (entry.fRemoved || entry.fContents == null)
+					continue;
+				ByteBuffer buffer= ByteBuffer.allocate(entry.fContentsLength * 2);
+				buffer.asCharBuffer().put(entry.fContents, 0, entry.fContentsLength);
+				long position= fSpillAccess.length();
+				fSpillAccess.seek(position);
+				fSpillAccess.write(buffer.array());
+				entry.fSpillPosition= position;
+				fCharsInMemory-= entry.fContents.length;
+				entry.fContents= null;
+			}
+		} catch (IOException e) {
+			// keep everything in memory from now on
+			SearchPlugin.log(e);
+			fMaxCharsInMemory= Integer.MAX_VALUE;
+		}
+	}
+
+	private void unspill(Entry entry) {
+		entry.fContents= readContents(entry);
+		entry.fSpillPosition= -1;
+		fCharsInMemory+= entry.fContents.length;
+		fUnspilled.add(entry);
+	}
+
+	private char[] readContents(Entry entry) {
+		char[] contents= new char[entry.fContentsLength];
+		try {
+			byte[] bytes= new byte[contents.length * 2];
+			fSpillAccess.seek(entry.fSpillPosition);
+			fSpillAccess.readFully(bytes);
+			ByteBuffer.wrap(bytes).asCharBuffer().get(contents);
+		} catch (IOException e) {
+			SearchPlugin.log(e);
+			Arrays.fill(contents, ' ');
+		}
+		return contents;
+	}
+}
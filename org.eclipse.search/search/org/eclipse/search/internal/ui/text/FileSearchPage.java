@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -453,17 +453,6 @@ public class FileSearchPage extends AbstractTextSearchViewPage implements IAdapt
 		return super.getDisplayedMatches(element);
 	}
 
-	@Override
-	protected void evaluateChangedElements(Match[] matches, Set<Object> changedElements) {
-		if (showLineMatches()) {
-			for (int i = 0; i < matches.length; i++) {
-				changedElements.add(((FileMatch) matches[i]).getLineElement());
-			}
-		} else {
-			super.evaluateChangedElements(matches, changedElements);
-		}
-	}
-
 	private boolean showLineMatches() {
 		AbstractTextSearchResult input= getInput();
 		return getLayout() == FLAG_LAYOUT_TREE && input != null && !((FileSearchQuery) input.getQuery()).isFileNameSearch();
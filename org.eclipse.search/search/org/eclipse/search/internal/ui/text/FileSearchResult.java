@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,15 +20,35 @@ import org.eclipse.ui.IFileEditorInput;
 
 import org.eclipse.search.internal.ui.SearchPluginImages;
 import org.eclipse.search.ui.ISearchQuery;
+import org.eclipse.search.ui.ISearchResult;
 import org.eclipse.search.ui.text.AbstractTextSearchResult;
 import org.eclipse.search.ui.text.IEditorMatchAdapter;
 import org.eclipse.search.ui.text.IFileMatchAdapter;
 import org.eclipse.search.ui.text.Match;
+import org.eclipse.search.ui.text.MatchEvent;
+import org.eclipse.search.ui.text.RemoveAllEvent;
 
+/**
+ * The result of a file search. The matches are {@link FileMatch}es that are kept in a
+ * {@link FileMatchStore}, so that match and line objects only exist for the files whose matches
+ * are in use.
+ */
 public class FileSearchResult extends AbstractTextSearchResult implements IEditorMatchAdapter, IFileMatchAdapter {
+
+	private static final class FileSearchResultEvent extends MatchEvent {
+		private static final long serialVersionUID= 1L;
+
+		public FileSearchResultEvent(ISearchResult searchResult, int kind, Match[] matches) {
+			super(searchResult);
+			setKind(kind);
+			setMatches(matches);
+		}
+	}
+
 	private final Match[] EMPTY_ARR= new Match[0];
 
 	private FileSearchQuery fQuery;
+	private final FileMatchStore fStore= new FileMatchStore();
 
 	public FileSearchResult(FileSearchQuery job) {
 		fQuery= job;
@@ -46,6 +66,78 @@ public class FileSearchResult extends AbstractTextSearchResult implements IEdito
 		return getLabel();
 	}
 
+	@Override
+	public Match[] getMatches(Object element) {
+		FileMatch[] matches;
+		synchronized (fStore) {
+			matches= fStore.getMatches(element);
+		}
+		Match[] result= new Match[matches.length];
+		System.arraycopy(matches, 0, result, 0, matches.length);
+		return result;
+	}
+
+	@Override
+	public void addMatch(Match match) {
+		addMatches(new Match[] { match });
+	}
+
+	@Override
+	public void addMatches(Match[] matches) {
+		FileMatch[] fileMatches= new FileMatch[matches.length];
+		System.arraycopy(matches, 0, fileMatches, 0, matches.length);
+		FileMatch[] added;
+		synchronized (fStore) {
+			added= fStore.add(fileMatches);
+		}
+		if (added.length > 0)
+			fireChange(new FileSearchResultEvent(this, MatchEvent.ADDED, added));
+	}
+
+	@Override
+	public void removeMatch(Match match) {
+		removeMatches(new Match[] { match });
+	}
+
+	@Override
+	public void removeMatches(Match[] matches) {
+		FileMatch[] removed;
+		synchronized (fStore) {
+			removed= fStore.remove(matches);
+		}
+		if (removed.length > 0)
+			fireChange(new FileSearchResultEvent(this, MatchEvent.REMOVED, removed));
+	}
+
+	@Override
+	public void removeAll() {
+		synchronized (fStore) {
+			fStore.clear();
+		}
+		fireChange(new RemoveAllEvent(this));
+	}
+
+	@Override
+	public int getMatchCount() {
+		synchronized (fStore) {
+			return fStore.getMatchCount();
+		}
+	}
+
+	@Override
+	public int getMatchCount(Object element) {
+		synchronized (fStore) {
+			return fStore.getMatchCount(element);
+		}
+	}
+
+	@Override
+	public Object[] getElements() {
+		synchronized (fStore) {
+			return fStore.getElements();
+		}
+	}
+
 	@Override
 	public Match[] computeContainedMatches(AbstractTextSearchResult result, IFile file) {
 		return getMatches(file);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -15,9 +15,11 @@ package org.eclipse.search.internal.ui.text;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 
@@ -36,7 +38,9 @@ public class FileTreeContentProvider implements ITreeContentProvider, IFileSearc
 	private AbstractTextSearchResult fResult;
 	private FileSearchPage fPage;
 	private AbstractTreeViewer fTreeViewer;
+	/** The children of the containers. The lines of the files are computed when requested. */
 	private Map<Object, Set<Object>> fChildrenMap;
+	private boolean fShowLineMatches;
 
 	FileTreeContentProvider(FileSearchPage page, AbstractTreeViewer viewer) {
 		fPage= page;
@@ -74,19 +78,12 @@ public class FileTreeContentProvider implements ITreeContentProvider, IFileSearc
 	private synchronized void initialize(AbstractTextSearchResult result) {
 		fResult= result;
 		fChildrenMap= new HashMap<>();
-		boolean showLineMatches= !((FileSearchQuery) fResult.getQuery()).isFileNameSearch();
+		fShowLineMatches= !((FileSearchQuery) fResult.getQuery()).isFileNameSearch();
 
 		if (result != null) {
 			Object[] elements= result.getElements();
 			for (int i= 0; i < elements.length; i++) {
-				if (showLineMatches) {
-					Match[] matches= result.getMatches(elements[i]);
-					for (int j= 0; j < matches.length; j++) {
-						insert(((FileMatch) matches[j]).getLineElement(), false);
-					}
-				} else {
-					insert(elements[i], false);
-				}
+				insert(elements[i], false);
 			}
 		}
 	}
@@ -178,39 +175,49 @@ public class FileTreeContentProvider implements ITreeContentProvider, IFileSearc
 
 	@Override
 	public Object[] getChildren(Object parentElement) {
+		if (fShowLineMatches && parentElement instanceof IFile) {
+			return getLineElements(parentElement);
+		}
 		Set<Object> children= fChildrenMap.get(parentElement);
 		if (children == null)
 			return EMPTY_ARR;
 		return children.toArray();
 	}
 
+	/*
+	 * The line elements of a file are only created for the files that are expanded.
+	 */
+	private Object[] getLineElements(Object file) {
+		Match[] matches= fResult.getMatches(file);
+		Set<Object> lineElements= new LinkedHashSet<>();
+		for (int i= 0; i < matches.length; i++) {
+			LineElement lineElement= ((FileMatch) matches[i]).getLineElement();
+			if (lineElement != null)
+				lineElements.add(lineElement);
+		}
+		return lineElements.toArray();
+	}
+
 	@Override
 	public boolean hasChildren(Object element) {
+		if (fShowLineMatches && element instanceof IFile) {
+			return fResult.getMatchCount(element) > 0;
+		}
 		return getChildren(element).length > 0;
 	}
 
 	@Override
 	public synchronized void elementsChanged(Object[] updatedElements) {
 		for (int i= 0; i < updatedElements.length; i++) {
-			if (!(updatedElements[i] instanceof LineElement)) {
-				// change events to elements are reported in file search
-				if (fResult.getMatchCount(updatedElements[i]) > 0)
-					insert(updatedElements[i], true);
-				else
-					remove(updatedElements[i], true);
-			} else {
-				// change events to line elements are reported in text search
-				LineElement lineElement= (LineElement) updatedElements[i];
-				int nMatches= lineElement.getNumberOfMatches(fResult);
-				if (nMatches > 0) {
-					if (hasChild(lineElement.getParent(), lineElement)) {
-						fTreeViewer.update(new Object[] { lineElement, lineElement.getParent() }, null);
-					} else {
-						insert(lineElement, true);
-					}
+			Object element= updatedElements[i];
+			if (fResult.getMatchCount(element) > 0) {
+				if (fShowLineMatches && hasChild(getParent(element), element)) {
+					fTreeViewer.refresh(element);
 				} else {
-					remove(lineElement, true);
+					insert(element, true);
 				}
+			} else {
+				remove(element, true);
 			}
 		}
 	}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2008 IBM Corporation and others.
+ * Copyright (c) 2007, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -30,6 +30,9 @@ public class LineElement {
 	private final int fLineStartOffset;
 	private final String fLineContents;
 
+	/** The matches of the file, kept alive as long as the line is referenced. */
+	private FileMatchStore.Group fGroup;
+
 	public LineElement(IResource parent, int lineNumber, int lineStartOffset, String lineContents) {
 		fParent= parent;
 		fLineNumber= lineNumber;
@@ -61,6 +64,14 @@ public class LineElement {
 		return fLineContents.length();
 	}
 
+	FileMatchStore.Group getGroup() {
+		return fGroup;
+	}
+
+	void setGroup(FileMatchStore.Group group) {
+		fGroup= group;
+	}
+
 	public FileMatch[] getMatches(AbstractTextSearchResult result) {
 		ArrayList<FileMatch> res= new ArrayList<>();
 		Match[] matches= result.getMatches(fParent);
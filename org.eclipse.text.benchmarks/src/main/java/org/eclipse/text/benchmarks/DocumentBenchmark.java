@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IRegion;
+
+/**
+ * Measures {@link Document#replace(int, int, String)} and the line queries of a document, which
+ * exercise the default text store ({@link org.eclipse.jface.text.GapTextStore}) and the tree line
+ * tracker it switches to after the first modification.
+ * <p>
+ * <code>typing</code> inserts one character after the other at the same location,
+ * <code>bulkReplace</code> replaces a block of several lines at random offsets, and the
+ * <code>lineOf*</code> benchmarks look up lines at random offsets and line numbers.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentBenchmark {
+
+	/** The number of pre-computed random values, a power of two. */
+	private static final int RANDOMS= 1 << 12;
+
+	/** The maximal length of the block replaced by <code>bulkReplace</code>. */
+	private static final int BLOCK_SIZE= 1 << 12;
+
+	@Param({ "1024", "1048576", "104857600" })
+	public int size;
+
+	private Document fDocument;
+	private int[] fOffsets;
+	private int[] fLines;
+	private int fNext;
+	private int fTypingOffset;
+	private String fBlock;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws BadLocationException {
+		fDocument= new Document(TextStoreBenchmark.createText(size));
+		// the first modification replaces the list of lines by a tree
+		fDocument.replace(0, 0, ""); //$NON-NLS-1$
+
+		int blockSize= Math.min(BLOCK_SIZE, size / 4);
+		fBlock= TextStoreBenchmark.createText(blockSize);
+
+		Random random= new Random(42);
+		int lines= fDocument.getNumberOfLines();
+		fOffsets= new int[RANDOMS];
+		fLines= new int[RANDOMS];
+		for (int i= 0; i < RANDOMS; i++) {
+			fOffsets[i]= random.nextInt(size - blockSize);
+			fLines[i]= random.nextInt(lines);
+		}
+		fNext= 0;
+		fTypingOffset= size / 2;
+	}
+
+	@Benchmark
+	public void typing() throws BadLocationException {
+		fDocument.replace(fTypingOffset++, 0, "t"); //$NON-NLS-1$
+	}
+
+	@Benchmark
+	public void bulkReplace() throws BadLocationException {
+		fDocument.replace(fOffsets[fNext++ & (RANDOMS - 1)], fBlock.length(), fBlock);
+	}
+
+	@Benchmark
+	public int lineOfOffset() throws BadLocationException {
+		return fDocument.getLineOfOffset(fOffsets[fNext++ & (RANDOMS - 1)]);
+	}
+
+	@Benchmark
+	public IRegion lineInformation() throws BadLocationException {
+		return fDocument.getLineInformation(fLines[fNext++ & (RANDOMS - 1)]);
+	}
+}
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.core.commands.ExecutionException;
+
+import org.eclipse.text.undo.DocumentUndoManager;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+
+/**
+ * Measures the overhead of recording changes with a {@link DocumentUndoManager} and the cost of
+ * undoing them.
+ * <p>
+ * <code>typing</code> types words separated by spaces, which the undo manager merges into one
+ * change per word. <code>typeWordAndUndo</code> and <code>bulkReplaceAndUndo</code> undo their
+ * change right away, so the document keeps its size.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentUndoManagerBenchmark {
+
+	/** The text typed by <code>typing</code>, one character per invocation. */
+	private static final String WORDS= "the quick brown fox jumps over the lazy dog "; //$NON-NLS-1$
+
+	/** The number of pre-computed random offsets, a power of two. */
+	private static final int OFFSETS= 1 << 12;
+
+	/** The maximal length of the block replaced by <code>bulkReplaceAndUndo</code>. */
+	private static final int BLOCK_SIZE= 1 << 12;
+
+	@Param({ "1024", "1048576", "104857600" })
+	public int size;
+
+	private Document fDocument;
+	private DocumentUndoManager fUndoManager;
+	private int[] fOffsets;
+	private int fNext;
+	private int fTypingOffset;
+	private String fBlock;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		fDocument= new Document(TextStoreBenchmark.createText(size));
+		fUndoManager= new DocumentUndoManager(fDocument);
+		fUndoManager.connect(this);
+		fUndoManager.setMaximalUndoLevel(100);
+
+		int blockSize= Math.min(BLOCK_SIZE, size / 4);
+		fBlock= TextStoreBenchmark.createText(blockSize);
+
+		Random random= new Random(42);
+		fOffsets= new int[OFFSETS];
+		for (int i= 0; i < OFFSETS; i++)
+			fOffsets[i]= random.nextInt(size - blockSize);
+		fNext= 0;
+		fTypingOffset= size / 2;
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		fUndoManager.disconnect(this);
+	}
+
+	@Benchmark
+	public void typing() throws BadLocationException {
+		int offset= fTypingOffset++;
+		fDocument.replace(offset, 0, String.valueOf(WORDS.charAt(offset % WORDS.length())));
+	}
+
+	@Benchmark
+	public void typeWordAndUndo() throws BadLocationException, ExecutionException {
+		int offset= fOffsets[fNext++ & (OFFSETS - 1)];
+		for (int i= 0; i < 5; i++)
+			fDocument.replace(offset + i, 0, String.valueOf(WORDS.charAt(i)));
+		fUndoManager.commit();
+		fUndoManager.undo();
+	}
+
+	@Benchmark
+	public void bulkReplaceAndUndo() throws BadLocationException, ExecutionException {
+		fDocument.replace(fOffsets[fNext++ & (OFFSETS - 1)], fBlock.length(), fBlock);
+		fUndoManager.commit();
+		fUndoManager.undo();
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DefaultLineTracker;
+import org.eclipse.jface.text.ILineTracker;
+
+/**
+ * Measures building the line structure of a text with <code>ILineTracker.set(String)</code>.
+ * <p>
+ * The <code>parallel</code> tracker is a {@link DefaultLineTracker}, which scans large texts in
+ * parallel. The <code>sequential</code> tracker is an anonymous subclass of it, which makes it
+ * scan the text one delimiter at a time with <code>nextDelimiterInfo</code>. Both build the line
+ * tree bottom-up. A fresh tracker keeps its lines in a list, whereas a tracker that has been
+ * modified keeps them in a tree.
+ * </p>
+ * <p>
+ * The <code>baseline</code> tracker is the sequential one, but its text is set by replacing the
+ * empty text with <code>ILineTracker.replace(int, int, String)</code>. This scans the text
+ * sequentially and inserts the lines into the tree one by one, the way <code>set</code> built the
+ * tree before the bottom-up build. Its lines are always kept in a tree.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineTrackerBenchmark {
+
+	@Param({ "parallel", "sequential", "baseline" })
+	public String tracker;
+
+	@Param({ "1048576", "16777216", "104857600" })
+	public int size;
+
+	private String fText;
+	private ILineTracker fTreeTracker;
+
+	@Setup(Level.Trial)
+	public void setUp() throws BadLocationException {
+		fText= TextStoreBenchmark.createText(size);
+		fTreeTracker= createTracker();
+		fTreeTracker.set(""); //$NON-NLS-1$
+		fTreeTracker.replace(0, 0, "\n"); //$NON-NLS-1$
+	}
+
+	private ILineTracker createTracker() {
+		if ("sequential".equals(tracker) || "baseline".equals(tracker)) //$NON-NLS-1$ //$NON-NLS-2$
+			return new DefaultLineTracker() {
+				// subclasses may override nextDelimiterInfo and are therefore scanned sequentially
+			};
+		return new DefaultLineTracker();
+	}
+
+	/**
+	 * Sets the text of the given tracker, inserting the lines one by one for the baseline.
+	 *
+	 * @param lineTracker the tracker
+	 * @throws BadLocationException never
+	 */
+	private void setText(ILineTracker lineTracker) throws BadLocationException {
+		if ("baseline".equals(tracker)) { //$NON-NLS-1$
+			lineTracker.set(""); //$NON-NLS-1$
+			lineTracker.replace(0, 0, fText);
+		} else {
+			lineTracker.set(fText);
+		}
+	}
+
+	@Benchmark
+	public ILineTracker setList() throws BadLocationException {
+		ILineTracker lineTracker= createTracker();
+		setText(lineTracker);
+		return lineTracker;
+	}
+
+	@Benchmark
+	public ILineTracker setTree() throws BadLocationException {
+		setText(fTreeTracker);
+		return fTreeTracker;
+	}
+
+	@Benchmark
+	public ILineTracker setAndModify() throws BadLocationException {
+		ILineTracker lineTracker= createTracker();
+		setText(lineTracker);
+		lineTracker.replace(0, 0, "\n"); //$NON-NLS-1$
+		return lineTracker;
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.Position;
+
+/**
+ * Measures how document changes are slowed down by the positions that a
+ * {@link DefaultPositionUpdater} has to update. The positions are spread evenly over the
+ * document, like the markers of a file with many problems.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionUpdaterBenchmark {
+
+	/** The position category used by the benchmark. */
+	private static final String CATEGORY= "benchmark"; //$NON-NLS-1$
+
+	/** The number of pre-computed random offsets, a power of two. */
+	private static final int OFFSETS= 1 << 12;
+
+	@Param({ "1024", "1048576", "104857600" })
+	public int size;
+
+	@Param({ "100", "10000", "1000000" })
+	public int positions;
+
+	private Document fDocument;
+	private int[] fOffsets;
+	private int fNext;
+	private int fTypingOffset;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws BadLocationException, BadPositionCategoryException {
+		fDocument= new Document(TextStoreBenchmark.createText(size));
+		fDocument.addPositionCategory(CATEGORY);
+		fDocument.addPositionUpdater(new DefaultPositionUpdater(CATEGORY));
+
+		// at most one position per character, added in ascending order so that adding them is linear
+		int count= Math.min(positions, size);
+		int spacing= size / count;
+		for (int i= 0; i < count; i++)
+			fDocument.addPosition(CATEGORY, new Position(i * spacing, 1));
+
+		Random random= new Random(42);
+		fOffsets= new int[OFFSETS];
+		for (int i= 0; i < OFFSETS; i++)
+			fOffsets[i]= random.nextInt(size);
+		fNext= 0;
+		fTypingOffset= size / 2;
+	}
+
+	@Benchmark
+	public void typing() throws BadLocationException {
+		fDocument.replace(fTypingOffset++, 0, "t"); //$NON-NLS-1$
+	}
+
+	@Benchmark
+	public void randomInsertAndDelete() throws BadLocationException {
+		int offset= fOffsets[fNext++ & (OFFSETS - 1)];
+		fDocument.replace(offset, 0, "inserted"); //$NON-NLS-1$
+		fDocument.replace(offset, 8, ""); //$NON-NLS-1$
+	}
+}
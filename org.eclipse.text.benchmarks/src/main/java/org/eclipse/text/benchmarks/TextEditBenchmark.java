@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.UndoEdit;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+
+/**
+ * Measures applying a {@link MultiTextEdit} with many children spread over the document, like
+ * the result of a formatter or a refactoring, and applying the returned {@link UndoEdit}.
+ * <p>
+ * The edit tree is created by each invocation as edits cannot be applied twice. Applying the undo
+ * edit restores the document, so every invocation starts from the same content.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextEditBenchmark {
+
+	@Param({ "1024", "1048576", "104857600" })
+	public int size;
+
+	@Param({ "10", "1000", "100000" })
+	public int edits;
+
+	private Document fDocument;
+	private int fEdits;
+	private int fSpacing;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		fDocument= new Document(TextStoreBenchmark.createText(size));
+		// every edit needs a few characters of its own
+		fEdits= Math.min(edits, size / 8);
+		fSpacing= size / fEdits;
+	}
+
+	/**
+	 * Creates a tree with a mix of replace, insert and delete edits.
+	 *
+	 * @return the edit tree
+	 */
+	private TextEdit createEdit() {
+		MultiTextEdit root= new MultiTextEdit();
+		for (int i= 0; i < fEdits; i++) {
+			int offset= i * fSpacing;
+			switch (i % 3) {
+				case 0:
+					root.addChild(new ReplaceEdit(offset, 4, "edit")); //$NON-NLS-1$
+					break;
+				case 1:
+					root.addChild(new InsertEdit(offset, "inserted")); //$NON-NLS-1$
+					break;
+				default:
+					root.addChild(new DeleteEdit(offset, 2));
+					break;
+			}
+		}
+		return root;
+	}
+
+	@Benchmark
+	public UndoEdit applyAndUndo() throws MalformedTreeException, BadLocationException {
+		UndoEdit undo= createEdit().apply(fDocument);
+		return undo.apply(fDocument, TextEdit.CREATE_UNDO);
+	}
+
+	@Benchmark
+	public UndoEdit applyWithoutUpdatingRegions() throws MalformedTreeException, BadLocationException {
+		UndoEdit undo= createEdit().apply(fDocument, TextEdit.CREATE_UNDO);
+		undo.apply(fDocument, TextEdit.NONE);
+		return undo;
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.eclipse.jface.text.GapTextStore;
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.RopeTextStore;
+
+/**
+ * Compares {@link GapTextStore} and {@link RopeTextStore} on edits at random offsets, on typing
+ * at a single location and on reading ranges at random offsets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations= 5, time= 1)
+@Measurement(iterations= 5, time= 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextStoreBenchmark {
+
+	/** The number of pre-computed random offsets, a power of two. */
+	private static final int OFFSETS= 1 << 12;
+
+	@Param({ "gap", "rope" })
+	public String store;
+
+	@Param({ "1048576", "16777216", "209715200" })
+	public int size;
+
+	private ITextStore fStore;
+	private int[] fOffsets;
+	private int fNext;
+	private int fTypingOffset;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		fStore= "rope".equals(store) ? new RopeTextStore() : new GapTextStore();
+		fStore.set(createText(size));
+
+		Random random= new Random(42);
+		fOffsets= new int[OFFSETS];
+		for (int i= 0; i < OFFSETS; i++)
+			fOffsets[i]= random.nextInt(size - 100);
+		fNext= 0;
+		fTypingOffset= size / 2;
+	}
+
+	@Benchmark
+	public void randomReplace() {
+		fStore.replace(nextOffset(), 1, "y"); //$NON-NLS-1$
+	}
+
+	@Benchmark
+	public void randomInsertAndDelete() {
+		int offset= nextOffset();
+		fStore.replace(offset, 0, "inserted"); //$NON-NLS-1$
+		fStore.replace(nextOffset(), 8, null);
+	}
+
+	@Benchmark
+	public void typing() {
+		fStore.replace(fTypingOffset++, 0, "t"); //$NON-NLS-1$
+	}
+
+	@Benchmark
+	public String randomGet() {
+		return fStore.get(nextOffset(), 80);
+	}
+
+	private int nextOffset() {
+		return fOffsets[fNext++ & (OFFSETS - 1)];
+	}
+
+	/**
+	 * Creates a text of the given size that looks like a log file with lines of varying length.
+	 *
+	 * @param size the number of characters
+	 * @return the text
+	 */
+	static String createText(int size) {
+		Random random= new Random(size);
+		StringBuilder text= new StringBuilder(size);
+		while (text.length() < size) {
+			int lineLength= random.nextInt(120);
+			for (int i= 0; i < lineLength && text.length() < size - 1; i++)
+				text.append((char) ('a' + random.nextInt(26)));
+			text.append('\n');
+		}
+		text.setLength(size);
+		return text.toString();
+	}
+}
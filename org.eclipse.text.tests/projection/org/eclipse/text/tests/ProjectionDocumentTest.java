@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -30,6 +31,7 @@ import org.eclipse.jface.text.DefaultLineTracker;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentInformationMapping;
 import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISlaveDocumentManager;
@@ -2648,4 +2650,121 @@ public class ProjectionDocumentTest {
 			assertTrue(false);
 		}
 	}
+
+	@Test
+	public void testRandomFolding() throws BadLocationException {
+		// fold and unfold random ranges and compare the projection with the expected visible text
+		StringBuilder master= new StringBuilder();
+		for (int i= 0; i < 300; i++)
+			master.append("line ").append(i).append('\n');
+		fMasterDocument.set(master.toString());
+		fSlaveDocumentManager.freeSlaveDocument(fSlaveDocument);
+		fSlaveDocument= (ProjectionDocument) fSlaveDocumentManager.createSlaveDocument(fMasterDocument);
+		boolean[] visible= new boolean[fMasterDocument.getLength()];
+
+		Random random= new Random(7);
+		IDocumentInformationMapping mapping= fSlaveDocument.getDocumentInformationMapping();
+		for (int i= 0; i < 500; i++) {
+			int offset= random.nextInt(visible.length);
+			int length= 1 + random.nextInt(Math.min(200, visible.length - offset));
+			boolean add= random.nextInt(3) > 0;
+			if (add)
+				fSlaveDocument.addMasterDocumentRange(offset, length);
+			else
+				fSlaveDocument.removeMasterDocumentRange(offset, length);
+			for (int j= offset; j < offset + length; j++)
+				visible[j]= add;
+
+			StringBuilder expected= new StringBuilder();
+			for (int j= 0; j < visible.length; j++) {
+				if (visible[j])
+					expected.append(fMasterDocument.getChar(j));
+			}
+			Assert.assertEquals(expected.toString(), fSlaveDocument.get());
+			Assert.assertEquals(expected.length(), fSlaveDocument.getLength());
+
+			for (int j= 0; j < 10 && expected.length() > 0; j++) {
+				int imageOffset= random.nextInt(expected.length());
+				int originOffset= mapping.toOriginOffset(imageOffset);
+				Assert.assertTrue(visible[originOffset]);
+				Assert.assertEquals(imageOffset, mapping.toImageOffset(originOffset));
+			}
+		}
+	}
+
+	@Test
+	public void testReplaceMasterDocumentRanges() throws BadLocationException {
+		// test the single projection change event sent when replacing all fragments at once
+		createProjectionA();
+
+		final List<DocumentEvent> receivedEvents= new ArrayList<>();
+		fSlaveDocument.addDocumentListener(new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {}
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				receivedEvents.add(event);
+			}
+		});
+
+		IRegion[] ranges= {
+			new Region(0, 20),
+			new Region(40, 10),
+			new Region(80, 20),
+			new Region(120, 20),
+			new Region(140, 0),
+			new Region(140, 40)
+		};
+		fSlaveDocument.replaceMasterDocumentRanges(ranges);
+
+		Position[] expected= {
+			new Position(0, 20),
+			new Position(40, 10),
+			new Position(80, 20),
+			new Position(120, 60)
+		};
+		assertFragmentation(expected);
+		String master= getOriginalMasterContents();
+		assertSlaveContents(master.substring(0, 20) + master.substring(40, 50) + master.substring(80, 100) + master.substring(120, 180));
+
+		Assert.assertEquals(1, receivedEvents.size());
+		assertEquals(new DocumentEvent(fSlaveDocument, 30, 50, master.substring(80, 100) + master.substring(120, 160)), receivedEvents.get(0));
+
+		receivedEvents.clear();
+		fSlaveDocument.replaceMasterDocumentRanges(ranges);
+		Assert.assertEquals(0, receivedEvents.size());
+
+		fMasterDocument.replace(125, 0, "x");
+		assertSlaveContents(master.substring(0, 20) + master.substring(40, 50) + master.substring(80, 100) + master.substring(120, 125) + "x" + master.substring(125, 180));
+	}
+
+	@Test
+	public void testReplaceMasterDocumentRangesEmpty() throws BadLocationException {
+		// replacing all ranges with none leaves the same fragments as removing them one by one
+		ProjectionDocument incremental= (ProjectionDocument) fSlaveDocumentManager.createSlaveDocument(fMasterDocument);
+		try {
+			createProjectionA();
+			createProjectionA(incremental);
+
+			fSlaveDocument.replaceMasterDocumentRanges(new IRegion[] { new Region(30, 0) });
+			incremental.removeMasterDocumentRange(0, fMasterDocument.getLength());
+
+			assertFragmentation(incremental.getFragments2());
+			assertFragmentation(new Position[] { new Position(180, 0) });
+			assertSlaveContents("");
+
+			// text inserted at the end of the last range shows in both
+			fMasterDocument.replace(180, 0, "x");
+			assertFragmentation(incremental.getFragments2());
+			assertSlaveContents("x");
+			assertContents("x", incremental);
+		} finally {
+			fSlaveDocumentManager.freeSlaveDocument(incremental);
+		}
+	}
+
+	@Test(expected= IllegalArgumentException.class)
+	public void testReplaceMasterDocumentRangesOverlapping() throws BadLocationException {
+		fSlaveDocument.replaceMasterDocumentRanges(new IRegion[] { new Region(0, 20), new Region(10, 20) });
+	}
 }
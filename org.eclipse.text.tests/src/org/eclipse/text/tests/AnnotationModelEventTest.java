@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.AnnotationModelEvent;
+import org.eclipse.jface.text.source.IAnnotationModel;
+import org.eclipse.jface.text.source.IAnnotationModelListener;
+import org.eclipse.jface.text.source.IAnnotationModelListenerExtension;
+
+/**
+ * Tests {@link AnnotationModelEvent}.
+ *
+ * @since 3.7
+ */
+public class AnnotationModelEventTest {
+
+	private class RecordingListener implements IAnnotationModelListener, IAnnotationModelListenerExtension {
+
+		@Override
+		public void modelChanged(IAnnotationModel model) {
+		}
+
+		@Override
+		public void modelChanged(AnnotationModelEvent event) {
+			fEvents.add(event);
+		}
+	}
+
+	private AnnotationModel fModel;
+	private List<AnnotationModelEvent> fEvents;
+
+	@Before
+	public void setUp() {
+		fModel= new AnnotationModel();
+		fModel.connect(new Document("0123456789012345678901234567890123456789"));
+		fEvents= new ArrayList<>();
+		fModel.addAnnotationModelListener(new RecordingListener());
+		fEvents.clear();
+	}
+
+	@Test
+	public void testDuplicates() {
+		AnnotationModelEvent event= new AnnotationModelEvent(fModel, false);
+		assertTrue(event.isEmpty());
+		Annotation[] annotations= new Annotation[20];
+		for (int i= 0; i < annotations.length; i++) {
+			annotations[i]= new Annotation(false);
+			event.annotationAdded(annotations[i]);
+			event.annotationRemoved(annotations[i], new Position(i));
+		}
+		for (int i= 0; i < annotations.length; i++) {
+			event.annotationAdded(annotations[i]);
+			event.annotationRemoved(annotations[i], new Position(i, 1));
+			event.annotationChanged(annotations[0]);
+		}
+		event.markSealed();
+
+		assertFalse(event.isEmpty());
+		assertArrayEquals(annotations, event.getAddedAnnotations());
+		assertArrayEquals(annotations, event.getRemovedAnnotations());
+		assertArrayEquals(new Annotation[] { annotations[0] }, event.getChangedAnnotations());
+		for (int i= 0; i < annotations.length; i++)
+			assertEquals(new Position(i, 1), event.getPositionOfRemovedAnnotation(annotations[i]));
+		assertNull(event.getPositionOfRemovedAnnotation(new Annotation(false)));
+	}
+
+	@Test
+	public void testAffectedRegionOfReplace() {
+		Annotation first= new Annotation(false);
+		Annotation second= new Annotation(false);
+		fModel.addAnnotation(first, new Position(10, 2));
+		fModel.addAnnotation(second, new Position(20, 5));
+		fEvents.clear();
+
+		Map<Annotation, Position> added= new HashMap<>();
+		added.put(new Annotation(false), new Position(5, 1));
+		added.put(new Annotation(false), new Position(15, 1));
+		fModel.replaceAnnotations(new Annotation[] { first }, added);
+
+		assertEquals(1, fEvents.size());
+		AnnotationModelEvent event= fEvents.get(0);
+		assertEquals(2, event.getAddedAnnotations().length);
+		assertEquals(new Position(10, 2), event.getPositionOfRemovedAnnotation(first));
+		assertEquals(new Region(5, 11), event.getAffectedRegion());
+	}
+
+	@Test
+	public void testAffectedRegionOfModifiedPosition() {
+		Annotation annotation= new Annotation(false);
+		fModel.addAnnotation(annotation, new Position(10, 2));
+		fEvents.clear();
+
+		fModel.modifyAnnotationPosition(annotation, new Position(30, 4));
+		assertEquals(1, fEvents.size());
+		assertArrayEquals(new Annotation[] { annotation }, fEvents.get(0).getChangedAnnotations());
+		assertEquals(new Region(10, 24), fEvents.get(0).getAffectedRegion());
+	}
+
+	@Test
+	public void testUnknownAffectedRegion() {
+		AnnotationModelEvent event= new AnnotationModelEvent(fModel, false);
+		assertEquals(new Region(0, 0), event.getAffectedRegion());
+		event.annotationChanged(new Annotation(false), new Position(3, 4));
+		assertEquals(new Region(3, 4), event.getAffectedRegion());
+		event.annotationChanged(new Annotation(false));
+		assertNull(event.getAffectedRegion());
+
+		assertNull(new AnnotationModelEvent(fModel).getAffectedRegion());
+	}
+}
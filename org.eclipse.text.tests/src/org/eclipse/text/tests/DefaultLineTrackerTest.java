@@ -14,11 +14,16 @@ import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
 
+import java.util.Random;
+
 import org.junit.Assert;
 
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.ConfigurableLineTracker;
+import org.eclipse.jface.text.DefaultLineTracker;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ILineTracker;
 
 public class DefaultLineTrackerTest extends TestCase {
 
@@ -48,4 +53,74 @@ public class DefaultLineTrackerTest extends TestCase {
 			Assert.fail();
 		}
 	}
+
+	public void testLargeText() throws Exception {
+		String text= createText(3 * (1 << 18) + 1000);
+		checkSet(text);
+	}
+
+	public void testDelimiterAcrossChunks() throws Exception {
+		StringBuilder buffer= new StringBuilder();
+		for (int i= 0; i < 4; i++) {
+			while (buffer.length() < (i + 1) * (1 << 18) - 1)
+				buffer.append('x');
+			buffer.append(i % 2 == 0 ? "\r\n" : "\r");
+		}
+		buffer.append('\r');
+		checkSet(buffer.toString());
+	}
+
+	public void testSetAfterReplace() throws Exception {
+		DefaultLineTracker tracker= new DefaultLineTracker();
+		ConfigurableLineTracker expected= new ConfigurableLineTracker(DefaultLineTracker.DELIMITERS);
+		tracker.set("a\nb");
+		tracker.replace(1, 0, "\r\n");
+		expected.set("a\r\n\nb");
+		assertEqualTrackers(expected, tracker);
+
+		String text= createText(1 << 20);
+		tracker.set(text);
+		expected.set(text);
+		assertEqualTrackers(expected, tracker);
+
+		tracker.replace(10, 1000, "\n\r");
+		expected.replace(10, 1000, "\n\r");
+		assertEqualTrackers(expected, tracker);
+	}
+
+	private void checkSet(String text) throws BadLocationException {
+		DefaultLineTracker tracker= new DefaultLineTracker();
+		ConfigurableLineTracker expected= new ConfigurableLineTracker(DefaultLineTracker.DELIMITERS);
+		tracker.set(text);
+		expected.set(text);
+		assertEqualTrackers(expected, tracker);
+
+		// the first modification converts the tracker into a tree
+		tracker.replace(0, 0, "");
+		expected.replace(0, 0, "");
+		assertEqualTrackers(expected, tracker);
+	}
+
+	private static void assertEqualTrackers(ILineTracker expected, ILineTracker actual) throws BadLocationException {
+		int lines= expected.getNumberOfLines();
+		assertEquals(lines, actual.getNumberOfLines());
+		for (int line= 0; line < lines; line++) {
+			assertEquals(expected.getLineOffset(line), actual.getLineOffset(line));
+			assertEquals(expected.getLineLength(line), actual.getLineLength(line));
+			assertEquals(expected.getLineDelimiter(line), actual.getLineDelimiter(line));
+		}
+	}
+
+	private static String createText(int size) {
+		String[] delimiters= DefaultLineTracker.DELIMITERS;
+		Random random= new Random(size);
+		StringBuilder text= new StringBuilder(size);
+		while (text.length() < size) {
+			int lineLength= random.nextInt(80);
+			for (int i= 0; i < lineLength; i++)
+				text.append((char) ('a' + random.nextInt(26)));
+			text.append(delimiters[random.nextInt(delimiters.length)]);
+		}
+		return text.toString();
+	}
 }
@@ -0,0 +1,384 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPartitioningException;
+import org.eclipse.jface.text.CopyOnWriteTextStore;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.GapTextStore;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension3;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentExtension5;
+import org.eclipse.jface.text.IDocumentPartitioner;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.RopeTextStore;
+import org.eclipse.jface.text.TypedRegion;
+
+/**
+ * Tests {@link IDocumentExtension5#getSnapshot()}.
+ */
+public class DocumentSnapshotTest {
+
+	private static final String COMMENT= "comment";
+
+	/** A partitioner that makes each line starting with <code>#</code> a comment partition. */
+	private static class LinePartitioner implements IDocumentPartitioner {
+
+		private IDocument fDocument;
+		private int fComputations;
+
+		@Override
+		public void connect(IDocument document) {
+			fDocument= document;
+		}
+
+		@Override
+		public void disconnect() {
+			fDocument= null;
+		}
+
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+		}
+
+		@Override
+		public boolean documentChanged(DocumentEvent event) {
+			return true;
+		}
+
+		@Override
+		public String[] getLegalContentTypes() {
+			return new String[] { IDocument.DEFAULT_CONTENT_TYPE, COMMENT };
+		}
+
+		@Override
+		public String getContentType(int offset) {
+			return getPartition(offset).getType();
+		}
+
+		@Override
+		public ITypedRegion[] computePartitioning(int offset, int length) {
+			fComputations++;
+			List<ITypedRegion> result= new ArrayList<>();
+			for (ITypedRegion partition : computePartitioning()) {
+				int start= Math.max(offset, partition.getOffset());
+				int end= Math.min(offset + length, partition.getOffset() + partition.getLength());
+				if (start < end)
+					result.add(new TypedRegion(start, end - start, partition.getType()));
+			}
+			return result.toArray(new ITypedRegion[result.size()]);
+		}
+
+		@Override
+		public ITypedRegion getPartition(int offset) {
+			ITypedRegion[] partitions= computePartitioning();
+			for (ITypedRegion partition : partitions) {
+				if (offset < partition.getOffset() + partition.getLength())
+					return partition;
+			}
+			return partitions.length > 0 ? partitions[partitions.length - 1] : new TypedRegion(0, 0, IDocument.DEFAULT_CONTENT_TYPE);
+		}
+
+		private ITypedRegion[] computePartitioning() {
+			List<ITypedRegion> result= new ArrayList<>();
+			String text= fDocument.get();
+			int start= 0;
+			String type= null;
+			int offset= 0;
+			while (offset < text.length()) {
+				int end= text.indexOf('\n', offset) + 1;
+				if (end == 0)
+					end= text.length();
+				String lineType= text.charAt(offset) == '#' ? COMMENT : IDocument.DEFAULT_CONTENT_TYPE;
+				if (type != null && !type.equals(lineType)) {
+					result.add(new TypedRegion(start, offset - start, type));
+					start= offset;
+				}
+				type= lineType;
+				offset= end;
+			}
+			if (type != null)
+				result.add(new TypedRegion(start, offset - start, type));
+			return result.toArray(new ITypedRegion[result.size()]);
+		}
+	}
+
+	/** A text store that neither is a gap nor a rope text store. */
+	private static class StringBuilderTextStore implements ITextStore {
+
+		private final StringBuilder fText= new StringBuilder();
+
+		@Override
+		public char get(int offset) {
+			return fText.charAt(offset);
+		}
+
+		@Override
+		public String get(int offset, int length) {
+			return fText.substring(offset, offset + length);
+		}
+
+		@Override
+		public int getLength() {
+			return fText.length();
+		}
+
+		@Override
+		public void replace(int offset, int length, String text) {
+			fText.replace(offset, offset + length, text == null ? "" : text);
+		}
+
+		@Override
+		public void set(String text) {
+			fText.setLength(0);
+			fText.append(text == null ? "" : text);
+		}
+	}
+
+	private static IDocument[] createDocuments() {
+		return new IDocument[] {
+				new Document(),
+				new Document(new GapTextStore()),
+				new Document(new GapTextStore(0, 0, 0f)),
+				new Document(new RopeTextStore()),
+				new Document(new CopyOnWriteTextStore(new RopeTextStore())),
+				new Document(new StringBuilderTextStore())
+		};
+	}
+
+	private static IDocument getSnapshot(IDocument document) {
+		return ((IDocumentExtension5) document).getSnapshot();
+	}
+
+	private static void assertSameContent(String expected, IDocument snapshot) throws BadLocationException {
+		Document reference= new Document(expected);
+		assertEquals(expected, snapshot.get());
+		assertEquals(expected.length(), snapshot.getLength());
+		for (int i= 0; i < expected.length(); i++)
+			assertEquals(expected.charAt(i), snapshot.getChar(i));
+		assertEquals(expected.substring(1, expected.length() - 1), snapshot.get(1, expected.length() - 2));
+
+		assertEquals(reference.getNumberOfLines(), snapshot.getNumberOfLines());
+		for (int line= 0; line < reference.getNumberOfLines(); line++) {
+			assertEquals(reference.getLineOffset(line), snapshot.getLineOffset(line));
+			assertEquals(reference.getLineLength(line), snapshot.getLineLength(line));
+			assertEquals(reference.getLineDelimiter(line), snapshot.getLineDelimiter(line));
+		}
+		for (int offset= 0; offset <= expected.length(); offset++)
+			assertEquals(reference.getLineOfOffset(offset), snapshot.getLineOfOffset(offset));
+	}
+
+	@Test
+	public void testContent() throws BadLocationException {
+		for (IDocument document : createDocuments()) {
+			document.set("first\nsecond\r\nthird\rfourth");
+			IDocument first= getSnapshot(document);
+
+			document.replace(6, 6, "2nd");
+			document.replace(document.getLength(), 0, "\nfifth");
+			IDocument second= getSnapshot(document);
+
+			document.replace(0, 0, "zero\n");
+			document.set("other");
+
+			assertSameContent("first\nsecond\r\nthird\rfourth", first);
+			assertSameContent("first\n2nd\r\nthird\rfourth\nfifth", second);
+			assertEquals("other", document.get());
+		}
+	}
+
+	@Test
+	public void testRandomEdits() throws BadLocationException {
+		Random random= new Random(42);
+		for (IDocument document : createDocuments()) {
+			List<String> expected= new ArrayList<>();
+			List<IDocument> snapshots= new ArrayList<>();
+			for (int i= 0; i < 300; i++) {
+				int offset= random.nextInt(document.getLength() + 1);
+				int length= random.nextInt(Math.min(5, document.getLength() - offset) + 1);
+				document.replace(offset, length, "ab\ncd".substring(random.nextInt(6)));
+				if (i % 10 == 0) {
+					expected.add(document.get());
+					snapshots.add(getSnapshot(document));
+				}
+			}
+			for (int i= 0; i < snapshots.size(); i++)
+				assertSameContent(expected.get(i), snapshots.get(i));
+		}
+	}
+
+	@Test
+	public void testModificationStamp() throws BadLocationException {
+		Document document= new Document("abc");
+		document.replace(0, 1, "x", 42);
+		IDocumentExtension4 snapshot= (IDocumentExtension4) getSnapshot(document);
+		document.replace(0, 1, "y");
+
+		assertEquals(42, snapshot.getModificationStamp());
+		assertEquals(document.getDefaultLineDelimiter(), snapshot.getDefaultLineDelimiter());
+		assertSame(snapshot, ((IDocumentExtension5) snapshot).getSnapshot());
+	}
+
+	@Test
+	public void testPartitioning() throws BadLocationException, BadPartitioningException {
+		Document document= new Document("a\n#b\n#c\nd\n");
+		LinePartitioner partitioner= new LinePartitioner();
+		partitioner.connect(document);
+		document.setDocumentPartitioner(partitioner);
+
+		IDocument snapshot= getSnapshot(document);
+		document.replace(2, 1, "");
+		document.setDocumentPartitioner(null);
+
+		assertNull(snapshot.getDocumentPartitioner());
+		assertEquals(COMMENT, snapshot.getContentType(2));
+		assertEquals(new TypedRegion(2, 6, COMMENT), snapshot.getPartition(5));
+		assertEquals(new TypedRegion(8, 2, IDocument.DEFAULT_CONTENT_TYPE), snapshot.getPartition(10));
+
+		ITypedRegion[] partitioning= snapshot.computePartitioning(1, 8);
+		assertEquals(3, partitioning.length);
+		assertEquals(new TypedRegion(1, 1, IDocument.DEFAULT_CONTENT_TYPE), partitioning[0]);
+		assertEquals(new TypedRegion(2, 6, COMMENT), partitioning[1]);
+		assertEquals(new TypedRegion(8, 1, IDocument.DEFAULT_CONTENT_TYPE), partitioning[2]);
+
+		IDocumentExtension3 extension= (IDocumentExtension3) snapshot;
+		assertEquals(1, extension.getPartitionings().length);
+		assertEquals(2, extension.getLegalContentTypes(IDocumentExtension3.DEFAULT_PARTITIONING).length);
+		try {
+			extension.getPartition("unknown", 0, false);
+			fail();
+		} catch (BadPartitioningException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testPartitionsOnDemand() throws BadLocationException {
+		Document document= new Document("a\n#b\n");
+		LinePartitioner partitioner= new LinePartitioner();
+		partitioner.connect(document);
+		document.setDocumentPartitioner(partitioner);
+
+		IDocument queried= getSnapshot(document);
+		IDocument unqueried= getSnapshot(document);
+		assertEquals(0, partitioner.fComputations);
+
+		assertEquals(COMMENT, queried.getContentType(3));
+		assertEquals(IDocument.DEFAULT_CONTENT_TYPE, queried.getContentType(0));
+		assertEquals(1, partitioner.fComputations);
+
+		// the snapshot which has not been queried yet copies the partitions before the change
+		document.replace(0, 0, "#");
+		assertEquals(2, partitioner.fComputations);
+		assertEquals(COMMENT, unqueried.getContentType(3));
+		assertEquals(IDocument.DEFAULT_CONTENT_TYPE, unqueried.getContentType(0));
+		assertEquals(COMMENT, queried.getContentType(3));
+
+		document.replace(0, 0, "x\n");
+		assertEquals(2, partitioner.fComputations);
+	}
+
+	@Test
+	public void testLineInformationBeforeAndAfterChange() throws BadLocationException {
+		for (IDocument document : createDocuments()) {
+			document.set("a\nbc\r\ndef");
+			IDocument snapshot= getSnapshot(document);
+			assertSameContent("a\nbc\r\ndef", snapshot);
+			document.replace(2, 0, "xyz\n");
+			assertSameContent("a\nbc\r\ndef", snapshot);
+		}
+	}
+
+	@Test
+	public void testLargeContent() throws BadLocationException {
+		Random random= new Random(17);
+		StringBuilder text= new StringBuilder();
+		while (text.length() < 50000)
+			text.append("line ").append(text.length()).append('\n');
+		for (IDocument document : createDocuments()) {
+			document.set(text.toString());
+			List<String> expected= new ArrayList<>();
+			List<IDocument> snapshots= new ArrayList<>();
+			for (int i= 0; i < 100; i++) {
+				// far apart changes move the gap across many chunks
+				int offset= random.nextInt(document.getLength() + 1);
+				int length= random.nextInt(Math.min(10000, document.getLength() - offset) + 1);
+				document.replace(offset, length, random.nextBoolean() ? "" : text.substring(0, random.nextInt(10000)));
+				if (i % 7 == 0) {
+					expected.add(document.get());
+					snapshots.add(getSnapshot(document));
+				}
+			}
+			for (int i= 0; i < snapshots.size(); i++)
+				assertEquals(expected.get(i), snapshots.get(i).get());
+		}
+	}
+
+	@Test
+	public void testDefaultPartitioning() throws BadLocationException {
+		IDocument snapshot= getSnapshot(new Document("abc"));
+		assertEquals(new TypedRegion(0, 3, IDocument.DEFAULT_CONTENT_TYPE), snapshot.getPartition(1));
+		assertEquals(1, snapshot.computePartitioning(0, 3).length);
+	}
+
+	@Test
+	public void testUnmodifiable() throws BadLocationException {
+		IDocument snapshot= getSnapshot(new Document("abc"));
+		try {
+			snapshot.replace(0, 1, "x");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			snapshot.set("x");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			snapshot.getChar(3);
+			fail();
+		} catch (BadLocationException e) {
+			// expected
+		}
+		assertEquals("abc", snapshot.get());
+	}
+
+	@Test
+	public void testLineInformation() throws BadLocationException {
+		Document document= new Document("a\nbc\n");
+		IDocument snapshot= getSnapshot(document);
+		document.replace(0, 0, "xyz\n");
+
+		IRegion line= snapshot.getLineInformationOfOffset(3);
+		assertEquals(2, line.getOffset());
+		assertEquals(2, line.getLength());
+		assertEquals(3, snapshot.getNumberOfLines());
+		assertEquals(1, snapshot.getLineOfOffset(3));
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2010 IBM Corporation and others.
+ * Copyright (c) 2009, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -400,6 +400,93 @@ public class DocumentUndoManagerTest extends TestCase {
 
 	}
 
+	public void testCompactStorage() throws BadLocationException, ExecutionException {
+		final String original= INITIAL_DOCUMENT_CONTENT;
+		final Document document= new Document(original);
+		DocumentUndoManager undoManager= new DocumentUndoManager(document);
+		fUndoManager= undoManager;
+		fUndoManager.connect(this);
+		undoManager.setCompactStorage(true);
+
+		StringBuffer buffer= new StringBuffer();
+		for (int i= 0; i < 5000; i++)
+			buffer.append((char) (i % 3 == 0 ? 0xd800 + i % 7 : 32 + i % 95));
+		String large= buffer.toString();
+
+		document.replace(0, document.getLength(), large);
+		fUndoManager.commit();
+		fUndoManager.beginCompoundChange();
+		document.replace(0, 3000, "");
+		document.replace(0, 0, large);
+		fUndoManager.endCompoundChange();
+		String modified= document.get();
+
+		fUndoManager.undo();
+		assertEquals(large, document.get());
+		fUndoManager.undo();
+		assertEquals(original, document.get());
+		fUndoManager.redo();
+		assertEquals(large, document.get());
+		fUndoManager.redo();
+		assertEquals(modified, document.get());
+	}
+
+	public void testMaximalUndoSize() throws BadLocationException, ExecutionException {
+		final Document document= new Document(INITIAL_DOCUMENT_CONTENT);
+		DocumentUndoManager undoManager= new DocumentUndoManager(document);
+		fUndoManager= undoManager;
+		fUndoManager.connect(this);
+		undoManager.setMaximalUndoLevel(MAX_UNDO_LEVEL);
+		undoManager.setMaximalUndoSize(10000);
+
+		String[] contents= new String[10];
+		for (int i= 0; i < contents.length; i++) {
+			contents[i]= document.get();
+			document.replace(0, 0, createRandomString(1000));
+			fUndoManager.commit();
+		}
+
+		int undone= 0;
+		while (fUndoManager.undoable()) {
+			fUndoManager.undo();
+			undone++;
+		}
+		assertTrue(undone > 0 && undone < contents.length);
+		assertEquals(contents[contents.length - undone], document.get());
+	}
+
+	public void testMaximalUndoSizeKeepsRedoHistory() throws BadLocationException, ExecutionException {
+		final Document document= new Document(INITIAL_DOCUMENT_CONTENT);
+		DocumentUndoManager undoManager= new DocumentUndoManager(document);
+		fUndoManager= undoManager;
+		fUndoManager.connect(this);
+		undoManager.setMaximalUndoLevel(MAX_UNDO_LEVEL);
+
+		String[] contents= new String[10];
+		for (int i= 0; i < contents.length; i++) {
+			document.replace(0, 0, createRandomString(1000));
+			fUndoManager.commit();
+			contents[i]= document.get();
+		}
+		fUndoManager.undo();
+		fUndoManager.undo();
+		assertEquals(contents[contents.length - 3], document.get());
+
+		undoManager.setMaximalUndoSize(3000);
+
+		fUndoManager.redo();
+		fUndoManager.redo();
+		assertEquals(contents[contents.length - 1], document.get());
+		assertFalse(fUndoManager.redoable());
+
+		int undone= 0;
+		while (fUndoManager.undoable()) {
+			fUndoManager.undo();
+			undone++;
+		}
+		assertTrue(undone > 2 && undone < contents.length);
+	}
+
 	private static String createRandomString(int length) {
 		final StringBuffer buffer= new StringBuffer();
 
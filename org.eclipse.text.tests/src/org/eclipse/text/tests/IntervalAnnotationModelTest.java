@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.AnnotationModel;
+import org.eclipse.jface.text.source.IntervalAnnotationModel;
+
+/**
+ * Tests {@link IntervalAnnotationModel} against {@link AnnotationModel}.
+ *
+ * @since 3.7
+ */
+public class IntervalAnnotationModelTest {
+
+	/** An annotation model which counts its region queries. */
+	private static class CountingAnnotationModel extends AnnotationModel {
+
+		int fQueries;
+
+		@Override
+		public Iterator<Annotation> getAnnotationIterator(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+			fQueries++;
+			return super.getAnnotationIterator(offset, length, canStartBefore, canEndAfter);
+		}
+	}
+
+	private Document fDocument;
+	private Document fReferenceDocument;
+	private IntervalAnnotationModel fModel;
+	private AnnotationModel fReference;
+	private List<Annotation> fAnnotations;
+	private List<Annotation> fReferenceAnnotations;
+
+	@Before
+	public void setUp() {
+		fDocument= new Document();
+		fModel= new IntervalAnnotationModel();
+		fModel.connect(fDocument);
+		fReference= new AnnotationModel();
+		fReferenceDocument= new Document();
+		fReference.connect(fReferenceDocument);
+		fAnnotations= new ArrayList<>();
+		fReferenceAnnotations= new ArrayList<>();
+	}
+
+	private void set(String text) {
+		fDocument.set(text);
+		fReferenceDocument.set(text);
+	}
+
+	private void replace(int offset, int length, String text) throws BadLocationException {
+		fDocument.replace(offset, length, text);
+		fReferenceDocument.replace(offset, length, text);
+	}
+
+	private void add(int offset, int length) {
+		Annotation annotation= new Annotation(false);
+		Annotation reference= new Annotation(false);
+		fModel.addAnnotation(annotation, new Position(offset, length));
+		fReference.addAnnotation(reference, new Position(offset, length));
+		fAnnotations.add(annotation);
+		fReferenceAnnotations.add(reference);
+	}
+
+	private void move(int index, int offset, int length) {
+		fModel.modifyAnnotationPosition(fAnnotations.get(index), new Position(offset, length));
+		fReference.modifyAnnotationPosition(fReferenceAnnotations.get(index), new Position(offset, length));
+	}
+
+	private void remove(int index) {
+		fModel.removeAnnotation(fAnnotations.remove(index));
+		fReference.removeAnnotation(fReferenceAnnotations.remove(index));
+	}
+
+	private Set<Integer> getExpected(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+		Set<Integer> expected= new HashSet<>();
+		for (Iterator<Annotation> iterator= fReference.getAnnotationIterator(offset, length, canStartBefore, canEndAfter); iterator.hasNext();)
+			expected.add(fReferenceAnnotations.indexOf(iterator.next()));
+		return expected;
+	}
+
+	/**
+	 * Adds the positions of the reference model to its document again. The document does not
+	 * sort the positions it keeps ordered by end offset again after updating them, so its region
+	 * queries may miss positions after some edits.
+	 */
+	private void sortReference() {
+		List<Annotation> annotations= new ArrayList<>();
+		for (Iterator<Annotation> iterator= fReference.getAnnotationIterator(); iterator.hasNext();)
+			annotations.add(iterator.next());
+		List<Position> positions= new ArrayList<>();
+		for (Annotation annotation : annotations)
+			positions.add(fReference.getPosition(annotation));
+		fReference.removeAllAnnotations();
+		for (int i= 0; i < annotations.size(); i++)
+			fReference.addAnnotation(annotations.get(i), positions.get(i));
+	}
+
+	private Set<Integer> getActual(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+		Set<Integer> actual= new HashSet<>();
+		int lastOffset= -1;
+		for (Iterator<Annotation> iterator= fModel.getAnnotationIterator(offset, length, canStartBefore, canEndAfter); iterator.hasNext();) {
+			Annotation annotation= iterator.next();
+			int index= fAnnotations.indexOf(annotation);
+			assertTrue(index >= 0);
+			assertTrue(actual.add(index));
+			int annotationOffset= fModel.getPosition(annotation).getOffset();
+			assertTrue(lastOffset <= annotationOffset);
+			lastOffset= annotationOffset;
+		}
+		return actual;
+	}
+
+	private void assertSameAnnotations() {
+		Set<Integer> expected= new HashSet<>();
+		for (Iterator<Annotation> iterator= fReference.getAnnotationIterator(); iterator.hasNext();)
+			expected.add(fReferenceAnnotations.indexOf(iterator.next()));
+		Set<Integer> actual= new HashSet<>();
+		for (Iterator<Annotation> iterator= fModel.getAnnotationIterator(); iterator.hasNext();)
+			actual.add(fAnnotations.indexOf(iterator.next()));
+		assertEquals(expected, actual);
+
+		for (int i= 0; i < fAnnotations.size(); i++) {
+			Position position= fModel.getPosition(fAnnotations.get(i));
+			Position reference= fReference.getPosition(fReferenceAnnotations.get(i));
+			assertEquals(reference, position);
+		}
+	}
+
+	@Test
+	public void testRandomEdits() throws BadLocationException {
+		Random random= new Random(17);
+		set("0123456789abcdefghijklmnopqrstuvwxyz\n0123456789abcdefghijklmnopqrstuvwxyz\n");
+		for (int i= 0; i < 3000; i++) {
+			int length= fDocument.getLength();
+			switch (random.nextInt(7)) {
+				case 0:
+				case 1: {
+					int offset= random.nextInt(length + 1);
+					add(offset, random.nextInt(Math.min(length - offset, 10) + 1));
+					break;
+				}
+				case 2:
+					if (!fAnnotations.isEmpty())
+						remove(random.nextInt(fAnnotations.size()));
+					break;
+				case 3:
+					if (!fAnnotations.isEmpty()) {
+						int offset= random.nextInt(length + 1);
+						move(random.nextInt(fAnnotations.size()), offset, random.nextInt(Math.min(length - offset, 10) + 1));
+					}
+					break;
+				default: {
+					int offset= random.nextInt(length + 1);
+					int removed= random.nextInt(Math.min(length - offset, 12) + 1);
+					String text= random.nextInt(3) == 0 ? "" : "abcdefgh".substring(random.nextInt(8));
+					replace(offset, removed, text);
+				}
+			}
+
+			int offset= random.nextInt(fDocument.getLength() + 1);
+			int regionLength= random.nextInt(fDocument.getLength() - offset + 1);
+			boolean canStartBefore= random.nextBoolean();
+			boolean canEndAfter= random.nextBoolean();
+			sortReference();
+			assertEquals(getExpected(offset, regionLength, canStartBefore, canEndAfter), getActual(offset, regionLength, canStartBefore, canEndAfter));
+			if (i % 100 == 0)
+				assertSameAnnotations();
+		}
+		assertSameAnnotations();
+	}
+
+	@Test
+	public void testEmptyPositionAtRegionStart() throws BadLocationException {
+		set("0123456789");
+		add(3, 1);
+		add(4, 0);
+		add(7, 0);
+		for (int i= 0; i < 4; i++) {
+			boolean canStartBefore= (i & 1) != 0;
+			boolean canEndAfter= (i & 2) != 0;
+			assertEquals(getExpected(4, 3, canStartBefore, canEndAfter), getActual(4, 3, canStartBefore, canEndAfter));
+			assertEquals(getExpected(4, 0, canStartBefore, canEndAfter), getActual(4, 0, canStartBefore, canEndAfter));
+			assertEquals(getExpected(7, 3, canStartBefore, canEndAfter), getActual(7, 3, canStartBefore, canEndAfter));
+		}
+		assertFalse(fModel.getAnnotationIterator(4, 3, false, false).hasNext());
+	}
+
+	@Test
+	public void testDeletedPositionsAreRemoved() throws BadLocationException {
+		set("0123456789");
+		add(2, 2);
+		add(6, 1);
+		replace(1, 4, "");
+
+		Iterator<Annotation> iterator= fModel.getAnnotationIterator();
+		assertTrue(iterator.hasNext());
+		assertEquals(fAnnotations.get(1), iterator.next());
+		assertFalse(iterator.hasNext());
+		assertEquals(new Position(2, 1), fModel.getPosition(fAnnotations.get(1)));
+	}
+
+	@Test
+	public void testModifyAnnotationPosition() throws BadLocationException {
+		set("0123456789");
+		add(1, 1);
+		add(5, 1);
+		fModel.modifyAnnotationPosition(fAnnotations.get(0), new Position(8, 1));
+
+		Iterator<Annotation> iterator= fModel.getAnnotationIterator(6, 4, false, false);
+		assertEquals(fAnnotations.get(0), iterator.next());
+		assertFalse(iterator.hasNext());
+		assertFalse(fModel.getAnnotationIterator(0, 4, true, true).hasNext());
+	}
+
+	@Test
+	public void testAttachmentsAreQueriedLazily() {
+		set("0123456789");
+		add(1, 1);
+		CountingAnnotationModel attachment= new CountingAnnotationModel();
+		attachment.addAnnotation(new Annotation(false), new Position(3, 1));
+		fModel.addAnnotationModel("attachment", attachment);
+
+		Iterator<Annotation> iterator= fModel.getAnnotationIterator(0, 10, true, true);
+		assertEquals(fAnnotations.get(0), iterator.next());
+		assertEquals(0, attachment.fQueries);
+		assertTrue(iterator.hasNext());
+		iterator.next();
+		assertEquals(1, attachment.fQueries);
+		assertFalse(iterator.hasNext());
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DefaultPositionUpdater;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.Position;
+
+/**
+ * Tests {@link org.eclipse.jface.text.IDocumentExtension5#replace(int[], int[], String[])}.
+ */
+public class MultiReplaceTest {
+
+	private static class EventRecorder implements IDocumentListener {
+
+		List<String> fEvents= new ArrayList<>();
+
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+		}
+
+		@Override
+		public void documentChanged(DocumentEvent event) {
+			fEvents.add(event.getOffset() + "," + event.getLength() + "," + event.getText());
+		}
+	}
+
+	@Test
+	public void testReplace() throws BadLocationException {
+		Document document= new Document("0123456789");
+		Position position= new Position(2, 6);
+		document.addPosition(position);
+		EventRecorder recorder= new EventRecorder();
+		document.addDocumentListener(recorder);
+
+		document.replace(new int[] { 1, 5, 5, 9 }, new int[] { 2, 0, 1, 1 }, new String[] { "a", "bc", "d", null });
+
+		assertEquals("0a34bcd678", document.get());
+		assertEquals(1, recorder.fEvents.size());
+		assertEquals("1,9,a34bcd678", recorder.fEvents.get(0));
+		assertEquals(new Position(2, 7), position);
+	}
+
+	@Test
+	public void testLines() throws BadLocationException {
+		Document document= new Document("a\nb\nc\nd\n");
+		document.replace(new int[] { 1, 4, 6 }, new int[] { 1, 0, 1 }, new String[] { "", "x\ny\n", "\n\n" });
+
+		assertEquals("ab\nx\ny\nc\n\n\n\n", document.get());
+		assertEquals(8, document.getNumberOfLines());
+		assertEquals(3, document.getLineOffset(1));
+		assertEquals(10, document.getLineOffset(5));
+	}
+
+	@Test
+	public void testInvalidRanges() {
+		Document document= new Document("0123456789");
+		try {
+			document.replace(new int[] { 1, 2 }, new int[] { 2, 1 }, new String[] { "a", "b" });
+			fail();
+		} catch (BadLocationException e) {
+			// expected
+		}
+		try {
+			document.replace(new int[] { 8 }, new int[] { 3 }, new String[] { "a" });
+			fail();
+		} catch (BadLocationException e) {
+			// expected
+		}
+		assertEquals("0123456789", document.get());
+	}
+
+	@Test
+	public void testOtherPositionUpdater() throws BadLocationException {
+		Document document= new Document("0123456789");
+		document.addPositionUpdater(new DefaultPositionUpdater("other") {
+			// not known to replace several ranges at once
+		});
+		EventRecorder recorder= new EventRecorder();
+		document.addDocumentListener(recorder);
+
+		document.replace(new int[] { 1, 5 }, new int[] { 2, 1 }, new String[] { "a", "bc" });
+
+		assertEquals("0a34bc6789", document.get());
+		assertEquals(2, recorder.fEvents.size());
+		assertEquals("5,1,bc", recorder.fEvents.get(0));
+		assertEquals("1,2,a", recorder.fEvents.get(1));
+	}
+
+	@Test
+	public void testRandomReplace() throws BadLocationException, BadPositionCategoryException {
+		Random random= new Random(42);
+		for (int i= 0; i < 2000; i++) {
+			StringBuilder text= new StringBuilder();
+			for (int j= random.nextInt(30); j > 0; j--)
+				text.append(random.nextInt(5) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+			Document expected= new Document(text.toString());
+			Document actual= new Document(text.toString());
+			for (int j= random.nextInt(10); j > 0; j--) {
+				int offset= random.nextInt(text.length() + 1);
+				int length= random.nextInt(text.length() - offset + 1);
+				expected.addPosition(new Position(offset, length));
+				actual.addPosition(new Position(offset, length));
+			}
+
+			List<int[]> ranges= new ArrayList<>();
+			int offset= 0;
+			while (true) {
+				offset+= random.nextInt(4);
+				int length= random.nextInt(4);
+				if (offset + length > text.length())
+					break;
+				ranges.add(new int[] { offset, length });
+				offset+= length;
+			}
+			int count= ranges.size();
+			int[] offsets= new int[count];
+			int[] lengths= new int[count];
+			String[] texts= new String[count];
+			for (int j= 0; j < count; j++) {
+				offsets[j]= ranges.get(j)[0];
+				lengths[j]= ranges.get(j)[1];
+				texts[j]= "xy\n".substring(random.nextInt(4));
+			}
+
+			for (int j= count - 1; j >= 0; j--)
+				expected.replace(offsets[j], lengths[j], texts[j]);
+			actual.replace(offsets, lengths, texts);
+
+			assertEquals(expected.get(), actual.get());
+			assertEquals(expected.getNumberOfLines(), actual.getNumberOfLines());
+			for (int line= 0; line < expected.getNumberOfLines(); line++)
+				assertEquals(expected.getLineOffset(line), actual.getLineOffset(line));
+			assertSamePositions(expected.getPositions(IDocument.DEFAULT_CATEGORY), actual.getPositions(IDocument.DEFAULT_CATEGORY));
+		}
+	}
+
+	private static void assertSamePositions(Position[] expected, Position[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i= 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i]);
+			assertTrue(!actual[i].isDeleted());
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.jface.text.ITextStore;
+import org.eclipse.jface.text.RopeTextStore;
+
+public class RopeTextStoreTest extends TextStoreTest {
+
+	@Override
+	protected ITextStore createTextStore() {
+		return new RopeTextStore();
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception {
+		RopeTextStore store= new RopeTextStore();
+		StringBuilder expected= new StringBuilder();
+		Random random= new Random(4711);
+		for (int i= 0; i < 5000; i++) {
+			int offset= random.nextInt(expected.length() + 1);
+			int length= random.nextInt(Math.min(20, expected.length() - offset) + 1);
+			String text= randomText(random, random.nextInt(5) == 0 ? 700 : 10);
+			store.replace(offset, length, text);
+			expected.replace(offset, offset + length, text);
+
+			assertEquals(expected.length(), store.getLength());
+			if (i % 100 == 0)
+				assertContents(expected.toString(), store);
+		}
+		assertContents(expected.toString(), store);
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		RopeTextStore store= new RopeTextStore();
+		store.set("x\nx\nx\n");
+		RopeTextStore snapshot= store.snapshot();
+
+		store.replace(2, 1, "yyy");
+		snapshot.replace(0, 0, "z");
+
+		assertContents("x\nyyy\nx\n", store);
+		assertContents("zx\nx\nx\n", snapshot);
+	}
+
+	private static String randomText(Random random, int maxLength) {
+		int length= random.nextInt(maxLength + 1);
+		StringBuilder text= new StringBuilder(length);
+		for (int i= 0; i < length; i++)
+			text.append((char) ('a' + random.nextInt(26)));
+		return text.toString();
+	}
+
+	private static void assertContents(String expected, ITextStore store) {
+		assertEquals(expected, store.get(0, store.getLength()));
+		for (int i= 0; i < expected.length(); i++)
+			assertEquals(expected.charAt(i), store.get(i));
+		for (int i= 0; i + 7 <= expected.length(); i+= 7)
+			assertEquals(expected.substring(i, i + 7), store.get(i, 7));
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,10 +12,12 @@ package org.eclipse.text.tests;
 
 import static org.junit.Assert.*;
 
+import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -39,8 +41,11 @@ import org.eclipse.text.edits.TextEditCopier;
 import org.eclipse.text.edits.UndoEdit;
 
 import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Position;
 
 public class TextEditTests {
 
@@ -1390,6 +1395,281 @@ public class TextEditTests {
 		assertEquals(result, 2, 1);
 	}
 
+	@Test
+	public void testBatchUpdates() throws Exception {
+		MoveSourceEdit s1= new MoveSourceEdit(1, 2);
+		MoveTargetEdit t1= new MoveTargetEdit(8, s1);
+		CopySourceEdit s2= new CopySourceEdit(4, 1);
+		CopyTargetEdit t2= new CopyTargetEdit(0, s2);
+		RangeMarker m1= new RangeMarker(4, 3);
+		fRoot.addChild(t2);
+		fRoot.addChild(s1);
+		fRoot.addChild(m1);
+		fRoot.addChild(t1);
+		m1.addChild(s2);
+		m1.addChild(new ReplaceEdit(5, 2, "x"));
+		s1.addChild(new InsertEdit(2, "y"));
+		UndoEdit undo= assertBatchedApply(fRoot, true);
+		Assert.assertEquals("Buffer content", "4034x71y289", fDocument.get());
+		assertEquals(t2, 0, 1);
+		assertEquals(m1, 3, 2);
+		assertEquals(t1, 6, 3);
+		doBatchedUndoRedo(undo, "4034x71y289");
+	}
+
+	@Test
+	public void testBatchUpdatesNested() throws Exception {
+		ReplaceEdit r1= new ReplaceEdit(2, 5, "abc");
+		r1.addChild(new InsertEdit(2, "x"));
+		r1.addChild(new DeleteEdit(4, 1));
+		fRoot.addChild(new InsertEdit(0, "y"));
+		fRoot.addChild(r1);
+		fRoot.addChild(new DeleteEdit(8, 2));
+		// the children of r1 change text replaced by r1, so the edits are applied one by one
+		UndoEdit undo= assertBatchedApply(fRoot, false);
+		Assert.assertEquals("Buffer content", "y01abc7", fDocument.get());
+		assertEquals(r1, 3, 3);
+		doBatchedUndoRedo(undo, "y01abc7");
+	}
+
+	@Test
+	public void testBatchUpdatesRandom() throws Exception {
+		Random random= new Random(1234);
+		for (int i= 0; i < 500; i++) {
+			StringBuilder text= new StringBuilder();
+			for (int j= random.nextInt(40); j > 0; j--)
+				text.append((char) ('a' + random.nextInt(26)));
+			fDocument.set(text.toString());
+			String original= fDocument.get();
+			UndoEdit undo= assertBatchedApply(createRandomTree(random, fDocument.getLength()), false);
+			String modified= fDocument.get();
+			UndoEdit redo= undo.apply(fDocument, TextEdit.CREATE_UNDO | TextEdit.BATCH_UPDATES);
+			Assert.assertEquals("Buffer content restored", original, fDocument.get());
+			redo.apply(fDocument, TextEdit.BATCH_UPDATES);
+			Assert.assertEquals("Buffer content redo", modified, fDocument.get());
+		}
+	}
+
+	@Test
+	public void testBatchUpdatesPositions() throws Exception {
+		Random random= new Random(2468);
+		for (int i= 0; i < 500; i++) {
+			StringBuilder text= new StringBuilder();
+			for (int j= random.nextInt(40); j > 0; j--)
+				text.append((char) ('a' + random.nextInt(26)));
+			MultiTextEdit root= createRandomTree(random, text.length());
+			TextEdit copy= root.copy();
+			IDocument batched= createDocumentWithPositions(text.toString());
+			IDocument sequential= createDocumentWithPositions(text.toString());
+
+			UndoEdit batchedUndo= root.apply(batched, TextEdit.CREATE_UNDO | TextEdit.BATCH_UPDATES);
+			UndoEdit sequentialUndo= copy.apply(sequential, TextEdit.CREATE_UNDO);
+			assertSamePositions(sequential, batched);
+
+			batchedUndo.apply(batched, TextEdit.BATCH_UPDATES);
+			sequentialUndo.apply(sequential);
+			Assert.assertEquals("Buffer content restored", text.toString(), batched.get());
+			assertSamePositions(sequential, batched);
+		}
+	}
+
+	private static IDocument createDocumentWithPositions(String text) throws Exception {
+		IDocument document= new Document(text);
+		for (int offset= 0; offset <= text.length(); offset++) {
+			document.addPosition(new Position(offset, 0));
+			if (offset + 3 <= text.length())
+				document.addPosition(new Position(offset, 3));
+		}
+		return document;
+	}
+
+	private static void assertSamePositions(IDocument expected, IDocument actual) throws Exception {
+		Position[] expectedPositions= expected.getPositions(IDocument.DEFAULT_CATEGORY);
+		Position[] actualPositions= actual.getPositions(IDocument.DEFAULT_CATEGORY);
+		Assert.assertEquals("Positions", expectedPositions.length, actualPositions.length);
+		for (int i= 0; i < expectedPositions.length; i++) {
+			Assert.assertEquals("Deleted", expectedPositions[i].isDeleted(), actualPositions[i].isDeleted());
+			Assert.assertEquals("Position", expectedPositions[i], actualPositions[i]);
+		}
+	}
+
+	@Test
+	public void testBatchUpdatesRecorderReads() throws Exception {
+		Class<?> recorderClass= Class.forName("org.eclipse.text.edits.ReplaceRecorder");
+		Constructor<?> constructor= recorderClass.getDeclaredConstructor(IDocument.class);
+		constructor.setAccessible(true);
+		String[] fragments= { "a", "bc", "\n", "\r", "\r\n", "" };
+		Random random= new Random(4321);
+		for (int i= 0; i < 300; i++) {
+			StringBuilder text= new StringBuilder();
+			for (int j= random.nextInt(20); j > 0; j--)
+				text.append(fragments[random.nextInt(fragments.length)]);
+			IDocument document= new Document(text.toString());
+			IDocument recorder= (IDocument) constructor.newInstance(document);
+			StringBuilder expected= new StringBuilder(text);
+			// replace from the end to the beginning like an edit tree does
+			int end= document.getLength();
+			while (end > 0 && random.nextInt(4) != 0) {
+				int offset= random.nextInt(end + 1);
+				int length= random.nextInt(end - offset + 1);
+				String replacement= fragments[random.nextInt(fragments.length)];
+				recorder.replace(offset, length, replacement);
+				expected.replace(offset, offset + length, replacement);
+				assertSameContent(new Document(expected.toString()), recorder);
+				end= offset;
+			}
+			Assert.assertEquals("Document unchanged", text.toString(), document.get());
+		}
+	}
+
+	private void assertSameContent(IDocument expected, IDocument actual) throws Exception {
+		Assert.assertEquals("Content", expected.get(), actual.get());
+		Assert.assertEquals("Length", expected.getLength(), actual.getLength());
+		for (int offset= 0; offset < expected.getLength(); offset++) {
+			Assert.assertEquals("Char", expected.getChar(offset), actual.getChar(offset));
+			Assert.assertEquals("Line of offset", expected.getLineOfOffset(offset), actual.getLineOfOffset(offset));
+		}
+		Assert.assertEquals("Lines", expected.getNumberOfLines(), actual.getNumberOfLines());
+		for (int line= 0; line < expected.getNumberOfLines(); line++) {
+			IRegion region= expected.getLineInformation(line);
+			assertEquals(actual.getLineInformation(line), region.getOffset(), region.getLength());
+			Assert.assertEquals("Line length", expected.getLineLength(line), actual.getLineLength(line));
+			Assert.assertEquals("Line delimiter", expected.getLineDelimiter(line), actual.getLineDelimiter(line));
+		}
+		Assert.assertEquals("Lines in range", expected.getNumberOfLines(0, expected.getLength()), actual.getNumberOfLines(0, actual.getLength()));
+	}
+
+	private static MultiTextEdit createRandomTree(Random random, int length) {
+		List<TextEdit> edits= new ArrayList<>();
+		List<TextEdit> sources= new ArrayList<>();
+		int offset= 0;
+		while (true) {
+			offset+= random.nextInt(5);
+			int editLength= random.nextInt(5);
+			if (offset + editLength > length)
+				break;
+			switch (editLength == 0 ? random.nextInt(2) : 2 + random.nextInt(6)) {
+				case 0:
+					edits.add(new InsertEdit(offset, "i"));
+					break;
+				case 1:
+					// connected to a source below
+					edits.add(new RangeMarker(offset, 0));
+					break;
+				case 2:
+					edits.add(new DeleteEdit(offset, editLength));
+					break;
+				case 3:
+					edits.add(new ReplaceEdit(offset, editLength, "rr"));
+					break;
+				case 4:
+					RangeMarker marker= new RangeMarker(offset, editLength);
+					marker.addChild(new InsertEdit(offset, "m"));
+					marker.addChild(new DeleteEdit(offset + editLength - 1, 1));
+					edits.add(marker);
+					break;
+				case 5:
+					ReplaceEdit replace= new ReplaceEdit(offset, editLength, "R");
+					replace.addChild(new ReplaceEdit(offset, 1, "c"));
+					edits.add(replace);
+					break;
+				case 6:
+					MoveSourceEdit moveSource= new MoveSourceEdit(offset, editLength);
+					if (editLength > 1)
+						moveSource.addChild(new InsertEdit(offset + 1, "s"));
+					sources.add(moveSource);
+					edits.add(moveSource);
+					break;
+				default:
+					CopySourceEdit copySource= new CopySourceEdit(offset, editLength);
+					sources.add(copySource);
+					edits.add(copySource);
+					break;
+			}
+			offset+= editLength;
+		}
+
+		MultiTextEdit root= new MultiTextEdit();
+		for (TextEdit edit : edits) {
+			if (edit instanceof RangeMarker && edit.getLength() == 0) {
+				if (sources.isEmpty()) {
+					edit= new InsertEdit(edit.getOffset(), "t");
+				} else {
+					TextEdit source= sources.remove(random.nextInt(sources.size()));
+					if (source instanceof MoveSourceEdit)
+						edit= new MoveTargetEdit(edit.getOffset(), (MoveSourceEdit) source);
+					else
+						edit= new CopyTargetEdit(edit.getOffset(), (CopySourceEdit) source);
+				}
+			}
+			root.addChild(edit);
+		}
+		// sources without target become plain replace edits
+		for (TextEdit source : sources) {
+			root.removeChild(source);
+			root.addChild(new ReplaceEdit(source.getOffset(), source.getLength(), "u"));
+		}
+		return root;
+	}
+
+	/**
+	 * Applies the given edit tree with batched updates to the document and checks that the result
+	 * and the updated regions are the same as without batching.
+	 *
+	 * @param root the edit tree
+	 * @param singleEvent <code>true</code> if the document is expected to be changed in one step
+	 * @return the undo edit
+	 * @throws Exception if the edits cannot be applied
+	 */
+	private UndoEdit assertBatchedApply(TextEdit root, boolean singleEvent) throws Exception {
+		List<TextEdit> edits= flatten(root);
+		TextEditCopier copier= new TextEditCopier(root);
+		TextEdit copy= copier.perform();
+		IDocument expected= new Document(fDocument.get());
+		UndoEdit expectedUndo= copy.apply(expected, TextEdit.CREATE_UNDO | TextEdit.UPDATE_REGIONS);
+
+		final int[] events= new int[1];
+		IDocumentListener listener= new IDocumentListener() {
+			@Override
+			public void documentAboutToBeChanged(DocumentEvent event) {
+			}
+			@Override
+			public void documentChanged(DocumentEvent event) {
+				events[0]++;
+			}
+		};
+		fDocument.addDocumentListener(listener);
+		String original= fDocument.get();
+		UndoEdit undo= root.apply(fDocument, TextEdit.CREATE_UNDO | TextEdit.UPDATE_REGIONS | TextEdit.BATCH_UPDATES);
+		fDocument.removeDocumentListener(listener);
+
+		Assert.assertEquals("Buffer content", expected.get(), fDocument.get());
+		if (singleEvent)
+			Assert.assertTrue("Document events", events[0] <= 1);
+		for (TextEdit edit : edits) {
+			TextEdit expectedEdit= copier.getCopy(edit);
+			Assert.assertEquals("Deleted", expectedEdit.isDeleted(), edit.isDeleted());
+			if (!edit.isDeleted())
+				assertEquals(edit, expectedEdit.getOffset(), expectedEdit.getLength());
+		}
+		assertEquals(undo, expectedUndo.getOffset(), expectedUndo.getLength());
+
+		IDocument undone= new Document(fDocument.get());
+		undo.apply(undone);
+		Assert.assertEquals("Buffer content restored", original, undone.get());
+		return undo;
+	}
+
+	private void doBatchedUndoRedo(UndoEdit undo, String redoResult) throws Exception {
+		int style= TextEdit.CREATE_UNDO | TextEdit.BATCH_UPDATES;
+		UndoEdit redo= undo.apply(fDocument, style);
+		assertBufferContent();
+		undo= redo.apply(fDocument, style);
+		Assert.assertEquals("Buffer content redo", redoResult, fDocument.get());
+		undo.apply(fDocument, style);
+		assertBufferContent();
+	}
+
 	private void doUndoRedo(UndoEdit undo, String redoResult) throws Exception {
 		UndoEdit redo= undo.apply(fDocument);
 		assertBufferContent();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,8 @@ package org.eclipse.jface.text.projection;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.core.runtime.Assert;
+
 import org.eclipse.jface.text.AbstractDocument;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
@@ -246,23 +248,15 @@ public class ProjectionDocument extends AbstractDocument {
 	}
 
 	/**
-	 * Creates a segment for the given fragment at the given position inside the list of segments.
+	 * Creates an empty segment for the given fragment at the given offset of this document.
 	 *
 	 * @param fragment the corresponding fragment
-	 * @param index the index in the list of segments
+	 * @param offset the offset of the segment, i.e. the end of the preceding segment
 	 * @return the created segment
 	 * @throws BadLocationException in case the fragment is invalid
 	 * @throws BadPositionCategoryException in case the segment category is invalid
 	 */
-	private Segment createSegmentFor(Fragment fragment, int index) throws BadLocationException, BadPositionCategoryException {
-
-		int offset= 0;
-		if (index > 0) {
-			Position[] segments= getSegments();
-			Segment segment= (Segment) segments[index - 1];
-			offset= segment.getOffset() + segment.getLength();
-		}
-
+	private Segment createSegmentFor(Fragment fragment, int offset) throws BadLocationException, BadPositionCategoryException {
 		Segment segment= new Segment(offset, 0);
 		segment.fragment= fragment;
 		fragment.segment= segment;
@@ -286,7 +280,7 @@ public class ProjectionDocument extends AbstractDocument {
 
 		try {
 
-			Position[] fragments= getFragments();
+			Position[] fragments= fMapping.getFragments();
 			int index= fMasterDocument.computeIndexInCategory(fFragmentsCategory, offsetInMaster);
 
 			Fragment left= null;
@@ -321,6 +315,17 @@ public class ProjectionDocument extends AbstractDocument {
 			ProjectionDocumentEvent event= new ProjectionDocumentEvent(this, offsetInSlave, 0, fMasterDocument.get(offsetInMaster, lengthInMaster), offsetInMaster, lengthInMaster, masterDocumentEvent);
 			super.fireDocumentAboutToBeChanged(event);
 
+			// an empty fragment is only allowed at the end, remove it when it is not extended by the new range
+			Fragment empty= null;
+			if (index > 0 && fragments[index - 1].getLength() == 0 && fragments[index - 1] != left)
+				empty= (Fragment) fragments[index - 1];
+			else if (index < fragments.length && fragments[index].getLength() == 0 && fragments[index].getOffset() < offsetInMaster + lengthInMaster && fragments[index] != left)
+				empty= (Fragment) fragments[index];
+			if (empty != null) {
+				removePosition(fSegmentsCategory, empty.segment);
+				fMasterDocument.removePosition(fFragmentsCategory, empty);
+			}
+
 			// check for neighboring fragment
 			if (left != null && right != null) {
 
@@ -345,7 +350,7 @@ public class ProjectionDocument extends AbstractDocument {
 				// create a new segment
 				Fragment fragment= new Fragment(offsetInMaster, lengthInMaster);
 				fMasterDocument.addPosition(fFragmentsCategory, fragment);
-				Segment segment= createSegmentFor(fragment, index);
+				Segment segment= createSegmentFor(fragment, offsetInSlave);
 				segment.markForStretch();
 			}
 
@@ -365,11 +370,18 @@ public class ProjectionDocument extends AbstractDocument {
 	 * @return the fragment representing the given master document range
 	 */
 	private Fragment findFragment(int offsetInMaster, int lengthInMaster) {
-		Position[] fragments= getFragments();
-		for (int i= 0; i < fragments.length; i++) {
-			Fragment f= (Fragment) fragments[i];
-			if (f.getOffset() <= offsetInMaster && offsetInMaster + lengthInMaster <= f.getOffset() + f.getLength())
-				return f;
+		try {
+			Position[] fragments= fMapping.getFragments();
+			int index= fMasterDocument.computeIndexInCategory(fFragmentsCategory, offsetInMaster);
+			for (int i= Math.max(index - 1, 0); i < fragments.length && fragments[i].getOffset() <= offsetInMaster; i++) {
+				Fragment f= (Fragment) fragments[i];
+				if (offsetInMaster + lengthInMaster <= f.getOffset() + f.getLength())
+					return f;
+			}
+		} catch (BadLocationException x) {
+			// no such fragment
+		} catch (BadPositionCategoryException x) {
+			internalError();
 		}
 		return null;
 	}
@@ -560,7 +572,7 @@ public class ProjectionDocument extends AbstractDocument {
 		 * To place an upper bound on the number of iterations, we use the number
 		 * of fragments * 2 as the limit.
 		 */
-		int limit= Math.max(getFragments().length * 2, 20);
+		int limit= Math.max(fMapping.getFragments().length * 2, 20);
 		while (true) {
 			if (limit-- < 0)
 				throw new IllegalArgumentException("safety loop termination"); //$NON-NLS-1$
@@ -630,6 +642,25 @@ public class ProjectionDocument extends AbstractDocument {
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A projection document replaces the ranges one by one, starting with the last one.
+	 * </p>
+	 *
+	 * @since 3.7
+	 */
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		Assert.isLegal(lengths.length == offsets.length && texts.length == offsets.length);
+		for (int i= 0; i < offsets.length; i++) {
+			if (lengths[i] < 0 || i > 0 && offsets[i] < offsets[i - 1] + lengths[i - 1])
+				throw new BadLocationException();
+		}
+		for (int i= offsets.length - 1; i >= 0; i--)
+			replace(offsets[i], lengths[i], texts[i]);
+	}
+
 	@Override
 	public void set(String text) {
 		try {
@@ -772,6 +803,7 @@ public class ProjectionDocument extends AbstractDocument {
 
 	@Override
 	protected void updateDocumentStructures(DocumentEvent event) {
+		fMapping.projectionChanged();
 		super.updateDocumentStructures(event);
 		ensureWellFormedSegmentation(computeAnchor(event));
 		fMapping.projectionChanged();
@@ -887,4 +919,172 @@ public class ProjectionDocument extends AbstractDocument {
 			internalError();
 		}
 	}
+
+	/**
+	 * Replaces all master document ranges with the given master document ranges. Adjacent ranges
+	 * are joined and empty ranges are ignored. If no range remains, an empty fragment is kept at
+	 * the end of the last projected range, as when the ranges are removed one by one.
+	 * <p>
+	 * Unlike adding and removing the ranges one by one, this only replaces the fragments that
+	 * differ from the current projection and informs the document listeners with a single
+	 * projection change event, which covers the text between the first and the last change.
+	 * </p>
+	 *
+	 * @param masterRanges the ranges of the master document, sorted by offset and not overlapping
+	 * @throws BadLocationException if one of the ranges is not valid in the master document
+	 * @throws IllegalArgumentException if the ranges are not sorted or overlap
+	 * @since 3.7
+	 */
+	public void replaceMasterDocumentRanges(IRegion[] masterRanges) throws BadLocationException {
+		List<Fragment> newFragments= new ArrayList<>(masterRanges.length);
+		int masterLength= fMasterDocument.getLength();
+		int lastEnd= 0;
+		for (int i= 0; i < masterRanges.length; i++) {
+			int offset= masterRanges[i].getOffset();
+			int length= masterRanges[i].getLength();
+			if (offset < 0 || length < 0 || offset + length > masterLength)
+				throw new BadLocationException();
+			if (offset < lastEnd)
+				throw new IllegalArgumentException("ranges are not sorted or overlap"); //$NON-NLS-1$
+			lastEnd= offset + length;
+
+			if (length == 0)
+				continue;
+			int size= newFragments.size();
+			if (size > 0 && exclusiveEnd(newFragments.get(size - 1)) == offset) {
+				Fragment last= newFragments.get(size - 1);
+				last.setLength(last.getLength() + length);
+			} else {
+				newFragments.add(new Fragment(offset, length));
+			}
+		}
+
+		try {
+
+			Position[] fragments= getFragments();
+			if (newFragments.isEmpty() && fragments.length > 0) {
+				// like removing the ranges one by one, keep an empty fragment at the end of the last one
+				newFragments.add(new Fragment(exclusiveEnd(fragments[fragments.length - 1]), 0));
+			}
+			int oldCount= fragments.length;
+			int newCount= newFragments.size();
+
+			int prefix= 0;
+			while (prefix < oldCount && prefix < newCount && fragments[prefix].equals(newFragments.get(prefix)))
+				prefix++;
+			int suffix= 0;
+			while (prefix + suffix < oldCount && prefix + suffix < newCount && fragments[oldCount - 1 - suffix].equals(newFragments.get(newCount - 1 - suffix)))
+				suffix++;
+			if (prefix + suffix == oldCount && prefix + suffix == newCount)
+				return;
+
+			Fragment firstOld= prefix + suffix < oldCount ? (Fragment) fragments[prefix] : null;
+			Fragment lastOld= prefix + suffix < oldCount ? (Fragment) fragments[oldCount - 1 - suffix] : null;
+			Fragment firstNew= prefix + suffix < newCount ? newFragments.get(prefix) : null;
+			Fragment lastNew= prefix + suffix < newCount ? newFragments.get(newCount - 1 - suffix) : null;
+
+			// the range of the master document whose projection changes
+			int changeOffset= computeFirstDifference(firstOld, firstNew);
+			int changeEnd= Math.max(changeOffset, computeLastDifference(lastOld, lastNew));
+
+			// the image of that range in this document
+			int prefixEnd= prefix > 0 ? exclusiveEnd(((Fragment) fragments[prefix - 1]).segment) : 0;
+			int imageOffset= prefixEnd;
+			int imageEnd= prefixEnd;
+			if (firstOld != null) {
+				imageOffset+= Math.max(0, changeOffset - firstOld.getOffset());
+				imageEnd= exclusiveEnd(lastOld.segment) - Math.max(0, exclusiveEnd(lastOld) - Math.max(changeEnd, lastOld.getOffset()));
+			}
+
+			StringBuilder text= new StringBuilder();
+			for (int i= prefix; i < newCount - suffix; i++) {
+				Fragment fragment= newFragments.get(i);
+				int start= Math.max(fragment.getOffset(), changeOffset);
+				int end= Math.min(exclusiveEnd(fragment), changeEnd);
+				if (start < end)
+					text.append(fMasterDocument.get(start, end - start));
+			}
+
+			ProjectionDocumentEvent event= new ProjectionDocumentEvent(this, imageOffset, imageEnd - imageOffset, text.toString(), changeOffset, changeEnd - changeOffset);
+			super.fireDocumentAboutToBeChanged(event);
+
+			for (int i= prefix; i < oldCount - suffix; i++) {
+				Fragment fragment= (Fragment) fragments[i];
+				fMasterDocument.removePosition(fFragmentsCategory, fragment);
+				removePosition(fSegmentsCategory, fragment.segment);
+			}
+
+			// add the segments empty and backwards, so that they are in order although they share the same offset
+			for (int i= newCount - suffix - 1; i >= prefix; i--) {
+				Fragment fragment= newFragments.get(i);
+				fMasterDocument.addPosition(fFragmentsCategory, fragment);
+				createSegmentFor(fragment, prefixEnd);
+			}
+
+			// the segment updater ignores the event, the segments are positioned here
+			int offset= prefixEnd;
+			for (int i= prefix; i < newCount - suffix; i++) {
+				Segment segment= newFragments.get(i).segment;
+				segment.setOffset(offset);
+				segment.setLength(segment.fragment.getLength());
+				offset+= segment.getLength();
+			}
+			int delta= event.getText().length() - event.getLength();
+			for (int i= oldCount - suffix; i < oldCount; i++) {
+				Segment segment= ((Fragment) fragments[i]).segment;
+				segment.setOffset(segment.getOffset() + delta);
+			}
+
+			getTracker().replace(event.getOffset(), event.getLength(), event.getText());
+			fSegmentUpdater.ignore(event);
+			try {
+				super.fireDocumentChanged(event);
+			} finally {
+				fSegmentUpdater.ignore(null);
+			}
+
+		} catch (BadPositionCategoryException x) {
+			internalError();
+		}
+	}
+
+	/**
+	 * Returns the first master document offset at which the given fragments differ. At least one
+	 * of the fragments must not be <code>null</code>.
+	 *
+	 * @param oldFragment the old fragment or <code>null</code>
+	 * @param newFragment the new fragment or <code>null</code>
+	 * @return the first offset at which the fragments differ
+	 */
+	private static int computeFirstDifference(Position oldFragment, Position newFragment) {
+		if (oldFragment == null)
+			return newFragment.getOffset();
+		if (newFragment == null)
+			return oldFragment.getOffset();
+		if (oldFragment.getOffset() != newFragment.getOffset())
+			return Math.min(oldFragment.getOffset(), newFragment.getOffset());
+		return Math.min(exclusiveEnd(oldFragment), exclusiveEnd(newFragment));
+	}
+
+	/**
+	 * Returns the master document offset after the last offset at which the given fragments
+	 * differ. At least one of the fragments must not be <code>null</code>.
+	 *
+	 * @param oldFragment the old fragment or <code>null</code>
+	 * @param newFragment the new fragment or <code>null</code>
+	 * @return the end of the range in which the fragments differ
+	 */
+	private static int computeLastDifference(Position oldFragment, Position newFragment) {
+		if (oldFragment == null)
+			return exclusiveEnd(newFragment);
+		if (newFragment == null)
+			return exclusiveEnd(oldFragment);
+		if (exclusiveEnd(oldFragment) != exclusiveEnd(newFragment))
+			return Math.max(exclusiveEnd(oldFragment), exclusiveEnd(newFragment));
+		return Math.max(oldFragment.getOffset(), newFragment.getOffset());
+	}
+
+	private static int exclusiveEnd(Position position) {
+		return position.getOffset() + position.getLength();
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,6 +28,14 @@ import org.eclipse.jface.text.Region;
  * <p>
  * Implementation of {@link org.eclipse.jface.text.IDocumentInformationMapping}
  * for the projection mapping between a master and a slave document.
+ * </p>
+ * <p>
+ * <strong>Performance:</strong> The mapping works on arrays of the fragments and segments which
+ * are copied from their position categories after each projection change, in <i>O(n)</i> where
+ * <var>n</var> is the number of fragments. Between projection changes, offset, region and line
+ * translations perform in <i>O(log n)</i>. Changing the projection itself, e.g. expanding or
+ * collapsing a fold, still updates the position categories of both documents in linear time.
+ * </p>
  *
  * @since 3.0
  * @noinstantiate This class is not intended to be instantiated by clients.
@@ -51,6 +59,11 @@ public class ProjectionMapping implements IDocumentInformationMapping , IDocumen
 	private Position[] fCachedSegments;
 	/** Cached fragments */
 	private Position[] fCachedFragments;
+	/**
+	 * Cached image length or <code>-1</code> if unknown
+	 * @since 3.7
+	 */
+	private int fCachedImageLength= -1;
 
 	/**
 	 * Creates a new mapping between the given parent document and the given projection document.
@@ -73,6 +86,7 @@ public class ProjectionMapping implements IDocumentInformationMapping , IDocumen
 	public void projectionChanged() {
 		fCachedSegments= null;
 		fCachedFragments= null;
+		fCachedImageLength= -1;
 	}
 
 	private Position[] getSegments() {
@@ -86,7 +100,13 @@ public class ProjectionMapping implements IDocumentInformationMapping , IDocumen
 		return fCachedSegments;
 	}
 
-	private Position[] getFragments() {
+	/**
+	 * Returns the cached fragments of the master document. The returned array is shared and must
+	 * not be modified.
+	 *
+	 * @return the fragments of the master document
+	 */
+	Position[] getFragments() {
 		if (fCachedFragments == null) {
 			try {
 				fCachedFragments= fMasterDocument.getPositions(fFragmentsCategory);
@@ -543,11 +563,14 @@ public class ProjectionMapping implements IDocumentInformationMapping , IDocumen
 
 	@Override
 	public int getImageLength() {
-		Position[] segments= getSegments();
-		int length= 0;
-		for (int i= 0; i < segments.length; i++)
-			length += segments[i].length;
-		return length;
+		if (fCachedImageLength == -1) {
+			Position[] segments= getSegments();
+			int length= 0;
+			for (int i= 0; i < segments.length; i++)
+				length += segments[i].length;
+			fCachedImageLength= length;
+		}
+		return fCachedImageLength;
 	}
 
 	@Override
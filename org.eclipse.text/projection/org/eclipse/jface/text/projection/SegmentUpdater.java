@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2007 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -32,6 +32,11 @@ class SegmentUpdater extends DefaultPositionUpdater {
 
 	private Segment fNextSegment= null;
 	private boolean fIsProjectionChange= false;
+	/**
+	 * The event for which the projection document positions the segments itself.
+	 * @since 3.7
+	 */
+	private DocumentEvent fIgnoredEvent;
 
 	/**
 	 * Creates the segment updater for the given category.
@@ -42,10 +47,23 @@ class SegmentUpdater extends DefaultPositionUpdater {
 		super(segmentCategory);
 	}
 
+	/**
+	 * Makes this updater ignore the given event because the projection document positions the
+	 * segments itself.
+	 *
+	 * @param event the event to ignore or <code>null</code> to not ignore any event
+	 * @since 3.7
+	 */
+	void ignore(DocumentEvent event) {
+		fIgnoredEvent= event;
+	}
+
 	@Override
 	public void update(DocumentEvent event) {
 
 		Assert.isTrue(event instanceof ProjectionDocumentEvent);
+		if (event == fIgnoredEvent)
+			return;
 		fIsProjectionChange= ((ProjectionDocumentEvent) event).getChangeType() == ProjectionDocumentEvent.PROJECTION_CHANGE;
 
 		try {
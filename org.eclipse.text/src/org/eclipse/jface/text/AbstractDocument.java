@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,6 +12,7 @@
 package org.eclipse.jface.text;
 
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -31,7 +32,8 @@ import org.eclipse.core.runtime.SafeRunner;
  * interfaces {@link org.eclipse.jface.text.IDocumentExtension},
  * {@link org.eclipse.jface.text.IDocumentExtension2},
  * {@link org.eclipse.jface.text.IDocumentExtension3},
- * {@link org.eclipse.jface.text.IDocumentExtension4}, as well as
+ * {@link org.eclipse.jface.text.IDocumentExtension4},
+ * {@link org.eclipse.jface.text.IDocumentExtension5}, as well as
  * {@link org.eclipse.jface.text.IRepairableDocument}.
  * <p>
  *
@@ -54,7 +56,7 @@ import org.eclipse.core.runtime.SafeRunner;
  * @see org.eclipse.jface.text.ITextStore
  * @see org.eclipse.jface.text.ILineTracker
  */
-public abstract class AbstractDocument implements IDocument, IDocumentExtension, IDocumentExtension2, IDocumentExtension3, IDocumentExtension4, IRepairableDocument, IRepairableDocumentExtension {
+public abstract class AbstractDocument implements IDocument, IDocumentExtension, IDocumentExtension2, IDocumentExtension3, IDocumentExtension4, IDocumentExtension5, IRepairableDocument, IRepairableDocumentExtension {
 
 	/**
 	 * Tells whether this class is in debug mode.
@@ -104,6 +106,11 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.4
 	 */
 	private Map<String, List<Position>> fEndPositions;
+	/**
+	 * All lazily updated position categories.
+	 * @since 3.7
+	 */
+	private Map<String, PositionTree> fPositionTrees;
 	/** All registered document position updaters */
 	private List<IPositionUpdater> fPositionUpdaters;
 	/**
@@ -176,6 +183,12 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.1
 	 */
 	private String fInitialLineDelimiter;
+	/**
+	 * The snapshots which read the line information and partitions of this document, or
+	 * <code>null</code> if there are none.
+	 * @since 3.7
+	 */
+	private List<WeakReference<DocumentSnapshot>> fAttachedSnapshots;
 
 
 	/**
@@ -289,6 +302,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 		fPositions= new HashMap<>();
 		fEndPositions= new HashMap<>();
+		fPositionTrees= new HashMap<>();
 		fPositionUpdaters= new ArrayList<>();
 		fDocumentListeners= new ListenerList<>(ListenerList.IDENTITY);
 		fPrenotifiedDocumentListeners= new ListenerList<>(ListenerList.IDENTITY);
@@ -347,6 +361,12 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (category == null)
 			throw new BadPositionCategoryException();
 
+		PositionTree tree= fPositionTrees.get(category);
+		if (tree != null) {
+			tree.add(position);
+			return;
+		}
+
 		List<Position> list= fPositions.get(category);
 		if (list == null)
 			throw new BadPositionCategoryException();
@@ -355,7 +375,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		List<Position> endPositions= fEndPositions.get(category);
 		if (endPositions == null)
 			throw new BadPositionCategoryException();
-		endPositions.add(computeIndexInPositionList(endPositions, position.offset + position.length - 1, false), position);
+		endPositions.add(computeIndexInPositionList(endPositions, getOffset(false, position), false), position);
 	}
 
 	@Override
@@ -378,6 +398,51 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		}
 	}
 
+	/**
+	 * Adds a position category whose positions are updated lazily. The positions of such a
+	 * category are kept in a tree with offsets relative to their parent nodes, which moves all
+	 * positions after a document change at once.
+	 * <p>
+	 * The document updates the positions of the category itself, with the semantics of
+	 * {@link DefaultPositionUpdater}. No position updater must be registered for it. Positions
+	 * which are moved by a change without overlapping it do not get their
+	 * {@link Position#offset offset} updated immediately: the offset is only valid for positions
+	 * returned by {@link #getPositions(String)} or
+	 * {@link #getPositions(String, int, int, boolean, boolean)}. The length and the deleted state
+	 * are always up to date. Clients must not modify the positions of the category directly.
+	 * </p>
+	 * <p>
+	 * <strong>Performance:</strong> Adding and removing positions and
+	 * {@link #computeIndexInCategory(String, int)} perform in <i>O(log n)</i>, range queries in
+	 * <i>O(log n + k)</i> where <var>k</var> is the number of returned positions. A document
+	 * change costs <i>O((k + 1) log n)</i> where <var>k</var> is the number of positions
+	 * overlapping the change, instead of <i>O(n)</i> for other categories.
+	 * </p>
+	 * <p>
+	 * The category is not included in {@link #getDocumentManagedPositions()}.
+	 * </p>
+	 * <p>
+	 * <strong>EXPERIMENTAL</strong>. This method only provides the infrastructure for lazily
+	 * updated positions, no component of the platform uses it yet. As the offsets of the
+	 * positions do not always fulfill the contract of {@link Position}, the positions must only be
+	 * read through the document and must not be handed to clients which read the offsets
+	 * themselves, such as annotation models, presentation reconcilers or text viewers. There is
+	 * no guarantee that this API will remain the same.
+	 * </p>
+	 *
+	 * @param category the category to add
+	 * @see #addPositionCategory(String)
+	 * @since 3.7
+	 */
+	public void addLazyPositionCategory(String category) {
+
+		if (category == null)
+			return;
+
+		if (!containsPositionCategory(category))
+			fPositionTrees.put(category, new PositionTree(category));
+	}
+
 	@Override
 	public void addPositionUpdater(IPositionUpdater updater) {
 		insertPositionUpdater(updater, fPositionUpdaters.size());
@@ -389,6 +454,10 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (category == null)
 			return false;
 
+		PositionTree tree= fPositionTrees.get(category);
+		if (tree != null)
+			return tree.contains(offset, length);
+
 		List<Position> list= fPositions.get(category);
 		if (list == null)
 			return false;
@@ -414,7 +483,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	@Override
 	public boolean containsPositionCategory(String category) {
 		if (category != null)
-			return fPositions.containsKey(category);
+			return fPositions.containsKey(category) || fPositionTrees.containsKey(category);
 		return false;
 	}
 
@@ -516,6 +585,10 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (0 > offset || offset > getLength())
 			throw new BadLocationException();
 
+		PositionTree tree= category != null ? fPositionTrees.get(category) : null;
+		if (tree != null)
+			return tree.computeIndex(offset);
+
 		List<Position> c= fPositions.get(category);
 		if (c == null)
 			throw new BadPositionCategoryException();
@@ -643,6 +716,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 			}
 		}
 
+		detachSnapshots();
 	}
 
 	/**
@@ -678,6 +752,11 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 			}
 		}
 
+		if (!fPositionTrees.isEmpty()) {
+			for (PositionTree tree : fPositionTrees.values())
+				tree.update(event);
+		}
+
 		if (fPositions.size() > 0)
 			updatePositions(event);
 	}
@@ -927,6 +1006,10 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (category == null)
 			throw new BadPositionCategoryException();
 
+		PositionTree tree= fPositionTrees.get(category);
+		if (tree != null)
+			return tree.getPositions();
+
 		List<Position> c= fPositions.get(category);
 		if (c == null)
 			throw new BadPositionCategoryException();
@@ -938,9 +1021,12 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 	@Override
 	public String[] getPositionCategories() {
-		String[] categories= new String[fPositions.size()];
+		String[] categories= new String[fPositions.size() + fPositionTrees.size()];
 		Iterator<String> keys= fPositions.keySet().iterator();
-		for (int i= 0; i < categories.length; i++)
+		for (int i= 0; i < fPositions.size(); i++)
+			categories[i]= keys.next();
+		keys= fPositionTrees.keySet().iterator();
+		for (int i= fPositions.size(); i < categories.length; i++)
 			categories[i]= keys.next();
 		return categories;
 	}
@@ -988,6 +1074,12 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (category == null)
 			throw new BadPositionCategoryException();
 
+		PositionTree tree= fPositionTrees.get(category);
+		if (tree != null) {
+			tree.remove(position);
+			return;
+		}
+
 		List<Position> c= fPositions.get(category);
 		if (c == null)
 			throw new BadPositionCategoryException();
@@ -1011,7 +1103,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		int size= positions.size();
 
 		//Assume position is somewhere near it was before
-		int index= computeIndexInPositionList(positions, orderedByOffset ? position.offset : position.offset + position.length - 1, orderedByOffset);
+		int index= computeIndexInPositionList(positions, getOffset(orderedByOffset, position), orderedByOffset);
 		if (index < size && positions.get(index) == position) {
 			positions.remove(index);
 			return;
@@ -1057,6 +1149,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 		fPositions.remove(category);
 		fEndPositions.remove(category);
+		fPositionTrees.remove(category);
 	}
 
 	@Override
@@ -1119,6 +1212,145 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 			replace(pos, length, text, getNextModificationStamp());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The ranges are replaced at once if all position updaters of this document are instances of
+	 * {@link DefaultPositionUpdater} itself. Otherwise they are replaced one by one with
+	 * {@link #replace(int, int, String)}.
+	 * </p>
+	 *
+	 * @since 3.7
+	 */
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		int count= offsets.length;
+		Assert.isLegal(lengths.length == count && texts.length == count);
+
+		int end= 0;
+		for (int i= 0; i < count; i++) {
+			if (offsets[i] < end || lengths[i] < 0 || offsets[i] + lengths[i] > getLength())
+				throw new BadLocationException();
+			end= offsets[i] + lengths[i];
+		}
+
+		if (count == 0)
+			return;
+
+		if (count == 1 || !canReplaceAtOnce()) {
+			for (int i= count - 1; i >= 0; i--)
+				replace(offsets[i], lengths[i], texts[i]);
+			return;
+		}
+
+		int start= offsets[0];
+		String[] replacements= new String[count];
+		int textLength= end - start;
+		for (int i= 0; i < count; i++) {
+			replacements[i]= texts[i] == null ? "" : texts[i]; //$NON-NLS-1$
+			textLength+= replacements[i].length() - lengths[i];
+		}
+
+		// the text replacing everything from the first to the end of the last range
+		ITextStore store= getStore();
+		StringBuilder text= new StringBuilder(textLength);
+		text.append(replacements[0]);
+		for (int i= 1; i < count; i++) {
+			int previousEnd= offsets[i - 1] + lengths[i - 1];
+			text.append(store.get(previousEnd, offsets[i] - previousEnd));
+			text.append(replacements[i]);
+		}
+
+		MultiReplaceEvent e= new MultiReplaceEvent(this, text.toString(), offsets.clone(), lengths.clone(), replacements);
+		fireDocumentAboutToBeChanged(e);
+
+		getStore().replace(start, end - start, e.getText());
+		getTracker().replace(start, end - start, e.getText());
+
+		fModificationStamp= getNextModificationStamp();
+		e.fModificationStamp= fModificationStamp;
+
+		fireDocumentChanged(e);
+	}
+
+	/**
+	 * Returns whether all position updaters can adapt the positions to several replaced ranges at
+	 * once.
+	 *
+	 * @return <code>true</code> if all position updaters are default position updaters
+	 */
+	private boolean canReplaceAtOnce() {
+		for (int i= 0, size= fPositionUpdaters.size(); i < size; i++) {
+			if (fPositionUpdaters.get(i).getClass() != DefaultPositionUpdater.class)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The snapshot shares the content of {@link GapTextStore}s and {@link RopeTextStore}s, also
+	 * when wrapped in a {@link CopyOnWriteTextStore}, see {@link #getStoreSnapshot()}. A gap text
+	 * store copies the parts of its array which it modifies later on. The content of any other text
+	 * store is copied.
+	 * </p>
+	 * <p>
+	 * Until this document changes, the snapshot answers line and partition queries from the line
+	 * tracker and the partitioners of this document. Before this document changes for the first
+	 * time, the snapshot copies the partitions it has not yet queried. It computes its line
+	 * information from its content when it is needed afterwards.
+	 * </p>
+	 *
+	 * @since 3.7
+	 */
+	@Override
+	public IDocument getSnapshot() {
+		DocumentSnapshot snapshot= new DocumentSnapshot(this);
+		if (getActiveRewriteSession() != null) {
+			// the line tracker and the partitioners may change without a document event
+			snapshot.detach();
+		} else {
+			if (fAttachedSnapshots == null)
+				fAttachedSnapshots= new ArrayList<>();
+			fAttachedSnapshots.add(new WeakReference<>(snapshot));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns an unmodifiable text store with the current content of this document for a snapshot
+	 * (see {@link #getSnapshot()}). The store may be read by any thread.
+	 * <p>
+	 * Subclasses whose content never changes may return their own text store, provided it may be
+	 * read by any thread. The snapshot then also keeps using the line tracker of this document.
+	 * </p>
+	 *
+	 * @return an unmodifiable text store with the current content of this document
+	 * @since 3.7
+	 */
+	protected ITextStore getStoreSnapshot() {
+		return DocumentSnapshot.createSnapshot(getStore());
+	}
+
+	/**
+	 * Lets the snapshots of this document copy the partitions they still need before the line
+	 * information or partitions of this document change.
+	 *
+	 * @since 3.7
+	 */
+	private void detachSnapshots() {
+		if (fAttachedSnapshots == null)
+			return;
+		List<WeakReference<DocumentSnapshot>> snapshots= fAttachedSnapshots;
+		fAttachedSnapshots= null;
+		for (int i= 0; i < snapshots.size(); i++) {
+			DocumentSnapshot snapshot= snapshots.get(i).get();
+			if (snapshot != null)
+				snapshot.detach();
+		}
+	}
+
 	@Override
 	public void set(String text) {
 		set(text, getNextModificationStamp());
@@ -1399,6 +1631,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 	@Override
 	public void setDocumentPartitioner(String partitioning, IDocumentPartitioner partitioner) {
+		detachSnapshots();
 		if (partitioner == null) {
 			if (fDocumentPartitioners != null) {
 				fDocumentPartitioners.remove(partitioning);
@@ -1417,6 +1650,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 
 	@Override
 	public void repairLineInformation() {
+		detachSnapshots();
 		getTracker().set(get());
 	}
 
@@ -1452,6 +1686,7 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		if (getActiveRewriteSession() != null)
 			throw new IllegalStateException();
 
+		detachSnapshots();
 
 		fDocumentRewriteSession= new DocumentRewriteSession(sessionType);
 		if (DEBUG)
@@ -1596,6 +1831,10 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 	 * @since 3.4
 	 */
 	public Position[] getPositions(String category, int offset, int length, boolean canStartBefore, boolean canEndAfter) throws BadPositionCategoryException {
+		PositionTree tree= category != null ? fPositionTrees.get(category) : null;
+		if (tree != null)
+			return getPositions(tree, offset, length, canStartBefore, canEndAfter);
+
 		if (canStartBefore && canEndAfter || (!canStartBefore && !canEndAfter)) {
 			List<Position> documentPositions;
 			if (canStartBefore && canEndAfter) {
@@ -1637,6 +1876,40 @@ public abstract class AbstractDocument implements IDocument, IDocumentExtension,
 		}
 	}
 
+	/**
+	 * Returns all positions of the given lazily updated category that are inside the given
+	 * region, see {@link #getPositions(String, int, int, boolean, boolean)}.
+	 *
+	 * @param tree the positions of the category
+	 * @param offset the start position of the region
+	 * @param length the length of the region
+	 * @param canStartBefore if <code>true</code> then positions are included
+	 *            which start before the region if they end at or after the regions start
+	 * @param canEndAfter if <code>true</code> then positions are included
+	 *            which end after the region if they start at or before the regions end
+	 * @return all positions inside the region
+	 * @since 3.7
+	 */
+	private Position[] getPositions(PositionTree tree, int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+		Position region= new Position(offset, length);
+		List<Position> candidates= tree.getPositions(offset, length, !canStartBefore);
+		ArrayList<Position> list= new ArrayList<>(candidates.size());
+		for (int i= 0, size= candidates.size(); i < size; i++) {
+			Position position= candidates.get(i);
+			boolean within;
+			if (canStartBefore && !canEndAfter) {
+				// same as getEndingPositions: empty positions end at their offset
+				int end= getOffset(false, position);
+				within= offset <= end && end < offset + length;
+			} else {
+				within= isWithinRegion(region, position, canStartBefore, canEndAfter);
+			}
+			if (within)
+				list.add(position);
+		}
+		return list.toArray(new Position[list.size()]);
+	}
+
 	/*
 	 * @since 3.4
 	 */
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -104,6 +104,11 @@ public abstract class AbstractLineTracker implements ILineTracker, ILineTrackerE
 		protected DelimiterInfo nextDelimiterInfo(String text, int offset) {
 			return AbstractLineTracker.this.nextDelimiterInfo(text, offset);
 		}
+
+		@Override
+		boolean hasDefaultDelimiters() {
+			return AbstractLineTracker.this.hasDefaultDelimiters();
+		}
 	};
 	/**
 	 * Whether the delegate needs conversion when the line structure is modified.
@@ -214,6 +219,11 @@ public abstract class AbstractLineTracker implements ILineTracker, ILineTrackerE
 				public String[] getLegalLineDelimiters() {
 					return AbstractLineTracker.this.getLegalLineDelimiters();
 				}
+
+				@Override
+				boolean hasDefaultDelimiters() {
+					return AbstractLineTracker.this.hasDefaultDelimiters();
+				}
 			};
 		}
 	}
@@ -228,6 +238,17 @@ public abstract class AbstractLineTracker implements ILineTracker, ILineTrackerE
 	 */
 	protected abstract DelimiterInfo nextDelimiterInfo(String text, int offset);
 
+	/**
+	 * Tells whether this tracker recognizes exactly the delimiters of {@link DefaultLineTracker},
+	 * which allows to compute the line structure of large texts in parallel.
+	 *
+	 * @return <code>true</code> if this tracker uses the default delimiters
+	 * @since 3.7
+	 */
+	boolean hasDefaultDelimiters() {
+		return false;
+	}
+
 	@Override
 	public final void startRewriteSession(DocumentRewriteSession session) {
 		if (fActiveRewriteSession != null)
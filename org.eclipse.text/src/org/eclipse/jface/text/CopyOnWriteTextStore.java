@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2012 IBM Corporation and others.
+ * Copyright (c) 2005, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -32,9 +32,9 @@ public class CopyOnWriteTextStore implements ITextStore {
 	/**
 	 * An unmodifiable String based text store. It is not possible to modify the initial content.
 	 * Trying to {@link #replace} a text range or {@link #set} new content will throw an
-	 * <code>UnsupportedOperationException</code>.
+	 * <code>UnsupportedOperationException</code>. The store may be read by any thread.
 	 */
-	private static class StringTextStore implements ITextStore {
+	static class StringTextStore implements ITextStore {
 
 		/** Minimum text limit whether to enable String copying */
 		private static final int SMALL_TEXT_LIMIT= 1024 * 1024;
@@ -57,7 +57,7 @@ public class CopyOnWriteTextStore implements ITextStore {
 		 *
 		 * @param text the initial content
 		 */
-		private StringTextStore(String text) {
+		StringTextStore(String text) {
 			super();
 			fText= text != null ? text : ""; //$NON-NLS-1$
 			fCopyLimit= fText.length() > SMALL_TEXT_LIMIT ? fText.length() / 2 : 0;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,12 @@ public class DefaultLineTracker extends AbstractLineTracker {
 		return TextUtilities.copy(DELIMITERS);
 	}
 
+	@Override
+	boolean hasDefaultDelimiters() {
+		// subclasses may override nextDelimiterInfo(String, int)
+		return getClass() == DefaultLineTracker.class;
+	}
+
 	@Override
 	protected DelimiterInfo nextDelimiterInfo(String text, int offset) {
 
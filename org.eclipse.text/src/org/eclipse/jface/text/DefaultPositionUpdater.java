@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -203,6 +203,11 @@ public class DefaultPositionUpdater implements IPositionUpdater {
 	@Override
 	public void update(DocumentEvent event) {
 
+		if (event instanceof MultiReplaceEvent) {
+			update((MultiReplaceEvent) event);
+			return;
+		}
+
 		try {
 
 
@@ -228,4 +233,103 @@ public class DefaultPositionUpdater implements IPositionUpdater {
 			fDocument= null;
 		}
 	}
+
+	/**
+	 * Adapts the positions to the replacement of several ranges. A position is adapted to the
+	 * ranges which reach into it one after the other, starting with the last one, and then moved by
+	 * the ranges before it in one step. This has the same result as updating all positions once
+	 * per range.
+	 *
+	 * @param event the event describing the replaced ranges
+	 */
+	private void update(MultiReplaceEvent event) {
+		int count= event.getCount();
+		int[] offsets= event.getOffsets();
+		int[] lengths= event.getLengths();
+		String[] texts= event.getTexts();
+
+		// shifts[i] is the length difference caused by the ranges before range i
+		int[] shifts= new int[count + 1];
+		for (int i= 0; i < count; i++)
+			shifts[i + 1]= shifts[i] + texts[i].length() - lengths[i];
+
+		try {
+			fDocument= event.getDocument();
+
+			Position[] category= fDocument.getPositions(fCategory);
+			for (int i= 0; i < category.length; i++) {
+
+				fPosition= category[i];
+				int myStart= fPosition.offset;
+				int myEnd= Math.max(myStart, fPosition.offset + fPosition.length - 1);
+				int first= findFirstTouching(offsets, lengths, myStart);
+				int last= findLastTouching(offsets, myEnd);
+
+				boolean deleted= false;
+				for (int j= last; j >= first && !deleted; j--) {
+					fOffset= offsets[j];
+					fLength= lengths[j];
+					fReplaceLength= texts[j].length();
+					fOriginalPosition.offset= fPosition.offset;
+					fOriginalPosition.length= fPosition.length;
+
+					if (notDeleted())
+						adaptToReplace();
+					else
+						deleted= true;
+				}
+				if (!deleted)
+					fPosition.offset+= shifts[first];
+			}
+
+		} catch (BadPositionCategoryException x) {
+			// do nothing
+		} finally {
+			fDocument= null;
+		}
+	}
+
+	/**
+	 * Returns the index of the first range which does not only move a position starting at the
+	 * given offset.
+	 *
+	 * @param offsets the sorted offsets of the ranges
+	 * @param lengths the lengths of the ranges
+	 * @param myStart the offset of the position
+	 * @return the index of the first range that reaches into or behind the position
+	 */
+	private static int findFirstTouching(int[] offsets, int[] lengths, int myStart) {
+		int low= 0;
+		int high= offsets.length;
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			boolean before= lengths[mid] == 0 ? offsets[mid] <= myStart : offsets[mid] + lengths[mid] <= myStart;
+			if (before)
+				low= mid + 1;
+			else
+				high= mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index of the last range which does not start behind the given end of a
+	 * position.
+	 *
+	 * @param offsets the sorted offsets of the ranges
+	 * @param myEnd the last offset of the position
+	 * @return the index of the last range starting at or before the end, or -1 if there is none
+	 */
+	private static int findLastTouching(int[] offsets, int myEnd) {
+		int low= 0;
+		int high= offsets.length;
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			if (offsets[mid] <= myEnd)
+				low= mid + 1;
+			else
+				high= mid;
+		}
+		return low - 1;
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.jface.text;
 
+import org.eclipse.core.runtime.Assert;
 
 /**
  * Default document implementation. Uses a {@link org.eclipse.jface.text.GapTextStore} wrapped
@@ -34,11 +35,13 @@ package org.eclipse.jface.text;
  * </p>
  * <p>
  * See {@link GapTextStore} and <code>TreeLineTracker</code> for algorithmic behavior of the used
- * document structures.
+ * document structures. Documents of several megabytes should be created with a
+ * {@link RopeTextStore}, see {@link #Document(ITextStore)}.
  * </p>
  * 
  * @see org.eclipse.jface.text.GapTextStore
  * @see org.eclipse.jface.text.CopyOnWriteTextStore
+ * @see org.eclipse.jface.text.RopeTextStore
  */
 public class Document extends AbstractDocument {
 	/**
@@ -51,6 +54,21 @@ public class Document extends AbstractDocument {
 		completeInitialization();
 	}
 
+	/**
+	 * Creates a new empty document which uses the given text store. Use a {@link RopeTextStore}
+	 * for very large documents that are edited at arbitrary locations.
+	 *
+	 * @param textStore the text store to use, not <code>null</code>
+	 * @since 3.7
+	 */
+	public Document(ITextStore textStore) {
+		super();
+		Assert.isNotNull(textStore);
+		setTextStore(textStore);
+		setLineTracker(new DefaultLineTracker());
+		completeInitialization();
+	}
+
 	/**
 	 * Creates a new document with the given initial content.
 	 *
@@ -0,0 +1,663 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.core.runtime.Assert;
+
+
+/**
+ * An immutable snapshot of an {@link AbstractDocument} (see
+ * {@link IDocumentExtension5#getSnapshot()}).
+ * <p>
+ * The snapshot shares the content with the text store of the document where the store supports
+ * it, see {@link #createSnapshot(ITextStore)}. As long as the document does not change, line and
+ * partition queries are answered by the line tracker and the partitioners of the document. Before
+ * the document changes for the first time, it calls {@link #detach()}, and the snapshot copies the
+ * partitions of the whole document which it has not queried yet, including the zero-length
+ * partitions. Queries are then answered from them the way {@link IDocumentPartitionerExtension2}
+ * describes it for a <code>FastPartitioner</code>. The line information is then computed from the
+ * content on the next line query.
+ * </p>
+ * <p>
+ * While the snapshot reads the line tracker or the partitioners of the document, it holds the
+ * lock object of the document if it is {@link ISynchronizable}, and the lock of the snapshot
+ * otherwise, so that the document cannot change in the meantime. The partitioners of a
+ * synchronizable document may acquire the lock object themselves. Once detached, the snapshot is
+ * read without holding any lock by any thread.
+ * </p>
+ *
+ * @since 3.7
+ */
+final class DocumentSnapshot implements IDocument, IDocumentExtension3, IDocumentExtension4, IDocumentExtension5 {
+
+	/** The content, never modified */
+	private final ITextStore fStore;
+	/** The legal line delimiters of the document */
+	private final String[] fLegalLineDelimiters;
+	/** The default line delimiter of the document */
+	private final String fDefaultLineDelimiter;
+	/** The modification stamp of the document */
+	private final long fModificationStamp;
+	/** The legal content types per partitioning */
+	private final Map<String, String[]> fLegalContentTypes;
+	/** The lock object of the document, or this snapshot if the document has none */
+	private final Object fLock;
+	/** The document until it changes, <code>null</code> afterwards, guarded by fLock */
+	private AbstractDocument fDocument;
+	/** The line tracker of the document until it changes, <code>null</code> afterwards, guarded by fLock */
+	private ILineTracker fDocumentTracker;
+	/** The line tracker for the content of this snapshot, created on first use once detached */
+	private volatile ILineTracker fTracker;
+	/**
+	 * The partitions of the whole document which have been queried or copied, per partitioning,
+	 * including zero-length partitions, guarded by fLock
+	 */
+	private final Map<String, ITypedRegion[]> fPartitions;
+
+	/**
+	 * Creates a snapshot of the given document. The snapshot reads the line tracker and the
+	 * partitioners of the document until {@link #detach()} is called.
+	 *
+	 * @param document the document
+	 */
+	DocumentSnapshot(AbstractDocument document) {
+		fStore= document.getStoreSnapshot();
+		fLegalLineDelimiters= document.getLegalLineDelimiters();
+		fDefaultLineDelimiter= document.getDefaultLineDelimiter();
+		fModificationStamp= document.getModificationStamp();
+		fDocument= document;
+		if (fStore == document.getStore())
+			fTracker= document.getTracker(); // the content never changes
+		else
+			fDocumentTracker= document.getTracker();
+		Object lock= document instanceof ISynchronizable ? ((ISynchronizable) document).getLockObject() : null;
+		fLock= lock != null ? lock : this;
+
+		String[] partitionings= document.getPartitionings();
+		fPartitions= new HashMap<>(partitionings.length);
+		fLegalContentTypes= new HashMap<>(partitionings.length);
+		for (int i= 0; i < partitionings.length; i++) {
+			try {
+				fLegalContentTypes.put(partitionings[i], document.getLegalContentTypes(partitionings[i]));
+				// lets lazily initialized partitioners initialize in the thread of the document
+				document.getPartition(partitionings[i], 0, false);
+			} catch (BadLocationException x) {
+				Assert.isTrue(false);
+			} catch (BadPartitioningException x) {
+				Assert.isTrue(false);
+			}
+		}
+	}
+
+	/**
+	 * Stops reading the line tracker and the partitioners of the document, copying the partitions
+	 * which have not been queried yet. Called by the document before it changes.
+	 */
+	void detach() {
+		synchronized (fLock) {
+			if (fDocument == null)
+				return;
+			for (Iterator<String> iter= fLegalContentTypes.keySet().iterator(); iter.hasNext();) {
+				String partitioning= iter.next();
+				if (!fPartitions.containsKey(partitioning))
+					fPartitions.put(partitioning, computePartitions(partitioning));
+			}
+			fDocument= null;
+			fDocumentTracker= null;
+		}
+	}
+
+	/**
+	 * Computes the partitions of the whole document with its partitioner for the given
+	 * partitioning. Must only be called while the document has not changed.
+	 *
+	 * @param partitioning the partitioning
+	 * @return the partitions including zero-length partitions, sorted by offset
+	 */
+	private ITypedRegion[] computePartitions(String partitioning) {
+		IDocumentPartitioner partitioner= fDocument.getDocumentPartitioner(partitioning);
+		ITypedRegion[] partitions= null;
+		// not through the document, which may be locked by the thread changing it
+		if (partitioner instanceof IDocumentPartitionerExtension2)
+			partitions= ((IDocumentPartitionerExtension2) partitioner).computePartitioning(0, getLength(), true);
+		else if (partitioner != null)
+			partitions= partitioner.computePartitioning(0, getLength());
+		if (partitions == null || partitions.length == 0)
+			partitions= new ITypedRegion[] { new TypedRegion(0, getLength(), DEFAULT_CONTENT_TYPE) };
+		return partitions;
+	}
+
+	/**
+	 * Returns an unmodifiable text store with the current content of the given store. The content
+	 * is shared with {@link GapTextStore}, {@link RopeTextStore} and {@link CopyOnWriteTextStore}s
+	 * wrapping them, it is copied from any other store.
+	 *
+	 * @param store the store
+	 * @return an unmodifiable store with the current content of <code>store</code>
+	 */
+	static ITextStore createSnapshot(ITextStore store) {
+		if (store instanceof CopyOnWriteTextStore) {
+			store= ((CopyOnWriteTextStore) store).fTextStore;
+			if (store instanceof CopyOnWriteTextStore.StringTextStore)
+				return store;
+		}
+		if (store instanceof RopeTextStore)
+			return ((RopeTextStore) store).snapshot();
+		if (store instanceof GapTextStore)
+			return ((GapTextStore) store).snapshot();
+		return new CopyOnWriteTextStore.StringTextStore(store.get(0, store.getLength()));
+	}
+
+	/**
+	 * Returns the line tracker for the content of this snapshot, which is created on first use.
+	 *
+	 * @return the line tracker
+	 */
+	private ILineTracker getTracker() {
+		ILineTracker tracker= fTracker;
+		if (tracker == null) {
+			synchronized (this) {
+				tracker= fTracker;
+				if (tracker == null) {
+					if (fLegalLineDelimiters.length == DefaultLineTracker.DELIMITERS.length && Arrays.asList(fLegalLineDelimiters).containsAll(Arrays.asList(DefaultLineTracker.DELIMITERS)))
+						tracker= new DefaultLineTracker();
+					else
+						tracker= new ConfigurableLineTracker(fLegalLineDelimiters);
+					tracker.set(get());
+					fTracker= tracker;
+				}
+			}
+		}
+		return tracker;
+	}
+
+	/**
+	 * Returns the partitions of the whole snapshot for the given partitioning.
+	 *
+	 * @param partitioning the partitioning
+	 * @return the partitions including zero-length partitions, sorted by offset
+	 * @throws BadPartitioningException if the document had no such partitioning
+	 */
+	private ITypedRegion[] getPartitions(String partitioning) throws BadPartitioningException {
+		synchronized (fLock) {
+			ITypedRegion[] partitions= fPartitions.get(partitioning);
+			if (partitions == null && fDocument != null && fLegalContentTypes.containsKey(partitioning)) {
+				partitions= computePartitions(partitioning);
+				fPartitions.put(partitioning, partitions);
+			}
+			if (partitions != null)
+				return partitions;
+			if (DEFAULT_PARTITIONING.equals(partitioning))
+				return new ITypedRegion[] { new TypedRegion(0, getLength(), DEFAULT_CONTENT_TYPE) };
+			throw new BadPartitioningException();
+		}
+	}
+
+	/**
+	 * Returns the index of the first partition that ends after the given offset, or the index of
+	 * the last partition if there is none.
+	 *
+	 * @param partitions the partitions, sorted by offset
+	 * @param offset the offset
+	 * @return the index of the first partition ending after <code>offset</code>
+	 */
+	private static int getFirstIndexEndingAfter(ITypedRegion[] partitions, int offset) {
+		int left= 0;
+		int right= partitions.length - 1;
+		while (left < right) {
+			int mid= (left + right) >>> 1;
+			ITypedRegion partition= partitions[mid];
+			if (partition.getOffset() + partition.getLength() > offset)
+				right= mid;
+			else
+				left= mid + 1;
+		}
+		return left;
+	}
+
+	/* IDocument */
+
+	@Override
+	public char getChar(int offset) throws BadLocationException {
+		if ((0 > offset) || (offset >= getLength()))
+			throw new BadLocationException();
+		return fStore.get(offset);
+	}
+
+	@Override
+	public int getLength() {
+		return fStore.getLength();
+	}
+
+	@Override
+	public String get() {
+		return fStore.get(0, fStore.getLength());
+	}
+
+	@Override
+	public String get(int offset, int length) throws BadLocationException {
+		if ((0 > offset) || (0 > length) || (offset + length > getLength()))
+			throw new BadLocationException();
+		return fStore.get(offset, length);
+	}
+
+	@Override
+	public void set(String text) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void replace(int offset, int length, String text) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void addDocumentListener(IDocumentListener listener) {
+		// the snapshot never changes
+	}
+
+	@Override
+	public void removeDocumentListener(IDocumentListener listener) {
+	}
+
+	@Override
+	public void addPrenotifiedDocumentListener(IDocumentListener documentAdapter) {
+		// the snapshot never changes
+	}
+
+	@Override
+	public void removePrenotifiedDocumentListener(IDocumentListener documentAdapter) {
+	}
+
+	@Override
+	public void addPositionCategory(String category) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removePositionCategory(String category) throws BadPositionCategoryException {
+		throw new BadPositionCategoryException();
+	}
+
+	@Override
+	public String[] getPositionCategories() {
+		return new String[0];
+	}
+
+	@Override
+	public boolean containsPositionCategory(String category) {
+		return false;
+	}
+
+	@Override
+	public void addPosition(Position position) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removePosition(Position position) {
+	}
+
+	@Override
+	public void addPosition(String category, Position position) throws BadLocationException, BadPositionCategoryException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removePosition(String category, Position position) throws BadPositionCategoryException {
+		throw new BadPositionCategoryException();
+	}
+
+	@Override
+	public Position[] getPositions(String category) throws BadPositionCategoryException {
+		throw new BadPositionCategoryException();
+	}
+
+	@Override
+	public boolean containsPosition(String category, int offset, int length) {
+		return false;
+	}
+
+	@Override
+	public int computeIndexInCategory(String category, int offset) throws BadLocationException, BadPositionCategoryException {
+		throw new BadPositionCategoryException();
+	}
+
+	@Override
+	public void addPositionUpdater(IPositionUpdater updater) {
+		// the snapshot has no positions
+	}
+
+	@Override
+	public void removePositionUpdater(IPositionUpdater updater) {
+	}
+
+	@Override
+	public void insertPositionUpdater(IPositionUpdater updater, int index) {
+		// the snapshot has no positions
+	}
+
+	@Override
+	public IPositionUpdater[] getPositionUpdaters() {
+		return new IPositionUpdater[0];
+	}
+
+	@Override
+	public String[] getLegalContentTypes() {
+		String[] contentTypes= null;
+		try {
+			contentTypes= getLegalContentTypes(DEFAULT_PARTITIONING);
+		} catch (BadPartitioningException e) {
+			Assert.isTrue(false);
+		}
+		return contentTypes;
+	}
+
+	@Override
+	public String getContentType(int offset) throws BadLocationException {
+		return getPartition(offset).getType();
+	}
+
+	@Override
+	public ITypedRegion getPartition(int offset) throws BadLocationException {
+		ITypedRegion partition= null;
+		try {
+			partition= getPartition(DEFAULT_PARTITIONING, offset, false);
+		} catch (BadPartitioningException e) {
+			Assert.isTrue(false);
+		}
+		return partition;
+	}
+
+	@Override
+	public ITypedRegion[] computePartitioning(int offset, int length) throws BadLocationException {
+		ITypedRegion[] partitioning= null;
+		try {
+			partitioning= computePartitioning(DEFAULT_PARTITIONING, offset, length, false);
+		} catch (BadPartitioningException e) {
+			Assert.isTrue(false);
+		}
+		return partitioning;
+	}
+
+	@Override
+	public void addDocumentPartitioningListener(IDocumentPartitioningListener listener) {
+		// the snapshot never changes
+	}
+
+	@Override
+	public void removeDocumentPartitioningListener(IDocumentPartitioningListener listener) {
+	}
+
+	@Override
+	public void setDocumentPartitioner(IDocumentPartitioner partitioner) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public IDocumentPartitioner getDocumentPartitioner() {
+		return null;
+	}
+
+	@Override
+	public int getLineLength(int line) throws BadLocationException {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.getLineLength(line);
+		}
+		return getTracker().getLineLength(line);
+	}
+
+	@Override
+	public int getLineOfOffset(int offset) throws BadLocationException {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.getLineNumberOfOffset(offset);
+		}
+		return getTracker().getLineNumberOfOffset(offset);
+	}
+
+	@Override
+	public int getLineOffset(int line) throws BadLocationException {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.getLineOffset(line);
+		}
+		return getTracker().getLineOffset(line);
+	}
+
+	@Override
+	public IRegion getLineInformation(int line) throws BadLocationException {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.getLineInformation(line);
+		}
+		return getTracker().getLineInformation(line);
+	}
+
+	@Override
+	public IRegion getLineInformationOfOffset(int offset) throws BadLocationException {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.getLineInformationOfOffset(offset);
+		}
+		return getTracker().getLineInformationOfOffset(offset);
+	}
+
+	@Override
+	public int getNumberOfLines() {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.getNumberOfLines();
+		}
+		return getTracker().getNumberOfLines();
+	}
+
+	@Override
+	public int getNumberOfLines(int offset, int length) throws BadLocationException {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.getNumberOfLines(offset, length);
+		}
+		return getTracker().getNumberOfLines(offset, length);
+	}
+
+	@Override
+	public int computeNumberOfLines(String text) {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.computeNumberOfLines(text);
+		}
+		return getTracker().computeNumberOfLines(text);
+	}
+
+	@Override
+	public String[] getLegalLineDelimiters() {
+		return TextUtilities.copy(fLegalLineDelimiters);
+	}
+
+	@Override
+	public String getLineDelimiter(int line) throws BadLocationException {
+		synchronized (fLock) {
+			if (fDocumentTracker != null)
+				return fDocumentTracker.getLineDelimiter(line);
+		}
+		return getTracker().getLineDelimiter(line);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @deprecated Use {@link FindReplaceDocumentAdapter#find(int, String, boolean, boolean, boolean, boolean)} instead.
+	 */
+	@Deprecated
+	@Override
+	public int search(int startOffset, String findString, boolean forwardSearch, boolean caseSensitive, boolean wholeWord) throws BadLocationException {
+		try {
+			IRegion region= new FindReplaceDocumentAdapter(this).find(startOffset, findString, forwardSearch, caseSensitive, wholeWord, false);
+			return region == null ?  -1 : region.getOffset();
+		} catch (IllegalStateException ex) {
+			return -1;
+		} catch (PatternSyntaxException ex) {
+			return -1;
+		}
+	}
+
+	/* IDocumentExtension3 */
+
+	@Override
+	public String[] getPartitionings() {
+		return fLegalContentTypes.keySet().toArray(new String[fLegalContentTypes.size()]);
+	}
+
+	@Override
+	public String[] getLegalContentTypes(String partitioning) throws BadPartitioningException {
+		String[] contentTypes= fLegalContentTypes.get(partitioning);
+		if (contentTypes != null)
+			return TextUtilities.copy(contentTypes);
+		if (DEFAULT_PARTITIONING.equals(partitioning))
+			return new String[] { DEFAULT_CONTENT_TYPE };
+		throw new BadPartitioningException();
+	}
+
+	@Override
+	public String getContentType(String partitioning, int offset, boolean preferOpenPartitions) throws BadLocationException, BadPartitioningException {
+		return getPartition(partitioning, offset, preferOpenPartitions).getType();
+	}
+
+	@Override
+	public ITypedRegion getPartition(String partitioning, int offset, boolean preferOpenPartitions) throws BadLocationException, BadPartitioningException {
+		if ((0 > offset) || (offset > getLength()))
+			throw new BadLocationException();
+
+		ITypedRegion[] partitions= getPartitions(partitioning);
+		ITypedRegion region= partitions[getFirstIndexEndingAfter(partitions, offset)];
+		if (preferOpenPartitions && region.getOffset() == offset && !DEFAULT_CONTENT_TYPE.equals(region.getType())) {
+			if (offset > 0) {
+				ITypedRegion previous= partitions[getFirstIndexEndingAfter(partitions, offset - 1)];
+				if (DEFAULT_CONTENT_TYPE.equals(previous.getType()))
+					return previous;
+			}
+			return new TypedRegion(offset, 0, DEFAULT_CONTENT_TYPE);
+		}
+		return region;
+	}
+
+	@Override
+	public ITypedRegion[] computePartitioning(String partitioning, int offset, int length, boolean includeZeroLengthPartitions) throws BadLocationException, BadPartitioningException {
+		if ((0 > offset) || (0 > length) || (offset + length > getLength()))
+			throw new BadLocationException();
+
+		ITypedRegion[] partitions= getPartitions(partitioning);
+		int end= offset + length;
+		List<ITypedRegion> list= new ArrayList<>();
+		for (int i= getFirstIndexEndingAfter(partitions, offset - 1); i < partitions.length; i++) {
+			ITypedRegion partition= partitions[i];
+			int partitionOffset= partition.getOffset();
+			int partitionEnd= partitionOffset + partition.getLength();
+			if (partitionOffset > end)
+				break;
+			if (partitionOffset == partitionEnd) {
+				if (includeZeroLengthPartitions && offset <= partitionOffset)
+					list.add(partition);
+			} else if (partitionOffset < end && partitionEnd > offset) {
+				if (offset <= partitionOffset && partitionEnd <= end)
+					list.add(partition);
+				else
+					list.add(new TypedRegion(Math.max(offset, partitionOffset), Math.min(end, partitionEnd) - Math.max(offset, partitionOffset), partition.getType()));
+			}
+		}
+		if (list.isEmpty())
+			list.add(new TypedRegion(offset, length, getPartition(partitioning, offset, false).getType()));
+		return list.toArray(new ITypedRegion[list.size()]);
+	}
+
+	@Override
+	public void setDocumentPartitioner(String partitioning, IDocumentPartitioner partitioner) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public IDocumentPartitioner getDocumentPartitioner(String partitioning) {
+		return null;
+	}
+
+	/* IDocumentExtension4 */
+
+	@Override
+	public DocumentRewriteSession startRewriteSession(DocumentRewriteSessionType sessionType) throws IllegalStateException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void stopRewriteSession(DocumentRewriteSession session) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public DocumentRewriteSession getActiveRewriteSession() {
+		return null;
+	}
+
+	@Override
+	public void addDocumentRewriteSessionListener(IDocumentRewriteSessionListener listener) {
+		// the snapshot never changes
+	}
+
+	@Override
+	public void removeDocumentRewriteSessionListener(IDocumentRewriteSessionListener listener) {
+	}
+
+	@Override
+	public void replace(int offset, int length, String text, long modificationStamp) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void set(String text, long modificationStamp) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public long getModificationStamp() {
+		return fModificationStamp;
+	}
+
+	@Override
+	public String getDefaultLineDelimiter() {
+		return fDefaultLineDelimiter;
+	}
+
+	@Override
+	public void setInitialLineDelimiter(String lineDelimiter) {
+		throw new UnsupportedOperationException();
+	}
+
+	/* IDocumentExtension5 */
+
+	@Override
+	public void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public IDocument getSnapshot() {
+		return this;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,12 @@
  *******************************************************************************/
 package org.eclipse.jface.text;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 import org.eclipse.core.runtime.Assert;
 
 
@@ -37,6 +43,129 @@ import org.eclipse.core.runtime.Assert;
  * @noextend This class is not intended to be subclassed by clients.
  */
 public class GapTextStore implements ITextStore {
+
+	/**
+	 * An unmodifiable view of the content of a gap text store at a certain point in time.
+	 * <p>
+	 * The view shares the array of the store. Before the store modifies a part of the array which
+	 * the view still reads, it calls {@link #preserve(int, int)}, which copies the chunks of the
+	 * array containing that part. Reading and copying is synchronized on the view, so that the
+	 * view never reads a modified part of the array.
+	 * </p>
+	 *
+	 * @since 3.7
+	 */
+	private static final class Snapshot implements ITextStore {
+
+		/** The number of array elements copied at once, a power of two */
+		private static final int CHUNK_SIZE= 4096;
+
+		/** The content array shared with the store */
+		private final char[] fContent;
+		/** The copies of the chunks of the array which the store has modified, guarded by this */
+		private final char[][] fCopies;
+		/** Starting index of the gap */
+		private final int fGapStart;
+		/** End index of the gap */
+		private final int fGapEnd;
+
+		Snapshot(char[] content, int gapStart, int gapEnd) {
+			fContent= content;
+			fCopies= new char[(content.length + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+			fGapStart= gapStart;
+			fGapEnd= gapEnd;
+		}
+
+		@Override
+		public char get(int offset) {
+			if (offset < 0 || offset >= getLength())
+				throw new IndexOutOfBoundsException(String.valueOf(offset));
+			int index= offset < fGapStart ? offset : offset + fGapEnd - fGapStart;
+			synchronized (this) {
+				char[] copy= fCopies[index / CHUNK_SIZE];
+				return copy != null ? copy[index % CHUNK_SIZE] : fContent[index];
+			}
+		}
+
+		@Override
+		public String get(int offset, int length) {
+			if (offset < 0 || length < 0 || offset + length > getLength())
+				throw new IndexOutOfBoundsException();
+			char[] text= new char[length];
+			int end= offset + length;
+			synchronized (this) {
+				if (offset < fGapStart)
+					copy(offset, text, 0, Math.min(end, fGapStart) - offset);
+				if (end > fGapStart) {
+					int start= Math.max(offset, fGapStart);
+					copy(start + fGapEnd - fGapStart, text, start - offset, end - start);
+				}
+			}
+			return new String(text);
+		}
+
+		/**
+		 * Copies a part of the array, taking the chunks which have been copied from their copies.
+		 *
+		 * @param index the index in the array to start at
+		 * @param dest the destination
+		 * @param destPos the index in the destination to start at
+		 * @param length the number of characters to copy
+		 */
+		private void copy(int index, char[] dest, int destPos, int length) {
+			while (length > 0) {
+				int chunkOffset= index % CHUNK_SIZE;
+				int count= Math.min(length, CHUNK_SIZE - chunkOffset);
+				char[] copy= fCopies[index / CHUNK_SIZE];
+				if (copy != null)
+					System.arraycopy(copy, chunkOffset, dest, destPos, count);
+				else
+					System.arraycopy(fContent, index, dest, destPos, count);
+				index+= count;
+				destPos+= count;
+				length-= count;
+			}
+		}
+
+		/**
+		 * Copies the chunks of the shared array which contain a part of the content of this view
+		 * between the given indices. Must be called by the store before it modifies the array
+		 * between these indices.
+		 *
+		 * @param start the first index to be modified
+		 * @param end the index behind the last index to be modified
+		 */
+		synchronized void preserve(int start, int end) {
+			// the store may freely modify the gap of the view
+			preserveChunks(start, Math.min(end, fGapStart));
+			preserveChunks(Math.max(start, fGapEnd), end);
+		}
+
+		private void preserveChunks(int start, int end) {
+			if (start >= end)
+				return;
+			for (int i= start / CHUNK_SIZE, last= (end - 1) / CHUNK_SIZE; i <= last; i++) {
+				if (fCopies[i] == null)
+					fCopies[i]= Arrays.copyOfRange(fContent, i * CHUNK_SIZE, Math.min((i + 1) * CHUNK_SIZE, fContent.length));
+			}
+		}
+
+		@Override
+		public int getLength() {
+			return fContent.length - (fGapEnd - fGapStart);
+		}
+
+		@Override
+		public void replace(int offset, int length, String text) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void set(String text) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
 	/**
 	 * The minimum gap size allocated when re-allocation occurs.
 	 * @since 3.3
@@ -67,6 +196,11 @@ public class GapTextStore implements ITextStore {
 	 * @since 3.3
 	 */
 	private int fThreshold= 0;
+	/**
+	 * The snapshots sharing {@link #fContent}, or <code>null</code> if there are none.
+	 * @since 3.7
+	 */
+	private List<WeakReference<Snapshot>> fSnapshots;
 
 	/**
 	 * Creates a new empty text store using the specified low and high watermarks.
@@ -208,10 +342,14 @@ public class GapTextStore implements ITextStore {
 		final int newGapStart= offset + add;
 		final int newGapEnd;
 
-		if (reuseArray)
+		if (reuseArray) {
+			// the array is modified between the change offset or the gap and the end of both
+			if (fSnapshots != null)
+				preserveSnapshots(Math.min(offset, fGapStart), Math.max(offset + add, fGapEnd));
 			newGapEnd= moveGap(offset, remove, oldGapSize, newGapSize, newGapStart);
-		else
+		} else {
 			newGapEnd= reallocate(offset, remove, oldGapSize, newGapSize, newGapStart);
+		}
 
 		fGapStart= newGapStart;
 		fGapEnd= newGapEnd;
@@ -316,6 +454,8 @@ public class GapTextStore implements ITextStore {
 		}
 
 		fContent= newContent;
+		// the snapshots keep the old array, which is not modified any more
+		fSnapshots= null;
 		return newGapEnd;
 	}
 
@@ -350,6 +490,41 @@ public class GapTextStore implements ITextStore {
 		return fGapEnd - fGapStart;
 	}
 
+	/**
+	 * Lets the snapshots sharing the array copy the parts of it which are about to be modified.
+	 *
+	 * @param start the first index to be modified
+	 * @param end the index behind the last index to be modified
+	 * @since 3.7
+	 */
+	private void preserveSnapshots(int start, int end) {
+		for (Iterator<WeakReference<Snapshot>> iter= fSnapshots.iterator(); iter.hasNext();) {
+			Snapshot snapshot= iter.next().get();
+			if (snapshot == null)
+				iter.remove();
+			else
+				snapshot.preserve(start, end);
+		}
+		if (fSnapshots.isEmpty())
+			fSnapshots= null;
+	}
+
+	/**
+	 * Returns an unmodifiable view of the current content of this text store. The view shares the
+	 * array of this store and copies the chunks of it which this store modifies later on. The view
+	 * may be read by any thread.
+	 *
+	 * @return an unmodifiable view of the current content
+	 * @since 3.7
+	 */
+	ITextStore snapshot() {
+		Snapshot snapshot= new Snapshot(fContent, fGapStart, fGapEnd);
+		if (fSnapshots == null)
+			fSnapshots= new ArrayList<>();
+		fSnapshots.add(new WeakReference<>(snapshot));
+		return snapshot;
+	}
+
 	/**
 	 * Returns a copy of the content of this text store.
 	 * For internal use only.
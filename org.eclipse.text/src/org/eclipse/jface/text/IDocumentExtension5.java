@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+/**
+ * Extension interface for {@link org.eclipse.jface.text.IDocument}.
+ * <p>
+ * It adds the following concepts:
+ * </p>
+ * <ul>
+ * <li>Replacing several ranges of the document in one modification, which allows a document to
+ * install the new content and to update its line information and positions in a single pass
+ * instead of once per range.</li>
+ * <li>Immutable snapshots of the document, which background jobs can read without locking the
+ * document and without racing with its modifications.</li>
+ * </ul>
+ *
+ * @since 3.7
+ */
+public interface IDocumentExtension5 {
+
+	/**
+	 * Replaces the given ranges of this document with the given texts. The ranges are sorted by
+	 * offset, do not overlap (<code>offsets[i] + lengths[i] &lt;= offsets[i + 1]</code>) and
+	 * refer to the document before the modification. Several ranges of length 0 may start at the
+	 * same offset.
+	 * <p>
+	 * The resulting content and the positions of categories which are updated by a
+	 * {@link DefaultPositionUpdater} are the same as if the ranges were replaced one by one,
+	 * starting with the last one. Document listeners are informed by a single document event that
+	 * replaces the text from the first offset to the end of the last range. If a document cannot
+	 * replace the ranges at once, for example because it has other position updaters, it replaces
+	 * them one by one, starting with the last one, and sends one event per range.
+	 * </p>
+	 *
+	 * @param offsets the offsets of the ranges to replace, sorted
+	 * @param lengths the lengths of the ranges to replace
+	 * @param texts the texts to replace the ranges with, <code>null</code> is the empty text
+	 * @throws BadLocationException if a range is invalid in this document or the ranges overlap
+	 */
+	void replace(int[] offsets, int[] lengths, String[] texts) throws BadLocationException;
+
+	/**
+	 * Returns an immutable snapshot of this document. The snapshot has the content, the line
+	 * information, the partitionings, the legal and default line delimiters, and the modification
+	 * stamp of this document at the time of the call. Later modifications of this document do not
+	 * affect the snapshot.
+	 * <p>
+	 * The snapshot may be read by any thread without synchronization. It has no positions and no
+	 * document partitioners; its partitionings answer queries with the partitions this document
+	 * had. All methods that would modify the snapshot throw an
+	 * <code>UnsupportedOperationException</code>; adding listeners has no effect.
+	 * </p>
+	 * <p>
+	 * Implementations share the content with the snapshot where possible, so that taking a
+	 * snapshot does not copy the text of the document. A document whose content cannot change may
+	 * return itself.
+	 * </p>
+	 *
+	 * @return an immutable snapshot of this document
+	 */
+	IDocument getSnapshot();
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -323,10 +323,40 @@ abstract class ListLineTracker implements ILineTracker {
 		fLines.clear();
 		if (text != null) {
 			fTextLength= text.length();
-			createLines(text, 0, 0);
+			if (hasDefaultDelimiters())
+				createLines(text);
+			else
+				createLines(text, 0, 0);
 		}
 	}
 
+	/**
+	 * Creates the line structure for the given text using {@link ParallelLineScanner}.
+	 *
+	 * @param text the text for which to create a line structure
+	 * @since 3.7
+	 */
+	private void createLines(String text) {
+		int[] offsets= ParallelLineScanner.computeLineOffsets(text);
+		int lines= offsets.length - 1;
+		for (int i= 0; i < lines - 1; i++)
+			fLines.add(new Line(offsets[i], offsets[i + 1] - 1, ParallelLineScanner.getDelimiter(text, offsets[i + 1])));
+		if (offsets[lines - 1] < fTextLength)
+			fLines.add(new Line(offsets[lines - 1], fTextLength - 1, null));
+	}
+
+	/**
+	 * Tells whether this tracker recognizes exactly the delimiters of {@link DefaultLineTracker},
+	 * in which case {@link #set(String)} scans the text in parallel instead of calling
+	 * {@link #nextDelimiterInfo(String, int)}.
+	 *
+	 * @return <code>true</code> if this tracker uses the default delimiters
+	 * @since 3.7
+	 */
+	boolean hasDefaultDelimiters() {
+		return false;
+	}
+
 	/**
 	 * Returns the internal data structure, a {@link List} of {@link Line}s. Used only by
 	 * {@link TreeLineTracker#TreeLineTracker(ListLineTracker)}.
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+/**
+ * A document event that describes the replacement of several ranges at once (see
+ * {@link IDocumentExtension5#replace(int[], int[], String[])}). The event itself covers the text
+ * from the first replaced range to the end of the last one, and remembers the single ranges so
+ * that the position updaters of the document can adapt positions exactly.
+ *
+ * @since 3.7
+ */
+final class MultiReplaceEvent extends DocumentEvent {
+
+	/** The offsets of the replaced ranges, sorted */
+	private final int[] fOffsets;
+	/** The lengths of the replaced ranges */
+	private final int[] fLengths;
+	/** The replacement texts, not <code>null</code> */
+	private final String[] fTexts;
+
+	/**
+	 * Creates a new event.
+	 *
+	 * @param document the changed document
+	 * @param text the text which replaces the text from the first to the end of the last range
+	 * @param offsets the offsets of the replaced ranges, sorted
+	 * @param lengths the lengths of the replaced ranges
+	 * @param texts the replacement texts, not <code>null</code>
+	 */
+	MultiReplaceEvent(IDocument document, String text, int[] offsets, int[] lengths, String[] texts) {
+		super(document, offsets[0], offsets[offsets.length - 1] + lengths[lengths.length - 1] - offsets[0], text);
+		fOffsets= offsets;
+		fLengths= lengths;
+		fTexts= texts;
+	}
+
+	/**
+	 * Returns the number of replaced ranges.
+	 *
+	 * @return the number of replaced ranges
+	 */
+	int getCount() {
+		return fOffsets.length;
+	}
+
+	/**
+	 * Returns the offsets of the replaced ranges. Clients must not modify the array.
+	 *
+	 * @return the offsets of the replaced ranges in the document before the change, sorted
+	 */
+	int[] getOffsets() {
+		return fOffsets;
+	}
+
+	/**
+	 * Returns the lengths of the replaced ranges. Clients must not modify the array.
+	 *
+	 * @return the lengths of the replaced ranges
+	 */
+	int[] getLengths() {
+		return fLengths;
+	}
+
+	/**
+	 * Returns the replacement texts. Clients must not modify the array.
+	 *
+	 * @return the replacement texts
+	 */
+	String[] getTexts() {
+		return fTexts;
+	}
+
+	/**
+	 * Returns an event for the replacement of a single range, in the document in which all the
+	 * ranges behind it have been replaced already.
+	 *
+	 * @param index the index of the range
+	 * @return the event replacing the range
+	 */
+	DocumentEvent getEvent(int index) {
+		return new DocumentEvent(getDocument(), fOffsets[index], fLengths[index], fTexts[index]);
+	}
+}
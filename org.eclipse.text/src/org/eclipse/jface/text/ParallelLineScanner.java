@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Computes the line structure of a text for the delimiters of {@link DefaultLineTracker}. Large
+ * texts are split into chunks that are scanned in parallel.
+ * <p>
+ * A chunk may end between the <code>'\r'</code> and the <code>'\n'</code> of a
+ * <code>"\r\n"</code> delimiter. As a <code>'\r'</code> only ends a line if it is not followed by
+ * a <code>'\n'</code>, and the scan of a chunk may look at the first character of the next chunk,
+ * such a delimiter is attributed to the chunk containing the <code>'\n'</code>.
+ * </p>
+ *
+ * @since 3.7
+ */
+final class ParallelLineScanner {
+
+	/**
+	 * The number of characters of a chunk. Shorter texts, and all texts if the common pool has no
+	 * parallelism, are scanned by the calling thread.
+	 */
+	private static final int CHUNK_SIZE= 1 << 18;
+
+	/**
+	 * Scans a chunk of the text for the ends of delimiters.
+	 */
+	private static final class ChunkScan extends RecursiveAction {
+		private static final long serialVersionUID= 1L;
+
+		private final String fText;
+		private final int fFrom;
+		private final int fTo;
+		/** The offsets after the delimiters found in the chunk. */
+		int[] fEnds;
+		/** The number of delimiters found in the chunk. */
+		int fCount;
+
+		ChunkScan(String text, int from, int to) {
+			fText= text;
+			fFrom= from;
+			fTo= to;
+		}
+
+		@Override
+		protected void compute() {
+			int[] ends= new int[64];
+			int count= 0;
+			int end= nextDelimiterEnd(fText, fFrom, fTo);
+			while (end != -1) {
+				if (count == ends.length) {
+					int[] newEnds= new int[count * 2];
+					System.arraycopy(ends, 0, newEnds, 0, count);
+					ends= newEnds;
+				}
+				ends[count++]= end;
+				end= nextDelimiterEnd(fText, end, fTo);
+			}
+			fEnds= ends;
+			fCount= count;
+		}
+	}
+
+	/**
+	 * Returns the offset after the next delimiter whose last character is in the given range.
+	 *
+	 * @param text the text
+	 * @param from the start of the range
+	 * @param to the end of the range, exclusive
+	 * @return the offset after the delimiter or <code>-1</code> if there is none
+	 */
+	private static int nextDelimiterEnd(String text, int from, int to) {
+		for (int i= from; i < to; i++) {
+			char c= text.charAt(i);
+			if (c == '\n')
+				return i + 1;
+			if (c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n'))
+				return i + 1;
+		}
+		return -1;
+	}
+
+	private ParallelLineScanner() {
+	}
+
+	/**
+	 * Computes the offsets of the lines of the given text. The returned array has one element
+	 * per line followed by the length of the text. The first line starts at offset 0; the last
+	 * line does not have a delimiter and is empty if the text ends with a delimiter.
+	 *
+	 * @param text the text
+	 * @return the line offsets, followed by the text length
+	 */
+	static int[] computeLineOffsets(String text) {
+		int length= text.length();
+		int chunkCount= 1;
+		if (ForkJoinPool.getCommonPoolParallelism() > 1)
+			chunkCount= Math.max(1, (length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		ChunkScan[] chunks= new ChunkScan[chunkCount];
+		for (int i= 0; i < chunks.length; i++)
+			chunks[i]= new ChunkScan(text, i * CHUNK_SIZE, i + 1 < chunkCount ? (i + 1) * CHUNK_SIZE : length);
+
+		if (chunks.length == 1)
+			chunks[0].compute();
+		else
+			ForkJoinTask.invokeAll(chunks);
+
+		int delimiters= 0;
+		for (int i= 0; i < chunks.length; i++)
+			delimiters += chunks[i].fCount;
+
+		int[] offsets= new int[delimiters + 2];
+		int index= 1;
+		for (int i= 0; i < chunks.length; i++) {
+			System.arraycopy(chunks[i].fEnds, 0, offsets, index, chunks[i].fCount);
+			index += chunks[i].fCount;
+		}
+		offsets[index]= length;
+		return offsets;
+	}
+
+	/**
+	 * Returns the delimiter ending at the given offset.
+	 *
+	 * @param text the text
+	 * @param end the offset after the delimiter, as returned by {@link #computeLineOffsets(String)}
+	 * @return the delimiter, one of {@link DefaultLineTracker#DELIMITERS}
+	 */
+	static String getDelimiter(String text, int end) {
+		if (text.charAt(end - 1) == '\r')
+			return DefaultLineTracker.DELIMITERS[0];
+		if (end >= 2 && text.charAt(end - 2) == '\r')
+			return DefaultLineTracker.DELIMITERS[2];
+		return DefaultLineTracker.DELIMITERS[1];
+	}
+}
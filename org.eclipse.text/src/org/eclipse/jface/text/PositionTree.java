@@ -0,0 +1,561 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Stores the positions of a lazily updated position category, see
+ * {@link AbstractDocument#addLazyPositionCategory(String)}.
+ * <p>
+ * <strong>Performance:</strong> Adding and removing a position performs in <i>O(log n)</i>,
+ * queries for a range in <i>O(log n + k)</i> where <var>k</var> is the number of positions
+ * returned, and updating the positions to a document change performs in <i>O((k + 1) log n)</i>
+ * where <var>k</var> is the number of positions overlapping the change.
+ * </p>
+ * <p>
+ * The offsets of positions which are moved implicitly are stale until the positions are
+ * returned by a query, so the tree is only suitable for positions which are only read through
+ * the document.
+ * </p>
+ *
+ * @since 3.7
+ */
+final class PositionTree {
+	/*
+	 * Differential Interval Treap
+	 *
+	 * The positions are stored in a binary search tree ordered by their offset. Like in
+	 * TreeLineTracker, every node only stores the difference between its offset and the offset of
+	 * its parent. Moving all positions after a change therefore only touches the nodes on the
+	 * search path of the change offset, all other subtrees move implicitly with their root.
+	 *
+	 * Every node also stores the maximal end offset of its subtree (relative to the node's
+	 * offset), which allows to skip subtrees that end before a queried range.
+	 *
+	 * The tree is balanced as a treap: every node gets a random priority and the tree is kept
+	 * heap-ordered by priority using rotations. This keeps the expected depth logarithmic and
+	 * makes removal of arbitrary nodes simple.
+	 *
+	 * As a consequence, the offset field of a position that has been moved implicitly is stale.
+	 * It is written whenever the position is handed out by one of the query methods.
+	 */
+
+	/**
+	 * A node holds one position. Its offset is relative to the offset of the parent node, or
+	 * absolute for the root node.
+	 */
+	private static final class Node {
+		Node(Position position, int priority) {
+			this.position= position;
+			this.priority= priority;
+			this.size= 1;
+			this.maxEnd= position.length;
+		}
+		/** The position stored in this node. */
+		final Position position;
+		/** The treap priority. */
+		final int priority;
+		/** The offset of the position relative to the offset of the parent node. */
+		int delta;
+		/** The maximal end offset in this subtree, relative to the offset of this node. */
+		int maxEnd;
+		/** The number of nodes in this subtree. */
+		int size;
+		/** The parent node, <code>null</code> if this is the root node. */
+		Node parent;
+		/** The left subtree, possibly <code>null</code>. */
+		Node left;
+		/** The right subtree, possibly <code>null</code>. */
+		Node right;
+	}
+
+	/**
+	 * Applies the {@link DefaultPositionUpdater} semantics to the positions affected by a change.
+	 */
+	private static final class Updater extends DefaultPositionUpdater {
+
+		Updater(String category) {
+			super(category);
+		}
+
+		/**
+		 * Adapts the given positions to the given document event. Deleted positions are marked
+		 * as deleted.
+		 *
+		 * @param event the document event
+		 * @param positions the positions overlapping the change, with up-to-date offsets
+		 */
+		void update(DocumentEvent event, List<Position> positions) {
+			fOffset= event.getOffset();
+			fLength= event.getLength();
+			fReplaceLength= (event.getText() == null ? 0 : event.getText().length());
+			fDocument= event.getDocument();
+			try {
+				for (int i= 0, size= positions.size(); i < size; i++) {
+					fPosition= positions.get(i);
+					fOriginalPosition.offset= fPosition.offset;
+					fOriginalPosition.length= fPosition.length;
+
+					if (notDeleted())
+						adaptToReplace();
+				}
+			} finally {
+				fDocument= null;
+				fPosition= null;
+			}
+		}
+	}
+
+	/** The updater implementing the default position update semantics. */
+	private final Updater fUpdater;
+	/** The nodes by position, compared by identity. */
+	private final Map<Position, Node> fNodes= new IdentityHashMap<>();
+	/** The root of the tree, <code>null</code> if the tree is empty. */
+	private Node fRoot;
+	/** The state of the priority generator. */
+	private int fSeed= 0x2545F491;
+
+	/**
+	 * Creates a new empty tree for the given category.
+	 *
+	 * @param category the position category
+	 */
+	PositionTree(String category) {
+		fUpdater= new Updater(category);
+	}
+
+	/**
+	 * Adds the given position. If the tree already contains positions with the same offset, the
+	 * new position becomes the first of them.
+	 *
+	 * @param position the position to add, its offset and length must be up to date
+	 */
+	void add(Position position) {
+		if (fNodes.containsKey(position))
+			return;
+
+		Node node= new Node(position, nextPriority());
+		fNodes.put(position, node);
+
+		if (fRoot == null) {
+			node.delta= position.offset;
+			fRoot= node;
+			return;
+		}
+
+		Node parent= fRoot;
+		int parentOffset= fRoot.delta;
+		while (true) {
+			if (position.offset <= parentOffset) {
+				if (parent.left == null) {
+					parent.left= node;
+					break;
+				}
+				parent= parent.left;
+			} else {
+				if (parent.right == null) {
+					parent.right= node;
+					break;
+				}
+				parent= parent.right;
+			}
+			parentOffset+= parent.delta;
+		}
+		node.parent= parent;
+		node.delta= position.offset - parentOffset;
+		updateToRoot(parent);
+
+		while (node.parent != null && node.parent.priority < node.priority) {
+			if (node.parent.left == node)
+				rotateRight(node.parent);
+			else
+				rotateLeft(node.parent);
+		}
+	}
+
+	/**
+	 * Removes the given position. Does nothing if the position is not contained in this tree.
+	 *
+	 * @param position the position to remove
+	 */
+	void remove(Position position) {
+		Node node= fNodes.remove(position);
+		if (node != null)
+			removeNode(node);
+	}
+
+	/**
+	 * Returns the number of positions in this tree.
+	 *
+	 * @return the number of positions
+	 */
+	int size() {
+		return fRoot == null ? 0 : fRoot.size;
+	}
+
+	/**
+	 * Returns all positions ordered by offset.
+	 *
+	 * @return all positions
+	 */
+	Position[] getPositions() {
+		List<Position> result= new ArrayList<>(size());
+		collect(fRoot, 0, 0, Integer.MAX_VALUE, false, result);
+		return result.toArray(new Position[result.size()]);
+	}
+
+	/**
+	 * Returns the positions that start at or before <code>offset + length</code> and end at or
+	 * after <code>offset</code>, ordered by offset. This is a superset of all positions that are
+	 * inside the given region in the sense of
+	 * {@link AbstractDocument#getPositions(String, int, int, boolean, boolean)}.
+	 *
+	 * @param offset the offset of the region
+	 * @param length the length of the region
+	 * @param startInRegion <code>true</code> if only positions starting at or after
+	 *            <code>offset</code> are of interest
+	 * @return the candidate positions
+	 */
+	List<Position> getPositions(int offset, int length, boolean startInRegion) {
+		List<Position> result= new ArrayList<>();
+		collect(fRoot, 0, offset, offset + length, startInRegion, result);
+		return result;
+	}
+
+	/**
+	 * Returns the index at which a position with the given offset would be inserted, i.e. the
+	 * number of positions with a smaller offset.
+	 *
+	 * @param offset the offset
+	 * @return the index
+	 */
+	int computeIndex(int offset) {
+		int index= 0;
+		int nodeOffset= 0;
+		Node node= fRoot;
+		while (node != null) {
+			nodeOffset+= node.delta;
+			if (nodeOffset < offset) {
+				index+= size(node.left) + 1;
+				node= node.right;
+			} else {
+				node= node.left;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Tells whether this tree contains a position with the given offset and length.
+	 *
+	 * @param offset the offset
+	 * @param length the length
+	 * @return <code>true</code> if such a position exists
+	 */
+	boolean contains(int offset, int length) {
+		List<Position> candidates= getPositions(offset, 0, true);
+		for (int i= 0, size= candidates.size(); i < size; i++) {
+			Position position= candidates.get(i);
+			if (position.offset == offset && position.length == length)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adapts the positions to the given document event with the semantics of
+	 * {@link DefaultPositionUpdater}. Deleted positions are removed from this tree.
+	 *
+	 * @param event the document event
+	 */
+	void update(DocumentEvent event) {
+		if (fRoot == null)
+			return;
+
+		if (event instanceof MultiReplaceEvent) {
+			MultiReplaceEvent multiEvent= (MultiReplaceEvent) event;
+			for (int i= multiEvent.getCount() - 1; i >= 0; i--)
+				update(multiEvent.getEvent(i));
+			return;
+		}
+
+		int offset= event.getOffset();
+		int length= event.getLength();
+		int replaceLength= event.getText() == null ? 0 : event.getText().length();
+
+		/*
+		 * Positions starting at or after the end of the replaced range are moved by the length
+		 * difference, positions ending before the change are not touched. Only the positions in
+		 * between are adapted one by one.
+		 */
+		List<Position> affected= new ArrayList<>();
+		collectAffected(fRoot, 0, offset, offset + length, affected);
+		for (int i= 0, size= affected.size(); i < size; i++)
+			removeNode(fNodes.remove(affected.get(i)));
+
+		if (replaceLength != length)
+			shift(offset + length, replaceLength - length);
+
+		fUpdater.update(event, affected);
+		// add in reverse order to keep the order of positions which end up at the same offset
+		for (int i= affected.size() - 1; i >= 0; i--) {
+			Position position= affected.get(i);
+			if (!position.isDeleted)
+				add(position);
+		}
+	}
+
+	/**
+	 * Collects the positions of the given subtree in the given range, see
+	 * {@link #getPositions(int, int, boolean)}, and writes their offsets.
+	 *
+	 * @param node the subtree root
+	 * @param parentOffset the offset of the parent node
+	 * @param from the start of the range
+	 * @param to the end of the range
+	 * @param startInRegion <code>true</code> if positions must start at or after
+	 *            <code>from</code>
+	 * @param result the list to add the positions to
+	 */
+	private void collect(Node node, int parentOffset, int from, int to, boolean startInRegion, List<Position> result) {
+		if (node == null)
+			return;
+
+		int offset= parentOffset + node.delta;
+		if (offset + node.maxEnd < from)
+			return;
+
+		if (!startInRegion || offset >= from)
+			collect(node.left, offset, from, to, startInRegion, result);
+
+		if (offset > to)
+			return;
+
+		Position position= node.position;
+		if ((!startInRegion || offset >= from) && offset + position.length >= from) {
+			position.offset= offset;
+			result.add(position);
+		}
+
+		collect(node.right, offset, from, to, startInRegion, result);
+	}
+
+	/**
+	 * Collects the positions that start before <code>end</code> and whose last character (or
+	 * offset, if empty) is at or after <code>start</code>, and writes their offsets.
+	 *
+	 * @param node the subtree root
+	 * @param parentOffset the offset of the parent node
+	 * @param start the start of the change
+	 * @param end the end of the replaced range
+	 * @param result the list to add the positions to
+	 */
+	private void collectAffected(Node node, int parentOffset, int start, int end, List<Position> result) {
+		if (node == null)
+			return;
+
+		int offset= parentOffset + node.delta;
+		if (offset + node.maxEnd < start)
+			return;
+
+		collectAffected(node.left, offset, start, end, result);
+
+		if (offset >= end)
+			return;
+
+		Position position= node.position;
+		if (Math.max(offset, offset + position.length - 1) >= start) {
+			position.offset= offset;
+			result.add(position);
+		}
+
+		collectAffected(node.right, offset, start, end, result);
+	}
+
+	/**
+	 * Moves all positions with an offset at or after <code>from</code> by <code>delta</code>.
+	 * Only the nodes on the search path of <code>from</code> need to be touched: every other node
+	 * is on the same side of <code>from</code> as its parent.
+	 *
+	 * @param from the offset from which on positions are moved
+	 * @param delta the number of characters to move
+	 */
+	private void shift(int from, int delta) {
+		Node node= fRoot;
+		Node last= null;
+		int parentOffset= 0;
+		int parentShift= 0;
+		while (node != null) {
+			int offset= parentOffset + node.delta;
+			int shift= offset >= from ? delta : 0;
+			node.delta+= shift - parentShift;
+
+			last= node;
+			parentOffset= offset;
+			parentShift= shift;
+			node= offset >= from ? node.left : node.right;
+		}
+		updateToRoot(last);
+	}
+
+	/**
+	 * Removes the given node from the tree by rotating it down to a leaf.
+	 *
+	 * @param node the node to remove
+	 */
+	private void removeNode(Node node) {
+		while (node.left != null || node.right != null) {
+			if (node.right == null || node.left != null && node.left.priority > node.right.priority)
+				rotateRight(node);
+			else
+				rotateLeft(node);
+		}
+
+		Node parent= node.parent;
+		if (parent == null) {
+			fRoot= null;
+		} else {
+			if (parent.left == node)
+				parent.left= null;
+			else
+				parent.right= null;
+			node.parent= null;
+			updateToRoot(parent);
+		}
+	}
+
+	/**
+	 * Rotates the left child of the given node up.
+	 *
+	 * @param node the node to rotate down
+	 */
+	private void rotateRight(Node node) {
+		Node child= node.left;
+		int childDelta= child.delta;
+
+		Node moved= child.right;
+		node.left= moved;
+		if (moved != null) {
+			moved.delta+= childDelta;
+			moved.parent= node;
+		}
+
+		child.delta= node.delta + childDelta;
+		node.delta= -childDelta;
+		replaceChild(node, child);
+		child.right= node;
+		node.parent= child;
+
+		updateNode(node);
+		updateNode(child);
+	}
+
+	/**
+	 * Rotates the right child of the given node up.
+	 *
+	 * @param node the node to rotate down
+	 */
+	private void rotateLeft(Node node) {
+		Node child= node.right;
+		int childDelta= child.delta;
+
+		Node moved= child.left;
+		node.right= moved;
+		if (moved != null) {
+			moved.delta+= childDelta;
+			moved.parent= node;
+		}
+
+		child.delta= node.delta + childDelta;
+		node.delta= -childDelta;
+		replaceChild(node, child);
+		child.left= node;
+		node.parent= child;
+
+		updateNode(node);
+		updateNode(child);
+	}
+
+	/**
+	 * Puts <code>child</code> where <code>node</code> is in the tree.
+	 *
+	 * @param node the node to replace
+	 * @param child the replacement
+	 */
+	private void replaceChild(Node node, Node child) {
+		Node parent= node.parent;
+		child.parent= parent;
+		if (parent == null)
+			fRoot= child;
+		else if (parent.left == node)
+			parent.left= child;
+		else
+			parent.right= child;
+	}
+
+	/**
+	 * Recomputes the size and maximal end of the given node and all its ancestors.
+	 *
+	 * @param node the node to start at, may be <code>null</code>
+	 */
+	private void updateToRoot(Node node) {
+		while (node != null) {
+			updateNode(node);
+			node= node.parent;
+		}
+	}
+
+	/**
+	 * Recomputes the size and maximal end of the given node from its children.
+	 *
+	 * @param node the node
+	 */
+	private static void updateNode(Node node) {
+		int size= 1;
+		int maxEnd= node.position.length;
+		Node left= node.left;
+		if (left != null) {
+			size+= left.size;
+			maxEnd= Math.max(maxEnd, left.delta + left.maxEnd);
+		}
+		Node right= node.right;
+		if (right != null) {
+			size+= right.size;
+			maxEnd= Math.max(maxEnd, right.delta + right.maxEnd);
+		}
+		node.size= size;
+		node.maxEnd= maxEnd;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * Returns the next pseudo-random treap priority.
+	 *
+	 * @return the priority
+	 */
+	private int nextPriority() {
+		// xorshift, good enough for balancing
+		int seed= fSeed;
+		seed^= seed << 13;
+		seed^= seed >>> 17;
+		seed^= seed << 5;
+		fSeed= seed;
+		return seed;
+	}
+}
@@ -0,0 +1,420 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text;
+
+
+/**
+ * Implements a text store that keeps its content in a balanced tree of pieces. Each piece refers
+ * to a range of an immutable string, either the string passed to {@link #set(String)} or the text
+ * of a later {@link #replace(int, int, String)}. A change never copies unchanged content, it
+ * only splits and re-links the pieces around the change.
+ * <p>
+ * <strong>Performance:</strong> {@link #replace(int, int, String)} performs in <i>O(log n)</i>
+ * where <var>n</var> is the number of pieces, independent of the distance from the previous
+ * change. {@link #set(String)} performs in <i>O(1)</i>, {@link #get(int)} in <i>O(log n)</i>
+ * (<i>O(1)</i> when reading sequentially), and {@linkplain #get(int, int) get(int,
+ * <var>length</var>)} in <i>O(log n + length)</i>. Unlike {@link GapTextStore}, this store is
+ * meant for very large documents where edits are spread over the whole content.
+ * </p>
+ * <p>
+ * The tree nodes are never modified once they are created. Therefore {@link #snapshot()} is an
+ * <i>O(1)</i> operation that shares all of its structure with this store.
+ * </p>
+ * <p>
+ * This class is not intended to be subclassed.
+ * </p>
+ *
+ * @see GapTextStore
+ * @since 3.7
+ * @noextend This class is not intended to be subclassed by clients.
+ */
+public class RopeTextStore implements ITextStore {
+	/*
+	 * Persistent AVL tree of pieces
+	 *
+	 * Leaves are the pieces, inner nodes concatenate their two subtrees. Every node knows the
+	 * number of characters and its height, so character offsets can be resolved in O(log n) and the
+	 * tree can be balanced with the usual AVL rotations.
+	 *
+	 * A replace splits the tree at the start and the end of the replaced range and joins the
+	 * remaining parts with a new piece for the inserted text. Both split and join create new nodes
+	 * along a single path and share everything else, which makes the tree persistent: an old root
+	 * still describes the old content.
+	 *
+	 * Typing would create one piece per keystroke. To keep the tree compact, a short piece is
+	 * merged with its short neighbor when they are joined, copying at most MERGE_LIMIT characters.
+	 */
+
+	/**
+	 * The maximum length of a piece that results from merging two adjacent short pieces.
+	 */
+	private static final int MERGE_LIMIT= 512;
+
+	/**
+	 * A node of the piece tree. A leaf references the range <code>[start, start + length)</code>
+	 * of its text, an inner node has exactly two children and no text.
+	 */
+	private static final class Node {
+		/** The text referenced by a leaf, <code>null</code> for inner nodes. */
+		final String text;
+		/** The start of the piece in <code>text</code>, <code>0</code> for inner nodes. */
+		final int start;
+		/** The number of characters covered by this node. */
+		final int length;
+		/** The height of this node, leaves have height <code>1</code>. */
+		final int height;
+		/** The left subtree, <code>null</code> for leaves. */
+		final Node left;
+		/** The right subtree, <code>null</code> for leaves. */
+		final Node right;
+
+		/**
+		 * Creates a new leaf.
+		 *
+		 * @param text the referenced text
+		 * @param start the start of the piece in <code>text</code>
+		 * @param length the length of the piece (&gt;&nbsp;0)
+		 */
+		Node(String text, int start, int length) {
+			this.text= text;
+			this.start= start;
+			this.length= length;
+			this.height= 1;
+			this.left= null;
+			this.right= null;
+		}
+
+		/**
+		 * Creates a new inner node.
+		 *
+		 * @param left the left subtree, not <code>null</code>
+		 * @param right the right subtree, not <code>null</code>
+		 */
+		Node(Node left, Node right) {
+			this.text= null;
+			this.start= 0;
+			this.length= left.length + right.length;
+			this.height= Math.max(left.height, right.height) + 1;
+			this.left= left;
+			this.right= right;
+		}
+
+		boolean isLeaf() {
+			return text != null;
+		}
+
+		@Override
+		public String toString() {
+			if (isLeaf())
+				return "[" + text.substring(start, start + length) + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+			return "(" + left + " " + right + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	/**
+	 * A leaf and its offset in the store.
+	 */
+	private static final class Cursor {
+		/** The leaf. */
+		final Node leaf;
+		/** The offset of the leaf in the store. */
+		final int offset;
+
+		Cursor(Node leaf, int offset) {
+			this.leaf= leaf;
+			this.offset= offset;
+		}
+	}
+
+	/** The root of the piece tree, <code>null</code> if the store is empty. */
+	private Node fRoot;
+	/**
+	 * The leaf last accessed by {@link #get(int)}, <code>null</code> if none. The leaf and its
+	 * offset are kept in a single immutable object so that concurrent readers of an unmodified
+	 * store never see a leaf with the offset of another one.
+	 */
+	private Cursor fCursor;
+
+	/**
+	 * Creates a new empty text store.
+	 */
+	public RopeTextStore() {
+	}
+
+	/**
+	 * Creates a new text store that shares the given tree.
+	 *
+	 * @param root the root of the tree, may be <code>null</code>
+	 */
+	private RopeTextStore(Node root) {
+		fRoot= root;
+	}
+
+	/**
+	 * Returns a copy of this text store. The copy shares all of its structure with this store and
+	 * is created in <i>O(1)</i>. Changes to either store are not visible in the other one.
+	 *
+	 * @return a copy of this text store
+	 */
+	public RopeTextStore snapshot() {
+		return new RopeTextStore(fRoot);
+	}
+
+	@Override
+	public char get(int offset) {
+		Cursor cursor= fCursor;
+		if (cursor == null || offset < cursor.offset || offset >= cursor.offset + cursor.leaf.length) {
+			if (offset < 0 || offset >= getLength())
+				throw new IndexOutOfBoundsException(String.valueOf(offset));
+
+			Node leaf= fRoot;
+			int leafOffset= 0;
+			while (!leaf.isLeaf()) {
+				int leftLength= leaf.left.length;
+				if (offset - leafOffset < leftLength) {
+					leaf= leaf.left;
+				} else {
+					leafOffset+= leftLength;
+					leaf= leaf.right;
+				}
+			}
+			cursor= new Cursor(leaf, leafOffset);
+			fCursor= cursor;
+		}
+		return cursor.leaf.text.charAt(cursor.leaf.start + offset - cursor.offset);
+	}
+
+	@Override
+	public String get(int offset, int length) {
+		if (offset < 0 || length < 0 || offset + length > getLength())
+			throw new IndexOutOfBoundsException();
+		if (length == 0)
+			return ""; //$NON-NLS-1$
+
+		Node node= fRoot;
+		int relative= offset;
+		// descend as long as the range is covered by a single subtree
+		while (!node.isLeaf()) {
+			int leftLength= node.left.length;
+			if (relative + length <= leftLength) {
+				node= node.left;
+			} else if (relative >= leftLength) {
+				relative-= leftLength;
+				node= node.right;
+			} else {
+				StringBuilder buffer= new StringBuilder(length);
+				append(node, relative, length, buffer);
+				return buffer.toString();
+			}
+		}
+		return node.text.substring(node.start + relative, node.start + relative + length);
+	}
+
+	/**
+	 * Appends the given range of the subtree to the buffer.
+	 *
+	 * @param node the subtree, not <code>null</code>
+	 * @param offset the offset of the range relative to the subtree
+	 * @param length the length of the range
+	 * @param buffer the buffer to append to
+	 */
+	private static void append(Node node, int offset, int length, StringBuilder buffer) {
+		while (!node.isLeaf()) {
+			int leftLength= node.left.length;
+			if (offset < leftLength) {
+				int leftPart= Math.min(length, leftLength - offset);
+				append(node.left, offset, leftPart, buffer);
+				length-= leftPart;
+				if (length == 0)
+					return;
+				offset= 0;
+			} else {
+				offset-= leftLength;
+			}
+			node= node.right;
+		}
+		buffer.append(node.text, node.start + offset, node.start + offset + length);
+	}
+
+	@Override
+	public int getLength() {
+		return fRoot == null ? 0 : fRoot.length;
+	}
+
+	@Override
+	public void replace(int offset, int length, String text) {
+		if (offset < 0 || length < 0 || offset + length > getLength())
+			throw new IndexOutOfBoundsException();
+
+		Node[] first= split(fRoot, offset);
+		Node[] second= split(first[1], length);
+		Node inserted= text == null || text.length() == 0 ? null : new Node(text, 0, text.length());
+
+		fRoot= concat(concat(first[0], inserted), second[1]);
+		fCursor= null;
+	}
+
+	@Override
+	public void set(String text) {
+		fRoot= text == null || text.length() == 0 ? null : new Node(text, 0, text.length());
+		fCursor= null;
+	}
+
+	/**
+	 * Splits the given tree at the given offset.
+	 *
+	 * @param node the tree to split, may be <code>null</code>
+	 * @param offset the split offset (<code>0&nbsp;&lt;=&nbsp;offset&nbsp;&lt;=&nbsp;length(node)</code>)
+	 * @return the tree before and the tree after the offset, either may be <code>null</code>
+	 */
+	private static Node[] split(Node node, int offset) {
+		if (offset == 0)
+			return new Node[] { null, node };
+		if (offset == node.length)
+			return new Node[] { node, null };
+
+		if (node.isLeaf())
+			return new Node[] { new Node(node.text, node.start, offset), new Node(node.text, node.start + offset, node.length - offset) };
+
+		int leftLength= node.left.length;
+		if (offset < leftLength) {
+			Node[] parts= split(node.left, offset);
+			parts[1]= join(parts[1], node.right);
+			return parts;
+		}
+		if (offset > leftLength) {
+			Node[] parts= split(node.right, offset - leftLength);
+			parts[0]= join(node.left, parts[0]);
+			return parts;
+		}
+		return new Node[] { node.left, node.right };
+	}
+
+	/**
+	 * Concatenates the given trees like {@link #join(Node, Node)}, but merges adjacent short pieces
+	 * at the boundary.
+	 *
+	 * @param left the left tree, may be <code>null</code>
+	 * @param right the right tree, may be <code>null</code>
+	 * @return the concatenated tree
+	 */
+	private static Node concat(Node left, Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+
+		if (right.isLeaf() && right.length < MERGE_LIMIT) {
+			Node merged= mergeLast(left, right);
+			if (merged != null)
+				return merged;
+		}
+		if (left.isLeaf() && left.length < MERGE_LIMIT) {
+			Node merged= mergeFirst(left, right);
+			if (merged != null)
+				return merged;
+		}
+		return join(left, right);
+	}
+
+	/**
+	 * Appends a short piece to the last piece of a tree if the merged piece is short enough.
+	 *
+	 * @param node the tree, not <code>null</code>
+	 * @param piece the piece to append
+	 * @return the new tree, or <code>null</code> if the pieces cannot be merged
+	 */
+	private static Node mergeLast(Node node, Node piece) {
+		if (node.isLeaf()) {
+			if (node.length + piece.length > MERGE_LIMIT)
+				return null;
+			return merge(node, piece);
+		}
+		Node right= mergeLast(node.right, piece);
+		return right == null ? null : new Node(node.left, right);
+	}
+
+	/**
+	 * Prepends a short piece to the first piece of a tree if the merged piece is short enough.
+	 *
+	 * @param piece the piece to prepend
+	 * @param node the tree, not <code>null</code>
+	 * @return the new tree, or <code>null</code> if the pieces cannot be merged
+	 */
+	private static Node mergeFirst(Node piece, Node node) {
+		if (node.isLeaf()) {
+			if (node.length + piece.length > MERGE_LIMIT)
+				return null;
+			return merge(piece, node);
+		}
+		Node left= mergeFirst(piece, node.left);
+		return left == null ? null : new Node(left, node.right);
+	}
+
+	/**
+	 * Copies two pieces into a new piece.
+	 *
+	 * @param first the first piece
+	 * @param second the second piece
+	 * @return the merged piece
+	 */
+	private static Node merge(Node first, Node second) {
+		StringBuilder buffer= new StringBuilder(first.length + second.length);
+		buffer.append(first.text, first.start, first.start + first.length);
+		buffer.append(second.text, second.start, second.start + second.length);
+		return new Node(buffer.toString(), 0, buffer.length());
+	}
+
+	/**
+	 * Concatenates two balanced trees into a balanced tree. Performs in <i>O(|h1 - h2|)</i> where
+	 * <var>h1</var> and <var>h2</var> are the heights of the trees.
+	 *
+	 * @param left the left tree, may be <code>null</code>
+	 * @param right the right tree, may be <code>null</code>
+	 * @return the concatenated tree
+	 */
+	private static Node join(Node left, Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+
+		if (left.height > right.height + 1)
+			return balance(left.left, join(left.right, right));
+		if (right.height > left.height + 1)
+			return balance(join(left, right.left), right.right);
+		return new Node(left, right);
+	}
+
+	/**
+	 * Creates a node with the given children, applying a single or double rotation if their
+	 * heights differ by two.
+	 *
+	 * @param left the left child, not <code>null</code>
+	 * @param right the right child, not <code>null</code>
+	 * @return the balanced node
+	 */
+	private static Node balance(Node left, Node right) {
+		if (left.height > right.height + 1) {
+			if (left.left.height >= left.right.height)
+				return new Node(left.left, new Node(left.right, right));
+			Node middle= left.right;
+			return new Node(new Node(left.left, middle.left), new Node(middle.right, right));
+		}
+		if (right.height > left.height + 1) {
+			if (right.right.height >= right.left.height)
+				return new Node(new Node(left, right.left), right.right);
+			Node middle= right.left;
+			return new Node(new Node(left, middle.left), new Node(middle.right, right.right));
+		}
+		return new Node(left, right);
+	}
+}
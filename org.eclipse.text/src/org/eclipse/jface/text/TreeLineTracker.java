@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.RecursiveTask;
 
 import org.eclipse.core.runtime.Assert;
 
@@ -38,7 +39,8 @@ import org.eclipse.jface.text.AbstractLineTracker.DelimiterInfo;
  * <strong>Performance:</strong> The query operations perform in <i>O(log n)</i> where <var>n</var>
  * is the number of lines in the document. The modification operations roughly perform in <i>O(l *
  * log n)</i> where <var>n</var> is the number of lines in the document and <var>l</var> is the
- * sum of the number of removed, added or modified lines.
+ * sum of the number of removed, added or modified lines. {@link #set(String)} builds a balanced
+ * tree bottom-up in <i>O(n)</i>, scanning and building in parallel for large texts.
  * </p>
  *
  * @since 3.2
@@ -153,6 +155,112 @@ abstract class TreeLineTracker implements ILineTracker {
 		}
 	}
 
+	/**
+	 * Builds a perfectly balanced subtree for a range of lines. Large ranges are built in
+	 * parallel.
+	 */
+	private static final class TreeBuilder extends RecursiveTask<Node> {
+		private static final long serialVersionUID= 1L;
+
+		/** The number of lines from which on the two subtrees of a node are built in parallel. */
+		private static final int PARALLEL_THRESHOLD= 1 << 14;
+
+		private final int[] fOffsets;
+		private final String[] fDelimiters;
+		private final String fText;
+		private final int fFrom;
+		private final int fTo;
+
+		/**
+		 * Creates a builder for the lines <code>from</code> (inclusive) to <code>to</code>
+		 * (exclusive).
+		 *
+		 * @param offsets the line offsets, followed by the text length
+		 * @param delimiters the line delimiters, or <code>null</code> to compute them from the
+		 *            text using {@link ParallelLineScanner#getDelimiter(String, int)}
+		 * @param text the text, only used if <code>delimiters</code> is <code>null</code>
+		 * @param from the first line
+		 * @param to the line after the last line
+		 */
+		TreeBuilder(int[] offsets, String[] delimiters, String text, int from, int to) {
+			fOffsets= offsets;
+			fDelimiters= delimiters;
+			fText= text;
+			fFrom= from;
+			fTo= to;
+		}
+
+		@Override
+		protected Node compute() {
+			if (fTo - fFrom < PARALLEL_THRESHOLD)
+				return build(fFrom, fTo);
+
+			int mid= (fFrom + fTo) >>> 1;
+			TreeBuilder left= new TreeBuilder(fOffsets, fDelimiters, fText, fFrom, mid);
+			left.fork();
+			Node right= new TreeBuilder(fOffsets, fDelimiters, fText, mid + 1, fTo).compute();
+			return createNode(mid, fFrom, fTo, left.join(), right);
+		}
+
+		/**
+		 * Builds the subtree for the given lines.
+		 *
+		 * @param from the first line
+		 * @param to the line after the last line
+		 * @return the root of the subtree, <code>null</code> if the range is empty
+		 */
+		private Node build(int from, int to) {
+			if (from == to)
+				return null;
+
+			int mid= (from + to) >>> 1;
+			return createNode(mid, from, to, build(from, mid), build(mid + 1, to));
+		}
+
+		/**
+		 * Creates the node of the given line, which is the root of the subtree for the given
+		 * lines.
+		 *
+		 * @param line the line of the node
+		 * @param from the first line of the subtree
+		 * @param to the line after the last line of the subtree
+		 * @param left the left subtree
+		 * @param right the right subtree
+		 * @return the node
+		 */
+		private Node createNode(int line, int from, int to, Node left, Node right) {
+			String delimiter;
+			if (line == fOffsets.length - 2)
+				delimiter= NO_DELIM;
+			else if (fDelimiters != null)
+				delimiter= fDelimiters[line];
+			else
+				delimiter= ParallelLineScanner.getDelimiter(fText, fOffsets[line + 1]);
+
+			Node node= new Node(fOffsets[line + 1] - fOffsets[line], delimiter);
+			node.line= line - from;
+			node.offset= fOffsets[line] - fOffsets[from];
+			node.balance= (byte) (height(to - line - 1) - height(line - from));
+			node.left= left;
+			node.right= right;
+			if (left != null)
+				left.parent= node;
+			if (right != null)
+				right.parent= node;
+			return node;
+		}
+
+		/**
+		 * Returns the height of a perfectly balanced tree.
+		 *
+		 * @param nodes the number of nodes of the tree
+		 * @return the height of the tree
+		 */
+		private static int height(int nodes) {
+			return 32 - Integer.numberOfLeadingZeros(nodes);
+		}
+	}
+
 	/**
 	 * The root node of the tree, never <code>null</code>.
 	 */
@@ -169,34 +277,41 @@ abstract class TreeLineTracker implements ILineTracker {
 	 *
 	 * @param tracker the list line tracker
 	 */
-    TreeLineTracker(ListLineTracker tracker) {
-    	final List<Line> lines= tracker.getLines();
-    	final int n= lines.size();
-    	if (n == 0)
-    		return;
-
-    	Line line= lines.get(0);
-    	String delim= line.delimiter;
-    	if (delim == null)
-    		delim= NO_DELIM;
-    	int length= line.length;
-    	fRoot= new Node(length, delim);
-    	Node node= fRoot;
-
-		for (int i= 1; i < n; i++) {
-	        line= lines.get(i);
-	        delim= line.delimiter;
-	        if (delim == null)
-	        	delim= NO_DELIM;
-	        length= line.length;
-			node= insertAfter(node, length, delim);
-        }
-
-		if (node.delimiter != NO_DELIM)
-			insertAfter(node, 0, NO_DELIM);
+	TreeLineTracker(ListLineTracker tracker) {
+		final List<Line> lines= tracker.getLines();
+		final int n= lines.size();
+		if (n == 0)
+			return;
+
+		Line last= lines.get(n - 1);
+		int textLength= last.offset + last.length;
+		int count= last.delimiter != null ? n + 1 : n;
+		int[] offsets= new int[count + 1];
+		String[] delimiters= new String[count];
+		for (int i= 0; i < n; i++) {
+			Line line= lines.get(i);
+			offsets[i]= line.offset;
+			delimiters[i]= line.delimiter;
+		}
+		offsets[n]= textLength;
+		offsets[count]= textLength;
+
+		fRoot= new TreeBuilder(offsets, delimiters, null, 0, count).invoke();
 
 		if (ASSERT) checkTree();
-    }
+	}
+
+	/**
+	 * Tells whether this tracker recognizes exactly the delimiters of {@link DefaultLineTracker},
+	 * in which case {@link #set(String)} scans the text in parallel instead of calling
+	 * {@link #nextDelimiterInfo(String, int)}.
+	 *
+	 * @return <code>true</code> if this tracker uses the default delimiters
+	 * @since 3.7
+	 */
+	boolean hasDefaultDelimiters() {
+		return false;
+	}
 
 	/**
 	 * Returns the node (line) including a certain offset. If the offset is between two
@@ -1213,12 +1328,34 @@ abstract class TreeLineTracker implements ILineTracker {
 
 	@Override
 	public final void set(String text) {
-		fRoot= new Node(0, NO_DELIM);
-		try {
-			replace(0, 0, text);
-		} catch (BadLocationException x) {
-			throw new InternalError();
+		if (text == null)
+			text= ""; //$NON-NLS-1$
+
+		int[] offsets;
+		String[] delimiters= null;
+		if (hasDefaultDelimiters()) {
+			offsets= ParallelLineScanner.computeLineOffsets(text);
+		} else {
+			offsets= new int[16];
+			delimiters= new String[16];
+			int lines= 1;
+			DelimiterInfo info= nextDelimiterInfo(text, 0);
+			while (info != null && info.delimiterIndex > -1) {
+				if (lines + 1 == offsets.length) {
+					offsets= Arrays.copyOf(offsets, offsets.length * 2);
+					delimiters= Arrays.copyOf(delimiters, delimiters.length * 2);
+				}
+				delimiters[lines - 1]= info.delimiter;
+				offsets[lines++]= info.delimiterIndex + info.delimiterLength;
+				info= nextDelimiterInfo(text, offsets[lines - 1]);
+			}
+			offsets[lines]= text.length();
+			offsets= Arrays.copyOf(offsets, lines + 1);
 		}
+
+		fRoot= new TreeBuilder(offsets, delimiters, text, 0, offsets.length - 1).invoke();
+
+		if (ASSERT) checkTree();
 	}
 
 	@Override
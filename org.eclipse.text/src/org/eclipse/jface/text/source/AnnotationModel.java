@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -118,14 +118,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		}
 
 		private boolean isWithinRegion(int start, int length) {
-			if (fCanStartBefore && fCanEndAfter)
-				return fRegion.overlapsWith(start, length);
-			else if (fCanStartBefore)
-				return fRegion.includes(start + length - (length > 0 ? 1 : 0));
-			else if (fCanEndAfter)
-				return fRegion.includes(start);
-			else
-				return fRegion.includes(start) && fRegion.includes(start + length - (length > 0 ? 1 : 0));
+			return AnnotationModel.isWithinRegion(fRegion, start, length, fCanStartBefore, fCanEndAfter);
 		}
 	}
 
@@ -234,6 +227,71 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		}
 	}
 
+	/**
+	 * An iterator over the annotation iterators of a model and its attachments. The iterator of an
+	 * attachment is only requested when the annotations before it have been consumed.
+	 *
+	 * @since 3.7
+	 */
+	private static final class AttachmentIterators implements Iterator<Iterator<Annotation>> {
+
+		/** The iterator of the model itself, <code>null</code> once returned. */
+		private Iterator<Annotation> fFirst;
+		/** The attachments of the model. */
+		private final IAnnotationModel[] fAttachments;
+		/** The index of the next attachment. */
+		private int fIndex;
+		/** The region of the annotations, <code>null</code> for all annotations. */
+		private final Position fRegion;
+		private final boolean fCanStartBefore;
+		private final boolean fCanEndAfter;
+
+		/**
+		 * Creates a new iterator.
+		 *
+		 * @param first the iterator of the model itself
+		 * @param attachments the attachments of the model
+		 * @param region the region of the annotations or <code>null</code> for all annotations
+		 * @param canStartBefore include annotations starting before region
+		 * @param canEndAfter include annotations ending after region
+		 */
+		public AttachmentIterators(Iterator<Annotation> first, IAnnotationModel[] attachments, Position region, boolean canStartBefore, boolean canEndAfter) {
+			fFirst= first;
+			fAttachments= attachments;
+			fRegion= region;
+			fCanStartBefore= canStartBefore;
+			fCanEndAfter= canEndAfter;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return fFirst != null || fIndex < fAttachments.length;
+		}
+
+		@Override
+		public Iterator<Annotation> next() {
+			if (fFirst != null) {
+				Iterator<Annotation> first= fFirst;
+				fFirst= null;
+				return first;
+			}
+			if (fIndex >= fAttachments.length)
+				throw new NoSuchElementException();
+
+			IAnnotationModel attachment= fAttachments[fIndex++];
+			if (fRegion == null)
+				return attachment.getAnnotationIterator();
+			if (attachment instanceof IAnnotationModelExtension2)
+				return ((IAnnotationModelExtension2) attachment).getAnnotationIterator(fRegion.getOffset(), fRegion.getLength(), fCanStartBefore, fCanEndAfter);
+			return new RegionIterator(attachment.getAnnotationIterator(), attachment, fRegion.getOffset(), fRegion.getLength(), fCanStartBefore, fCanEndAfter);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
 	/**
 	 * Internal annotation model listener for forwarding annotation model changes from the attached models to the
 	 * registered listeners of the outer most annotation model.
@@ -308,15 +366,59 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 
 			@Override
 			public void documentAboutToBeChanged(DocumentEvent event) {
+				aboutToUpdatePositions(event);
 			}
 
 			@Override
 			public void documentChanged(DocumentEvent event) {
 				fDocumentChanged= true;
+				positionsUpdated(event);
 			}
 		};
 	}
 
+	/**
+	 * Tells whether a position is inside a region as defined by {@link IAnnotationModelExtension2}.
+	 *
+	 * @param region the region
+	 * @param start the offset of the position
+	 * @param length the length of the position
+	 * @param canStartBefore whether the position can start before the region
+	 * @param canEndAfter whether the position can end after the region
+	 * @return <code>true</code> if the position is inside the region
+	 * @since 3.7
+	 */
+	static boolean isWithinRegion(Position region, int start, int length, boolean canStartBefore, boolean canEndAfter) {
+		if (canStartBefore && canEndAfter)
+			return region.overlapsWith(start, length);
+		else if (canStartBefore)
+			return region.includes(start + length - (length > 0 ? 1 : 0));
+		else if (canEndAfter)
+			return region.includes(start);
+		else
+			return region.includes(start) && region.includes(start + length - (length > 0 ? 1 : 0));
+	}
+
+	/**
+	 * Called when the connected document is about to be changed, before the positions are
+	 * updated. Does nothing by default.
+	 *
+	 * @param event the document event
+	 * @since 3.7
+	 */
+	void aboutToUpdatePositions(DocumentEvent event) {
+	}
+
+	/**
+	 * Called when the connected document has been changed, after the positions have been
+	 * updated. Does nothing by default.
+	 *
+	 * @param event the document event
+	 * @since 3.7
+	 */
+	void positionsUpdated(DocumentEvent event) {
+	}
+
 	/**
 	 * Returns the annotation map internally used by this annotation model.
 	 *
@@ -423,7 +525,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 			fAnnotations.put(annotation, position);
 			fPositions.put(position, annotation);
 			synchronized (getLockObject()) {
-				getAnnotationModelEvent().annotationAdded(annotation);
+				getAnnotationModelEvent().annotationAdded(annotation, position);
 			}
 
 			if (fireModelChanged)
@@ -636,14 +738,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		if (fDocumentChanged) {
 			fDocumentChanged= false;
 
-			ArrayList<Annotation> deleted= new ArrayList<>();
-			Iterator<Annotation> e= getAnnotationMap().keySetIterator();
-			while (e.hasNext()) {
-				Annotation a= e.next();
-				Position p= fAnnotations.get(a);
-				if (p == null || p.isDeleted())
-					deleted.add(a);
-			}
+			List<Annotation> deleted= getDeletedAnnotations();
 
 			if (fireModelChanged && forkNotification) {
 				removeAnnotations(deleted, false, false);
@@ -661,6 +756,25 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		}
 	}
 
+	/**
+	 * Returns the annotations whose associated positions have been deleted. Called by the cleanup
+	 * after the document has been changed. Checks all annotations by default.
+	 *
+	 * @return the annotations whose positions have been deleted
+	 * @since 3.7
+	 */
+	List<Annotation> getDeletedAnnotations() {
+		ArrayList<Annotation> deleted= new ArrayList<>();
+		Iterator<Annotation> e= getAnnotationMap().keySetIterator();
+		while (e.hasNext()) {
+			Annotation a= e.next();
+			Position p= fAnnotations.get(a);
+			if (p == null || p.isDeleted())
+				deleted.add(a);
+		}
+		return deleted;
+	}
+
 	@Override
 	public Iterator<Annotation> getAnnotationIterator() {
 		return getAnnotationIterator(true, true);
@@ -678,18 +792,8 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		if (fAttachments.isEmpty())
 			return regionIterator;
 
-		List<Iterator<Annotation>> iterators= new ArrayList<>(fAttachments.size() + 1);
-		iterators.add(regionIterator);
-		Iterator<Object> it= fAttachments.keySet().iterator();
-		while (it.hasNext()) {
-			IAnnotationModel attachment= fAttachments.get(it.next());
-			if (attachment instanceof IAnnotationModelExtension2)
-				iterators.add(((IAnnotationModelExtension2) attachment).getAnnotationIterator(offset, length, canStartBefore, canEndAfter));
-			else
-				iterators.add(new RegionIterator(attachment.getAnnotationIterator(), attachment, offset, length, canStartBefore, canEndAfter));
-		}
-
-		return new MetaIterator<>(iterators.iterator());
+		IAnnotationModel[] attachments= fAttachments.values().toArray(new IAnnotationModel[fAttachments.size()]);
+		return new MetaIterator<>(new AttachmentIterators(regionIterator, attachments, new Position(offset, length), canStartBefore, canEndAfter));
 	}
 
 	/**
@@ -703,7 +807,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	 * @see IAnnotationModelExtension2#getAnnotationIterator(int, int, boolean, boolean)
 	 * @since 3.4
 	 */
-	private Iterator<Annotation> getRegionAnnotationIterator(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+	Iterator<Annotation> getRegionAnnotationIterator(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
 		if (!(fDocument instanceof AbstractDocument))
 			return new RegionIterator(getAnnotationIterator(true), this, offset, length, canStartBefore, canEndAfter);
 
@@ -735,13 +839,8 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 		if (!recurse || fAttachments.isEmpty())
 			return iter;
 
-		List<Iterator<Annotation>> iterators= new ArrayList<>(fAttachments.size() + 1);
-		iterators.add(iter);
-		Iterator<Object> it= fAttachments.keySet().iterator();
-		while (it.hasNext())
-			iterators.add(fAttachments.get(it.next()).getAnnotationIterator());
-
-		return new MetaIterator<>(iterators.iterator());
+		IAnnotationModel[] attachments= fAttachments.values().toArray(new IAnnotationModel[fAttachments.size()]);
+		return new MetaIterator<>(new AttachmentIterators(iter, attachments, null, false, false));
 	}
 
 	/**
@@ -866,6 +965,9 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 			if (p != null) {
 
 				if (position.getOffset() != p.getOffset() || position.getLength() != p.getLength()) {
+					synchronized (getLockObject()) {
+						getAnnotationModelEvent().addAffectedRange(p.getOffset(), p.getLength());
+					}
 					fDocument.removePosition(p);
 					p.setOffset(position.getOffset());
 					p.setLength(position.getLength());
@@ -876,7 +978,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 					}
 				}
 				synchronized (getLockObject()) {
-					getAnnotationModelEvent().annotationChanged(annotation);
+					getAnnotationModelEvent().annotationChanged(annotation, p);
 				}
 				if (fireModelChanged)
 					fireModelChanged();
@@ -905,7 +1007,7 @@ public class AnnotationModel implements IAnnotationModel, IAnnotationModelExtens
 	protected void modifyAnnotation(Annotation annotation, boolean fireModelChanged) {
 		if (fAnnotations.containsKey(annotation)) {
 			synchronized (getLockObject()) {
-				getAnnotationModelEvent().annotationChanged(annotation);
+				getAnnotationModelEvent().annotationChanged(annotation, fAnnotations.get(annotation));
 			}
 			if (fireModelChanged)
 				fireModelChanged();
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,12 +11,13 @@
 package org.eclipse.jface.text.source;
 
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 
+import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
 
 
 /**
@@ -26,6 +27,10 @@ import org.eclipse.jface.text.Position;
  * An event can be sealed. Afterwards it can not be modified. Thus, the normal
  * process is that an empty event is created, filled with the changed
  * information, and before it is sent to the listeners, the event is sealed.
+ * <p>
+ * The annotations are kept in plain arrays, so that events reporting large numbers of
+ * annotations are cheap to build. In addition, the event summarizes the region covered by the
+ * positions of all reported annotations, see {@link #getAffectedRegion()}.
  *
  * @see org.eclipse.jface.text.source.IAnnotationModel
  * @see org.eclipse.jface.text.source.IAnnotationModelListenerExtension
@@ -33,23 +38,74 @@ import org.eclipse.jface.text.Position;
  */
 public class AnnotationModelEvent {
 
+	/**
+	 * The number of annotations up to which duplicates are searched without hashing.
+	 * @since 3.7
+	 */
+	private static final int SMALL_SIZE= 8;
+
 	/** The model this event refers to. */
 	private IAnnotationModel fAnnotationModel;
 	/**
-	 * The added annotations.
-	 * @since 3.0
+	 * The added annotations, <code>null</code> if none.
+	 * @since 3.7
 	 */
-	private Set<Annotation> fAddedAnnotations= new HashSet<>();
+	private Annotation[] fAddedAnnotations;
 	/**
-	 * The removed annotations.
-	 * @since 3.0
+	 * The number of added annotations.
+	 * @since 3.7
 	 */
-	private Map<Annotation, Position> fRemovedAnnotations= new HashMap<>();
+	private int fAddedCount;
 	/**
-	 * The changed annotations.
-	 * @since 3.0
+	 * The removed annotations, <code>null</code> if none.
+	 * @since 3.7
+	 */
+	private Annotation[] fRemovedAnnotations;
+	/**
+	 * The positions of the removed annotations.
+	 * @since 3.7
+	 */
+	private Position[] fRemovedPositions;
+	/**
+	 * The number of removed annotations.
+	 * @since 3.7
+	 */
+	private int fRemovedCount;
+	/**
+	 * The positions of the removed annotations by annotation, created on demand for large events.
+	 * @since 3.7
+	 */
+	private Map<Annotation, Position> fRemovedPositionMap;
+	/**
+	 * The changed annotations, <code>null</code> if none.
+	 * @since 3.7
+	 */
+	private Annotation[] fChangedAnnotations;
+	/**
+	 * The number of changed annotations.
+	 * @since 3.7
+	 */
+	private int fChangedCount;
+	/**
+	 * Tells whether the annotation arrays may contain duplicates.
+	 * @since 3.7
 	 */
-	private Set<Annotation> fChangedAnnotations= new HashSet<>();
+	private boolean fMayContainDuplicates;
+	/**
+	 * The start of the affected region, {@link Integer#MAX_VALUE} if no position has been reported.
+	 * @since 3.7
+	 */
+	private int fAffectedStart= Integer.MAX_VALUE;
+	/**
+	 * The end of the affected region.
+	 * @since 3.7
+	 */
+	private int fAffectedEnd= -1;
+	/**
+	 * Tells whether an annotation has been reported without its position.
+	 * @since 3.7
+	 */
+	private boolean fAffectedRegionUnknown;
 	/**
 	 * Indicates that this event does not contain detailed information.
 	 * @since 3.0
@@ -100,7 +156,26 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public void annotationAdded(Annotation annotation) {
-		fAddedAnnotations.add(annotation);
+		annotationAdded(annotation, null);
+	}
+
+	/**
+	 * Adds the given annotation to the set of annotations that are reported as
+	 * being added from the model. If this event is considered a world change,
+	 * it is no longer so after this method has successfully finished.
+	 *
+	 * @param annotation the added annotation
+	 * @param position the position of the added annotation or <code>null</code> if unknown
+	 * @since 3.7
+	 */
+	public void annotationAdded(Annotation annotation, Position position) {
+		if (fAddedAnnotations == null)
+			fAddedAnnotations= new Annotation[4];
+		else if (fAddedCount == fAddedAnnotations.length)
+			fAddedAnnotations= Arrays.copyOf(fAddedAnnotations, 2 * fAddedCount);
+		fAddedAnnotations[fAddedCount++]= annotation;
+		fMayContainDuplicates= true;
+		addAffectedPosition(position);
 		fIsWorldChange= false;
 	}
 
@@ -111,9 +186,10 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public Annotation[] getAddedAnnotations() {
-		int size= fAddedAnnotations.size();
-		Annotation[] added= new Annotation[size];
-		fAddedAnnotations.toArray(added);
+		removeDuplicates();
+		Annotation[] added= new Annotation[fAddedCount];
+		if (fAddedCount > 0)
+			System.arraycopy(fAddedAnnotations, 0, added, 0, fAddedCount);
 		return added;
 	}
 
@@ -139,7 +215,19 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public void annotationRemoved(Annotation annotation, Position position) {
-		fRemovedAnnotations.put(annotation, position);
+		if (fRemovedAnnotations == null) {
+			fRemovedAnnotations= new Annotation[4];
+			fRemovedPositions= new Position[4];
+		} else if (fRemovedCount == fRemovedAnnotations.length) {
+			fRemovedAnnotations= Arrays.copyOf(fRemovedAnnotations, 2 * fRemovedCount);
+			fRemovedPositions= Arrays.copyOf(fRemovedPositions, 2 * fRemovedCount);
+		}
+		fRemovedAnnotations[fRemovedCount]= annotation;
+		fRemovedPositions[fRemovedCount]= position;
+		fRemovedCount++;
+		fRemovedPositionMap= null;
+		fMayContainDuplicates= true;
+		addAffectedPosition(position);
 		fIsWorldChange= false;
 	}
 
@@ -150,9 +238,10 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public Annotation[] getRemovedAnnotations() {
-		int size= fRemovedAnnotations.size();
-		Annotation[] removed= new Annotation[size];
-		fRemovedAnnotations.keySet().toArray(removed);
+		removeDuplicates();
+		Annotation[] removed= new Annotation[fRemovedCount];
+		if (fRemovedCount > 0)
+			System.arraycopy(fRemovedAnnotations, 0, removed, 0, fRemovedCount);
 		return removed;
 	}
 
@@ -165,7 +254,22 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public Position getPositionOfRemovedAnnotation(Annotation annotation) {
-		return fRemovedAnnotations.get(annotation);
+		removeDuplicates();
+		if (fRemovedCount <= SMALL_SIZE) {
+			for (int i= 0; i < fRemovedCount; i++) {
+				if (fRemovedAnnotations[i].equals(annotation))
+					return fRemovedPositions[i];
+			}
+			return null;
+		}
+
+		if (fRemovedPositionMap == null) {
+			Map<Annotation, Position> map= new HashMap<>(2 * fRemovedCount);
+			for (int i= 0; i < fRemovedCount; i++)
+				map.put(fRemovedAnnotations[i], fRemovedPositions[i]);
+			fRemovedPositionMap= map;
+		}
+		return fRemovedPositionMap.get(annotation);
 	}
 
 	/**
@@ -177,7 +281,26 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public void annotationChanged(Annotation annotation) {
-		fChangedAnnotations.add(annotation);
+		annotationChanged(annotation, null);
+	}
+
+	/**
+	 * Adds the given annotation to the set of annotations that are reported as
+	 * being changed from the model. If this event is considered a world
+	 * change, it is no longer so after this method has successfully finished.
+	 *
+	 * @param annotation the changed annotation
+	 * @param position the position of the changed annotation or <code>null</code> if unknown
+	 * @since 3.7
+	 */
+	public void annotationChanged(Annotation annotation, Position position) {
+		if (fChangedAnnotations == null)
+			fChangedAnnotations= new Annotation[4];
+		else if (fChangedCount == fChangedAnnotations.length)
+			fChangedAnnotations= Arrays.copyOf(fChangedAnnotations, 2 * fChangedCount);
+		fChangedAnnotations[fChangedCount++]= annotation;
+		fMayContainDuplicates= true;
+		addAffectedPosition(position);
 		fIsWorldChange= false;
 	}
 
@@ -188,12 +311,126 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public Annotation[] getChangedAnnotations() {
-		int size= fChangedAnnotations.size();
-		Annotation[] changed= new Annotation[size];
-		fChangedAnnotations.toArray(changed);
+		removeDuplicates();
+		Annotation[] changed= new Annotation[fChangedCount];
+		if (fChangedCount > 0)
+			System.arraycopy(fChangedAnnotations, 0, changed, 0, fChangedCount);
 		return changed;
 	}
 
+	/**
+	 * Returns the smallest region which covers the positions of all added, removed, and changed
+	 * annotations, in the coordinates of the document at the time the annotations were reported.
+	 * A listener may for example just redraw this region instead of looking at each annotation.
+	 * <p>
+	 * Returns <code>null</code> if this event is a world change, or if an annotation has been
+	 * reported without its position. Returns an empty region at offset <code>0</code> if no
+	 * annotations have been reported.
+	 * </p>
+	 *
+	 * @return the affected region or <code>null</code> if unknown
+	 * @since 3.7
+	 */
+	public IRegion getAffectedRegion() {
+		if (fIsWorldChange || fAffectedRegionUnknown)
+			return null;
+		if (fAffectedStart > fAffectedEnd)
+			return new Region(0, 0);
+		return new Region(fAffectedStart, fAffectedEnd - fAffectedStart);
+	}
+
+	/**
+	 * Extends the affected region to cover the given range.
+	 *
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @since 3.7
+	 */
+	void addAffectedRange(int offset, int length) {
+		fAffectedStart= Math.min(fAffectedStart, offset);
+		fAffectedEnd= Math.max(fAffectedEnd, offset + length);
+	}
+
+	/**
+	 * Extends the affected region to cover the given position.
+	 *
+	 * @param position the position or <code>null</code> if unknown
+	 * @since 3.7
+	 */
+	private void addAffectedPosition(Position position) {
+		if (position == null)
+			fAffectedRegionUnknown= true;
+		else
+			addAffectedRange(position.getOffset(), position.getLength());
+	}
+
+	/**
+	 * Removes all but the first occurrence of each annotation from the annotation arrays. The
+	 * position of a removed annotation is the one last reported.
+	 *
+	 * @since 3.7
+	 */
+	private void removeDuplicates() {
+		if (!fMayContainDuplicates)
+			return;
+
+		fMayContainDuplicates= false;
+		fAddedCount= removeDuplicates(fAddedAnnotations, null, fAddedCount);
+		fRemovedCount= removeDuplicates(fRemovedAnnotations, fRemovedPositions, fRemovedCount);
+		fChangedCount= removeDuplicates(fChangedAnnotations, null, fChangedCount);
+	}
+
+	/**
+	 * Removes all but the first occurrence of each annotation from the given array.
+	 *
+	 * @param annotations the annotations
+	 * @param positions the positions of the annotations or <code>null</code>; the position of
+	 *            a kept annotation is set to the position of its last occurrence
+	 * @param count the number of annotations
+	 * @return the number of remaining annotations
+	 * @since 3.7
+	 */
+	private static int removeDuplicates(Annotation[] annotations, Position[] positions, int count) {
+		if (count < 2)
+			return count;
+
+		int size= 0;
+		if (count <= SMALL_SIZE) {
+			outer: for (int i= 0; i < count; i++) {
+				for (int j= 0; j < size; j++) {
+					if (annotations[j].equals(annotations[i])) {
+						if (positions != null)
+							positions[j]= positions[i];
+						continue outer;
+					}
+				}
+				annotations[size]= annotations[i];
+				if (positions != null)
+					positions[size]= positions[i];
+				size++;
+			}
+		} else {
+			Map<Annotation, Integer> indices= new HashMap<>(2 * count);
+			for (int i= 0; i < count; i++) {
+				Integer index= indices.get(annotations[i]);
+				if (index != null) {
+					if (positions != null)
+						positions[index.intValue()]= positions[i];
+					continue;
+				}
+				indices.put(annotations[i], Integer.valueOf(size));
+				annotations[size]= annotations[i];
+				if (positions != null)
+					positions[size]= positions[i];
+				size++;
+			}
+		}
+		Arrays.fill(annotations, size, count, null);
+		if (positions != null)
+			Arrays.fill(positions, size, count, null);
+		return size;
+	}
+
 	/**
 	 * Returns whether this annotation model event is empty or not. If this
 	 * event represents a world change, this method returns <code>false</code>
@@ -204,7 +441,7 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public boolean isEmpty() {
-		return !fIsWorldChange && fAddedAnnotations.isEmpty() && fRemovedAnnotations.isEmpty() && fChangedAnnotations.isEmpty();
+		return !fIsWorldChange && fAddedCount == 0 && fRemovedCount == 0 && fChangedCount == 0;
 	}
 
 	/**
@@ -251,6 +488,8 @@ public class AnnotationModelEvent {
 	 * @since 3.0
 	 */
 	public void markSealed() {
+		// listeners may read the event concurrently
+		removeDuplicates();
 		if (fAnnotationModel instanceof IAnnotationModelExtension) {
 			IAnnotationModelExtension extension= (IAnnotationModelExtension) fAnnotationModel;
 			fModificationStamp= extension.getModificationStamp();
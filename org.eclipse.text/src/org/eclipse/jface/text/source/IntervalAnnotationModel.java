@@ -0,0 +1,484 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jface.text.source;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.jface.text.AbstractDocument;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.Position;
+
+
+/**
+ * An annotation model which keeps its annotations in an interval index ordered by the offsets
+ * of their positions. Region queries (see {@link IAnnotationModelExtension2}) only visit the
+ * annotations which may be inside the region instead of all annotations of the model and
+ * return the same annotations as {@link AnnotationModel}, ordered by offset.
+ * <p>
+ * The index is a randomized balanced search tree whose nodes also store the largest end offset
+ * of their subtree. Adding, removing and moving an annotation updates the tree in place in
+ * logarithmic time, and a document change only moves the annotations whose positions were
+ * touched by the change.
+ * </p>
+ * <p>
+ * The index relies on the positions being updated by the document's default position updater,
+ * i.e. subclasses must not store the positions in a different position category. Positions which
+ * are changed or deleted by clients must be reported with
+ * {@link #modifyAnnotationPosition(Annotation, Position)} or by removing the annotation.
+ * </p>
+ * <p>
+ * Annotations of attached models are only requested once the annotations of this model have
+ * been consumed.
+ * </p>
+ *
+ * @since 3.7
+ */
+public class IntervalAnnotationModel extends AnnotationModel {
+
+	/** An annotation and its position, and the node of the index holding them. */
+	private static final class Entry {
+
+		final Annotation fAnnotation;
+		final Position fPosition;
+		/** The priority of the node, parents have higher priorities than their children. */
+		final int fPriority;
+		Entry fParent;
+		Entry fLeft;
+		Entry fRight;
+		/** The first entry of the subtree. */
+		Entry fFirst;
+		/**
+		 * The largest end offset of the subtree, relative to the offset of its first entry. The
+		 * value stays valid when all entries of the subtree are shifted by the same amount.
+		 */
+		int fMaxEnd;
+		/** Tells whether the entry is in the index. */
+		boolean fIndexed;
+		/** Tells whether the annotation has been removed from the model. */
+		boolean fRemoved;
+
+		Entry(Annotation annotation, Position position, int priority) {
+			fAnnotation= annotation;
+			fPosition= position;
+			fPriority= priority;
+		}
+
+		int getOffset() {
+			return fPosition.offset;
+		}
+
+		int getEnd() {
+			return fPosition.offset + fPosition.length;
+		}
+
+		/**
+		 * Returns the largest end offset of the subtree.
+		 *
+		 * @return the largest end offset of the subtree
+		 */
+		int getMaxEnd() {
+			return fFirst.getOffset() + fMaxEnd;
+		}
+
+		/**
+		 * Recomputes the first entry and the largest end offset from the children.
+		 */
+		void update() {
+			fFirst= fLeft != null ? fLeft.fFirst : this;
+			int max= getEnd();
+			if (fLeft != null)
+				max= Math.max(max, fLeft.getMaxEnd());
+			if (fRight != null)
+				max= Math.max(max, fRight.getMaxEnd());
+			fMaxEnd= max - fFirst.getOffset();
+		}
+	}
+
+	/** The entries by annotation. */
+	private final Map<Annotation, Entry> fEntries= new HashMap<>();
+	/** The priorities of the entries. */
+	private final Random fRandom= new Random();
+	/** The root of the index, <code>null</code> if the index is empty. */
+	private Entry fRoot;
+	/** The entries the pending document change may move, <code>null</code> if there is no pending change. */
+	private List<Entry> fTouched;
+	/** The entries added while a document change is pending. */
+	private final List<Entry> fDeferred= new ArrayList<>();
+	/** The annotations whose positions have been deleted since the last cleanup. */
+	private final List<Annotation> fDeleted= new ArrayList<>();
+
+	/**
+	 * Creates a new, empty annotation model.
+	 */
+	public IntervalAnnotationModel() {
+	}
+
+	@Override
+	protected void addAnnotation(Annotation annotation, Position position, boolean fireModelChanged) throws BadLocationException {
+		if (getAnnotationMap().containsKey(annotation))
+			return;
+
+		super.addAnnotation(annotation, position, false);
+		synchronized (getLockObject()) {
+			if (position == null || position.isDeleted()) {
+				fDeleted.add(annotation);
+			} else {
+				Entry entry= new Entry(annotation, position, fRandom.nextInt());
+				fEntries.put(annotation, entry);
+				index(entry);
+			}
+		}
+
+		if (fireModelChanged)
+			fireModelChanged();
+	}
+
+	@Override
+	protected void removeAnnotation(Annotation annotation, boolean fireModelChanged) {
+		synchronized (getLockObject()) {
+			Entry entry= fEntries.remove(annotation);
+			if (entry != null) {
+				entry.fRemoved= true;
+				remove(entry);
+			}
+		}
+		super.removeAnnotation(annotation, fireModelChanged);
+	}
+
+	@Override
+	protected void removeAllAnnotations(boolean fireModelChanged) {
+		synchronized (getLockObject()) {
+			for (Entry entry : fEntries.values()) {
+				entry.fRemoved= true;
+				entry.fIndexed= false;
+			}
+			fEntries.clear();
+			fRoot= null;
+			fTouched= null;
+			fDeferred.clear();
+			fDeleted.clear();
+		}
+		super.removeAllAnnotations(fireModelChanged);
+	}
+
+	@Override
+	protected void modifyAnnotationPosition(Annotation annotation, Position position, boolean fireModelChanged) {
+		Entry entry= null;
+		if (position != null) {
+			synchronized (getLockObject()) {
+				// the position keeps its entry but may move to a different place in the index
+				entry= fEntries.get(annotation);
+				if (entry != null && !entry.fIndexed)
+					entry= null;
+				if (entry != null)
+					remove(entry);
+			}
+		}
+		super.modifyAnnotationPosition(annotation, position, fireModelChanged);
+		if (entry != null) {
+			synchronized (getLockObject()) {
+				if (!entry.fRemoved && !entry.fIndexed && !entry.fPosition.isDeleted())
+					index(entry);
+			}
+		}
+	}
+
+	@Override
+	void aboutToUpdatePositions(DocumentEvent event) {
+		synchronized (getLockObject()) {
+			int offset= event.getOffset();
+			List<Entry> touched= new ArrayList<>();
+			collect(fRoot, Integer.MIN_VALUE, offset + event.getLength(), offset, touched);
+			fTouched= touched;
+		}
+	}
+
+	@Override
+	void positionsUpdated(DocumentEvent event) {
+		synchronized (getLockObject()) {
+			List<Entry> touched= fTouched;
+			fTouched= null;
+			if (touched == null)
+				return;
+
+			// take out the touched entries, the others keep their order
+			for (Entry entry : touched)
+				remove(entry);
+
+			// the subtrees holding entries in front of and behind the change must be recomputed
+			int offset= event.getOffset();
+			Entry before= null;
+			Entry behind= null;
+			for (Entry node= fRoot; node != null;) {
+				if (node.getOffset() < offset) {
+					before= node;
+					node= node.fRight;
+				} else {
+					behind= node;
+					node= node.fLeft;
+				}
+			}
+			updateAncestors(before);
+			updateAncestors(behind);
+
+			for (Entry entry : touched)
+				reinsert(entry);
+			for (Entry entry : fDeferred)
+				reinsert(entry);
+			fDeferred.clear();
+		}
+	}
+
+	@Override
+	List<Annotation> getDeletedAnnotations() {
+		synchronized (getLockObject()) {
+			List<Annotation> deleted= new ArrayList<>(fDeleted.size());
+			for (Annotation annotation : fDeleted) {
+				Position position= getAnnotationMap().get(annotation);
+				if (position == null || position.isDeleted())
+					deleted.add(annotation);
+			}
+			fDeleted.clear();
+			return deleted;
+		}
+	}
+
+	@Override
+	Iterator<Annotation> getRegionAnnotationIterator(int offset, int length, boolean canStartBefore, boolean canEndAfter) {
+		cleanup(true);
+
+		synchronized (getLockObject()) {
+			int end= offset + length;
+			List<Entry> candidates= new ArrayList<>();
+			if (canStartBefore)
+				collect(fRoot, Integer.MIN_VALUE, canEndAfter ? end : end - 1, offset, candidates);
+			else
+				collect(fRoot, offset, end - 1, Integer.MIN_VALUE, candidates);
+
+			Position region= new Position(offset, length);
+			boolean fromStart= fDocument instanceof AbstractDocument && offset < fDocument.getLength() / 2;
+			List<Annotation> annotations= new ArrayList<>(candidates.size());
+			for (Entry entry : candidates) {
+				Position position= entry.fPosition;
+				boolean inside;
+				if (fDocument instanceof AbstractDocument)
+					inside= isInside(region, position, canStartBefore, canEndAfter, fromStart);
+				else
+					inside= isWithinRegion(region, position.offset, position.length, canStartBefore, canEndAfter);
+				if (inside)
+					annotations.add(entry.fAnnotation);
+			}
+			return Collections.unmodifiableList(annotations).iterator();
+		}
+	}
+
+	/**
+	 * Tells whether a position is returned by
+	 * {@link AbstractDocument#getPositions(String, int, int, boolean, boolean)} for the given
+	 * region.
+	 *
+	 * @param region the region
+	 * @param position the position
+	 * @param canStartBefore whether the position can start before the region
+	 * @param canEndAfter whether the position can end after the region
+	 * @param fromStart whether the document looks for overlapping positions from its start, i.e.
+	 *            whether the region lies in the first half of the document
+	 * @return <code>true</code> if the document returns the position for the region
+	 */
+	private static boolean isInside(Position region, Position position, boolean canStartBefore, boolean canEndAfter, boolean fromStart) {
+		int start= position.offset;
+		int length= position.length;
+		int last= length > 0 ? start + length - 1 : start;
+		int regionEnd= region.offset + region.length;
+		if (canStartBefore && canEndAfter) {
+			boolean candidate= fromStart ? start < regionEnd : last >= region.offset;
+			return candidate && region.overlapsWith(start, length);
+		} else if (canStartBefore) {
+			return region.offset <= last && last < regionEnd;
+		} else if (canEndAfter) {
+			return region.offset <= start && start < regionEnd;
+		} else {
+			return region.offset <= start && start < regionEnd && region.includes(start) && region.includes(start + length - 1);
+		}
+	}
+
+	/**
+	 * Adds the given entry to the index, or defers this until the pending document change has
+	 * been applied.
+	 *
+	 * @param entry the entry
+	 */
+	private void index(Entry entry) {
+		if (fTouched != null)
+			fDeferred.add(entry);
+		else
+			insert(entry);
+	}
+
+	/**
+	 * Adds the given entry back to the index after a document change, or remembers its
+	 * annotation for the cleanup if its position has been deleted.
+	 *
+	 * @param entry the entry
+	 */
+	private void reinsert(Entry entry) {
+		if (entry.fRemoved || entry.fIndexed)
+			return;
+		if (entry.fPosition.isDeleted())
+			fDeleted.add(entry.fAnnotation);
+		else
+			insert(entry);
+	}
+
+	/**
+	 * Inserts the given entry into the index behind all entries with the same offset.
+	 *
+	 * @param entry the entry
+	 */
+	private void insert(Entry entry) {
+		entry.fLeft= null;
+		entry.fRight= null;
+		entry.fParent= null;
+		entry.fIndexed= true;
+		entry.update();
+		if (fRoot == null) {
+			fRoot= entry;
+			return;
+		}
+
+		int offset= entry.getOffset();
+		Entry node= fRoot;
+		while (true) {
+			if (offset < node.getOffset()) {
+				if (node.fLeft == null) {
+					node.fLeft= entry;
+					break;
+				}
+				node= node.fLeft;
+			} else {
+				if (node.fRight == null) {
+					node.fRight= entry;
+					break;
+				}
+				node= node.fRight;
+			}
+		}
+		entry.fParent= node;
+
+		while (entry.fParent != null && entry.fParent.fPriority < entry.fPriority)
+			rotateUp(entry);
+		updateAncestors(entry.fParent);
+	}
+
+	/**
+	 * Removes the given entry from the index if it is in the index. Only the structure of the
+	 * tree is used, i.e. the offsets of the entries need not be in order.
+	 *
+	 * @param entry the entry
+	 */
+	private void remove(Entry entry) {
+		if (!entry.fIndexed)
+			return;
+
+		while (entry.fLeft != null || entry.fRight != null) {
+			Entry child;
+			if (entry.fLeft == null)
+				child= entry.fRight;
+			else if (entry.fRight == null)
+				child= entry.fLeft;
+			else
+				child= entry.fLeft.fPriority > entry.fRight.fPriority ? entry.fLeft : entry.fRight;
+			rotateUp(child);
+		}
+
+		Entry parent= entry.fParent;
+		if (parent == null)
+			fRoot= null;
+		else if (parent.fLeft == entry)
+			parent.fLeft= null;
+		else
+			parent.fRight= null;
+		entry.fParent= null;
+		entry.fIndexed= false;
+		updateAncestors(parent);
+	}
+
+	/**
+	 * Rotates the given node above its parent.
+	 *
+	 * @param node the node
+	 */
+	private void rotateUp(Entry node) {
+		Entry parent= node.fParent;
+		Entry grandParent= parent.fParent;
+		if (parent.fLeft == node) {
+			parent.fLeft= node.fRight;
+			if (node.fRight != null)
+				node.fRight.fParent= parent;
+			node.fRight= parent;
+		} else {
+			parent.fRight= node.fLeft;
+			if (node.fLeft != null)
+				node.fLeft.fParent= parent;
+			node.fLeft= parent;
+		}
+		parent.fParent= node;
+		node.fParent= grandParent;
+		if (grandParent == null)
+			fRoot= node;
+		else if (grandParent.fLeft == parent)
+			grandParent.fLeft= node;
+		else
+			grandParent.fRight= node;
+		parent.update();
+		node.update();
+	}
+
+	/**
+	 * Recomputes the given node and its ancestors.
+	 *
+	 * @param node the node, may be <code>null</code>
+	 */
+	private static void updateAncestors(Entry node) {
+		for (; node != null; node= node.fParent)
+			node.update();
+	}
+
+	/**
+	 * Appends all entries of the given subtree which start between the given offsets and end at
+	 * or behind the given offset to the given list, in ascending order.
+	 *
+	 * @param node the root of the subtree, may be <code>null</code>
+	 * @param from the smallest start offset
+	 * @param to the largest start offset
+	 * @param end the offset at or behind which the entries must end
+	 * @param result the list to append the entries to
+	 */
+	private static void collect(Entry node, int from, int to, int end, List<Entry> result) {
+		if (node == null || node.getMaxEnd() < end)
+			return;
+
+		int offset= node.getOffset();
+		if (offset >= from)
+			collect(node.fLeft, from, to, end, result);
+		if (offset >= from && offset <= to && node.getEnd() >= end)
+			result.add(node);
+		if (offset <= to)
+			collect(node.fRight, from, to, end, result);
+	}
+}
@@ -0,0 +1,471 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.text.edits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.core.runtime.Assert;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.ConfigurableLineTracker;
+import org.eclipse.jface.text.FindReplaceDocumentAdapter;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IDocumentPartitioner;
+import org.eclipse.jface.text.IDocumentPartitioningListener;
+import org.eclipse.jface.text.ILineTracker;
+import org.eclipse.jface.text.IPositionUpdater;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Position;
+
+/**
+ * A view on a document that does not change the document but records the replacements applied to
+ * the view, so that they can be applied to the document at once (see
+ * {@link TextEdit#BATCH_UPDATES}).
+ * <p>
+ * The replacements must be applied from the end of the document to its beginning, which is the
+ * order in which an edit tree updates a document: a replacement must not end behind the start of
+ * an earlier one unless it covers it completely. The recorder merges the replacements into
+ * disjoint ranges of the original document. It also keeps the replacements as they were applied,
+ * so that they can be replayed one by one if some of them had to be merged.
+ * </p>
+ * <p>
+ * The content of the view, its line information and searching in it can be queried like in any
+ * other document. Positions, partitioning and listeners are not supported.
+ * </p>
+ *
+ * @since 3.7
+ */
+class ReplaceRecorder implements IDocument {
+
+	private final IDocument fDocument;
+	/*
+	 * The recorded ranges form a stack whose top is the range closest to the beginning of the
+	 * document. Since the document before that range is unchanged, its offset is the same in the
+	 * original and in the modified document.
+	 */
+	private int[] fOffsets= new int[16];
+	private int[] fLengths= new int[16];
+	private String[] fTexts= new String[16];
+	private int fCount;
+	private int fLength;
+	/** The replacements in the order in which they were applied to the view. */
+	private final List<ReplaceEdit> fReplaces= new ArrayList<>();
+	/** Whether a replacement overlapped the range of an earlier one. */
+	private boolean fMerged;
+	/** The line information of the view, created on demand and discarded on each replacement. */
+	private ILineTracker fTracker;
+
+	/**
+	 * Creates a new recorder.
+	 *
+	 * @param document the document to record the replacements for
+	 */
+	public ReplaceRecorder(IDocument document) {
+		fDocument= document;
+		fLength= document.getLength();
+	}
+
+	/**
+	 * Returns the number of recorded ranges.
+	 *
+	 * @return the number of ranges
+	 */
+	public int getCount() {
+		return fCount;
+	}
+
+	/**
+	 * Returns the offsets of the recorded ranges in the original document.
+	 *
+	 * @return the offsets, sorted
+	 */
+	public int[] getOffsets() {
+		return reverse(Arrays.copyOf(fOffsets, fCount));
+	}
+
+	/**
+	 * Returns the lengths of the recorded ranges in the original document.
+	 *
+	 * @return the lengths, in the order of the offsets
+	 */
+	public int[] getLengths() {
+		return reverse(Arrays.copyOf(fLengths, fCount));
+	}
+
+	/**
+	 * Returns the texts replacing the recorded ranges.
+	 *
+	 * @return the texts, in the order of the offsets
+	 */
+	public String[] getTexts() {
+		String[] texts= new String[fCount];
+		for (int i= 0; i < fCount; i++)
+			texts[i]= fTexts[fCount - 1 - i];
+		return texts;
+	}
+
+	/**
+	 * Tells whether a replacement changed text inside the range of an earlier replacement, so that
+	 * the two have been merged into one range. Position updaters adapt positions inside such a
+	 * range differently if the merged range is replaced at once.
+	 *
+	 * @return <code>true</code> if replacements have been merged
+	 */
+	public boolean hasMergedReplaces() {
+		return fMerged;
+	}
+
+	/**
+	 * Applies the recorded replacements to the given document one by one, in the order in which
+	 * they were applied to the view.
+	 *
+	 * @param document the document to modify, with the content of the recorded document
+	 * @throws BadLocationException if the document cannot be modified
+	 */
+	public void replay(IDocument document) throws BadLocationException {
+		for (int i= 0; i < fReplaces.size(); i++) {
+			ReplaceEdit edit= fReplaces.get(i);
+			document.replace(edit.getOffset(), edit.getLength(), edit.getText());
+		}
+	}
+
+	/**
+	 * Returns the line information of the current content of the view.
+	 *
+	 * @return the line tracker
+	 */
+	private ILineTracker getTracker() {
+		if (fTracker == null) {
+			fTracker= new ConfigurableLineTracker(fDocument.getLegalLineDelimiters());
+			fTracker.set(get());
+		}
+		return fTracker;
+	}
+
+	private static int[] reverse(int[] array) {
+		for (int i= 0, j= array.length - 1; i < j; i++, j--) {
+			int tmp= array[i];
+			array[i]= array[j];
+			array[j]= tmp;
+		}
+		return array;
+	}
+
+	@Override
+	public void addDocumentListener(IDocumentListener listener) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void addDocumentPartitioningListener(IDocumentPartitioningListener listener) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void addPosition(Position position) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void addPosition(String category, Position position) throws BadLocationException, BadPositionCategoryException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void addPositionCategory(String category) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void addPositionUpdater(IPositionUpdater updater) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void addPrenotifiedDocumentListener(IDocumentListener documentAdapter) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int computeIndexInCategory(String category, int offset) throws BadLocationException, BadPositionCategoryException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int computeNumberOfLines(String text) {
+		return getTracker().computeNumberOfLines(text);
+	}
+
+	@Override
+	public ITypedRegion[] computePartitioning(int offset, int length) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean containsPosition(String category, int offset, int length) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean containsPositionCategory(String category) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public String get() {
+		try {
+			return get(0, fLength);
+		} catch (BadLocationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String get(int offset, int length) throws BadLocationException {
+		if (offset < 0 || length < 0 || offset + length > fLength)
+			throw new BadLocationException();
+		StringBuilder buffer= new StringBuilder(length);
+		int end= offset + length;
+		int position= 0;
+		int shift= 0;
+		for (int i= fCount - 1; i >= 0 && position < end; i--) {
+			int start= fOffsets[i] + shift;
+			appendOriginal(buffer, position, start, shift, offset, end);
+			String text= fTexts[i];
+			int from= Math.max(start, offset);
+			int to= Math.min(start + text.length(), end);
+			if (from < to)
+				buffer.append(text, from - start, to - start);
+			position= start + text.length();
+			shift+= text.length() - fLengths[i];
+		}
+		appendOriginal(buffer, position, fLength, shift, offset, end);
+		return buffer.toString();
+	}
+
+	/**
+	 * Appends the part of an unchanged range which is inside the requested range.
+	 *
+	 * @param buffer the buffer to append to
+	 * @param start the start of the unchanged range
+	 * @param end the end of the unchanged range
+	 * @param shift the difference between the offsets of the range in the view and in the document
+	 * @param requestedStart the start of the requested range
+	 * @param requestedEnd the end of the requested range
+	 * @throws BadLocationException if the document cannot be accessed
+	 */
+	private void appendOriginal(StringBuilder buffer, int start, int end, int shift, int requestedStart, int requestedEnd) throws BadLocationException {
+		int from= Math.max(start, requestedStart);
+		int to= Math.min(end, requestedEnd);
+		if (from < to)
+			buffer.append(fDocument.get(from - shift, to - from));
+	}
+
+	@Override
+	public char getChar(int offset) throws BadLocationException {
+		return get(offset, 1).charAt(0);
+	}
+
+	@Override
+	public String getContentType(int offset) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public IDocumentPartitioner getDocumentPartitioner() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public String[] getLegalContentTypes() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public String[] getLegalLineDelimiters() {
+		return fDocument.getLegalLineDelimiters();
+	}
+
+	@Override
+	public int getLength() {
+		return fLength;
+	}
+
+	@Override
+	public String getLineDelimiter(int line) throws BadLocationException {
+		return getTracker().getLineDelimiter(line);
+	}
+
+	@Override
+	public IRegion getLineInformation(int line) throws BadLocationException {
+		return getTracker().getLineInformation(line);
+	}
+
+	@Override
+	public IRegion getLineInformationOfOffset(int offset) throws BadLocationException {
+		return getTracker().getLineInformationOfOffset(offset);
+	}
+
+	@Override
+	public int getLineLength(int line) throws BadLocationException {
+		return getTracker().getLineLength(line);
+	}
+
+	@Override
+	public int getLineOffset(int line) throws BadLocationException {
+		return getTracker().getLineOffset(line);
+	}
+
+	@Override
+	public int getLineOfOffset(int offset) throws BadLocationException {
+		return getTracker().getLineNumberOfOffset(offset);
+	}
+
+	@Override
+	public int getNumberOfLines() {
+		return getTracker().getNumberOfLines();
+	}
+
+	@Override
+	public int getNumberOfLines(int offset, int length) throws BadLocationException {
+		return getTracker().getNumberOfLines(offset, length);
+	}
+
+	@Override
+	public ITypedRegion getPartition(int offset) throws BadLocationException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public String[] getPositionCategories() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Position[] getPositions(String category) throws BadPositionCategoryException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public IPositionUpdater[] getPositionUpdaters() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void insertPositionUpdater(IPositionUpdater updater, int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removeDocumentListener(IDocumentListener listener) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removeDocumentPartitioningListener(IDocumentPartitioningListener listener) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removePosition(Position position) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removePosition(String category, Position position) throws BadPositionCategoryException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removePositionCategory(String category) throws BadPositionCategoryException {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removePositionUpdater(IPositionUpdater updater) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void removePrenotifiedDocumentListener(IDocumentListener documentAdapter) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void replace(int offset, int length, String text) throws BadLocationException {
+		if (offset < 0 || length < 0 || offset + length > fLength)
+			throw new BadLocationException();
+		if (text == null)
+			text= ""; //$NON-NLS-1$
+		if (length == 0 && text.length() == 0)
+			return;
+		fTracker= null;
+		fReplaces.add(new ReplaceEdit(offset, length, text));
+
+		// map the end to the original document, dropping the ranges covered by this replacement
+		int end= offset + length;
+		while (fCount > 0 && fOffsets[fCount - 1] < end) {
+			int top= fCount - 1;
+			int replacedLength= fTexts[top].length();
+			Assert.isTrue(offset <= fOffsets[top] && fOffsets[top] + replacedLength <= end);
+			end+= fLengths[top] - replacedLength;
+			fTexts[top]= null;
+			fCount--;
+			fMerged= true;
+		}
+
+		if (fCount == fOffsets.length) {
+			int capacity= fCount * 2;
+			fOffsets= Arrays.copyOf(fOffsets, capacity);
+			fLengths= Arrays.copyOf(fLengths, capacity);
+			fTexts= Arrays.copyOf(fTexts, capacity);
+		}
+		fOffsets[fCount]= offset;
+		fLengths[fCount]= end - offset;
+		fTexts[fCount]= text;
+		fCount++;
+		fLength+= text.length() - length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @deprecated As of 3.0 search is provided by {@link FindReplaceDocumentAdapter}
+	 */
+	@Deprecated
+	@Override
+	public int search(int startOffset, String findString, boolean forwardSearch, boolean caseSensitive, boolean wholeWord) throws BadLocationException {
+		try {
+			IRegion region= new FindReplaceDocumentAdapter(this).find(startOffset, findString, forwardSearch, caseSensitive, wholeWord, false);
+			return region == null ? -1 : region.getOffset();
+		} catch (IllegalStateException ex) {
+			return -1;
+		} catch (PatternSyntaxException ex) {
+			return -1;
+		}
+	}
+
+	@Override
+	public void set(String text) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void setDocumentPartitioner(IDocumentPartitioner partitioner) {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -98,6 +98,26 @@ public abstract class TextEdit {
 	 */
 	public static final int UPDATE_REGIONS= 1 << 1;
 
+	/**
+	 * Flag indicating that the document is supposed to be modified in
+	 * a single step after all edits of the tree have been computed. If
+	 * the document implements {@link org.eclipse.jface.text.IDocumentExtension5}
+	 * its content, line information and positions are updated once
+	 * and document listeners receive a single event covering all
+	 * changes, instead of one event per edit. The resulting content,
+	 * positions and edit regions are the same as without this flag.
+	 * <p>
+	 * If an edit of the tree changes text inside the range of another
+	 * edit, for example an edit with children which replaces the text of
+	 * its children, the edits are applied one after the other, as
+	 * positions inside that range could not be updated the same way
+	 * otherwise. Undo edits are always applied one child after the other.
+	 * </p>
+	 *
+	 * @since 3.7
+	 */
+	public static final int BATCH_UPDATES= 1 << 2;
+
 	private static class InsertionComparator implements Comparator<TextEdit> {
 		@Override
 		public int compare(TextEdit edit1, TextEdit edit2) throws MalformedTreeException {
@@ -690,7 +710,8 @@ public abstract class TextEdit {
 	 *
 	 * @param document the document to be manipulated
 	 * @param style flags controlling the execution of the edit tree. Valid
-	 *  flags are: <code>CREATE_UNDO</code> and </code>UPDATE_REGIONS</code>.
+	 *  flags are: <code>CREATE_UNDO</code>, <code>UPDATE_REGIONS</code> and
+	 *  <code>BATCH_UPDATES</code>.
 	 * @return a undo edit, if <code>CREATE_UNDO</code> is specified. Otherwise
 	 *  <code>null</code> is returned.
 	 *
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import org.eclipse.core.runtime.Assert;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension5;
 
 
 /**
@@ -53,7 +54,8 @@ public class TextEditProcessor {
 	 *  text edit processors. Clients must not modify the edit
 	 *  (e.g adding new children) any longer.
 	 *
-	 * @param style {@link TextEdit#NONE}, {@link TextEdit#CREATE_UNDO} or {@link TextEdit#UPDATE_REGIONS})
+	 * @param style {@link TextEdit#NONE} or a combination of {@link TextEdit#CREATE_UNDO},
+	 *  {@link TextEdit#UPDATE_REGIONS} and {@link TextEdit#BATCH_UPDATES}
 	 */
 	public TextEditProcessor(IDocument document, TextEdit root, int style) {
 		this(document, root, style, false);
@@ -111,6 +113,7 @@ public class TextEditProcessor {
 	 * @return the style bits
 	 * @see TextEdit#CREATE_UNDO
 	 * @see TextEdit#UPDATE_REGIONS
+	 * @see TextEdit#BATCH_UPDATES
 	 */
 	public int getStyle() {
 		return fStyle;
@@ -186,6 +189,8 @@ public class TextEditProcessor {
 	//---- execution --------------------------------------------------------------------
 
 	UndoEdit executeDo() throws BadLocationException {
+		if (batchUpdates())
+			return executeBatchedDo();
 		UndoCollector collector= new UndoCollector(fRoot);
 		try {
 			if (createUndo())
@@ -201,6 +206,77 @@ public class TextEditProcessor {
 		return collector.undo;
 	}
 
+	private UndoEdit executeBatchedDo() throws BadLocationException {
+		UndoCollector collector= new UndoCollector(fRoot);
+		int offset= fRoot.getOffset();
+		int length= fRoot.getLength();
+		computeSources();
+		ReplaceRecorder recorder= new ReplaceRecorder(fDocument);
+		fRoot.traverseDocumentUpdating(this, recorder);
+		UndoEdit undo;
+		if (recorder.hasMergedReplaces()) {
+			// positions must be updated as if the edits had been applied one by one
+			try {
+				if (createUndo())
+					collector.connect(fDocument);
+				recorder.replay(fDocument);
+			} finally {
+				collector.disconnect(fDocument);
+			}
+			undo= collector.undo;
+		} else {
+			undo= performReplaces(recorder, offset, length);
+		}
+		if (updateRegions()) {
+			fRoot.traverseRegionUpdating(this, fDocument, 0, false);
+		}
+		return undo;
+	}
+
+	/**
+	 * Applies the recorded replacements to the document in one step.
+	 *
+	 * @param recorder the recorded replacements
+	 * @param offset the offset of the root edit before the replacements
+	 * @param length the length of the root edit before the replacements
+	 * @return the undo of the replacements or <code>null</code> if no undo is to be created
+	 * @throws BadLocationException if the document cannot be modified
+	 */
+	private UndoEdit performReplaces(ReplaceRecorder recorder, int offset, int length) throws BadLocationException {
+		int count= recorder.getCount();
+		int[] offsets= recorder.getOffsets();
+		int[] lengths= recorder.getLengths();
+		String[] texts= recorder.getTexts();
+
+		UndoEdit undo= null;
+		if (createUndo()) {
+			// like UndoCollector, from the end of the document to its beginning
+			undo= new UndoEdit();
+			String lastText= null;
+			int delta= 0;
+			for (int i= count - 1; i >= 0; i--) {
+				String text= fDocument.get(offsets[i], lengths[i]);
+				if (lastText != null && lastText.equals(text))
+					text= lastText;
+				else
+					lastText= text;
+				undo.add(new ReplaceEdit(offsets[i], texts[i].length(), text));
+				delta+= texts[i].length() - lengths[i];
+			}
+			undo.defineRegion(offset, length + delta);
+		}
+
+		if (count == 0)
+			return undo;
+		if (fDocument instanceof IDocumentExtension5) {
+			((IDocumentExtension5) fDocument).replace(offsets, lengths, texts);
+		} else {
+			for (int i= count - 1; i >= 0; i--)
+				fDocument.replace(offsets[i], lengths[i], texts[i]);
+		}
+		return undo;
+	}
+
 	private void computeSources() {
 		for (Iterator<List<TextEdit>> iter= fSourceEdits.iterator(); iter.hasNext();) {
 			List<TextEdit> list= iter.next();
@@ -235,4 +311,8 @@ public class TextEditProcessor {
 	private boolean updateRegions() {
 		return (fStyle & TextEdit.UPDATE_REGIONS) != 0;
 	}
+
+	private boolean batchUpdates() {
+		return (fStyle & TextEdit.BATCH_UPDATES) != 0;
+	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2016 IBM Corporation and others.
+ * Copyright (c) 2006, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,13 @@
  *******************************************************************************/
 package org.eclipse.text.undo;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.eclipse.core.commands.ExecutionException;
 import org.eclipse.core.commands.operations.AbstractOperation;
@@ -85,6 +90,22 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		/** The replaced text. */
 		protected String fPreservedText;
 
+		/**
+		 * The newly inserted text in packed form, or <code>null</code> if it is held in
+		 * {@link #fText}.
+		 *
+		 * @since 3.7
+		 */
+		private byte[] fPackedText;
+
+		/**
+		 * The replaced text in packed form, or <code>null</code> if it is held in
+		 * {@link #fPreservedText}.
+		 *
+		 * @since 3.7
+		 */
+		private byte[] fPackedPreservedText;
+
 		/** The undo modification stamp. */
 		protected long fUndoModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 
@@ -111,6 +132,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		protected void reinitialize() {
 			fStart= fEnd= -1;
 			fText= fPreservedText= null;
+			fPackedText= fPackedPreservedText= null;
 			fUndoModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 			fRedoModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 		}
@@ -126,6 +148,59 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 			fEnd= end;
 			fText= null;
 			fPreservedText= null;
+			fPackedText= null;
+			fPackedPreservedText= null;
+		}
+
+		/**
+		 * Returns the newly inserted text.
+		 *
+		 * @return the inserted text, or <code>null</code> if there is none
+		 * @since 3.7
+		 */
+		protected String getText() {
+			return fPackedText != null ? unpack(fPackedText) : fText;
+		}
+
+		/**
+		 * Returns the replaced text.
+		 *
+		 * @return the replaced text, or <code>null</code> if there is none
+		 * @since 3.7
+		 */
+		protected String getPreservedText() {
+			return fPackedPreservedText != null ? unpack(fPackedPreservedText) : fPreservedText;
+		}
+
+		/**
+		 * Packs the texts of this change if the undo manager uses compact storage and they are
+		 * large enough to be worth it.
+		 *
+		 * @since 3.7
+		 */
+		protected void pack() {
+			if (!fDocumentUndoManager.fCompactStorage)
+				return;
+			byte[] packed= packIfLarge(fText);
+			if (packed != null) {
+				fPackedText= packed;
+				fText= null;
+			}
+			packed= packIfLarge(fPreservedText);
+			if (packed != null) {
+				fPackedPreservedText= packed;
+				fPreservedText= null;
+			}
+		}
+
+		/**
+		 * Returns the approximate number of bytes used to store the texts of this change.
+		 *
+		 * @return the storage size of this change
+		 * @since 3.7
+		 */
+		protected long getStorageSize() {
+			return sizeOf(fText) + sizeOf(fPreservedText) + sizeOf(fPackedText) + sizeOf(fPackedPreservedText);
 		}
 
 		@Override
@@ -137,15 +212,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 * Undo the change described by this change.
 		 */
 		protected void undoTextChange() {
-			try {
-				if (fDocumentUndoManager.fDocument instanceof IDocumentExtension4)
-					((IDocumentExtension4) fDocumentUndoManager.fDocument).replace(fStart, fText
-							.length(), fPreservedText, fUndoModificationStamp);
-				else
-					fDocumentUndoManager.fDocument.replace(fStart, fText.length(),
-							fPreservedText);
-			} catch (BadLocationException x) {
-			}
+			fDocumentUndoManager.replace(fStart, getText().length(), getPreservedText(), fUndoModificationStamp);
 		}
 
 		@Override
@@ -251,10 +318,12 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		@Override
 		public IStatus undo(IProgressMonitor monitor, IAdaptable uiInfo) {
 			if (isValid()) {
-				fDocumentUndoManager.fireDocumentUndo(fStart, fPreservedText, fText, uiInfo, DocumentUndoEvent.ABOUT_TO_UNDO, false);
-				undoTextChange();
+				String text= getText();
+				String preservedText= getPreservedText();
+				fDocumentUndoManager.fireDocumentUndo(fStart, preservedText, text, uiInfo, DocumentUndoEvent.ABOUT_TO_UNDO, false);
+				fDocumentUndoManager.replace(fStart, text.length(), preservedText, fUndoModificationStamp);
 				fDocumentUndoManager.resetProcessChangeState();
-				fDocumentUndoManager.fireDocumentUndo(fStart, fPreservedText, fText, uiInfo, DocumentUndoEvent.UNDONE, false);
+				fDocumentUndoManager.fireDocumentUndo(fStart, preservedText, text, uiInfo, DocumentUndoEvent.UNDONE, false);
 				return Status.OK_STATUS;
 			}
 			return IOperationHistory.OPERATION_INVALID_STATUS;
@@ -264,13 +333,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 * Re-applies the change described by this change.
 		 */
 		protected void redoTextChange() {
-			try {
-				if (fDocumentUndoManager.fDocument instanceof IDocumentExtension4)
-					((IDocumentExtension4) fDocumentUndoManager.fDocument).replace(fStart, fEnd - fStart, fText, fRedoModificationStamp);
-				else
-					fDocumentUndoManager.fDocument.replace(fStart, fEnd - fStart, fText);
-			} catch (BadLocationException x) {
-			}
+			fDocumentUndoManager.replace(fStart, fEnd - fStart, getText(), fRedoModificationStamp);
 		}
 
 		/**
@@ -284,10 +347,12 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		@Override
 		public IStatus redo(IProgressMonitor monitor, IAdaptable uiInfo) {
 			if (isValid()) {
-				fDocumentUndoManager.fireDocumentUndo(fStart, fText, fPreservedText, uiInfo, DocumentUndoEvent.ABOUT_TO_REDO, false);
-				redoTextChange();
+				String text= getText();
+				String preservedText= getPreservedText();
+				fDocumentUndoManager.fireDocumentUndo(fStart, text, preservedText, uiInfo, DocumentUndoEvent.ABOUT_TO_REDO, false);
+				fDocumentUndoManager.replace(fStart, fEnd - fStart, text, fRedoModificationStamp);
 				fDocumentUndoManager.resetProcessChangeState();
-				fDocumentUndoManager.fireDocumentUndo(fStart, fText, fPreservedText, uiInfo, DocumentUndoEvent.REDONE, false);
+				fDocumentUndoManager.fireDocumentUndo(fStart, text, preservedText, uiInfo, DocumentUndoEvent.REDONE, false);
 				return Status.OK_STATUS;
 			}
 			return IOperationHistory.OPERATION_INVALID_STATUS;
@@ -328,6 +393,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 				}
 			} else {
 				updateTextChange();
+				pack();
 				fDocumentUndoManager.fCurrent= createCurrent();
 			}
 			fDocumentUndoManager.resetProcessChangeState();
@@ -366,7 +432,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		 * @return <code>true</code> if the change is valid for undo or redo
 		 */
 		protected boolean isValid() {
-			return fStart > -1 && fEnd > -1 && fText != null;
+			return fStart > -1 && fEnd > -1 && (fText != null || fPackedText != null);
 		}
 
 		@Override
@@ -386,11 +452,11 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 			text.append(fEnd);
 			text.append(delimiter);
 			text.append("text: '"); //$NON-NLS-1$
-			text.append(fText);
+			text.append(getText());
 			text.append('\'');
 			text.append(delimiter);
 			text.append("preservedText: '"); //$NON-NLS-1$
-			text.append(fPreservedText);
+			text.append(getPreservedText());
 			text.append('\'');
 			return text.toString();
 		}
@@ -418,11 +484,37 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 	/**
 	 * Represents an undo-able text change consisting of several individual
 	 * changes.
+	 * <p>
+	 * The individual changes are kept in plain arrays rather than as text
+	 * change operations of their own, since a compound change may consist of
+	 * a large number of them.
+	 * </p>
 	 */
 	private static class UndoableCompoundTextChange extends UndoableTextChange {
 
-		/** The list of individual changes */
-		private List<UndoableTextChange> fChanges= new ArrayList<>();
+		/** The number of individual changes. */
+		private int fCount;
+
+		/** The start indices of the individual changes. */
+		private int[] fStarts= new int[4];
+
+		/** The end indices of the individual changes. */
+		private int[] fEnds= new int[4];
+
+		/** The inserted texts of the individual changes, either <code>String</code>s or packed. */
+		private Object[] fTexts= new Object[4];
+
+		/** The replaced texts of the individual changes, either <code>String</code>s or packed. */
+		private Object[] fPreservedTexts= new Object[4];
+
+		/** The undo modification stamps of the individual changes. */
+		private long[] fUndoModificationStamps= new long[4];
+
+		/** The redo modification stamps of the individual changes. */
+		private long[] fRedoModificationStamps= new long[4];
+
+		/** The storage size of the individual changes. */
+		private long fStorageSize;
 
 		/**
 		 * Creates a new compound text change.
@@ -436,28 +528,46 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		/**
 		 * Adds a new individual change to this compound change.
 		 *
-		 * @param change the change to be added
+		 * @param start the start index of the replaced text
+		 * @param end the end index of the replaced text
+		 * @param text the inserted text, either a <code>String</code> or packed
+		 * @param preservedText the replaced text, either a <code>String</code> or packed
+		 * @param undoModificationStamp the undo modification stamp
+		 * @param redoModificationStamp the redo modification stamp
 		 */
-		protected void add(UndoableTextChange change) {
-			fChanges.add(change);
+		protected void add(int start, int end, Object text, Object preservedText, long undoModificationStamp, long redoModificationStamp) {
+			if (fCount == fStarts.length) {
+				int capacity= fCount * 2;
+				fStarts= Arrays.copyOf(fStarts, capacity);
+				fEnds= Arrays.copyOf(fEnds, capacity);
+				fTexts= Arrays.copyOf(fTexts, capacity);
+				fPreservedTexts= Arrays.copyOf(fPreservedTexts, capacity);
+				fUndoModificationStamps= Arrays.copyOf(fUndoModificationStamps, capacity);
+				fRedoModificationStamps= Arrays.copyOf(fRedoModificationStamps, capacity);
+			}
+			fStarts[fCount]= start;
+			fEnds[fCount]= end;
+			fTexts[fCount]= text;
+			fPreservedTexts[fCount]= preservedText;
+			fUndoModificationStamps[fCount]= undoModificationStamp;
+			fRedoModificationStamps[fCount]= redoModificationStamp;
+			fCount++;
+			fStorageSize+= sizeOf(text) + sizeOf(preservedText);
 		}
 
 		@Override
 		public IStatus undo(IProgressMonitor monitor, IAdaptable uiInfo) {
 
-			int size= fChanges.size();
-			if (size > 0) {
-				UndoableTextChange c;
+			if (fCount > 0) {
+				String text= toText(fTexts[0]);
+				String preservedText= toText(fPreservedTexts[0]);
+				fDocumentUndoManager.fireDocumentUndo(fStarts[0], preservedText, text, uiInfo, DocumentUndoEvent.ABOUT_TO_UNDO, true);
 
-				c= fChanges.get(0);
-				fDocumentUndoManager.fireDocumentUndo(c.fStart, c.fPreservedText, c.fText, uiInfo, DocumentUndoEvent.ABOUT_TO_UNDO, true);
+				for (int i= fCount - 1; i >= 0; --i)
+					fDocumentUndoManager.replace(fStarts[i], toText(fTexts[i]).length(), toText(fPreservedTexts[i]), fUndoModificationStamps[i]);
 
-				for (int i= size - 1; i >= 0; --i) {
-					c= fChanges.get(i);
-					c.undoTextChange();
-				}
 				fDocumentUndoManager.resetProcessChangeState();
-				fDocumentUndoManager.fireDocumentUndo(c.fStart, c.fPreservedText, c.fText, uiInfo,
+				fDocumentUndoManager.fireDocumentUndo(fStarts[0], preservedText, text, uiInfo,
 						DocumentUndoEvent.UNDONE, true);
 			}
 			return Status.OK_STATUS;
@@ -466,19 +576,17 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		@Override
 		public IStatus redo(IProgressMonitor monitor, IAdaptable uiInfo) {
 
-			int size= fChanges.size();
-			if (size > 0) {
+			if (fCount > 0) {
+				int last= fCount - 1;
+				String text= toText(fTexts[last]);
+				String preservedText= toText(fPreservedTexts[last]);
+				fDocumentUndoManager.fireDocumentUndo(fStarts[last], text, preservedText, uiInfo, DocumentUndoEvent.ABOUT_TO_REDO, true);
 
-				UndoableTextChange c;
-				c= fChanges.get(size - 1);
-				fDocumentUndoManager.fireDocumentUndo(c.fStart, c.fText, c.fPreservedText, uiInfo, DocumentUndoEvent.ABOUT_TO_REDO, true);
+				for (int i= 0; i <= last; ++i)
+					fDocumentUndoManager.replace(fStarts[i], fEnds[i] - fStarts[i], toText(fTexts[i]), fRedoModificationStamps[i]);
 
-				for (int i= 0; i <= size - 1; ++i) {
-					c= fChanges.get(i);
-					c.redoTextChange();
-				}
 				fDocumentUndoManager.resetProcessChangeState();
-				fDocumentUndoManager.fireDocumentUndo(c.fStart, c.fText, c.fPreservedText, uiInfo, DocumentUndoEvent.REDONE, true);
+				fDocumentUndoManager.fireDocumentUndo(fStarts[last], text, preservedText, uiInfo, DocumentUndoEvent.REDONE, true);
 			}
 
 			return Status.OK_STATUS;
@@ -489,15 +597,18 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 			// first gather the data from the buffers
 			super.updateTextChange();
 
-			// the result of the update is stored as a child change
-			UndoableTextChange c= new UndoableTextChange(fDocumentUndoManager);
-			c.fStart= fStart;
-			c.fEnd= fEnd;
-			c.fText= fText;
-			c.fPreservedText= fPreservedText;
-			c.fUndoModificationStamp= fUndoModificationStamp;
-			c.fRedoModificationStamp= fRedoModificationStamp;
-			add(c);
+			// the result of the update is stored as an individual change
+			Object text= fText;
+			Object preservedText= fPreservedText;
+			if (fDocumentUndoManager.fCompactStorage) {
+				byte[] packed= packIfLarge(fText);
+				if (packed != null)
+					text= packed;
+				packed= packIfLarge(fPreservedText);
+				if (packed != null)
+					preservedText= packed;
+			}
+			add(fStart, fEnd, text, preservedText, fUndoModificationStamp, fRedoModificationStamp);
 
 			// clear out all indexes now that the child is added
 			reinitialize();
@@ -524,16 +635,20 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 
 		@Override
 		protected boolean isValid() {
-			return fStart > -1 || fChanges.size() > 0;
+			return fStart > -1 || fCount > 0;
+		}
+
+		@Override
+		protected long getStorageSize() {
+			return super.getStorageSize() + fStorageSize;
 		}
 
 		@Override
 		protected long getUndoModificationStamp() {
 			if (fStart > -1)
 				return super.getUndoModificationStamp();
-			else if (fChanges.size() > 0)
-				return fChanges.get(0)
-						.getUndoModificationStamp();
+			else if (fCount > 0)
+				return fUndoModificationStamps[0];
 
 			return fUndoModificationStamp;
 		}
@@ -542,9 +657,8 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		protected long getRedoModificationStamp() {
 			if (fStart > -1)
 				return super.getRedoModificationStamp();
-			else if (fChanges.size() > 0)
-				return fChanges.get(fChanges.size() - 1)
-						.getRedoModificationStamp();
+			else if (fCount > 0)
+				return fRedoModificationStamps[fCount - 1];
 
 			return fRedoModificationStamp;
 		}
@@ -660,6 +774,13 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 	}
 
 
+	/**
+	 * The minimal length of a text to be packed when using compact storage.
+	 *
+	 * @since 3.7
+	 */
+	private static final int PACK_THRESHOLD= 1024;
+
 	/**
 	 * The undo context for this document undo manager.
 	 */
@@ -740,6 +861,21 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 	/** The list of clients connected. */
 	private List<Object> fConnected;
 
+	/**
+	 * Indicates whether the texts of committed changes are packed.
+	 *
+	 * @since 3.7
+	 */
+	private boolean fCompactStorage= false;
+
+	/**
+	 * The maximal number of bytes used by the texts of the undo history, or <code>-1</code> if
+	 * the history is not bounded by size.
+	 *
+	 * @since 3.7
+	 */
+	private long fMaximalUndoSize= -1;
+
 	/**
 	 *
 	 * Create a DocumentUndoManager for the given document.
@@ -858,6 +994,187 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 		fHistory.setLimit(fUndoContext, undoLimit);
 	}
 
+	/**
+	 * Sets whether the texts of committed changes are stored in compressed form. Large texts, as
+	 * produced by a reformat of the whole document or a replace all, then take a fraction of
+	 * their memory in the undo history, at the cost of decompressing them when they are undone or
+	 * redone. Changes committed before the call are not affected.
+	 *
+	 * @param compact <code>true</code> to compress the texts of committed changes,
+	 *            <code>false</code> to keep them as they are
+	 * @since 3.7
+	 */
+	public void setCompactStorage(boolean compact) {
+		fCompactStorage= compact;
+	}
+
+	/**
+	 * Bounds the undo history of this undo manager by the size of the texts it stores, in
+	 * addition to the limit set by {@link #setMaximalUndoLevel(int)}. When the texts of the undo
+	 * history use more than the given number of bytes, the oldest changes are removed from the
+	 * history. The most recent change is always kept.
+	 *
+	 * @param size the maximal number of bytes used by the texts of the undo history, or a negative
+	 *            value for no bound
+	 * @since 3.7
+	 */
+	public void setMaximalUndoSize(long size) {
+		fMaximalUndoSize= size < 0 ? -1 : size;
+		limitUndoSize();
+	}
+
+	/**
+	 * Removes the oldest operations from the undo history until the texts of the remaining ones
+	 * fit into the maximal undo size. The redo history is not affected. Operations that belong to
+	 * other undo contexts as well are only removed from the context of this undo manager, the way
+	 * the operation history enforces its limit.
+	 */
+	private void limitUndoSize() {
+		if (fMaximalUndoSize < 0 || fHistory == null)
+			return;
+
+		IUndoableOperation[] operations= fHistory.getUndoHistory(fUndoContext);
+		long size= 0;
+		int kept= 0;
+		for (int i= operations.length - 1; i >= 0; i--) {
+			if (operations[i] instanceof UndoableTextChange)
+				size+= ((UndoableTextChange) operations[i]).getStorageSize();
+			if (size > fMaximalUndoSize && kept > 0)
+				break;
+			kept++;
+		}
+
+		// remove the oldest operations one by one, lowering the limit would trim the redo history as well
+		for (int i= operations.length - kept - 1; i >= 0; i--) {
+			IUndoableOperation operation= operations[i];
+			if (operation.getContexts().length > 1)
+				operation.removeContext(fUndoContext);
+			else
+				fHistory.replaceOperation(operation, new IUndoableOperation[0]);
+		}
+	}
+
+	/**
+	 * Replaces text in the document, preserving the given modification stamp if supported.
+	 *
+	 * @param offset the document offset
+	 * @param length the length of the replaced text
+	 * @param text the text to insert
+	 * @param modificationStamp the modification stamp of the document after the replace
+	 * @since 3.7
+	 */
+	void replace(int offset, int length, String text, long modificationStamp) {
+		try {
+			if (fDocument instanceof IDocumentExtension4)
+				((IDocumentExtension4) fDocument).replace(offset, length, text, modificationStamp);
+			else
+				fDocument.replace(offset, length, text);
+		} catch (BadLocationException x) {
+		}
+	}
+
+	/**
+	 * Returns the approximate number of bytes used to store a text.
+	 *
+	 * @param text a <code>String</code>, a packed text or <code>null</code>
+	 * @return the storage size of <code>text</code>
+	 */
+	private static long sizeOf(Object text) {
+		if (text instanceof String)
+			return 2L * ((String) text).length();
+		if (text instanceof byte[])
+			return ((byte[]) text).length;
+		return 0;
+	}
+
+	/**
+	 * Returns a text which is either a <code>String</code> or packed.
+	 *
+	 * @param text a <code>String</code> or a packed text
+	 * @return the text
+	 */
+	private static String toText(Object text) {
+		return text instanceof byte[] ? unpack((byte[]) text) : (String) text;
+	}
+
+	/**
+	 * Packs a text if it is large enough to be worth it.
+	 *
+	 * @param text the text, may be <code>null</code>
+	 * @return the packed text, or <code>null</code> if it is not packed
+	 */
+	private static byte[] packIfLarge(String text) {
+		if (text == null || text.length() < PACK_THRESHOLD)
+			return null;
+		byte[] packed= pack(text);
+		return packed.length < 2L * text.length() ? packed : null;
+	}
+
+	/**
+	 * Compresses a text. The characters are packed as they are, so any text, including
+	 * one with unpaired surrogates, survives the round trip.
+	 *
+	 * @param text the text to pack
+	 * @return the packed text
+	 */
+	private static byte[] pack(String text) {
+		Deflater deflater= new Deflater(Deflater.BEST_SPEED);
+		try {
+			ByteArrayOutputStream out= new ByteArrayOutputStream(text.length() / 4);
+			byte[] input= new byte[8192];
+			byte[] output= new byte[8192];
+			int length= text.length();
+			for (int offset= 0; offset < length; offset+= input.length / 2) {
+				int end= Math.min(length, offset + input.length / 2);
+				int count= 0;
+				for (int i= offset; i < end; i++) {
+					char c= text.charAt(i);
+					input[count++]= (byte) (c >> 8);
+					input[count++]= (byte) c;
+				}
+				deflater.setInput(input, 0, count);
+				while (!deflater.needsInput())
+					out.write(output, 0, deflater.deflate(output));
+			}
+			deflater.finish();
+			while (!deflater.finished())
+				out.write(output, 0, deflater.deflate(output));
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Decompresses a text packed by {@link #pack(String)}.
+	 *
+	 * @param packed the packed text
+	 * @return the text
+	 */
+	private static String unpack(byte[] packed) {
+		Inflater inflater= new Inflater();
+		try {
+			inflater.setInput(packed);
+			ByteArrayOutputStream out= new ByteArrayOutputStream(packed.length * 4);
+			byte[] output= new byte[8192];
+			while (!inflater.finished()) {
+				int count= inflater.inflate(output);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				out.write(output, 0, count);
+			}
+			byte[] bytes= out.toByteArray();
+			char[] chars= new char[bytes.length / 2];
+			for (int i= 0; i < chars.length; i++)
+				chars[i]= (char) ((bytes[2 * i] & 0xff) << 8 | bytes[2 * i + 1] & 0xff);
+			return new String(chars);
+		} catch (DataFormatException x) {
+			throw new IllegalStateException(x);
+		} finally {
+			inflater.end();
+		}
+	}
+
 	/**
 	 * Fires a document undo event to all registered document undo listeners.
 	 * Uses a robust iterator.
@@ -907,6 +1224,7 @@ public class DocumentUndoManager implements IDocumentUndoManager {
 				|| edit instanceof UndoableCompoundTextChange) {
 			fHistory.add(edit);
 			fLastAddedTextEdit= edit;
+			limitUndoSize();
 		}
 	}
 
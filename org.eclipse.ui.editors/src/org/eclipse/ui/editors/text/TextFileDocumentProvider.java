@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -586,7 +586,7 @@ public class TextFileDocumentProvider implements IDocumentProvider, IDocumentPro
 			FileInfo info= createEmptyFileInfo();
 			info.fTextFileBuffer= fileBuffer;
 			info.fTextFileBufferLocationKind= locationKind;
-			info.fCachedReadOnlyState= isSystemFileReadOnly(info);
+			info.fCachedReadOnlyState= computeReadOnlyState(info);
 
 			if (file != null)
 				info.fModel= createAnnotationModel(file);
@@ -1036,7 +1036,7 @@ public class TextFileDocumentProvider implements IDocumentProvider, IDocumentPro
 	public void updateStateCache(Object element) throws CoreException {
 		FileInfo info= fFileInfoMap.get(element);
 		if (info != null) {
-			boolean isReadOnly= isSystemFileReadOnly(info);
+			boolean isReadOnly= computeReadOnlyState(info);
 			// See http://bugs.eclipse.org/bugs/show_bug.cgi?id=14469 for the dirty bit check
 			// See https://bugs.eclipse.org/bugs/show_bug.cgi?id=50699 for commenting that out
 			if (!info.fCachedReadOnlyState && isReadOnly /*&& !info.fTextFileBuffer.isDirty()*/)
@@ -1226,6 +1226,21 @@ public class TextFileDocumentProvider implements IDocumentProvider, IDocumentPro
 		return fileInfo.exists() && fileInfo.getAttribute(EFS.ATTRIBUTE_READ_ONLY);
 	}
 
+	/**
+	 * Returns whether the element denoted by the given info is read-only. This is the case if
+	 * the system file is read-only or if the file buffer does not commit changes to the existing
+	 * file, e.g. because the file is too large to be edited.
+	 *
+	 * @param info the element's file info object
+	 * @return <code>true</code> iff read-only
+	 */
+	private boolean computeReadOnlyState(FileInfo info) {
+		if (isSystemFileReadOnly(info))
+			return true;
+		IFileStore fileStore= getFileStore(info);
+		return fileStore != null && fileStore.fetchInfo().exists() && !info.fTextFileBuffer.isCommitable();
+	}
+
 	/**
 	 * Returns the file info object for the given element.
 	 *
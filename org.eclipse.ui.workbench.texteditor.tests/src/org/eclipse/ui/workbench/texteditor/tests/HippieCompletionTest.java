@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,6 +17,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -584,6 +585,88 @@ public class HippieCompletionTest {
 
 	}
 
+	@Test
+	public void testCompletions() throws Exception {
+		IDocument openDocument= new Document("" +
+				"bar0 bar1 bar\n" +
+				"bar2 bar0 bar3\n" +
+				"");
+		List<IDocument> otherDocuments= new ArrayList<>();
+		otherDocuments.add(new Document("bar4 bar1 bar5"));
+
+		List<String> completions= fEngine.getCompletions(openDocument, otherDocuments, "bar", 13);
+		assertEquals(Arrays.asList("1", "0", "2", "3", "4", "5", ""), completions);
+
+		// the word at the caret goes last
+		completions= fEngine.getCompletions(openDocument, new ArrayList<IDocument>(), "ba", 7);
+		assertEquals(Arrays.asList("r0", "r", "r2", "r3", "r1", ""), completions);
+
+		// the index follows the changes of the document
+		openDocument.replace(5, 0, "bar6\n");
+		openDocument.replace(0, 4, "bar7");
+		completions= fEngine.getCompletions(openDocument, otherDocuments, "bar", 18);
+		assertEquals(Arrays.asList("1", "6", "7", "2", "0", "3", "4", "5", ""), completions);
+	}
+
+	@Test
+	public void testCompletionsLookedUpLazily() throws Exception {
+		IDocument openDocument= new Document("bar0 bar1 bar");
+		final int[] accesses= new int[1];
+		IDocument otherDocument= new Document("bar2 bar0") {
+			@Override
+			public int getNumberOfLines() {
+				accesses[0]++;
+				return super.getNumberOfLines();
+			}
+		};
+		List<IDocument> otherDocuments= Arrays.asList(new IDocument[] { otherDocument });
+
+		Accessor state= createAccessor(fEngine.getCompletionsIterator(openDocument, otherDocuments, "bar", 13), 13);
+		assertEquals("1", next(state));
+		assertEquals("0", next(state));
+		assertEquals(0, accesses[0]);
+
+		assertEquals("2", next(state));
+		assertTrue(accesses[0] > 0);
+		assertEquals("", next(state));
+		assertEquals("1", next(state));
+	}
+
+	@Test
+	public void testCompletionsMatchIterator() throws Exception {
+		Random random= new Random(4711);
+		String[] pieces= { "a", "ab", "abc", "b", "\u00e9", "$", "_", "1", " ", "  ", "\t", "\n", "\r\n", ".", "(", "-", "\u0300", "\u0000", "\u00a0", "\ud835\udc00" };
+		for (int run= 0; run < 50; run++) {
+			IDocument openDocument= new Document(createText(random, pieces, 200));
+			IDocument otherDocument= new Document(createText(random, pieces, 100));
+			List<IDocument> otherDocuments= Arrays.asList(new IDocument[] { otherDocument });
+			for (int edit= 0; edit < 20; edit++) {
+				IDocument document= random.nextBoolean() ? openDocument : otherDocument;
+				int offset= random.nextInt(document.getLength() + 1);
+				int length= random.nextInt(Math.min(10, document.getLength() - offset) + 1);
+				document.replace(offset, length, createText(random, pieces, random.nextInt(4)));
+
+				for (int i= 0; i < 5; i++) {
+					int caret= random.nextInt(openDocument.getLength() + 1);
+					String prefix= fEngine.getPrefixString(openDocument, caret);
+					if (prefix == null)
+						continue;
+					List<String> expected= new ArrayList<>();
+					for (Iterator<String> it= fEngine.getMultipleDocumentsIterator(openDocument, otherDocuments, prefix, caret); it.hasNext();)
+						expected.add(it.next());
+					assertEquals(fEngine.makeUnique(expected), fEngine.getCompletions(openDocument, otherDocuments, prefix, caret));
+				}
+			}
+		}
+	}
+
+	private static String createText(Random random, String[] pieces, int count) {
+		StringBuilder text= new StringBuilder();
+		for (int i= 0; i < count; i++)
+			text.append(pieces[random.nextInt(pieces.length)]);
+		return text.toString();
+	}
+
 	private List<String> createSuggestions(String prefix, IDocument doc) {
 		return createSuggestions(prefix, Arrays.asList(new IDocument[]{doc}));
 	}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.workbench.texteditor.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.source.LineRange;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.LineDifferencer;
+import org.eclipse.ui.internal.texteditor.quickdiff.QuickDiffRangeDifference;
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocumentEquivalenceClass;
+
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+
+/**
+ * Tests {@link LineDifferencer}.
+ *
+ * @since 3.11
+ */
+public class LineDifferencerTest {
+
+	private static int getLongestCommonSubsequence(int[] left, int[] right) {
+		int[][] lengths= new int[left.length + 1][right.length + 1];
+		for (int i= left.length - 1; i >= 0; i--) {
+			for (int j= right.length - 1; j >= 0; j--) {
+				if (left[i] == right[j])
+					lengths[i][j]= lengths[i + 1][j + 1] + 1;
+				else
+					lengths[i][j]= Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+			}
+		}
+		return lengths[0][0];
+	}
+
+	/**
+	 * Checks that the ranges alternate, cover both sides, and that the unchanged ranges match.
+	 *
+	 * @param left the left hashes
+	 * @param right the right hashes
+	 * @param ranges the differences
+	 * @return the number of unchanged lines
+	 */
+	private static int assertConsistent(int[] left, int[] right, List<QuickDiffRangeDifference> ranges) {
+		int leftLine= 0;
+		int rightLine= 0;
+		int unchanged= 0;
+		int lastKind= -1;
+		for (QuickDiffRangeDifference range : ranges) {
+			assertEquals(leftLine, range.leftStart());
+			assertEquals(rightLine, range.rightStart());
+			assertTrue(range.kind() != lastKind);
+			assertTrue(range.leftLength() > 0 || range.rightLength() > 0);
+			if (range.kind() == RangeDifference.NOCHANGE) {
+				assertEquals(range.leftLength(), range.rightLength());
+				for (int i= 0; i < range.leftLength(); i++)
+					assertEquals(left[leftLine + i], right[rightLine + i]);
+				unchanged+= range.leftLength();
+			} else {
+				assertEquals(RangeDifference.CHANGE, range.kind());
+			}
+			lastKind= range.kind();
+			leftLine= range.leftEnd();
+			rightLine= range.rightEnd();
+		}
+		assertEquals(left.length, leftLine);
+		assertEquals(right.length, rightLine);
+		return unchanged;
+	}
+
+	private static int[] createRandom(Random random, int maxLength, int alphabet) {
+		int[] values= new int[random.nextInt(maxLength + 1)];
+		for (int i= 0; i < values.length; i++)
+			values[i]= random.nextInt(alphabet);
+		return values;
+	}
+
+	@Test
+	public void testRandomSequences() {
+		Random random= new Random(11);
+		for (int i= 0; i < 2000; i++) {
+			int alphabet= 1 + random.nextInt(8);
+			int[] left= createRandom(random, 40, alphabet);
+			int[] right= createRandom(random, 40, alphabet);
+			List<QuickDiffRangeDifference> ranges= LineDifferencer.findRanges(left, right, null);
+			assertEquals(getLongestCommonSubsequence(left, right), assertConsistent(left, right, ranges));
+		}
+	}
+
+	@Test
+	public void testEditedSequences() {
+		Random random= new Random(5);
+		for (int i= 0; i < 200; i++) {
+			int[] left= createRandom(random, 500, 1000);
+			int[] right= left.clone();
+			for (int j= random.nextInt(10); j >= 0 && right.length > 0; j--)
+				right[random.nextInt(right.length)]= random.nextInt(1000);
+			List<QuickDiffRangeDifference> ranges= LineDifferencer.findRanges(left, right, null);
+			assertEquals(getLongestCommonSubsequence(left, right), assertConsistent(left, right, ranges));
+		}
+	}
+
+	@Test
+	public void testDissimilarSequences() {
+		Random random= new Random(3);
+		for (int i= 0; i < 5; i++) {
+			int[] left= createRandom(random, 5000, 100);
+			int[] right= createRandom(random, 5000, 100);
+			assertConsistent(left, right, LineDifferencer.findRanges(left, right, null));
+		}
+	}
+
+	@Test
+	public void testManyDifferences() {
+		// many dissimilar blocks, each of which is cheap to diff on its own
+		Random random= new Random(7);
+		int blocks= 500;
+		int[] left= new int[blocks * 105];
+		int[] right= new int[left.length];
+		int line= 0;
+		for (int i= 0; i < blocks; i++) {
+			for (int j= 0; j < 5; j++, line++) {
+				left[line]= 1000 + line;
+				right[line]= 1000 + line;
+			}
+			for (int j= 0; j < 100; j++, line++) {
+				left[line]= random.nextInt(4);
+				right[line]= 4 + random.nextInt(4);
+			}
+		}
+
+		// the differencer checks for cancellation once per edit step
+		final int[] steps= { 0 };
+		NullProgressMonitor monitor= new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				steps[0]++;
+				return false;
+			}
+		};
+		assertConsistent(left, right, LineDifferencer.findRanges(left, right, monitor));
+		assertTrue(steps[0] < left.length + right.length);
+	}
+
+	@Test
+	public void testDocumentRanges() {
+		DocumentEquivalenceClass left= new DocumentEquivalenceClass(new Document("a\nb\nc\nd\ne\n"));
+		DocumentEquivalenceClass right= new DocumentEquivalenceClass(new Document("a\nb\nx\nd\ne\nf\n"));
+
+		List<QuickDiffRangeDifference> ranges= LineDifferencer.findRanges(left, new LineRange(1, 3), right, new LineRange(1, 3), null);
+		assertEquals(3, ranges.size());
+		assertEquals(new QuickDiffRangeDifference(RangeDifference.NOCHANGE, 0, 1, 0, 1), ranges.get(0));
+		assertEquals(new QuickDiffRangeDifference(RangeDifference.CHANGE, 1, 1, 1, 1), ranges.get(1));
+		assertEquals(new QuickDiffRangeDifference(RangeDifference.NOCHANGE, 2, 1, 2, 1), ranges.get(2));
+
+		ranges= LineDifferencer.findRanges(left, null, right, null, null);
+		assertEquals(5, ranges.size());
+		assertEquals(new QuickDiffRangeDifference(RangeDifference.CHANGE, 5, 1, 5, 0), ranges.get(3));
+	}
+
+	@Test(expected= OperationCanceledException.class)
+	public void testCancel() {
+		NullProgressMonitor monitor= new NullProgressMonitor();
+		monitor.setCanceled(true);
+		LineDifferencer.findRanges(new int[] { 1, 2 }, new int[] { 3, 4 }, monitor);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2016 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -33,6 +33,7 @@ import org.eclipse.ui.workbench.texteditor.tests.rulers.RulerTestSuite;
 		ChangeRegionTest.class,
 		RulerTestSuite.class,
 		HunkComputerTest.class,
+		LineDifferencerTest.class,
 		ScreenshotTest.class
 })
 public class WorkbenchTextEditorTestSuite {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,10 @@
 package org.eclipse.ui.internal.texteditor;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.regex.Matcher;
@@ -336,6 +338,168 @@ public final class HippieCompletionEngine {
 	}
 
 
+	/**
+	 * Returns the unique completions for all the documents received, in the same order as
+	 * {@link #getMultipleDocumentsIterator(IDocument, List, CharSequence, int)}: first the
+	 * completions backward from the passed position in the document, then forward in that same
+	 * document, then forward through each of the other documents, and finally the empty
+	 * completion.
+	 * <p>
+	 * The words are looked up in the {@link HippieWordIndex} of each document instead of scanning
+	 * the documents, so only the words that start with the prefix are visited.
+	 * </p>
+	 *
+	 * @param document the document to be scanned
+	 * @param otherDocuments the additional documents to be scanned
+	 * @param prefix the prefix to search for
+	 * @param firstPosition the caret position in the document
+	 * @return the unique completions, excluding the prefix
+	 * @see #getCompletionsIterator(IDocument, List, String, int)
+	 * @since 3.11
+	 */
+	public List<String> getCompletions(IDocument document, List<IDocument> otherDocuments, String prefix, int firstPosition) {
+		LinkedHashSet<String> completions= new LinkedHashSet<>();
+		addAll(completions, getCompletionsIterator(document, otherDocuments, prefix, firstPosition));
+		return new ArrayList<>(completions);
+	}
+
+	private static void addAll(LinkedHashSet<String> completions, Iterator<String> iterator) {
+		while (iterator.hasNext())
+			completions.add(iterator.next());
+	}
+
+	/**
+	 * Provides an iterator over the completions for all the documents received, in the order of
+	 * {@link #getCompletions(IDocument, List, String, int)}. The completions may contain
+	 * duplicates.
+	 * <p>
+	 * The completions of a document are looked up in its {@link HippieWordIndex} when the
+	 * iterator reaches the document, so the documents after the one that provides the
+	 * completion the user picks are neither indexed nor scanned.
+	 * </p>
+	 *
+	 * @param document the document to be scanned
+	 * @param otherDocuments the additional documents to be scanned
+	 * @param prefix the prefix to search for
+	 * @param firstPosition the caret position in the document
+	 * @return the iterator over the completions, excluding the prefix
+	 * @since 3.11
+	 */
+	public Iterator<String> getCompletionsIterator(IDocument document, List<IDocument> otherDocuments, String prefix, int firstPosition) {
+		return new IndexedDocumentsIterator(document, otherDocuments, prefix, firstPosition);
+	}
+
+
+	/**
+	 * Iterates the completions of several documents, looking up the completions of each document
+	 * when the previous documents have been consumed.
+	 *
+	 * @since 3.11
+	 */
+	private final class IndexedDocumentsIterator implements Iterator<String> {
+
+		/** The document that's currently opened. */
+		private final IDocument fOpenDocument;
+
+		/** The list of IDocuments that we should search after the opened document. */
+		private final List<IDocument> fOtherDocuments;
+
+		/** The prefix that should be searched. */
+		private final String fPrefix;
+
+		/** The current offset in the opened document. */
+		private final int fSelectionOffset;
+
+		/**
+		 * -1 means that we still haven't looked up the completions of the opened document. Any
+		 * other number is the index of the next of the other documents.
+		 */
+		private int fCurrLocation= -1;
+
+		/** The completions being returned, <code>null</code> before the first lookup. */
+		private Iterator<String> fCompletions;
+
+		/** The forward completions of the opened document if it cannot be indexed. */
+		private Iterator<String> fPendingCompletions;
+
+		/** Indicates whether we already returned the empty completion. */
+		private boolean fAddedEmpty= false;
+
+		private IndexedDocumentsIterator(IDocument openDocument, List<IDocument> otherDocuments, String prefix, int selectionOffset) {
+			fOpenDocument= openDocument;
+			fOtherDocuments= otherDocuments;
+			fPrefix= prefix;
+			fSelectionOffset= selectionOffset;
+		}
+
+		/**
+		 * Looks up the completions of the next document.
+		 *
+		 * @return <code>false</code> if all documents have been consumed, including the empty
+		 *         completion
+		 */
+		private boolean advance() {
+			if (fPendingCompletions != null) {
+				fCompletions= fPendingCompletions;
+				fPendingCompletions= null;
+			} else if (fCurrLocation == -1) {
+				fCurrLocation++;
+				HippieWordIndex index= HippieWordIndex.getIndex(fOpenDocument);
+				if (index != null) {
+					try {
+						fCompletions= index.getCompletions(fOpenDocument, fPrefix, fSelectionOffset).iterator();
+					} catch (BadLocationException e) {
+						log(e);
+						fCompletions= null;
+					}
+				} else {
+					fCompletions= getBackwardIterator(fOpenDocument, fPrefix, fSelectionOffset);
+					fPendingCompletions= getForwardIterator(fOpenDocument, fPrefix, fSelectionOffset - fPrefix.length(), true);
+				}
+			} else if (fCurrLocation < fOtherDocuments.size()) {
+				IDocument otherDocument= fOtherDocuments.get(fCurrLocation++);
+				HippieWordIndex index= HippieWordIndex.getIndex(otherDocument);
+				if (index != null)
+					fCompletions= index.getCompletions(otherDocument, fPrefix).iterator();
+				else
+					fCompletions= getForwardIterator(otherDocument, fPrefix, 0, false);
+			} else if (!fAddedEmpty) {
+				fAddedEmpty= true;
+				fCompletions= Collections.singletonList("").iterator(); //$NON-NLS-1$
+			} else {
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (fCompletions == null || !fCompletions.hasNext()) {
+				if (!advance())
+					return false;
+			}
+			return true;
+		}
+
+		@Override
+		public String next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException("No more elements to iterate"); //$NON-NLS-1$
+			}
+			return fCompletions.next();
+		}
+
+		/**
+		 * Not supported!
+		 *
+		 * @throws UnsupportedOperationException always.
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Not supported"); //$NON-NLS-1$
+		}
+	}
+
 
 	/**
 	 * Class that keeps the state while iterating the suggestions
@@ -0,0 +1,558 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.texteditor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+
+
+/**
+ * An index of the words of a document which can be completed by the
+ * {@link HippieCompletionEngine}. The index is kept up to date with the document from its
+ * document events, only the lines touched by a change are scanned again.
+ * <p>
+ * A word is a maximal run of word characters which starts at the beginning of a line or right
+ * after a word boundary character, the same words the engine's regular expressions find. The
+ * index maps each word to the lines it occurs in, and each line knows the columns of its words,
+ * so the words closest to a position can be found without scanning the document and without
+ * updating the positions of all words when text is inserted or removed.
+ * </p>
+ *
+ * @since 3.11
+ */
+public final class HippieWordIndex {
+
+	/**
+	 * A word and the lines it occurs in.
+	 */
+	private static final class Word {
+
+		final String fText;
+
+		/** The lines containing the word, ordered by line number, each line once. */
+		final List<Line> fLines= new ArrayList<>(2);
+
+		Word(String text) {
+			fText= text;
+		}
+	}
+
+	/**
+	 * The words of a line.
+	 */
+	private static final class Line {
+
+		/** The number of the line. */
+		int fNumber;
+
+		/** The words of the line, in the order they occur. */
+		Word[] fWords;
+
+		/** The column of each word. */
+		int[] fColumns;
+
+		Line(int number) {
+			fNumber= number;
+		}
+	}
+
+	/**
+	 * The position of the occurrence of a word which is closest to the completion offset.
+	 */
+	private static final class Match {
+
+		final Word fWord;
+		final int fLine;
+		final int fColumn;
+
+		Match(Word word, int line, int column) {
+			fWord= word;
+			fLine= line;
+			fColumn= column;
+		}
+	}
+
+	/** Orders matches by position. */
+	private static final Comparator<Match> POSITION_ORDER= new Comparator<Match>() {
+		@Override
+		public int compare(Match m1, Match m2) {
+			if (m1.fLine != m2.fLine)
+				return m1.fLine < m2.fLine ? -1 : 1;
+			return m1.fColumn < m2.fColumn ? -1 : m1.fColumn == m2.fColumn ? 0 : 1;
+		}
+	};
+
+	private static final Word[] NO_WORDS= new Word[0];
+	private static final int[] NO_COLUMNS= new int[0];
+
+	/**
+	 * The maximal length of documents that are indexed. The memory needed by the index of larger
+	 * documents would be out of proportion.
+	 */
+	private static final int MAX_DOCUMENT_LENGTH= 8 * 1024 * 1024;
+
+	/** The indexes of the documents. */
+	private static final Map<IDocument, HippieWordIndex> fgIndexes= new WeakHashMap<>();
+
+	/**
+	 * Returns the index of the given document. The index is created when it is first requested
+	 * and then kept up to date as long as the document exists.
+	 *
+	 * @param document the document
+	 * @return the index, or <code>null</code> if the document is too large to be indexed
+	 */
+	public static HippieWordIndex getIndex(IDocument document) {
+		if (document.getLength() > MAX_DOCUMENT_LENGTH)
+			return null;
+
+		synchronized (fgIndexes) {
+			HippieWordIndex index= fgIndexes.get(document);
+			if (index == null) {
+				index= new HippieWordIndex();
+				document.addDocumentListener(index.fListener);
+				fgIndexes.put(document, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Tells whether the given character belongs to words, i.e. is an identifier part or a
+	 * currency symbol.
+	 *
+	 * @param codePoint the character
+	 * @return <code>true</code> if the character is a word character
+	 */
+	static boolean isWordPart(int codePoint) {
+		switch (Character.getType(codePoint)) {
+			case Character.UPPERCASE_LETTER:
+			case Character.LOWERCASE_LETTER:
+			case Character.TITLECASE_LETTER:
+			case Character.MODIFIER_LETTER:
+			case Character.OTHER_LETTER:
+			case Character.NON_SPACING_MARK:
+			case Character.CONNECTOR_PUNCTUATION:
+			case Character.DECIMAL_DIGIT_NUMBER:
+			case Character.LETTER_NUMBER:
+			case Character.CURRENCY_SYMBOL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Tells whether words can start after the given character, i.e. whether it is white space, a
+	 * separator, or a punctuation character or symbol that is not a word character.
+	 *
+	 * @param codePoint the character
+	 * @return <code>true</code> if the character is a word boundary character
+	 */
+	static boolean isBoundary(int codePoint) {
+		switch (codePoint) {
+			case ' ':
+			case '\t':
+			case '\n':
+			case 0x0B:
+			case '\f':
+			case '\r':
+				return true;
+			default:
+				break;
+		}
+		switch (Character.getType(codePoint)) {
+			case Character.SPACE_SEPARATOR:
+			case Character.LINE_SEPARATOR:
+			case Character.PARAGRAPH_SEPARATOR:
+			case Character.DASH_PUNCTUATION:
+			case Character.START_PUNCTUATION:
+			case Character.END_PUNCTUATION:
+			case Character.INITIAL_QUOTE_PUNCTUATION:
+			case Character.FINAL_QUOTE_PUNCTUATION:
+			case Character.OTHER_PUNCTUATION:
+			case Character.MATH_SYMBOL:
+			case Character.MODIFIER_SYMBOL:
+			case Character.OTHER_SYMBOL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/** The words, sorted so that the words with a prefix form a range. */
+	private final TreeMap<String, Word> fWords= new TreeMap<>();
+
+	/** The lines of the document. */
+	private final List<Line> fLines= new ArrayList<>();
+
+	/** Tells whether the index reflects the document, <code>false</code> if it must be rebuilt. */
+	private boolean fIsValid;
+
+	/** The first line touched by the change being processed, <code>-1</code> if there is none. */
+	private int fFirstChangedLine= -1;
+
+	/** The number of lines touched by the change being processed before the change. */
+	private int fChangedLineCount;
+
+	/** Updates the index. */
+	private final IDocumentListener fListener= new IDocumentListener() {
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			aboutToBeChanged(event);
+		}
+
+		@Override
+		public void documentChanged(DocumentEvent event) {
+			changed(event);
+		}
+	};
+
+	private HippieWordIndex() {
+	}
+
+	/**
+	 * Returns the completions of the words in the document that start with the given prefix and
+	 * are longer than it, in the order in which the engine finds them: first the words before
+	 * the offset, the closest first, then the words after the start of the prefix in document
+	 * order, and finally the word the prefix belongs to. Each completion is returned once, at
+	 * the position of its first occurrence in this order.
+	 *
+	 * @param document the indexed document
+	 * @param prefix the prefix
+	 * @param offset the offset at the end of the prefix
+	 * @return the completions, excluding the prefix
+	 * @throws BadLocationException if the offset is invalid
+	 */
+	public synchronized List<String> getCompletions(IDocument document, String prefix, int offset) throws BadLocationException {
+		validate(document);
+
+		int line= document.getLineOfOffset(offset);
+		int column= offset - document.getLineOffset(line);
+		int prefixColumn= column - prefix.length();
+
+		List<Match> before= new ArrayList<>();
+		List<Match> after= new ArrayList<>();
+		Word current= null;
+		for (Word word : getWords(prefix)) {
+			Match match= findLastBefore(word, line, column);
+			if (match != null) {
+				before.add(match);
+				continue;
+			}
+			match= findFirstFrom(word, line, prefixColumn);
+			if (match != null && match.fLine == line && match.fColumn == prefixColumn) {
+				// the word the prefix belongs to goes last, unless it occurs again later
+				match= findFirstFrom(word, line, prefixColumn + 1);
+				if (match == null)
+					current= word;
+			}
+			if (match != null)
+				after.add(match);
+		}
+
+		Collections.sort(before, Collections.reverseOrder(POSITION_ORDER));
+		Collections.sort(after, POSITION_ORDER);
+
+		List<String> completions= new ArrayList<>(before.size() + after.size() + 1);
+		addCompletions(before, prefix, completions);
+		addCompletions(after, prefix, completions);
+		if (current != null)
+			completions.add(current.fText.substring(prefix.length()));
+		return completions;
+	}
+
+	/**
+	 * Returns the completions of the words in the document that start with the given prefix and
+	 * are longer than it, in the order of their first occurrence in the document.
+	 *
+	 * @param document the indexed document
+	 * @param prefix the prefix
+	 * @return the completions, excluding the prefix
+	 */
+	public synchronized List<String> getCompletions(IDocument document, String prefix) {
+		validate(document);
+
+		List<Match> matches= new ArrayList<>();
+		for (Word word : getWords(prefix)) {
+			Line first= word.fLines.get(0);
+			matches.add(new Match(word, first.fNumber, getFirstColumn(first, word)));
+		}
+		Collections.sort(matches, POSITION_ORDER);
+
+		List<String> completions= new ArrayList<>(matches.size());
+		addCompletions(matches, prefix, completions);
+		return completions;
+	}
+
+	private static void addCompletions(List<Match> matches, String prefix, List<String> completions) {
+		for (int i= 0; i < matches.size(); i++)
+			completions.add(matches.get(i).fWord.fText.substring(prefix.length()));
+	}
+
+	/**
+	 * Returns the words that start with the given prefix and are longer than it.
+	 *
+	 * @param prefix the prefix
+	 * @return the words
+	 */
+	private Collection<Word> getWords(String prefix) {
+		if (prefix.length() == 0)
+			return Collections.emptyList();
+		// all words with the prefix are greater than the prefix and less than the prefix followed by the greatest character
+		return fWords.subMap(prefix, false, prefix + Character.MAX_VALUE, false).values();
+	}
+
+	/**
+	 * Finds the last occurrence of the word that ends at or before the given position.
+	 *
+	 * @param word the word
+	 * @param line the line of the position
+	 * @param column the column of the position
+	 * @return the occurrence, or <code>null</code> if there is none
+	 */
+	private static Match findLastBefore(Word word, int line, int column) {
+		int length= word.fText.length();
+		for (int i= findLine(word, line + 1) - 1; i >= 0; i--) {
+			Line candidate= word.fLines.get(i);
+			for (int j= candidate.fWords.length - 1; j >= 0; j--) {
+				if (candidate.fWords[j] == word && (candidate.fNumber < line || candidate.fColumns[j] + length <= column))
+					return new Match(word, candidate.fNumber, candidate.fColumns[j]);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the first occurrence of the word that starts at or after the given position.
+	 *
+	 * @param word the word
+	 * @param line the line of the position
+	 * @param column the column of the position
+	 * @return the occurrence, or <code>null</code> if there is none
+	 */
+	private static Match findFirstFrom(Word word, int line, int column) {
+		for (int i= findLine(word, line); i < word.fLines.size(); i++) {
+			Line candidate= word.fLines.get(i);
+			for (int j= 0; j < candidate.fWords.length; j++) {
+				if (candidate.fWords[j] == word && (candidate.fNumber > line || candidate.fColumns[j] >= column))
+					return new Match(word, candidate.fNumber, candidate.fColumns[j]);
+			}
+		}
+		return null;
+	}
+
+	private static int getFirstColumn(Line line, Word word) {
+		for (int i= 0; i < line.fWords.length; i++) {
+			if (line.fWords[i] == word)
+				return line.fColumns[i];
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the first line in the word's list whose number is not less than the
+	 * given one.
+	 *
+	 * @param word the word
+	 * @param lineNumber the line number
+	 * @return the index in the word's list of lines
+	 */
+	private static int findLine(Word word, int lineNumber) {
+		List<Line> lines= word.fLines;
+		int low= 0;
+		int high= lines.size();
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			if (lines.get(mid).fNumber < lineNumber)
+				low= mid + 1;
+			else
+				high= mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Builds the index if it does not reflect the document.
+	 *
+	 * @param document the document
+	 */
+	private void validate(IDocument document) {
+		if (fIsValid)
+			return;
+
+		fWords.clear();
+		fLines.clear();
+		try {
+			int lines= document.getNumberOfLines();
+			for (int i= 0; i < lines; i++) {
+				Line line= new Line(i);
+				fLines.add(line);
+				scan(document, line);
+			}
+			fIsValid= true;
+		} catch (BadLocationException x) {
+			// the document was modified concurrently, build again on next access
+			fWords.clear();
+			fLines.clear();
+		}
+	}
+
+	private synchronized void aboutToBeChanged(DocumentEvent event) {
+		fFirstChangedLine= -1;
+		if (!fIsValid)
+			return;
+
+		try {
+			IDocument document= event.getDocument();
+			fFirstChangedLine= document.getLineOfOffset(event.getOffset());
+			fChangedLineCount= document.getLineOfOffset(event.getOffset() + event.getLength()) - fFirstChangedLine + 1;
+		} catch (BadLocationException x) {
+			fIsValid= false;
+		}
+	}
+
+	private synchronized void changed(DocumentEvent event) {
+		if (!fIsValid)
+			return;
+		if (fFirstChangedLine == -1) {
+			// built while the document was being changed
+			fIsValid= false;
+			return;
+		}
+
+		try {
+			IDocument document= event.getDocument();
+			String text= event.getText();
+			int lastLine= document.getLineOfOffset(event.getOffset() + (text == null ? 0 : text.length()));
+			int lineCount= lastLine - fFirstChangedLine + 1;
+
+			List<Line> removed= fLines.subList(fFirstChangedLine, fFirstChangedLine + fChangedLineCount);
+			for (int i= 0; i < removed.size(); i++)
+				removeWords(removed.get(i));
+			removed.clear();
+
+			int delta= lineCount - fChangedLineCount;
+			if (delta != 0) {
+				for (int i= fFirstChangedLine; i < fLines.size(); i++)
+					fLines.get(i).fNumber+= delta;
+			}
+
+			List<Line> added= new ArrayList<>(lineCount);
+			for (int i= 0; i < lineCount; i++)
+				added.add(new Line(fFirstChangedLine + i));
+			fLines.addAll(fFirstChangedLine, added);
+			for (int i= 0; i < lineCount; i++)
+				scan(document, added.get(i));
+		} catch (BadLocationException | IndexOutOfBoundsException x) {
+			fIsValid= false;
+		} finally {
+			fFirstChangedLine= -1;
+		}
+	}
+
+	/**
+	 * Adds the words of the given line to the index.
+	 *
+	 * @param document the document
+	 * @param line the line
+	 * @throws BadLocationException if the line does not exist
+	 */
+	private void scan(IDocument document, Line line) throws BadLocationException {
+		// the line delimiter is scanned as well, its characters are word boundaries
+		String text= document.get(document.getLineOffset(line.fNumber), document.getLineLength(line.fNumber));
+
+		List<Word> words= null;
+		int[] columns= NO_COLUMNS;
+		boolean afterBoundary= true;
+		int i= 0;
+		while (i < text.length()) {
+			int codePoint= text.codePointAt(i);
+			if (isWordPart(codePoint)) {
+				int start= i;
+				do {
+					i+= Character.charCount(codePoint);
+				} while (i < text.length() && isWordPart(codePoint= text.codePointAt(i)));
+				if (afterBoundary) {
+					if (words == null) {
+						words= new ArrayList<>(4);
+						columns= new int[4];
+					} else if (words.size() == columns.length) {
+						int[] newColumns= new int[columns.length * 2];
+						System.arraycopy(columns, 0, newColumns, 0, columns.length);
+						columns= newColumns;
+					}
+					columns[words.size()]= start;
+					words.add(addOccurrence(text.substring(start, i), line));
+				}
+				afterBoundary= false;
+			} else {
+				afterBoundary= isBoundary(codePoint);
+				i+= Character.charCount(codePoint);
+			}
+		}
+
+		if (words == null) {
+			line.fWords= NO_WORDS;
+			line.fColumns= NO_COLUMNS;
+		} else {
+			line.fWords= words.toArray(new Word[words.size()]);
+			line.fColumns= new int[words.size()];
+			System.arraycopy(columns, 0, line.fColumns, 0, words.size());
+		}
+	}
+
+	/**
+	 * Records that the given word occurs in the given line.
+	 *
+	 * @param text the word
+	 * @param line the line
+	 * @return the indexed word
+	 */
+	private Word addOccurrence(String text, Line line) {
+		Word word= fWords.get(text);
+		if (word == null) {
+			word= new Word(text);
+			fWords.put(text, word);
+		}
+		int index= findLine(word, line.fNumber);
+		if (index == word.fLines.size() || word.fLines.get(index) != line)
+			word.fLines.add(index, line);
+		return word;
+	}
+
+	/**
+	 * Removes the words of the given line from the index.
+	 *
+	 * @param line the line
+	 */
+	private void removeWords(Line line) {
+		for (int i= 0; i < line.fWords.length; i++) {
+			Word word= line.fWords[i];
+			int index= findLine(word, line.fNumber);
+			if (index < word.fLines.size() && word.fLines.get(index) == line) {
+				word.fLines.remove(index);
+				if (word.fLines.isEmpty())
+					fWords.remove(word.fText);
+			}
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,6 @@
 package org.eclipse.ui.internal.texteditor.quickdiff;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -34,6 +33,7 @@ import org.eclipse.jface.text.DocumentRewriteSessionEvent;
 import org.eclipse.jface.text.DocumentRewriteSessionType;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentExtension5;
 import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IDocumentRewriteSessionListener;
 import org.eclipse.jface.text.IRegion;
@@ -54,17 +54,13 @@ import org.eclipse.jface.text.source.LineRange;
 import org.eclipse.ui.internal.texteditor.NLSUtility;
 import org.eclipse.ui.internal.texteditor.TextEditorPlugin;
 import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DJBHashFunction;
-import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocEquivalenceComparator;
 import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocumentEquivalenceClass;
 import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.IHashFunction;
 import org.eclipse.ui.progress.IProgressConstants;
 
 import org.eclipse.ui.texteditor.quickdiff.IQuickDiffReferenceProvider;
 
-import org.eclipse.compare.rangedifferencer.AbstractRangeDifferenceFactory;
-import org.eclipse.compare.rangedifferencer.IRangeComparator;
 import org.eclipse.compare.rangedifferencer.RangeDifference;
-import org.eclipse.compare.rangedifferencer.RangeDifferencer;
 
 /**
  * Standard implementation of <code>ILineDiffer</code> as an incremental diff engine. A
@@ -84,19 +80,6 @@ import org.eclipse.compare.rangedifferencer.RangeDifferencer;
 public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnnotationModel, ILineDifferExtension, ILineDifferExtension2 {
 
 
-	/**
-	 * Custom range difference factory.
-	 *
-	 * @since 3.5
-	 */
-	private static class RangeDifferenceFactory extends AbstractRangeDifferenceFactory {
-		@Override
-		protected org.eclipse.compare.rangedifferencer.RangeDifference createRangeDifference() {
-			return new QuickDiffRangeDifference();
-		}
-	}
-
-
 	/**
 	 * Artificial line difference information indicating a change with an empty line as original text.
 	 */
@@ -135,6 +118,13 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 
 	/** The delay after which the initialization job is triggered. */
 	private static final int INITIALIZE_DELAY= 500;
+	/**
+	 * The maximal number of lines that are re-diffed incrementally, larger changes re-initialize
+	 * the differ.
+	 *
+	 * @since 3.11
+	 */
+	private static final int MAX_INCREMENTAL_LINES= 500;
 
 	/** Suspended state */
 	private static final int SUSPENDED= 0;
@@ -227,8 +217,6 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 	private Thread fThread;
 	private DocumentEvent fLastUIEvent;
 
-	private RangeDifferenceFactory fRangeDiffFactory= new RangeDifferenceFactory();
-
 
 	/**
 	 * Creates a new differ.
@@ -504,7 +492,7 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 			public IStatus run(IProgressMonitor monitor) {
 
 				// 1:	wait for any previous job that was canceled to avoid job flooding
-				// It will return relatively quickly as RangeDifferencer supports canceling
+				// It will return relatively quickly as LineDifferencer supports canceling
 				if (oldJob != null)
 					try {
 						oldJob.join();
@@ -563,8 +551,9 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 				left.addDocumentListener(DocumentLineDiffer.this);
 
 				// create the reference copy - note that any changes on the
-				// reference will trigger re-initialization anyway
-				reference= createCopy(left);
+				// reference will trigger re-initialization anyway. The reference
+				// is only read, so a snapshot of it will do
+				reference= left instanceof IDocumentExtension5 ? createSnapshot((IDocumentExtension5) left) : createCopy(left);
 				if (reference == null)
 					return Status.CANCEL_STATUS;
 
@@ -576,15 +565,22 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 
 				if (lock != null) {
 					// a) if we can, acquire locks in proper order and copy
-					// the document
+					// the document - or only take a snapshot of it, which
+					// keeps the lock for a short time, and copy it afterwards
+					IDocument snapshot= null;
 					synchronized (lock) {
 						synchronized (DocumentLineDiffer.this) {
 							if (isCanceled(monitor))
 								return Status.CANCEL_STATUS;
 							fStoredEvents.clear();
-							actual= createUnprotectedCopy(right);
+							if (right instanceof IDocumentExtension5)
+								snapshot= ((IDocumentExtension5) right).getSnapshot();
+							else
+								actual= createUnprotectedCopy(right);
 						}
 					}
+					if (snapshot != null)
+						actual= createUnprotectedCopy(snapshot);
 				} else {
 					// b) cannot lock the document
 					// Now this is fun. The reference documents may be PartiallySynchronizedDocuments
@@ -621,12 +617,15 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 				IHashFunction hash= new DJBHashFunction();
 				DocumentEquivalenceClass leftEquivalent= new DocumentEquivalenceClass(reference, hash);
 				fLeftEquivalent= leftEquivalent;
-				IRangeComparator ref= new DocEquivalenceComparator(leftEquivalent, null);
 
 				DocumentEquivalenceClass rightEquivalent= new DocumentEquivalenceClass(actual, hash);
 				fRightEquivalent= rightEquivalent;
-				IRangeComparator act= new DocEquivalenceComparator(rightEquivalent, null);
-				ArrayList<QuickDiffRangeDifference> diffs= asQuickDiffRangeDifference(RangeDifferencer.findRanges(fRangeDiffFactory, monitor, ref, act));
+				ArrayList<QuickDiffRangeDifference> diffs;
+				try {
+					diffs= LineDifferencer.findRanges(leftEquivalent, null, rightEquivalent, null, monitor);
+				} catch (OperationCanceledException e) {
+					return Status.CANCEL_STATUS;
+				}
 				// 7:	Reset the model to the just gotten differences
 				// 		re-inject stored events to get up to date.
 				synchronized (DocumentLineDiffer.this) {
@@ -735,6 +734,26 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 			private IDocument createUnprotectedCopy(IDocument document) {
 				return new Document(document.get());
 			}
+
+			/**
+			 * Creates an immutable snapshot of <code>document</code> and catches any
+			 * exceptions that may occur if the document is modified concurrently,
+			 * see {@link #createCopy(IDocument)}.
+			 *
+			 * @param document the document to create a snapshot of
+			 * @return a snapshot of the document, or <code>null</code> if an exception was thrown
+			 */
+			private IDocument createSnapshot(IDocumentExtension5 document) {
+				try {
+					return document.getSnapshot();
+				} catch (NullPointerException e) {
+				} catch (ArrayStoreException e) {
+				} catch (IndexOutOfBoundsException e) {
+				} catch (ConcurrentModificationException e) {
+				} catch (NegativeArraySizeException e) {
+				}
+				return null;
+			}
 		};
 
 		fInitializationJob.setSystem(true);
@@ -920,7 +939,7 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 		// size: the size of the document change in lines
 
 		// put an upper bound to the delay we can afford
-		if (added > 50 || fNLines > 50) {
+		if (added > MAX_INCREMENTAL_LINES || fNLines > MAX_INCREMENTAL_LINES) {
 			initialize();
 			return;
 		}
@@ -942,14 +961,10 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 
 		// get enclosing range: search for a consistent block of at least the size of our
 		// change before and after the change.
-		final QuickDiffRangeDifference consistentBefore, consistentAfter;
-		if (leftToRight) {
-			consistentBefore= findConsistentRangeBeforeLeft(fFirstLine, size);
-			consistentAfter= findConsistentRangeAfterLeft(lastLine, size);
-		} else {
-			consistentBefore= findConsistentRangeBeforeRight(fFirstLine, size);
-			consistentAfter= findConsistentRangeAfterRight(lastLine, size);
-		}
+		final int beforeIndex= findConsistentRangeBefore(fFirstLine, size, leftToRight);
+		final int afterIndex= findConsistentRangeAfter(lastLine, size, leftToRight);
+		final QuickDiffRangeDifference consistentBefore= fDifferences.get(beforeIndex);
+		final QuickDiffRangeDifference consistentAfter= fDifferences.get(afterIndex);
 
 		// optimize unchanged blocks: if the consistent blocks around the change are larger than
 		// size, we redimension them (especially important when there are only few changes.
@@ -984,7 +999,6 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 			leftLine += lineDelta;
 		int leftEndLine= leftLine - shiftAfter;
 		ILineRange leftRange= new LineRange(leftStartLine, leftEndLine - leftStartLine);
-		IRangeComparator reference= new DocEquivalenceComparator(leftEquivalent, leftRange);
 
 		// right (actual) document
 		int rightStartLine= consistentBefore.rightStart() + shiftBefore;
@@ -993,10 +1007,9 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 			rightLine += lineDelta;
 		int rightEndLine= rightLine - shiftAfter;
 		ILineRange rightRange= new LineRange(rightStartLine, rightEndLine - rightStartLine);
-		IRangeComparator change= new DocEquivalenceComparator(rightEquivalent, rightRange);
 
 		// put an upper bound to the delay we can afford
-		if (leftLine - shiftAfter - leftStartLine > 50 || rightLine - shiftAfter - rightStartLine > 50) {
+		if (leftLine - shiftAfter - leftStartLine > MAX_INCREMENTAL_LINES || rightLine - shiftAfter - rightStartLine > MAX_INCREMENTAL_LINES) {
 			initialize();
 			return;
 		}
@@ -1006,7 +1019,7 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 //					">\n\n<" + right.get(rightRegion.getOffset(), rightRegion.getLength()) + ">\n"); //$NON-NLS-1$ //$NON-NLS-2$
 
 		// compare
-		List<QuickDiffRangeDifference> diffs= asQuickDiffRangeDifference(RangeDifferencer.findRanges(fRangeDiffFactory, null, reference, change));
+		List<QuickDiffRangeDifference> diffs= LineDifferencer.findRanges(leftEquivalent, leftRange, rightEquivalent, rightRange, null);
 		if (diffs.size() == 0) {
 			diffs.add(new QuickDiffRangeDifference(RangeDifference.CHANGE, 0, 0, 0, 0));
 		}
@@ -1038,18 +1051,16 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 
 		// replace changed diff range
 		synchronized (fDifferences) {
-			final ListIterator<QuickDiffRangeDifference> it= fDifferences.listIterator();
+			final ListIterator<QuickDiffRangeDifference> it= fDifferences.listIterator(beforeIndex);
 			Iterator<QuickDiffRangeDifference> newIt= diffs.iterator();
 			QuickDiffRangeDifference current;
 			boolean changed= false;
 
 			// replace regions from consistentBefore to consistentAfter with new diffs
 
-			// search for consistentBefore
-			do {
-				Assert.isTrue(it.hasNext());
-				current= it.next();
-			} while (current != consistentBefore);
+			// go to consistentBefore
+			Assert.isTrue(it.hasNext());
+			current= it.next();
 			Assert.isTrue(current == consistentBefore);
 
 			fChanged.clear();
@@ -1126,121 +1137,55 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 	}
 
 	/**
-	 * Converts a {@code RangeDifference[]} into an {@code ArrayList<QuickDiffRangeDifference>}.
-	 * This is unsafe in general, but OK if used carefully.
-	 * Workaround for <a href="https://bugs.eclipse.org/483319">bug 483319</a>.
-	 *
-	 * @param ranges the ranges, <em>must</em> be of type {@link QuickDiffRangeDifference}
-	 * @return the ranges as a modifiable list
-	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private static ArrayList<QuickDiffRangeDifference> asQuickDiffRangeDifference(RangeDifference[] ranges) {
-		return new ArrayList(Arrays.asList(ranges));
-	}
-
-	/**
-	 * Finds a consistent range of at least size before <code>line</code> in the left document.
+	 * Finds a consistent range of at least size before <code>line</code>.
 	 *
 	 * @param line the line before which the range has to occur
 	 * @param size the minimal size of the range
-	 * @return the first range found, or the first range in the differ if none can be found
-	 */
-	private QuickDiffRangeDifference findConsistentRangeBeforeLeft(int line, int size) {
-		QuickDiffRangeDifference found= null;
-
-		for (ListIterator<QuickDiffRangeDifference> it= fDifferences.listIterator(); it.hasNext();) {
-			QuickDiffRangeDifference difference= it.next();
-			if (found == null || difference.kind() == RangeDifference.NOCHANGE
-					&& (difference.leftEnd() < line && difference.leftLength() >= size
-							|| difference.leftEnd() >= line && line - difference.leftStart() >= size))
-				found= difference;
-
-			if (difference.leftEnd() >= line)
-				break;
-		}
-
-		return found;
-	}
-
-	/**
-	 * Finds a consistent range of at least size after <code>line</code> in the left document.
-	 *
-	 * @param line the line after which the range has to occur
-	 * @param size the minimal size of the range
-	 * @return the first range found, or the last range in the differ if none can be found
+	 * @param left <code>true</code> to search the left document, <code>false</code> to search the
+	 *            right document
+	 * @return the index of the last range found, or the index of the first range in the differ if
+	 *         none can be found
 	 */
-	private QuickDiffRangeDifference findConsistentRangeAfterLeft(int line, int size) {
-		QuickDiffRangeDifference found= null;
-
-		for (ListIterator<QuickDiffRangeDifference> it= fDifferences.listIterator(fDifferences.size()); it.hasPrevious();) {
-			QuickDiffRangeDifference difference= it.previous();
-			if (found == null || difference.kind() == RangeDifference.NOCHANGE
-					&& (difference.leftStart() > line && difference.leftLength() >= size
-							|| difference.leftStart() <= line && difference.leftEnd() - line >= size))
-				found= difference;
-
-			if (difference.leftStart() <= line)
-				break;
-
-		}
-
-		return found;
-	}
-
-	/**
-	 * Finds a consistent range of at least size before <code>line</code> in the right document.
-	 *
-	 * @param line the line before which the range has to occur
-	 * @param size the minimal size of the range
-	 * @return the first range found, or the first range in the differ if none can be found
-	 */
-	private QuickDiffRangeDifference findConsistentRangeBeforeRight(int line, int size) {
-		QuickDiffRangeDifference found= null;
-
-		int unchanged= -1; // the number of unchanged lines before line
-		for (ListIterator<QuickDiffRangeDifference> it= fDifferences.listIterator(); it.hasNext();) {
-			QuickDiffRangeDifference difference= it.next();
-			if (found == null)
-				found= difference;
-			else if (difference.kind() == RangeDifference.NOCHANGE) {
-				unchanged= Math.min(line, difference.rightEnd()) - difference.rightStart();
-				if (unchanged >= size)
-					found= difference;
+	private int findConsistentRangeBefore(int line, int size, boolean left) {
+		List<QuickDiffRangeDifference> differences= fDifferences;
+		int index= Math.min(QuickDiffRangeDifference.indexOfFirstEndingAfter(differences, line - 1, left), differences.size() - 1);
+		for (; index > 0; index--) {
+			QuickDiffRangeDifference difference= differences.get(index);
+			if (difference.kind() == RangeDifference.NOCHANGE) {
+				int start= left ? difference.leftStart() : difference.rightStart();
+				int end= left ? difference.leftEnd() : difference.rightEnd();
+				if (Math.min(line, end) - start >= size)
+					break;
 			}
-
-			if (difference.rightEnd() >= line)
-				break;
 		}
-
-		return found;
+		return index;
 	}
 
 	/**
-	 * Finds a consistent range of at least size after <code>line</code> in the right document.
+	 * Finds a consistent range of at least size after <code>line</code>.
 	 *
 	 * @param line the line after which the range has to occur
 	 * @param size the minimal size of the range
-	 * @return the first range found, or the last range in the differ if none can be found
+	 * @param left <code>true</code> to search the left document, <code>false</code> to search the
+	 *            right document
+	 * @return the index of the first range found, or the index of the last range in the differ if
+	 *         none can be found
 	 */
-	private QuickDiffRangeDifference findConsistentRangeAfterRight(int line, int size) {
-		QuickDiffRangeDifference found= null;
-
-		int unchanged= -1; // the number of unchanged lines after line
-		for (ListIterator<QuickDiffRangeDifference> it= fDifferences.listIterator(fDifferences.size()); it.hasPrevious();) {
-			QuickDiffRangeDifference difference= it.previous();
-			if (found == null)
-				found= difference;
-			else if (difference.kind() == RangeDifference.NOCHANGE) {
-				unchanged= difference.rightEnd() - Math.max(line + 1, difference.rightStart()); // + 1 to step over the changed line
-				if (unchanged >= size)
-					found= difference;
+	private int findConsistentRangeAfter(int line, int size, boolean left) {
+		List<QuickDiffRangeDifference> differences= fDifferences;
+		int last= differences.size() - 1;
+		int index= Math.max(QuickDiffRangeDifference.indexOfFirstStartingAfter(differences, line, left) - 1, 0);
+		int from= left ? line : line + 1; // + 1 to step over the changed line in the right document
+		for (; index < last; index++) {
+			QuickDiffRangeDifference difference= differences.get(index);
+			if (difference.kind() == RangeDifference.NOCHANGE) {
+				int start= left ? difference.leftStart() : difference.rightStart();
+				int end= left ? difference.leftEnd() : difference.rightEnd();
+				if (end - Math.max(from, start) >= size)
+					break;
 			}
-
-			if (difference.rightStart() <= line)
-				break;
 		}
-
-		return found;
+		return index;
 	}
 
 	/**
@@ -1350,11 +1295,12 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 	 * @return the corresponding RangeDifference, or <code>null</code>
 	 */
 	private QuickDiffRangeDifference getRangeDifferenceForLeftLine(int leftLine) {
-		for (Iterator<QuickDiffRangeDifference> it= fDifferences.iterator(); it.hasNext();) {
-			QuickDiffRangeDifference d= it.next();
-			if (leftLine >= d.leftStart() && leftLine < d.leftEnd()) {
+		final List<QuickDiffRangeDifference> differences= fDifferences;
+		int index= QuickDiffRangeDifference.indexOfFirstEndingAfter(differences, leftLine, true);
+		if (index < differences.size()) {
+			QuickDiffRangeDifference d= differences.get(index);
+			if (leftLine >= d.leftStart())
 				return d;
-			}
 		}
 		return null;
 	}
@@ -1368,11 +1314,11 @@ public class DocumentLineDiffer implements ILineDiffer, IDocumentListener, IAnno
 	private QuickDiffRangeDifference getRangeDifferenceForRightLine(int rightLine) {
 		final List<QuickDiffRangeDifference> differences= fDifferences;
 		synchronized (differences) {
-			for (Iterator<QuickDiffRangeDifference> it= differences.iterator(); it.hasNext();) {
-				QuickDiffRangeDifference d= it.next();
-				if (rightLine >= d.rightStart() && rightLine < d.rightEnd()) {
+			int index= QuickDiffRangeDifference.indexOfFirstEndingAfter(differences, rightLine, false);
+			if (index < differences.size()) {
+				QuickDiffRangeDifference d= differences.get(index);
+				if (rightLine >= d.rightStart())
 					return d;
-				}
 			}
 		}
 		return null;
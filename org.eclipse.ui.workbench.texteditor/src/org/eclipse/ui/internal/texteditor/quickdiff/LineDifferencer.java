@@ -0,0 +1,357 @@
+/*******************************************************************************
+ * Copyright (c) 2017 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ui.internal.texteditor.quickdiff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.jface.text.source.ILineRange;
+
+import org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.DocumentEquivalenceClass;
+
+import org.eclipse.compare.rangedifferencer.RangeDifference;
+
+
+/**
+ * Computes the line differences between two documents using the linear space refinement of
+ * Myers' O(ND) difference algorithm.
+ * <p>
+ * The lines are compared by the <code>int</code> values of their equivalence hashes, which is
+ * exact for the {@link org.eclipse.ui.internal.texteditor.quickdiff.compare.equivalence.IntHash
+ * IntHash} values the quick differ uses. The result has the same shape as the one of
+ * <code>RangeDifferencer.findRanges</code>: alternating {@link RangeDifference#NOCHANGE} and
+ * {@link RangeDifference#CHANGE} ranges covering both documents. The result is minimal unless the
+ * documents are very dissimilar or have very many differences, in which case the search is cut
+ * short.
+ * </p>
+ *
+ * @since 3.11
+ */
+public final class LineDifferencer {
+
+	/**
+	 * The minimal number of edit steps after which the search for a middle snake is abandoned in
+	 * favor of the furthest reaching forward path.
+	 */
+	private static final int MIN_COST_LIMIT= 256;
+	/** The minimal number of steps of all middle snake searches together. */
+	private static final long MIN_BUDGET= 1 << 18;
+	/** The number of steps of all middle snake searches together per compared line. */
+	private static final int BUDGET_PER_LINE= 64;
+
+	/** The line hashes of the left side. */
+	private final int[] fLeft;
+	/** The line hashes of the right side. */
+	private final int[] fRight;
+	/** The changed lines of the left side. */
+	private final boolean[] fLeftChanged;
+	/** The changed lines of the right side. */
+	private final boolean[] fRightChanged;
+	/** The furthest reaching forward paths, indexed by diagonal. */
+	private final int[] fForward;
+	/** The furthest reaching backward paths, indexed by diagonal. */
+	private final int[] fBackward;
+	/** The progress monitor to check for cancellation, may be <code>null</code>. */
+	private final IProgressMonitor fMonitor;
+	/**
+	 * The number of edit steps after which the middle snake search stops, which bounds the cost of
+	 * diffing very dissimilar documents at the price of a possibly non-minimal result.
+	 */
+	private final int fCostLimit;
+	/**
+	 * The number of steps left for all middle snake searches together, each visited diagonal and
+	 * each line compared along a diagonal being one step. This bounds the cost of documents with
+	 * many differences, each of which stays below {@link #fCostLimit}. Once the budget is used up,
+	 * the remaining sub-problems are marked as changed as a whole.
+	 */
+	private long fBudget;
+
+	private LineDifferencer(int[] left, int[] right, IProgressMonitor monitor) {
+		fLeft= left;
+		fRight= right;
+		fLeftChanged= new boolean[left.length];
+		fRightChanged= new boolean[right.length];
+		int size= left.length + right.length + 4;
+		fForward= new int[size];
+		fBackward= new int[size];
+		fMonitor= monitor;
+		fCostLimit= Math.max(MIN_COST_LIMIT, (int) Math.sqrt(size) * 4);
+		fBudget= Math.max(MIN_BUDGET, (long) size * BUDGET_PER_LINE);
+	}
+
+	/**
+	 * Computes the differences between two line ranges.
+	 *
+	 * @param left the equivalence class of the left (reference) document
+	 * @param leftRange the line range to compare on the left side, or <code>null</code> for all
+	 *            lines
+	 * @param right the equivalence class of the right (actual) document
+	 * @param rightRange the line range to compare on the right side, or <code>null</code> for all
+	 *            lines
+	 * @param monitor the progress monitor used to check for cancellation, may be
+	 *            <code>null</code>
+	 * @return the differences, with line numbers relative to the compared ranges
+	 * @throws OperationCanceledException if <code>monitor</code> is canceled
+	 * @throws java.util.ConcurrentModificationException if a document is modified concurrently
+	 */
+	public static ArrayList<QuickDiffRangeDifference> findRanges(DocumentEquivalenceClass left, ILineRange leftRange, DocumentEquivalenceClass right, ILineRange rightRange, IProgressMonitor monitor) {
+		return findRanges(getHashes(left, leftRange, monitor), getHashes(right, rightRange, monitor), monitor);
+	}
+
+	/**
+	 * Computes the differences between two sequences of line hashes.
+	 *
+	 * @param left the hashes of the left lines
+	 * @param right the hashes of the right lines
+	 * @param monitor the progress monitor used to check for cancellation, may be
+	 *            <code>null</code>
+	 * @return the differences
+	 * @throws OperationCanceledException if <code>monitor</code> is canceled
+	 */
+	public static ArrayList<QuickDiffRangeDifference> findRanges(int[] left, int[] right, IProgressMonitor monitor) {
+		LineDifferencer differencer= new LineDifferencer(left, right, monitor);
+		differencer.diff();
+		return differencer.getRanges();
+	}
+
+	private static int[] getHashes(DocumentEquivalenceClass equivalence, ILineRange range, IProgressMonitor monitor) {
+		int start= range == null ? 0 : range.getStartLine();
+		int count= range == null ? equivalence.getCount() : range.getNumberOfLines();
+		int[] hashes= new int[count];
+		for (int i= 0; i < count; i++) {
+			if ((i & 0xfff) == 0)
+				checkCanceled(monitor);
+			hashes[i]= equivalence.getHash(start + i).hashCode();
+		}
+		return hashes;
+	}
+
+	private static void checkCanceled(IProgressMonitor monitor) {
+		if (monitor != null && monitor.isCanceled())
+			throw new OperationCanceledException();
+	}
+
+	/**
+	 * Marks the changed lines on both sides. Sub-problems are kept on an explicit stack, so the
+	 * recursion depth does not depend on the number of differences.
+	 */
+	private void diff() {
+		int[] stack= new int[64];
+		int top= 0;
+		stack[top++]= 0;
+		stack[top++]= fLeft.length;
+		stack[top++]= 0;
+		stack[top++]= fRight.length;
+
+		while (top > 0) {
+			int rightEnd= stack[--top];
+			int rightStart= stack[--top];
+			int leftEnd= stack[--top];
+			int leftStart= stack[--top];
+
+			// skip common prefix and suffix
+			while (leftStart < leftEnd && rightStart < rightEnd && fLeft[leftStart] == fRight[rightStart]) {
+				leftStart++;
+				rightStart++;
+			}
+			while (leftStart < leftEnd && rightStart < rightEnd && fLeft[leftEnd - 1] == fRight[rightEnd - 1]) {
+				leftEnd--;
+				rightEnd--;
+			}
+
+			if (leftStart == leftEnd || rightStart == rightEnd || fBudget <= 0) {
+				Arrays.fill(fLeftChanged, leftStart, leftEnd, true);
+				Arrays.fill(fRightChanged, rightStart, rightEnd, true);
+				continue;
+			}
+
+			long split= findMiddleSnake(leftStart, leftEnd, rightStart, rightEnd);
+			int leftSplit= (int) (split >>> 32);
+			int rightSplit= (int) split;
+			if (split < 0 || leftSplit == leftStart && rightSplit == rightStart || leftSplit == leftEnd && rightSplit == rightEnd) {
+				Arrays.fill(fLeftChanged, leftStart, leftEnd, true);
+				Arrays.fill(fRightChanged, rightStart, rightEnd, true);
+				continue;
+			}
+
+			if (top + 8 > stack.length)
+				stack= Arrays.copyOf(stack, stack.length * 2);
+			stack[top++]= leftSplit;
+			stack[top++]= leftEnd;
+			stack[top++]= rightSplit;
+			stack[top++]= rightEnd;
+			stack[top++]= leftStart;
+			stack[top++]= leftSplit;
+			stack[top++]= rightStart;
+			stack[top++]= rightSplit;
+		}
+	}
+
+	/**
+	 * Finds the middle snake of the shortest edit script between the given ranges, which must not
+	 * share a common prefix or suffix.
+	 *
+	 * @param leftStart the first left line
+	 * @param leftEnd the end of the left range, exclusive
+	 * @param rightStart the first right line
+	 * @param rightEnd the end of the right range, exclusive
+	 * @return the absolute left line in the upper 32 bits and the absolute right line in the lower
+	 *         32 bits of the point to split the problem at, or <code>-1</code> if there is none
+	 */
+	private long findMiddleSnake(int leftStart, int leftEnd, int rightStart, int rightEnd) {
+		int n= leftEnd - leftStart;
+		int m= rightEnd - rightStart;
+		int maxD= (n + m + 1) / 2;
+		int offset= maxD;
+		int length= 2 * maxD + 2;
+		int[] forward= fForward;
+		int[] backward= fBackward;
+		Arrays.fill(forward, 0, length, -1);
+		Arrays.fill(backward, 0, length, -1);
+		forward[offset + 1]= 0;
+		backward[offset + 1]= 0;
+
+		int delta= n - m;
+		// if the total number of lines is odd, the front path will collide with the reverse path
+		boolean front= (delta & 1) != 0;
+		// diagonals which have run off the edges of the grid are not visited any more
+		int k1Start= 0, k1End= 0, k2Start= 0, k2End= 0;
+		for (int d= 0; d < maxD; d++) {
+			checkCanceled(fMonitor);
+
+			// walk the forward path one step
+			for (int k1= -d + k1Start; k1 <= d - k1End; k1 += 2) {
+				int k1Offset= offset + k1;
+				int x1;
+				if (k1 == -d || k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1])
+					x1= forward[k1Offset + 1];
+				else
+					x1= forward[k1Offset - 1] + 1;
+				int y1= x1 - k1;
+				int snakeStart= x1;
+				while (x1 < n && y1 < m && fLeft[leftStart + x1] == fRight[rightStart + y1]) {
+					x1++;
+					y1++;
+				}
+				fBudget-= 1 + x1 - snakeStart;
+				forward[k1Offset]= x1;
+				if (x1 > n) {
+					k1End += 2;
+				} else if (y1 > m) {
+					k1Start += 2;
+				} else if (front) {
+					int k2Offset= offset + delta - k1;
+					if (k2Offset >= 0 && k2Offset < length && backward[k2Offset] != -1) {
+						if (x1 >= n - backward[k2Offset])
+							return ((long) (leftStart + x1) << 32) | (rightStart + y1);
+					}
+				}
+			}
+
+			// walk the reverse path one step
+			for (int k2= -d + k2Start; k2 <= d - k2End; k2 += 2) {
+				int k2Offset= offset + k2;
+				int x2;
+				if (k2 == -d || k2 != d && backward[k2Offset - 1] < backward[k2Offset + 1])
+					x2= backward[k2Offset + 1];
+				else
+					x2= backward[k2Offset - 1] + 1;
+				int y2= x2 - k2;
+				int snakeStart= x2;
+				while (x2 < n && y2 < m && fLeft[leftEnd - x2 - 1] == fRight[rightEnd - y2 - 1]) {
+					x2++;
+					y2++;
+				}
+				fBudget-= 1 + x2 - snakeStart;
+				backward[k2Offset]= x2;
+				if (x2 > n) {
+					k2End += 2;
+				} else if (y2 > m) {
+					k2Start += 2;
+				} else if (!front) {
+					int k1Offset= offset + delta - k2;
+					if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+						int x1= forward[k1Offset];
+						int y1= offset + x1 - k1Offset;
+						if (x1 >= n - x2)
+							return ((long) (leftStart + x1) << 32) | (rightStart + y1);
+					}
+				}
+			}
+
+			if (d >= fCostLimit || fBudget <= 0)
+				return getFurthestForwardPoint(leftStart, rightStart, n, m, d, k1Start, k1End);
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the point on the forward paths which is furthest from the start.
+	 *
+	 * @param leftStart the first left line
+	 * @param rightStart the first right line
+	 * @param n the number of left lines
+	 * @param m the number of right lines
+	 * @param d the number of edit steps of the forward paths
+	 * @param k1Start the number of skipped diagonals at the start
+	 * @param k1End the number of skipped diagonals at the end
+	 * @return the absolute left line in the upper 32 bits and the absolute right line in the lower
+	 *         32 bits of the point, or <code>-1</code> if there is none
+	 */
+	private long getFurthestForwardPoint(int leftStart, int rightStart, int n, int m, int d, int k1Start, int k1End) {
+		int offset= (n + m + 1) / 2;
+		int best= -1;
+		long point= -1;
+		for (int k1= -d + k1Start; k1 <= d - k1End; k1 += 2) {
+			int x1= fForward[offset + k1];
+			int y1= x1 - k1;
+			if (x1 >= 0 && y1 >= 0 && x1 <= n && y1 <= m && x1 + y1 > best) {
+				best= x1 + y1;
+				point= ((long) (leftStart + x1) << 32) | (rightStart + y1);
+			}
+		}
+		return point;
+	}
+
+	/**
+	 * Converts the changed lines into alternating unchanged and changed ranges.
+	 *
+	 * @return the differences
+	 */
+	private ArrayList<QuickDiffRangeDifference> getRanges() {
+		ArrayList<QuickDiffRangeDifference> ranges= new ArrayList<>();
+		int n= fLeft.length;
+		int m= fRight.length;
+		int left= 0;
+		int right= 0;
+		while (left < n || right < m) {
+			int leftStart= left;
+			int rightStart= right;
+			if (left < n && right < m && !fLeftChanged[left] && !fRightChanged[right]) {
+				while (left < n && right < m && !fLeftChanged[left] && !fRightChanged[right]) {
+					left++;
+					right++;
+				}
+				ranges.add(new QuickDiffRangeDifference(RangeDifference.NOCHANGE, rightStart, right - rightStart, leftStart, left - leftStart));
+			} else {
+				while (left < n && fLeftChanged[left])
+					left++;
+				while (right < m && fRightChanged[right])
+					right++;
+				ranges.add(new QuickDiffRangeDifference(RangeDifference.CHANGE, rightStart, right - rightStart, leftStart, left - leftStart));
+			}
+		}
+		return ranges;
+	}
+}
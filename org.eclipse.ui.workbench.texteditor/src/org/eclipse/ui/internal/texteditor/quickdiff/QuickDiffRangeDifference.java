@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -122,5 +122,76 @@ public class QuickDiffRangeDifference extends org.eclipse.compare.rangedifferenc
 			fRegion= new DiffRegion(this, 0, differences, source);
 		return fRegion;
 	}
+
+	/**
+	 * Returns the index of the first difference that ends after <code>line</code>. This is the
+	 * difference containing <code>line</code>, if there is one.
+	 *
+	 * @param differences the consecutive differences to search
+	 * @param line the line to search for
+	 * @param left <code>true</code> to search the left side, <code>false</code> to search the
+	 *            right side
+	 * @return the index of the first difference ending after <code>line</code>, or the size of
+	 *         <code>differences</code> if there is none
+	 * @since 3.11
+	 */
+	static int indexOfFirstEndingAfter(List<QuickDiffRangeDifference> differences, int line, boolean left) {
+		int low= 0;
+		int high= differences.size();
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			QuickDiffRangeDifference difference= differences.get(mid);
+			if ((left ? difference.leftEnd() : difference.rightEnd()) > line)
+				high= mid;
+			else
+				low= mid + 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index of the first difference that starts after <code>line</code>.
+	 *
+	 * @param differences the consecutive differences to search
+	 * @param line the line to search for
+	 * @param left <code>true</code> to search the left side, <code>false</code> to search the
+	 *            right side
+	 * @return the index of the first difference starting after <code>line</code>, or the size of
+	 *         <code>differences</code> if there is none
+	 * @since 3.11
+	 */
+	static int indexOfFirstStartingAfter(List<QuickDiffRangeDifference> differences, int line, boolean left) {
+		int low= 0;
+		int high= differences.size();
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			QuickDiffRangeDifference difference= differences.get(mid);
+			if ((left ? difference.leftStart() : difference.rightStart()) > line)
+				high= mid;
+			else
+				low= mid + 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index of the first difference equal to <code>difference</code>.
+	 *
+	 * @param differences the consecutive differences to search
+	 * @param difference the difference to search for
+	 * @return the index of <code>difference</code>, or <code>-1</code> if it is not contained
+	 * @since 3.11
+	 */
+	static int indexOf(List<QuickDiffRangeDifference> differences, QuickDiffRangeDifference difference) {
+		int size= differences.size();
+		for (int i= indexOfFirstEndingAfter(differences, difference.rightStart() - 1, false); i < size; i++) {
+			QuickDiffRangeDifference candidate= differences.get(i);
+			if (candidate.rightStart() > difference.rightStart())
+				break;
+			if (difference.equals(candidate))
+				return i;
+		}
+		return -1;
+	}
 }
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2017 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -371,7 +371,7 @@ final class HippieCompleteAction extends TextEditorAction {
 					notifyUser();
 					return;
 				}
-				suggestions= fEngine.getMultipleDocumentsIterator(
+				suggestions= fEngine.getCompletionsIterator(
 						fDocument, documents, prefix, getSelectionOffset());
 			} catch (BadLocationException e) {
 				log(e);